@@ -0,0 +1,146 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.Main;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@code jdbc}, {@code jpa} and {@code list} DAOs on the calls
+ * the service makes. Every fork starts its own Postgres container, the way
+ * {@code AbstractTestcontainers} does, and the application context around
+ * it, then fills the table with {@code tableSize} customers.
+ * <p>
+ * {@code insertCustomer} grows the table while it runs, so its numbers are
+ * for a table somewhat larger than {@code tableSize}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CustomerDaoBenchmark {
+
+    private static final int SEED_BATCH_SIZE = 1_000;
+
+    @Param({"jdbc", "jpa", "list"})
+    private String dao;
+
+    @Param({"1000", "10000"})
+    private int tableSize;
+
+    private PostgreSQLContainer<?> postgreSQLContainer;
+    private ConfigurableApplicationContext applicationContext;
+    private CustomerDao customerDao;
+    private int[] ids;
+    private String[] emails;
+    private int writes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        postgreSQLContainer = new PostgreSQLContainer<>("postgres:latest")
+                .withDatabaseName("amigoscode-dao-benchmark")
+                .withUsername("amigoscode")
+                .withPassword("password")
+                .withUrlParam("reWriteBatchedInserts", "true");
+        postgreSQLContainer.start();
+        applicationContext = new SpringApplicationBuilder(Main.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=" + postgreSQLContainer.getJdbcUrl(),
+                        "spring.datasource.username=" + postgreSQLContainer.getUsername(),
+                        "spring.datasource.password=" + postgreSQLContainer.getPassword(),
+                        "logging.level.root=warn"
+                )
+                .run();
+        customerDao = applicationContext.getBean(dao, CustomerDao.class);
+        seed();
+        List<Customer> customers = customerDao.selectAllCustomers();
+        ids = customers.stream().mapToInt(Customer::getId).toArray();
+        emails = customers.stream().map(Customer::getEmail).toArray(String[]::new);
+    }
+
+    // the database DAOs share the table, so it is filled through the fastest one
+    private void seed() {
+        CustomerDao seeder = dao.equals("list")
+                ? customerDao
+                : applicationContext.getBean("jdbc", CustomerDao.class);
+        List<Customer> batch = new ArrayList<>(SEED_BATCH_SIZE);
+        for (int i = 0; i < tableSize; i++) {
+            batch.add(new Customer(
+                    "Customer " + i,
+                    "customer-%d@amigoscode.com".formatted(i),
+                    18 + i % 80
+            ));
+            if (batch.size() == SEED_BATCH_SIZE || i == tableSize - 1) {
+                seeder.insertCustomersIfAbsent(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        applicationContext.close();
+        postgreSQLContainer.stop();
+    }
+
+    private int randomIndex() {
+        return ThreadLocalRandom.current().nextInt(ids.length);
+    }
+
+    @Benchmark
+    public Optional<Customer> selectCustomerById() {
+        return customerDao.selectCustomerById(ids[randomIndex()]);
+    }
+
+    @Benchmark
+    public List<Customer> selectAllCustomers() {
+        return customerDao.selectAllCustomers();
+    }
+
+    @Benchmark
+    public boolean existsCustomerWithEmail() {
+        return customerDao.existsCustomerWithEmail(emails[randomIndex()]);
+    }
+
+    @Benchmark
+    public Customer insertCustomer() {
+        Customer customer = new Customer(
+                "Inserted",
+                "inserted-%d@amigoscode.com".formatted(writes++),
+                30
+        );
+        customerDao.insertCustomer(customer);
+        return customer;
+    }
+
+    @Benchmark
+    public CustomerUpdateResult updateCustomer() {
+        // a new name every time, so that every call writes
+        return customerDao.updateCustomer(
+                new Customer(ids[randomIndex()], "Updated " + writes++, null, null)
+        );
+    }
+}
@@ -0,0 +1,181 @@
+package com.amigoscode.customer;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the parallel column scans of {@link CustomerColumnarDataAccessService}
+ * with filtering a list of customer objects, which is how the list DAO
+ * holds its rows, in a parallel stream so both sides use the common
+ * fork-join pool.
+ * <p>
+ * {@link #footprint} reports what each store retains once built, as the
+ * heap still in use after a forced GC plus the direct buffers, which hold
+ * the columnar store's names and emails off the heap. Run it on its own
+ * for the least noise: {@code -Djmh.args="CustomerScanBenchmark.footprint"}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CustomerScanBenchmark {
+
+    @Param({"100000", "1000000"})
+    private int rows;
+
+    private CustomerColumnarDataAccessService columnar;
+    private List<Customer> customers;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        columnar = columnar(rows);
+        customers = list(rows);
+    }
+
+    @Benchmark
+    public List<Customer> columnarAgeRange() {
+        return columnar.selectCustomersByAgeRange(30, 39);
+    }
+
+    @Benchmark
+    public List<Customer> listAgeRange() {
+        return customers.parallelStream()
+                .filter(c -> c.getAge() >= 30 && c.getAge() <= 39)
+                .toList();
+    }
+
+    @Benchmark
+    public List<Customer> columnarEmailPrefix() {
+        return columnar.selectCustomersByEmailPrefix("customer-4242");
+    }
+
+    @Benchmark
+    public List<Customer> listEmailPrefix() {
+        return customers.parallelStream()
+                .filter(c -> c.getEmail().startsWith("customer-4242"))
+                .toList();
+    }
+
+    /**
+     * The time is meaningless; the result is in the counters of
+     * {@link Footprint}, which JMH only reports for this mode and
+     * {@link Mode#Throughput}.
+     */
+    @Benchmark
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1, time = 1, timeUnit = TimeUnit.MILLISECONDS)
+    public void footprint(Footprint footprint) {
+        footprint.report();
+    }
+
+    private static Customer customer(int i) {
+        return new Customer(
+                "Customer " + i,
+                "customer-%d@amigoscode.com".formatted(i),
+                18 + i % 80
+        );
+    }
+
+    private static CustomerColumnarDataAccessService columnar(int rows) {
+        CustomerColumnarDataAccessService columnar = new CustomerColumnarDataAccessService();
+        List<Customer> batch = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            batch.add(customer(i));
+            if (batch.size() == 10_000 || i == rows - 1) {
+                columnar.insertCustomersIfAbsent(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        return columnar;
+    }
+
+    private static List<Customer> list(int rows) {
+        List<Customer> customers = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            customers.add(customer(i));
+        }
+        return customers;
+    }
+
+    /**
+     * Bytes retained by a store of {@code rows} customers, reported once
+     * per trial. Each store is built here a second time and measured
+     * against the heap and direct buffers in use just before.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+
+        public long columnarHeapBytes;
+        public long columnarDirectBytes;
+        public long listHeapBytes;
+        public long listDirectBytes;
+
+        // JMH zeroes the counters after setup, the benchmark copies these in
+        private final long[] measured = new long[4];
+
+        @Setup(Level.Iteration)
+        public void measure(CustomerScanBenchmark benchmark) {
+            long heap = usedHeapAfterGc();
+            long direct = usedDirect();
+            CustomerColumnarDataAccessService columnar = columnar(benchmark.rows);
+            measured[0] = usedHeapAfterGc() - heap;
+            measured[1] = usedDirect() - direct;
+            Reference.reachabilityFence(columnar);
+            columnar = null;
+
+            heap = usedHeapAfterGc();
+            direct = usedDirect();
+            List<Customer> customers = list(benchmark.rows);
+            measured[2] = usedHeapAfterGc() - heap;
+            measured[3] = usedDirect() - direct;
+            Reference.reachabilityFence(customers);
+        }
+
+        void report() {
+            columnarHeapBytes = measured[0];
+            columnarDirectBytes = measured[1];
+            listHeapBytes = measured[2];
+            listDirectBytes = measured[3];
+        }
+
+        private static long usedHeapAfterGc() {
+            // a few rounds, as one System.gc() may leave garbage behind
+            long used = Long.MAX_VALUE;
+            for (int i = 0; i < 5; i++) {
+                System.gc();
+                used = Math.min(used, ManagementFactory.getMemoryMXBean()
+                        .getHeapMemoryUsage()
+                        .getUsed());
+            }
+            return used;
+        }
+
+        private static long usedDirect() {
+            return ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+                    .filter(pool -> pool.getName().equals("direct"))
+                    .mapToLong(BufferPoolMXBean::getMemoryUsed)
+                    .sum();
+        }
+    }
+}
@@ -1,10 +1,13 @@
 package com.amigoscode.customer;
 import jakarta.persistence.*;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.math.BigInteger;
 import java.util.Objects;
 
 @Entity
+// updates set only the columns that changed
+@DynamicUpdate
 @Table (
         name = "customer",
         uniqueConstraints = {
@@ -16,12 +19,13 @@ import java.util.Objects;
 )
 public class Customer {
     @Id
-    @SequenceGenerator(name = "customer_id_seq",
-            sequenceName = "customer_id_seq",
-            allocationSize = 1)
+    // must match the sequence's INCREMENT BY, see V7__Separate_Customer_Jpa_Id_Sequence
+    @SequenceGenerator(name = "customer_jpa_id_seq",
+            sequenceName = "customer_jpa_id_seq",
+            allocationSize = 50)
     @GeneratedValue(
             strategy = GenerationType.SEQUENCE,
-            generator = "customer_id_seq"
+            generator = "customer_jpa_id_seq"
     )
     private Integer id;
     @Column(nullable = false)
@@ -79,6 +83,29 @@ public class Customer {
         this.age = age;
     }
 
+    /**
+     * Copies the non-null fields of {@code update} that differ from this
+     * customer.
+     *
+     * @return true if any field changed
+     */
+    boolean applyChanges(Customer update) {
+        boolean changes = false;
+        if (update.getName() != null && !update.getName().equals(getName())) {
+            setName(update.getName());
+            changes = true;
+        }
+        if (update.getAge() != null && !update.getAge().equals(getAge())) {
+            setAge(update.getAge());
+            changes = true;
+        }
+        if (update.getEmail() != null && !update.getEmail().equals(getEmail())) {
+            setEmail(update.getEmail());
+            changes = true;
+        }
+        return changes;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,32 @@
+package com.amigoscode.customer;
+
+/**
+ * One entry of a POST /api/v1/customers:batch request. Creates need name,
+ * email and age; updates need the id and any fields to change; deletes
+ * only need the id.
+ */
+public record CustomerBatchOperation(
+        Type op,
+        Integer id,
+        String name,
+        String email,
+        Integer age
+) {
+    public enum Type {
+        CREATE,
+        UPDATE,
+        DELETE
+    }
+
+    String validate() {
+        if (op == null) {
+            return "op is required";
+        }
+        return switch (op) {
+            case CREATE -> name == null || email == null || age == null
+                    ? "name, email and age are required"
+                    : null;
+            case UPDATE, DELETE -> id == null ? "id is required" : null;
+        };
+    }
+}
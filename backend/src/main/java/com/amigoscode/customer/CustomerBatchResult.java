@@ -0,0 +1,25 @@
+package com.amigoscode.customer;
+
+/**
+ * @param index position of the operation in the request
+ */
+public record CustomerBatchResult(
+        int index,
+        Status status,
+        Integer id,
+        String message
+) {
+    public enum Status {
+        CREATED,
+        UPDATED,
+        DELETED,
+        NO_CHANGES,
+        NOT_FOUND,
+        DUPLICATE_EMAIL,
+        INVALID
+    }
+
+    static CustomerBatchResult of(int index, Status status, Integer id) {
+        return new CustomerBatchResult(index, status, id, null);
+    }
+}
@@ -0,0 +1,204 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.customer.CustomerBatchOperation.Type;
+import com.amigoscode.customer.CustomerBatchResult.Status;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Runs a stream of create, update and delete operations in JDBC batches.
+ * Operations are read in commit groups of {@code customer.batch.commit-size},
+ * each group runs in one transaction, and within a group consecutive
+ * operations of the same type are sent together in batches of at most
+ * {@code customer.batch.batch-size}.
+ */
+@Service
+public class CustomerBatchService {
+
+    private final CustomerDao customerDao;
+    private final CustomerCache customerCache;
+    private final CustomerResponseCache customerResponseCache;
+    private final CustomerEmailFilter customerEmailFilter;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final int commitSize;
+
+    public CustomerBatchService(@Qualifier("jdbc") CustomerDao customerDao,
+                                CustomerCache customerCache,
+                                CustomerResponseCache customerResponseCache,
+                                CustomerEmailFilter customerEmailFilter,
+                                TransactionTemplate transactionTemplate,
+                                @Value("${customer.batch.batch-size:500}") int batchSize,
+                                @Value("${customer.batch.commit-size:5000}") int commitSize) {
+        if (batchSize < 1 || commitSize < 1) {
+            throw new IllegalArgumentException(
+                    "batch size and commit size must be positive"
+            );
+        }
+        this.customerDao = customerDao;
+        this.customerCache = customerCache;
+        this.customerResponseCache = customerResponseCache;
+        this.customerEmailFilter = customerEmailFilter;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.commitSize = commitSize;
+    }
+
+    /**
+     * Runs every operation and passes one result per operation to
+     * {@code results}, in request order. Results of a commit group are only
+     * passed on once the group has been committed.
+     */
+    public void execute(Iterator<CustomerBatchOperation> operations,
+                        Consumer<CustomerBatchResult> results) {
+        int offset = 0;
+        while (operations.hasNext()) {
+            List<CustomerBatchOperation> group = new ArrayList<>();
+            while (operations.hasNext() && group.size() < commitSize) {
+                group.add(operations.next());
+            }
+            CustomerBatchResult[] groupResults = executeGroup(offset, group);
+            for (int i = 0; i < groupResults.length; i++) {
+                CustomerBatchResult result = groupResults[i];
+                // after the commit, so a concurrent read cannot cache the old row again
+                switch (result.status()) {
+                    case CREATED -> {
+                        customerResponseCache.evictPages();
+                        customerEmailFilter.emailAdded(group.get(i).email());
+                    }
+                    case UPDATED -> {
+                        customerCache.evict(result.id());
+                        customerResponseCache.evict(result.id());
+                        if (group.get(i).email() != null) {
+                            customerEmailFilter.emailAdded(group.get(i).email());
+                            customerEmailFilter.emailRemoved();
+                        }
+                    }
+                    case DELETED -> {
+                        customerCache.evict(result.id());
+                        customerResponseCache.evict(result.id());
+                        customerEmailFilter.emailRemoved(result.id());
+                    }
+                    case NOT_FOUND -> {
+                        customerCache.evict(result.id());
+                        customerResponseCache.evict(result.id());
+                    }
+                    default -> { }
+                }
+                results.accept(result);
+            }
+            offset += group.size();
+        }
+    }
+
+    private CustomerBatchResult[] executeGroup(int offset,
+                                               List<CustomerBatchOperation> group) {
+        try {
+            return transactionTemplate.execute(status -> executeBatches(offset, group));
+        } catch (DataIntegrityViolationException e) {
+            // a concurrent writer took an email between check and write, or
+            // an operation broke another constraint; retry one operation per
+            // transaction to find out which one
+            CustomerBatchResult[] results = new CustomerBatchResult[group.size()];
+            for (int i = 0; i < group.size(); i++) {
+                List<CustomerBatchOperation> single = List.of(group.get(i));
+                int index = offset + i;
+                try {
+                    results[i] = transactionTemplate.execute(
+                            status -> executeBatches(index, single)
+                    )[0];
+                } catch (DataIntegrityViolationException violation) {
+                    results[i] = CustomerConstraints.isEmailTaken(violation)
+                            ? CustomerBatchResult.of(index, Status.DUPLICATE_EMAIL, group.get(i).id())
+                            : new CustomerBatchResult(index, Status.INVALID, group.get(i).id(),
+                                    "invalid customer data");
+                }
+            }
+            return results;
+        }
+    }
+
+    private CustomerBatchResult[] executeBatches(int offset,
+                                                 List<CustomerBatchOperation> group) {
+        CustomerBatchResult[] results = new CustomerBatchResult[group.size()];
+        int start = 0;
+        while (start < group.size()) {
+            CustomerBatchOperation first = group.get(start);
+            String error = first.validate();
+            if (error != null) {
+                results[start] = new CustomerBatchResult(
+                        offset + start, Status.INVALID, first.id(), error
+                );
+                start++;
+                continue;
+            }
+            int end = start + 1;
+            while (end < group.size()
+                    && end - start < batchSize
+                    && group.get(end).op() == first.op()
+                    && group.get(end).validate() == null) {
+                end++;
+            }
+            executeBatch(first.op(), offset, start, group.subList(start, end), results);
+            start = end;
+        }
+        return results;
+    }
+
+    private void executeBatch(Type type,
+                              int offset,
+                              int start,
+                              List<CustomerBatchOperation> batch,
+                              CustomerBatchResult[] results) {
+        switch (type) {
+            case CREATE -> {
+                List<Customer> customers = batch.stream()
+                        .map(op -> new Customer(op.name(), op.email(), op.age()))
+                        .toList();
+                List<Boolean> inserted = customerDao.insertCustomersIfAbsent(customers);
+                for (int i = 0; i < batch.size(); i++) {
+                    results[start + i] = inserted.get(i)
+                            ? CustomerBatchResult.of(offset + start + i, Status.CREATED, customers.get(i).getId())
+                            : CustomerBatchResult.of(offset + start + i, Status.DUPLICATE_EMAIL, null);
+                }
+            }
+            case UPDATE -> {
+                List<Customer> updates = batch.stream()
+                        .map(op -> new Customer(op.id(), op.name(), op.email(), op.age()))
+                        .toList();
+                List<CustomerUpdateResult> updated = customerDao.updateCustomers(updates);
+                for (int i = 0; i < batch.size(); i++) {
+                    Status status = switch (updated.get(i).status()) {
+                        case UPDATED -> Status.UPDATED;
+                        case NO_CHANGES -> Status.NO_CHANGES;
+                        case NOT_FOUND -> Status.NOT_FOUND;
+                        case DUPLICATE_EMAIL -> Status.DUPLICATE_EMAIL;
+                    };
+                    results[start + i] = CustomerBatchResult.of(
+                            offset + start + i, status, batch.get(i).id()
+                    );
+                }
+            }
+            case DELETE -> {
+                List<Boolean> deleted = customerDao.deleteCustomersById(
+                        batch.stream().map(CustomerBatchOperation::id).toList()
+                );
+                for (int i = 0; i < batch.size(); i++) {
+                    results[start + i] = CustomerBatchResult.of(
+                            offset + start + i,
+                            deleted.get(i) ? Status.DELETED : Status.NOT_FOUND,
+                            batch.get(i).id()
+                    );
+                }
+            }
+        }
+    }
+}
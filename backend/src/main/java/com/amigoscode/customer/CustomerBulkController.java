@@ -0,0 +1,144 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.exception.RequestValidationException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+@RestController
+@RequestMapping("/api/v1")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class CustomerBulkController {
+
+    private final CustomerBatchService customerBatchService;
+    private final CustomerImportService customerImportService;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter resultWriter;
+
+    public CustomerBulkController(CustomerBatchService customerBatchService,
+                                  CustomerImportService customerImportService,
+                                  ObjectMapper objectMapper) {
+        this.customerBatchService = customerBatchService;
+        this.customerImportService = customerImportService;
+        this.objectMapper = objectMapper;
+        // let the generator buffer results instead of flushing after each one
+        this.resultWriter = objectMapper.writerFor(CustomerBatchResult.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * Takes a JSON array of {@link CustomerBatchOperation}s and answers with
+     * a JSON array holding one {@link CustomerBatchResult} per operation.
+     * Both arrays are streamed, so the request is never held in memory as a
+     * whole. A malformed operation fails the request with 400 as long as no
+     * results have been sent yet; operations of earlier commit groups stay
+     * committed either way.
+     */
+    @PostMapping(
+            path = "customers:batch",
+            consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    public void batch(InputStream body, HttpServletResponse response) throws IOException {
+        try (JsonParser parser = objectMapper.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new RequestValidationException("request body must be a JSON array");
+            }
+            Iterator<CustomerBatchOperation> operations = new OperationIterator(parser);
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            // not closed on failure: results still sitting in the generator's
+            // buffer are dropped, so an early error becomes a plain 400
+            JsonGenerator generator = objectMapper.getFactory()
+                    .createGenerator(response.getOutputStream());
+            generator.writeStartArray();
+            try {
+                customerBatchService.execute(operations, result -> {
+                    try {
+                        resultWriter.writeValue(generator, result);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            generator.writeEndArray();
+            generator.close();
+        } catch (JsonProcessingException e) {
+            throw new RequestValidationException(
+                    "invalid batch request: " + e.getOriginalMessage()
+            );
+        }
+    }
+
+    /**
+     * Loads a CSV of name, email and age through PostgreSQL COPY. Rows that
+     * are not CSV, have missing fields, a non-numeric age or an email that is
+     * already taken are counted as rejected.
+     */
+    @PostMapping(
+            path = "customers:import",
+            consumes = "text/csv",
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    public CustomerImportResult importCustomers(
+            InputStream body,
+            @RequestParam(name = "header", defaultValue = "true") boolean header) {
+        return customerImportService.importCustomers(body, header);
+    }
+
+    private static class OperationIterator implements Iterator<CustomerBatchOperation> {
+
+        private final JsonParser parser;
+        private JsonToken next;
+
+        OperationIterator(JsonParser parser) {
+            this.parser = parser;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                try {
+                    next = parser.nextToken();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (next == null) {
+                    throw new RequestValidationException("unterminated JSON array");
+                }
+            }
+            return next != JsonToken.END_ARRAY;
+        }
+
+        @Override
+        public CustomerBatchOperation next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            next = null;
+            try {
+                return parser.readValueAs(CustomerBatchOperation.class);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
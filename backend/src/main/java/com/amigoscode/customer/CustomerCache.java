@@ -0,0 +1,67 @@
+package com.amigoscode.customer;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Bounded cache of customers by id, in front of whichever {@link CustomerDao}
+ * the service uses. Caffeine evicts by size with W-TinyLFU, so hot ids stay
+ * cached, and entries expire after {@code customer.cache.expire-after-write}
+ * to bound staleness from writers that bypass the service. Hit, miss and
+ * eviction counts are published as {@code cache.*} metrics.
+ */
+@Component
+public class CustomerCache implements MeterBinder {
+
+    private final Cache<Integer, Customer> cache;
+    private final CustomerRecentWrites recentWrites;
+
+    public CustomerCache(@Value("${customer.cache.maximum-size:10000}") long maximumSize,
+                         @Value("${customer.cache.expire-after-write:5m}") Duration expireAfterWrite,
+                         CustomerRecentWrites recentWrites) {
+        this.recentWrites = recentWrites;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns the cached customer or loads it. Concurrent misses on one id
+     * share a single load, and absent customers are not cached.
+     */
+    public Optional<Customer> get(Integer id, Function<Integer, Optional<Customer>> loader) {
+        return Optional.ofNullable(cache.get(id, key -> recentWrites.loadCustomer(
+                key, () -> loader.apply(key).orElse(null))));
+    }
+
+    public void evict(Integer id) {
+        recentWrites.written(id);
+        cache.invalidate(id);
+    }
+
+    public void evictAll() {
+        recentWrites.writtenAll();
+        cache.invalidateAll();
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "customers");
+    }
+}
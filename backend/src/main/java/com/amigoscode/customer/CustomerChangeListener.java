@@ -0,0 +1,272 @@
+package com.amigoscode.customer;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the local caches coherent with writes made by other nodes. The
+ * {@code customer} triggers from V5 notify {@code customer_changes} with
+ * the ids of every changed row. This listens on one pooled connection,
+ * which it keeps, collects notifications for
+ * {@code customer.change-listener.batch-window} and then evicts the changed
+ * customers from {@link CustomerCache} and {@link CustomerResponseCache}
+ * and adds new emails to {@link CustomerEmailFilter}, counting replaced and
+ * deleted ones as stale.
+ * <p>
+ * Notifications of this node's own writes arrive as well and evict entries
+ * that are already gone. Notifications sent while the connection is down
+ * are lost, so everything is dropped after reconnecting.
+ */
+@Component
+@ConditionalOnProperty(name = "customer.change-listener.enabled", havingValue = "true", matchIfMissing = true)
+public class CustomerChangeListener implements SmartLifecycle {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CustomerChangeListener.class);
+
+    static final String CHANNEL = "customer_changes";
+
+    // how long a poll blocks, which bounds how long stop() waits
+    private static final int POLL_MILLIS = 500;
+    // past this many ids a batch drops everything instead
+    private static final int MAX_BATCH_IDS = 10_000;
+
+    private final DataSource dataSource;
+    private final CustomerCache customerCache;
+    private final CustomerResponseCache customerResponseCache;
+    private final CustomerEmailFilter customerEmailFilter;
+    private final Duration batchWindow;
+    private final Duration retryInterval;
+
+    private volatile boolean running;
+    private volatile boolean listening;
+    private Thread thread;
+
+    public CustomerChangeListener(DataSource dataSource,
+                                  CustomerCache customerCache,
+                                  CustomerResponseCache customerResponseCache,
+                                  CustomerEmailFilter customerEmailFilter,
+                                  @Value("${customer.change-listener.batch-window:100ms}") Duration batchWindow,
+                                  @Value("${customer.change-listener.retry-interval:5s}") Duration retryInterval) {
+        this.dataSource = dataSource;
+        this.customerCache = customerCache;
+        this.customerResponseCache = customerResponseCache;
+        this.customerEmailFilter = customerEmailFilter;
+        this.batchWindow = batchWindow;
+        this.retryInterval = retryInterval;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::listen, "customer-change-listener");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(POLL_MILLIS * 2L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    boolean isListening() {
+        return listening;
+    }
+
+    private void listen() {
+        boolean connectedBefore = false;
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                connection.setAutoCommit(true);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                listening = true;
+                if (connectedBefore) {
+                    LOGGER.info("listening on {} again, dropping cached customers", CHANNEL);
+                    evictAll();
+                }
+                connectedBefore = true;
+                while (running) {
+                    ChangeBatch batch = new ChangeBatch();
+                    if (!batch.addAll(pgConnection.getNotifications(POLL_MILLIS))) {
+                        continue;
+                    }
+                    long deadline = System.nanoTime() + batchWindow.toNanos();
+                    long remaining;
+                    while (!batch.everything && (remaining = deadline - System.nanoTime()) > 0) {
+                        // a timeout of 0 would block until the next notification
+                        int timeout = (int) Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining));
+                        batch.addAll(pgConnection.getNotifications(timeout));
+                    }
+                    apply(batch, connection);
+                }
+            } catch (SQLException | RuntimeException e) {
+                listening = false;
+                if (running) {
+                    LOGGER.warn("lost {} listener, retrying in {}", CHANNEL, retryInterval, e);
+                    sleep(retryInterval);
+                }
+            }
+        }
+        listening = false;
+    }
+
+    private void apply(ChangeBatch batch, Connection connection) throws SQLException {
+        LOGGER.debug("applying customer changes: {} inserted, {} updated, {} deleted, everything {}",
+                batch.inserted.size(), batch.updated.size(), batch.deleted.size(), batch.everything);
+        if (batch.everything) {
+            evictAll();
+            return;
+        }
+        for (Integer id : batch.updated) {
+            customerCache.evict(id);
+            customerResponseCache.evict(id);
+        }
+        for (Integer id : batch.deleted) {
+            customerCache.evict(id);
+            customerResponseCache.evict(id);
+            customerEmailFilter.emailRemoved(id);
+        }
+        // emails this node wrote are in the filter already and are not
+        // counted again, nor are the few that are false positives
+        if (!batch.inserted.isEmpty()) {
+            customerResponseCache.evictPages();
+            for (String email : selectEmails(connection, batch.inserted)) {
+                if (!customerEmailFilter.mightContain(email)) {
+                    customerEmailFilter.emailAdded(email);
+                }
+            }
+        }
+        if (!batch.updated.isEmpty()) {
+            for (String email : selectEmails(connection, batch.updated)) {
+                // most updates keep the email; a new one replaced an old one
+                if (!customerEmailFilter.mightContain(email)) {
+                    customerEmailFilter.emailAdded(email);
+                    customerEmailFilter.emailRemoved();
+                }
+            }
+        }
+    }
+
+    private static Set<String> selectEmails(Connection connection, Set<Integer> ids) throws SQLException {
+        var sql = """
+                SELECT email
+                FROM customer
+                WHERE id = ANY (?)
+                """;
+        Set<String> emails = new HashSet<>();
+        Array array = connection.createArrayOf("integer", ids.toArray());
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setArray(1, array);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    emails.add(resultSet.getString(1));
+                }
+            }
+        } finally {
+            array.free();
+        }
+        return emails;
+    }
+
+    private void evictAll() {
+        customerCache.evictAll();
+        customerResponseCache.evictAll();
+        customerEmailFilter.requestRebuild();
+    }
+
+    private void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            // stop() interrupts, and running tells the loop to end
+        }
+    }
+
+    /**
+     * Ids from the payloads of one batch window.
+     */
+    static final class ChangeBatch {
+
+        final Set<Integer> inserted = new HashSet<>();
+        final Set<Integer> updated = new HashSet<>();
+        final Set<Integer> deleted = new HashSet<>();
+        boolean everything;
+
+        /**
+         * @return false if there were no notifications
+         */
+        boolean addAll(PGNotification[] notifications) {
+            if (notifications == null || notifications.length == 0) {
+                return false;
+            }
+            for (PGNotification notification : notifications) {
+                add(notification.getParameter());
+            }
+            return true;
+        }
+
+        void add(String payload) {
+            if (everything) {
+                return;
+            }
+            if (payload.length() < 3 || payload.charAt(1) != ':') {
+                // '*', or a payload this version does not know
+                everything = true;
+                return;
+            }
+            Set<Integer> ids = switch (payload.charAt(0)) {
+                case 'I' -> inserted;
+                case 'U' -> updated;
+                case 'D' -> deleted;
+                default -> null;
+            };
+            if (ids == null) {
+                everything = true;
+                return;
+            }
+            for (String id : payload.substring(2).split(",")) {
+                ids.add(Integer.valueOf(id));
+            }
+            if (inserted.size() + updated.size() + deleted.size() > MAX_BATCH_IDS) {
+                everything = true;
+            }
+        }
+    }
+}
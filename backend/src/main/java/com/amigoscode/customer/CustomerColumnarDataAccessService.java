@@ -0,0 +1,638 @@
+package com.amigoscode.customer;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+
+/**
+ * Column store for large, read-mostly customer tables.
+ * <p>
+ * Every customer is a row, and its id is the row number plus one. Ids and
+ * ages live in primitive {@code int[]} columns. Names and the local part of
+ * emails are UTF-8 bytes in an off-heap arena, referenced by offset and
+ * length. Email domains such as {@code @amigoscode.com} are
+ * dictionary-encoded, so each distinct domain is stored once. Deleted rows
+ * are tombstoned in a {@link BitSet}, and their ids are never reused.
+ * Changed names and emails are appended to the arena, and the old bytes
+ * are not reclaimed.
+ * <p>
+ * Reads share a read lock and writes take the write lock. Filtered scans
+ * ({@link #selectCustomersByAgeRange}, {@link #selectCustomersByEmailPrefix})
+ * split the rows into segments that are scanned in parallel on the common
+ * fork-join pool.
+ */
+@Repository("columnar")
+public class CustomerColumnarDataAccessService implements CustomerDao {
+
+    // rows scanned by one fork-join task before it stops splitting
+    static final int SEGMENT_SIZE = 1 << 16;
+    // rows decoded per read lock while streaming
+    private static final int STREAM_CHUNK_SIZE = 1_000;
+    private static final int INITIAL_CAPACITY = 1_024;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private int rowCount;
+    private int liveCount;
+    private int[] ages = new int[INITIAL_CAPACITY];
+    private int[] nameOffsets = new int[INITIAL_CAPACITY];
+    private int[] nameLengths = new int[INITIAL_CAPACITY];
+    private int[] emailOffsets = new int[INITIAL_CAPACITY];
+    private int[] emailLengths = new int[INITIAL_CAPACITY];
+    private int[] emailDomains = new int[INITIAL_CAPACITY];
+    private final BitSet deleted = new BitSet();
+
+    private final ByteArena arena = new ByteArena(INITIAL_CAPACITY * 32);
+    private final List<byte[]> domains = new ArrayList<>();
+    private final Map<String, Integer> domainIds = new HashMap<>();
+    private final EmailIndex emailIndex = new EmailIndex();
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        lock.readLock().lock();
+        try {
+            List<Customer> customers = new ArrayList<>(liveCount);
+            for (int row = 0; row < rowCount; row++) {
+                if (!deleted.get(row)) {
+                    customers.add(customer(row));
+                }
+            }
+            return customers;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Customer> selectCustomers(CustomerPageRequest pageRequest) {
+        CustomerCursor after = pageRequest.after();
+        int limit = pageRequest.limit();
+        lock.readLock().lock();
+        try {
+            if (pageRequest.sort() == CustomerSort.ID) {
+                // rows are in id order already
+                List<Customer> page = new ArrayList<>();
+                int first = Math.max(0, (Integer) after.key());
+                for (int row = first; row < rowCount && page.size() < limit; row++) {
+                    if (!deleted.get(row)) {
+                        page.add(customer(row));
+                    }
+                }
+                return page;
+            }
+            // keep the smallest rows after the cursor in a bounded max-heap
+            Comparator<Customer> order = pageRequest.sort().comparator();
+            PriorityQueue<Customer> smallest = new PriorityQueue<>(order.reversed());
+            for (int row = 0; row < rowCount; row++) {
+                if (deleted.get(row)) {
+                    continue;
+                }
+                Customer customer = customer(row);
+                if (!after.isBefore(customer)) {
+                    continue;
+                }
+                if (smallest.size() < limit) {
+                    smallest.add(customer);
+                } else if (order.compare(customer, smallest.peek()) < 0) {
+                    smallest.poll();
+                    smallest.add(customer);
+                }
+            }
+            List<Customer> page = new ArrayList<>(smallest);
+            page.sort(order);
+            return page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void streamCustomers(CustomerRowCallback callback) {
+        // decode a chunk under the lock, call back without it so that a
+        // slow consumer does not hold up writers
+        int next = 0;
+        List<Customer> chunk = new ArrayList<>(STREAM_CHUNK_SIZE);
+        while (true) {
+            chunk.clear();
+            lock.readLock().lock();
+            try {
+                while (next < rowCount && chunk.size() < STREAM_CHUNK_SIZE) {
+                    if (!deleted.get(next)) {
+                        chunk.add(customer(next));
+                    }
+                    next++;
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            if (chunk.isEmpty()) {
+                return;
+            }
+            for (Customer customer : chunk) {
+                try {
+                    callback.processRow(
+                            customer.getId(),
+                            customer.getName(),
+                            customer.getEmail(),
+                            customer.getAge()
+                    );
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer id) {
+        lock.readLock().lock();
+        try {
+            int row = rowOf(id);
+            return row < 0 ? Optional.empty() : Optional.of(customer(row));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Customers with {@code minAge <= age <= maxAge}, in id order.
+     */
+    public List<Customer> selectCustomersByAgeRange(int minAge, int maxAge) {
+        lock.readLock().lock();
+        try {
+            int[] ages = this.ages;
+            return customers(scan(row -> ages[row] >= minAge && ages[row] <= maxAge));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Customers whose email starts with {@code prefix}, in id order.
+     */
+    public List<Customer> selectCustomersByEmailPrefix(String prefix) {
+        byte[] bytes = prefix.getBytes(StandardCharsets.UTF_8);
+        lock.readLock().lock();
+        try {
+            return customers(scan(row -> emailStartsWith(row, bytes)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Bytes held off-heap by the arena, including unused capacity.
+     */
+    public long offHeapBytes() {
+        lock.readLock().lock();
+        try {
+            return arena.capacity();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void insertCustomer(Customer customer) {
+        if (!insertCustomerIfAbsent(customer)) {
+            throw new DuplicateKeyException(
+                    "email [%s] already taken".formatted(customer.getEmail())
+            );
+        }
+    }
+
+    @Override
+    public boolean insertCustomerIfAbsent(Customer customer) {
+        lock.writeLock().lock();
+        try {
+            return insert(customer);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Boolean> insertCustomersIfAbsent(List<Customer> customers) {
+        lock.writeLock().lock();
+        try {
+            List<Boolean> inserted = new ArrayList<>(customers.size());
+            for (Customer customer : customers) {
+                inserted.add(insert(customer));
+            }
+            return inserted;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean existsCustomerWithEmail(String email) {
+        byte[] bytes = email.getBytes(StandardCharsets.UTF_8);
+        lock.readLock().lock();
+        try {
+            return emailIndex.find(bytes) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean existsCustomerById(Integer id) {
+        lock.readLock().lock();
+        try {
+            return rowOf(id) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void deleteCustomerById(Integer id) {
+        lock.writeLock().lock();
+        try {
+            delete(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Boolean> deleteCustomersById(List<Integer> ids) {
+        lock.writeLock().lock();
+        try {
+            List<Boolean> deleted = new ArrayList<>(ids.size());
+            for (Integer id : ids) {
+                deleted.add(delete(id));
+            }
+            return deleted;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public CustomerUpdateResult updateCustomer(Customer update) {
+        lock.writeLock().lock();
+        try {
+            return update(update);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<CustomerUpdateResult> updateCustomers(List<Customer> updates) {
+        lock.writeLock().lock();
+        try {
+            List<CustomerUpdateResult> results = new ArrayList<>(updates.size());
+            for (Customer update : updates) {
+                results.add(update(update));
+            }
+            return results;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean insert(Customer customer) {
+        byte[] email = customer.getEmail().getBytes(StandardCharsets.UTF_8);
+        if (emailIndex.find(email) >= 0) {
+            return false;
+        }
+        if (rowCount == ages.length) {
+            grow();
+        }
+        emailIndex.reserve();
+        int row = rowCount++;
+        ages[row] = customer.getAge();
+        writeName(row, customer.getName());
+        writeEmail(row, customer.getEmail());
+        emailIndex.put(email, row);
+        liveCount++;
+        customer.setId(row + 1);
+        return true;
+    }
+
+    private boolean delete(Integer id) {
+        int row = rowOf(id);
+        if (row < 0) {
+            return false;
+        }
+        emailIndex.remove(emailBytes(row));
+        deleted.set(row);
+        liveCount--;
+        return true;
+    }
+
+    private CustomerUpdateResult update(Customer update) {
+        int row = rowOf(update.getId());
+        if (row < 0) {
+            return CustomerUpdateResult.notFound();
+        }
+        Customer current = customer(row);
+        Customer changed = customer(row);
+        if (!changed.applyChanges(update)) {
+            return CustomerUpdateResult.noChanges();
+        }
+        if (!changed.getEmail().equals(current.getEmail())) {
+            byte[] email = changed.getEmail().getBytes(StandardCharsets.UTF_8);
+            if (emailIndex.find(email) >= 0) {
+                return CustomerUpdateResult.duplicateEmail();
+            }
+            emailIndex.reserve();
+            emailIndex.remove(current.getEmail().getBytes(StandardCharsets.UTF_8));
+            writeEmail(row, changed.getEmail());
+            emailIndex.put(email, row);
+        }
+        if (!changed.getName().equals(current.getName())) {
+            writeName(row, changed.getName());
+        }
+        ages[row] = changed.getAge();
+        return CustomerUpdateResult.updated(changed);
+    }
+
+    private int rowOf(Integer id) {
+        if (id == null || id < 1 || id > rowCount || deleted.get(id - 1)) {
+            return -1;
+        }
+        return id - 1;
+    }
+
+    private void grow() {
+        int capacity = ages.length * 2;
+        ages = Arrays.copyOf(ages, capacity);
+        nameOffsets = Arrays.copyOf(nameOffsets, capacity);
+        nameLengths = Arrays.copyOf(nameLengths, capacity);
+        emailOffsets = Arrays.copyOf(emailOffsets, capacity);
+        emailLengths = Arrays.copyOf(emailLengths, capacity);
+        emailDomains = Arrays.copyOf(emailDomains, capacity);
+    }
+
+    private void writeName(int row, String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        nameOffsets[row] = arena.append(bytes);
+        nameLengths[row] = bytes.length;
+    }
+
+    private void writeEmail(int row, String email) {
+        // split at the last '@' and keep it with the domain
+        int at = email.lastIndexOf('@');
+        String domain = at < 0 ? "" : email.substring(at);
+        byte[] local = email.substring(0, at < 0 ? email.length() : at)
+                .getBytes(StandardCharsets.UTF_8);
+        emailOffsets[row] = arena.append(local);
+        emailLengths[row] = local.length;
+        emailDomains[row] = domainIds.computeIfAbsent(domain, d -> {
+            domains.add(d.getBytes(StandardCharsets.UTF_8));
+            return domains.size() - 1;
+        });
+    }
+
+    private String name(int row) {
+        return new String(arena.read(nameOffsets[row], nameLengths[row]), StandardCharsets.UTF_8);
+    }
+
+    private byte[] emailBytes(int row) {
+        byte[] domain = domains.get(emailDomains[row]);
+        byte[] email = new byte[emailLengths[row] + domain.length];
+        arena.read(emailOffsets[row], email, emailLengths[row]);
+        System.arraycopy(domain, 0, email, emailLengths[row], domain.length);
+        return email;
+    }
+
+    private boolean emailEquals(int row, byte[] email) {
+        int localLength = emailLengths[row];
+        byte[] domain = domains.get(emailDomains[row]);
+        if (localLength + domain.length != email.length) {
+            return false;
+        }
+        return arena.matches(emailOffsets[row], email, 0, localLength)
+                && Arrays.equals(email, localLength, email.length, domain, 0, domain.length);
+    }
+
+    private boolean emailStartsWith(int row, byte[] prefix) {
+        int localLength = emailLengths[row];
+        if (prefix.length <= localLength) {
+            return arena.matches(emailOffsets[row], prefix, 0, prefix.length);
+        }
+        byte[] domain = domains.get(emailDomains[row]);
+        int rest = prefix.length - localLength;
+        return rest <= domain.length
+                && arena.matches(emailOffsets[row], prefix, 0, localLength)
+                && Arrays.equals(prefix, localLength, prefix.length, domain, 0, rest);
+    }
+
+    private Customer customer(int row) {
+        return new Customer(
+                row + 1,
+                name(row),
+                new String(emailBytes(row), StandardCharsets.UTF_8),
+                ages[row]
+        );
+    }
+
+    private List<Customer> customers(int[] rows) {
+        List<Customer> customers = new ArrayList<>(rows.length);
+        for (int row : rows) {
+            customers.add(customer(row));
+        }
+        return customers;
+    }
+
+    // callers hold the read lock, which keeps writers out until the scan is joined
+    private int[] scan(IntPredicate matches) {
+        return ForkJoinPool.commonPool().invoke(new ScanTask(0, rowCount, matches));
+    }
+
+    private class ScanTask extends RecursiveTask<int[]> {
+
+        private final int from;
+        private final int to;
+        private final IntPredicate matches;
+
+        ScanTask(int from, int to, IntPredicate matches) {
+            this.from = from;
+            this.to = to;
+            this.matches = matches;
+        }
+
+        @Override
+        protected int[] compute() {
+            if (to - from <= SEGMENT_SIZE) {
+                int[] rows = new int[Math.min(to - from, 16)];
+                int count = 0;
+                for (int row = from; row < to; row++) {
+                    if (!deleted.get(row) && matches.test(row)) {
+                        if (count == rows.length) {
+                            rows = Arrays.copyOf(rows, rows.length * 2);
+                        }
+                        rows[count++] = row;
+                    }
+                }
+                return Arrays.copyOf(rows, count);
+            }
+            int middle = (from + to) >>> 1;
+            ScanTask left = new ScanTask(from, middle, matches);
+            left.fork();
+            int[] right = new ScanTask(middle, to, matches).compute();
+            int[] leftRows = left.join();
+            int[] rows = Arrays.copyOf(leftRows, leftRows.length + right.length);
+            System.arraycopy(right, 0, rows, leftRows.length, right.length);
+            return rows;
+        }
+    }
+
+    /**
+     * Growable append-only byte store in a direct buffer. Only absolute
+     * reads are used, so concurrent readers do not interfere.
+     */
+    private static class ByteArena {
+
+        private ByteBuffer buffer;
+        private int size;
+
+        ByteArena(int capacity) {
+            buffer = ByteBuffer.allocateDirect(capacity);
+        }
+
+        int append(byte[] bytes) {
+            if (size + bytes.length > buffer.capacity()) {
+                long capacity = Math.max((long) buffer.capacity() * 2, (long) size + bytes.length);
+                if (capacity > Integer.MAX_VALUE) {
+                    throw new IllegalStateException("customer arena is full");
+                }
+                ByteBuffer larger = ByteBuffer.allocateDirect((int) capacity);
+                larger.put(0, buffer, 0, size);
+                buffer = larger;
+            }
+            int offset = size;
+            buffer.put(offset, bytes);
+            size += bytes.length;
+            return offset;
+        }
+
+        byte[] read(int offset, int length) {
+            byte[] bytes = new byte[length];
+            read(offset, bytes, length);
+            return bytes;
+        }
+
+        void read(int offset, byte[] target, int length) {
+            buffer.get(offset, target, 0, length);
+        }
+
+        boolean matches(int offset, byte[] bytes, int from, int to) {
+            for (int i = from; i < to; i++) {
+                if (buffer.get(offset + i - from) != bytes[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        long capacity() {
+            return buffer.capacity();
+        }
+    }
+
+    /**
+     * Open-addressing hash table from email bytes to row, with linear
+     * probing. Slots hold {@code row + 1}, {@code 0} when empty and
+     * {@link #REMOVED} after a delete, so that probe chains stay intact.
+     */
+    private class EmailIndex {
+
+        private static final int REMOVED = -1;
+
+        private int[] slots = new int[INITIAL_CAPACITY * 2];
+        // occupied slots, including removed ones
+        private int used;
+
+        int find(byte[] email) {
+            int mask = slots.length - 1;
+            for (int i = hash(email) & mask; ; i = (i + 1) & mask) {
+                int slot = slots[i];
+                if (slot == 0) {
+                    return -1;
+                }
+                if (slot != REMOVED && emailEquals(slot - 1, email)) {
+                    return slot - 1;
+                }
+            }
+        }
+
+        void put(byte[] email, int row) {
+            int mask = slots.length - 1;
+            int i = hash(email) & mask;
+            while (slots[i] != 0 && slots[i] != REMOVED) {
+                i = (i + 1) & mask;
+            }
+            if (slots[i] == 0) {
+                used++;
+            }
+            slots[i] = row + 1;
+        }
+
+        /**
+         * Makes room for one more {@link #put}. Called before the row is
+         * changed, so that a rehash only sees indexed rows.
+         */
+        void reserve() {
+            if ((used + 1) * 2 > slots.length) {
+                rehash();
+            }
+        }
+
+        void remove(byte[] email) {
+            int mask = slots.length - 1;
+            for (int i = hash(email) & mask; slots[i] != 0; i = (i + 1) & mask) {
+                if (slots[i] != REMOVED && emailEquals(slots[i] - 1, email)) {
+                    slots[i] = REMOVED;
+                    return;
+                }
+            }
+        }
+
+        // rebuilds from the live rows, which also drops removed slots
+        private void rehash() {
+            int capacity = Integer.highestOneBit(liveCount + 1) * 4;
+            slots = new int[Math.max(capacity, INITIAL_CAPACITY * 2)];
+            used = 0;
+            int mask = slots.length - 1;
+            for (int row = 0; row < rowCount; row++) {
+                if (deleted.get(row)) {
+                    continue;
+                }
+                int i = hash(emailBytes(row)) & mask;
+                while (slots[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                slots[i] = row + 1;
+                used++;
+            }
+        }
+
+        private static int hash(byte[] email) {
+            int h = Arrays.hashCode(email);
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.amigoscode.customer;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A concurrency limit that adapts the way TCP Vegas adapts its window. The
+ * shortest recent response time stands for a request that did not queue;
+ * from it and each new response time the limit estimates how many of the
+ * requests in flight are queued, mostly waiting for a Hikari connection.
+ * While that queue stays short the limit grows, once it grows long the
+ * limit shrinks, and requests beyond the limit are turned away instead of
+ * joining the queue. Failed requests shrink the limit as well.
+ * <p>
+ * The shortest response time is measured afresh after a number of samples
+ * proportional to the limit, so that it follows a database that has become
+ * slower for good instead of shrinking the limit forever.
+ */
+public class CustomerConcurrencyLimit {
+
+    // samples between measurements of the shortest response time, per unit of limit
+    private static final int PROBE_MULTIPLIER = 30;
+
+    private final int maxLimit;
+    private final AtomicInteger inflight = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+    private volatile int limit;
+    private double estimatedLimit;
+    private long noLoadRttNanos;
+    private long samplesUntilProbe;
+
+    public CustomerConcurrencyLimit(int initialLimit, int maxLimit) {
+        if (initialLimit < 1 || initialLimit > maxLimit) {
+            throw new IllegalArgumentException(
+                    "initial limit must be between 1 and " + maxLimit + ", was " + initialLimit);
+        }
+        this.maxLimit = maxLimit;
+        this.limit = initialLimit;
+        this.estimatedLimit = initialLimit;
+        this.samplesUntilProbe = nextProbe(initialLimit);
+    }
+
+    /**
+     * @return a permit to release once the request is done, or empty if
+     * the limit has been reached
+     */
+    public Optional<Permit> tryAcquire() {
+        int current;
+        do {
+            current = inflight.get();
+            if (current >= limit) {
+                rejected.incrementAndGet();
+                return Optional.empty();
+            }
+        } while (!inflight.compareAndSet(current, current + 1));
+        return Optional.of(new Permit(System.nanoTime(), current + 1));
+    }
+
+    public int limit() {
+        return limit;
+    }
+
+    public int inflight() {
+        return inflight.get();
+    }
+
+    public long rejected() {
+        return rejected.get();
+    }
+
+    synchronized void onSample(long rttNanos, int inflightAtStart, boolean dropped) {
+        if (noLoadRttNanos == 0 || rttNanos < noLoadRttNanos) {
+            noLoadRttNanos = rttNanos;
+            return;
+        }
+        if (--samplesUntilProbe <= 0) {
+            // the next sample sets the shortest response time afresh
+            noLoadRttNanos = 0;
+            samplesUntilProbe = nextProbe(limit);
+            return;
+        }
+
+        double log = Math.max(1, Math.log10(estimatedLimit));
+        double next;
+        if (dropped) {
+            next = estimatedLimit - log;
+        } else if (inflightAtStart * 2 < estimatedLimit) {
+            // too few requests to tell whether the limit is too low
+            return;
+        } else {
+            double queued = Math.ceil(estimatedLimit * (1 - (double) noLoadRttNanos / rttNanos));
+            if (queued <= log) {
+                next = estimatedLimit + 6 * log;
+            } else if (queued < 3 * log) {
+                next = estimatedLimit + log;
+            } else if (queued > 6 * log) {
+                next = estimatedLimit - log;
+            } else {
+                return;
+            }
+        }
+        estimatedLimit = Math.max(1, Math.min(maxLimit, next));
+        limit = (int) estimatedLimit;
+    }
+
+    private static long nextProbe(int limit) {
+        // jittered so that nodes do not all probe at once
+        return (long) (PROBE_MULTIPLIER * limit * ThreadLocalRandom.current().nextDouble(0.5, 1));
+    }
+
+    /**
+     * A request let through by the limit; release it exactly once.
+     */
+    public final class Permit {
+
+        private final long startNanos;
+        private final int inflightAtStart;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(long startNanos, int inflightAtStart) {
+            this.startNanos = startNanos;
+            this.inflightAtStart = inflightAtStart;
+        }
+
+        public void success() {
+            release(Sample.SUCCESS);
+        }
+
+        /**
+         * The request failed in a way that may be down to load, such as a
+         * timeout or an exhausted pool.
+         */
+        public void dropped() {
+            release(Sample.DROPPED);
+        }
+
+        /**
+         * The request's response time says nothing about load, for instance
+         * because the request went on asynchronously.
+         */
+        public void ignore() {
+            release(Sample.IGNORED);
+        }
+
+        private void release(Sample sample) {
+            if (!released.compareAndSet(false, true)) {
+                return;
+            }
+            inflight.decrementAndGet();
+            if (sample != Sample.IGNORED) {
+                onSample(System.nanoTime() - startNanos, inflightAtStart, sample == Sample.DROPPED);
+            }
+        }
+    }
+
+    private enum Sample {
+        SUCCESS, DROPPED, IGNORED
+    }
+}
@@ -0,0 +1,125 @@
+package com.amigoscode.customer;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Puts a {@link CustomerConcurrencyLimit} in front of the customer API, one
+ * for reads and one for writes, so that slow writes do not shed reads and
+ * the other way round. Requests beyond the limit are answered with 503 and
+ * a {@code Retry-After} of {@code customer.concurrency-limit.retry-after}
+ * before they reach a controller. Responses of 500 and above, and requests
+ * that throw, count as dropped. Requests that go on asynchronously, such as
+ * exports, hold their place only until the handler returns.
+ * <p>
+ * The limits are published as {@code customer.requests.limit}, the
+ * requests in flight as {@code customer.requests.inflight}, and the turned
+ * away requests as {@code customer.requests.rejected}, each tagged with
+ * {@code kind} read or write.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(name = "customer.concurrency-limit.enabled", havingValue = "true", matchIfMissing = true)
+public class CustomerConcurrencyLimitFilter extends OncePerRequestFilter implements MeterBinder {
+
+    private static final String CUSTOMERS_PATH = "/api/v1/customers";
+    private static final Set<String> SAFE_METHODS = Set.of("GET", "HEAD", "OPTIONS", "TRACE");
+
+    private final CustomerConcurrencyLimit reads;
+    private final CustomerConcurrencyLimit writes;
+    private final String retryAfterSeconds;
+
+    @Autowired
+    public CustomerConcurrencyLimitFilter(@Value("${customer.concurrency-limit.initial-limit:20}") int initialLimit,
+                                          @Value("${customer.concurrency-limit.max-limit:200}") int maxLimit,
+                                          @Value("${customer.concurrency-limit.retry-after:1s}") Duration retryAfter) {
+        this(new CustomerConcurrencyLimit(initialLimit, maxLimit),
+                new CustomerConcurrencyLimit(initialLimit, maxLimit),
+                retryAfter);
+    }
+
+    CustomerConcurrencyLimitFilter(CustomerConcurrencyLimit reads,
+                                   CustomerConcurrencyLimit writes,
+                                   Duration retryAfter) {
+        this.reads = reads;
+        this.writes = writes;
+        this.retryAfterSeconds = Long.toString(Math.max(1, retryAfter.toSeconds()));
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        // also matches customers:batch and customers:import
+        return !path.startsWith(CUSTOMERS_PATH);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        CustomerConcurrencyLimit limit = SAFE_METHODS.contains(request.getMethod()) ? reads : writes;
+        Optional<CustomerConcurrencyLimit.Permit> acquired = limit.tryAcquire();
+        if (acquired.isEmpty()) {
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, retryAfterSeconds);
+            return;
+        }
+        CustomerConcurrencyLimit.Permit permit = acquired.get();
+        boolean dropped = true;
+        try {
+            filterChain.doFilter(request, response);
+            dropped = response.getStatus() >= HttpStatus.INTERNAL_SERVER_ERROR.value();
+        } finally {
+            if (request.isAsyncStarted()) {
+                permit.ignore();
+            } else if (dropped) {
+                permit.dropped();
+            } else {
+                permit.success();
+            }
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        bindTo(registry, "read", reads);
+        bindTo(registry, "write", writes);
+    }
+
+    private static void bindTo(MeterRegistry registry, String kind, CustomerConcurrencyLimit limit) {
+        Gauge.builder("customer.requests.limit", limit, CustomerConcurrencyLimit::limit)
+                .description("Customer API requests let in at once")
+                .tag("kind", kind)
+                .register(registry);
+        Gauge.builder("customer.requests.inflight", limit, CustomerConcurrencyLimit::inflight)
+                .description("Customer API requests in flight")
+                .tag("kind", kind)
+                .register(registry);
+        FunctionCounter.builder("customer.requests.rejected", limit, CustomerConcurrencyLimit::rejected)
+                .description("Customer API requests turned away with 503")
+                .tag("kind", kind)
+                .register(registry);
+    }
+}
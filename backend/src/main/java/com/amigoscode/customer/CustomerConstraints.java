@@ -0,0 +1,67 @@
+package com.amigoscode.customer;
+
+import io.r2dbc.postgresql.api.ErrorDetails;
+import io.r2dbc.postgresql.api.PostgresqlException;
+import org.postgresql.util.PSQLException;
+import org.postgresql.util.ServerErrorMessage;
+
+import java.sql.SQLException;
+
+/**
+ * Tells which constraint of the customer table a failed write violated,
+ * so that only a taken email is reported as one. Other violations, such
+ * as a missing name, are the caller's to report.
+ */
+final class CustomerConstraints {
+
+    static final String EMAIL_UNIQUE = "customer_email_unique";
+
+    private static final String UNIQUE_VIOLATION = "23505";
+
+    private CustomerConstraints() {
+    }
+
+    /**
+     * @return whether {@code e}, or one of its causes, is the database
+     * rejecting a second customer with the same email; false when the
+     * violated constraint is not known
+     */
+    static boolean isEmailTaken(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            Boolean emailTaken = emailTaken(cause);
+            if (emailTaken != null) {
+                return emailTaken;
+            }
+            if (cause instanceof SQLException sqlException) {
+                // a failed JDBC batch holds the server's error as the next exception
+                for (SQLException next = sqlException.getNextException();
+                     next != null;
+                     next = next.getNextException()) {
+                    emailTaken = emailTaken(next);
+                    if (emailTaken != null) {
+                        return emailTaken;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return null if {@code e} does not name the violated constraint
+     */
+    private static Boolean emailTaken(Throwable e) {
+        if (e instanceof PSQLException psqlException
+                && psqlException.getServerErrorMessage() != null) {
+            ServerErrorMessage message = psqlException.getServerErrorMessage();
+            return UNIQUE_VIOLATION.equals(message.getSQLState())
+                    && EMAIL_UNIQUE.equals(message.getConstraint());
+        }
+        if (e instanceof PostgresqlException postgresqlException) {
+            ErrorDetails details = postgresqlException.getErrorDetails();
+            return UNIQUE_VIOLATION.equals(details.getCode())
+                    && details.getConstraintName().filter(EMAIL_UNIQUE::equals).isPresent();
+        }
+        return null;
+    }
+}
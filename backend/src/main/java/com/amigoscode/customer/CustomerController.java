@@ -1,35 +1,106 @@
 package com.amigoscode.customer;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.http.HttpStatus;
-
-import java.util.List;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 @RestController
 @RequestMapping("/api/v1/customers")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class CustomerController {
 
     private final CustomerService customerService;
+    private final CustomerResponseCache customerResponseCache;
+    private final ObjectMapper objectMapper;
 
-    public CustomerController(CustomerService customerService) {
+    public CustomerController(CustomerService customerService,
+                              CustomerResponseCache customerResponseCache,
+                              ObjectMapper objectMapper) {
         this.customerService = customerService;
+        this.customerResponseCache = customerResponseCache;
+        this.objectMapper = objectMapper;
     }
 
-    /*
-   @RequestMapping(
-           path = "api/v1/customer",
-           method = RequestMethod.GET
-   )*/
+    /**
+     * Serves pages from {@link CustomerResponseCache}; a request whose
+     * {@code If-None-Match} still matches gets a 304.
+     */
     @GetMapping
-    public List<Customer> getCustomers() {
-        return customerService.getAllCustomers();
+    public ResponseEntity<byte[]> getCustomers(
+            @RequestParam(name = "sort", defaultValue = "id") String sort,
+            @RequestParam(name = "after", required = false) String after,
+            @RequestParam(name = "limit", defaultValue = "" + CustomerPageRequest.DEFAULT_LIMIT) int limit,
+            @RequestHeader HttpHeaders headers) {
+        CustomerPageRequest pageRequest = CustomerPageRequest.of(sort, after, limit);
+        CustomerResponseCache.CachedResponse page = customerResponseCache.getPage(
+                pageRequest, () -> customerService.getCustomers(pageRequest)
+        );
+        HttpHeaders responseHeaders = new HttpHeaders();
+        if (page.nextCursor() != null) {
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("after", page.nextCursor())
+                    .toUriString();
+            responseHeaders.set(HttpHeaders.LINK, "<%s>; rel=\"next\"".formatted(next));
+        }
+        return customerResponseCache.toResponseEntity(page, headers, responseHeaders);
+    }
+
+    /**
+     * Streams every customer as a JSON array. Rows are written to the
+     * generator as they are read from the database, so memory use does not
+     * depend on the size of the table.
+     */
+    @GetMapping(path = "export", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportCustomers() {
+        // the body is written on an async thread
+        Long deadline = CustomerDeadline.get();
+        StreamingResponseBody body = outputStream -> {
+            Long previous = CustomerDeadline.set(deadline);
+            try (JsonGenerator generator = objectMapper.getFactory()
+                    .createGenerator(outputStream)) {
+                generator.writeStartArray();
+                customerService.streamCustomers((id, name, email, age) -> {
+                    generator.writeStartObject();
+                    generator.writeNumberField("id", id);
+                    generator.writeStringField("name", name);
+                    generator.writeStringField("email", email);
+                    generator.writeNumberField("age", age);
+                    generator.writeEndObject();
+                });
+                generator.writeEndArray();
+            } finally {
+                CustomerDeadline.set(previous);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
+    @GetMapping("email-availability")
+    public CustomerEmailAvailability getEmailAvailability(
+            @RequestParam("email") String email) {
+        return new CustomerEmailAvailability(
+                email, customerService.isEmailAvailable(email)
+        );
     }
 
     @GetMapping("{customerId}")
-    public Customer getCustomer(
-            @PathVariable("customerId") Integer customerId) {
-        return customerService.getCustomer(customerId);
+    public ResponseEntity<byte[]> getCustomer(
+            @PathVariable("customerId") Integer customerId,
+            @RequestHeader HttpHeaders headers) {
+        CustomerResponseCache.CachedResponse customer = customerResponseCache.getCustomer(
+                customerId, () -> customerService.getCustomer(customerId)
+        );
+        return customerResponseCache.toResponseEntity(customer, headers);
     }
 
     @PostMapping("")
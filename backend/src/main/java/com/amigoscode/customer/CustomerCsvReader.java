@@ -0,0 +1,116 @@
+package com.amigoscode.customer;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads CSV records as RFC 4180 describes them: fields separated by commas,
+ * optionally quoted, with quotes inside quoted fields doubled, so that a
+ * quoted field may hold commas and line breaks. A record that breaks those
+ * rules, such as one with a quote inside an unquoted field, is reported as
+ * malformed and skipped up to the end of its line, and reading carries on
+ * with the next line.
+ */
+class CustomerCsvReader {
+
+    private static final int NONE = -2;
+
+    private final Reader reader;
+    private final List<String> fields = new ArrayList<>();
+    private final StringBuilder field = new StringBuilder();
+    private int pushedBack = NONE;
+    private boolean malformed;
+
+    CustomerCsvReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * @return whether there was another record
+     */
+    boolean next() throws IOException {
+        fields.clear();
+        field.setLength(0);
+        malformed = false;
+        int c = read();
+        if (c == -1) {
+            return false;
+        }
+        boolean quoted = false;
+        boolean afterQuote = false;
+        boolean fieldStart = true;
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    // the quote is never closed
+                    malformed = true;
+                    return true;
+                }
+                if (c == '"') {
+                    int next = read();
+                    if (next != '"') {
+                        quoted = false;
+                        afterQuote = true;
+                        c = next;
+                        continue;
+                    }
+                }
+                field.append((char) c);
+            } else if (c == ',') {
+                endField();
+                fieldStart = true;
+                afterQuote = false;
+            } else if (c == '\n' || c == '\r' || c == -1) {
+                if (c == '\r') {
+                    int next = read();
+                    if (next != '\n') {
+                        pushedBack = next;
+                    }
+                }
+                endField();
+                return true;
+            } else if (afterQuote || (c == '"' && !fieldStart)) {
+                malformed = true;
+                skipLine();
+                return true;
+            } else if (c == '"') {
+                quoted = true;
+                fieldStart = false;
+            } else {
+                field.append((char) c);
+                fieldStart = false;
+            }
+            c = read();
+        }
+    }
+
+    /**
+     * @return the fields of the current record, or null if it is malformed
+     */
+    List<String> fields() {
+        return malformed ? null : fields;
+    }
+
+    private void endField() {
+        fields.add(field.toString());
+        field.setLength(0);
+    }
+
+    private void skipLine() throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (c != '\n' && c != -1);
+    }
+
+    private int read() throws IOException {
+        if (pushedBack != NONE) {
+            int c = pushedBack;
+            pushedBack = NONE;
+            return c;
+        }
+        return reader.read();
+    }
+}
@@ -0,0 +1,69 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.exception.RequestValidationException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position in the customer list: the sort key and id of the last customer
+ * returned. Clients only ever see the opaque {@link #encode()} form.
+ */
+public record CustomerCursor(
+        CustomerSort sort,
+        Object key,
+        Integer id
+) {
+
+    public static CustomerCursor start(CustomerSort sort) {
+        return new CustomerCursor(sort, sort.minKey(), Integer.MIN_VALUE);
+    }
+
+    public static CustomerCursor of(CustomerSort sort, Customer customer) {
+        return new CustomerCursor(sort, sort.keyOf(customer), customer.getId());
+    }
+
+    /**
+     * @return true when the customer sorts strictly after this cursor
+     */
+    public boolean isBefore(Customer customer) {
+        return sort.comparator().compare(customer, toProbe()) > 0;
+    }
+
+    private Customer toProbe() {
+        Customer probe = new Customer();
+        probe.setId(id);
+        switch (sort) {
+            case NAME -> probe.setName((String) key);
+            case EMAIL -> probe.setEmail((String) key);
+            case AGE -> probe.setAge((Integer) key);
+            case ID -> { }
+        }
+        return probe;
+    }
+
+    public String encode() {
+        String raw = sort.name() + ":" + id + ":" + key;
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static CustomerCursor decode(String token) {
+        try {
+            String raw = new String(
+                    Base64.getUrlDecoder().decode(token),
+                    StandardCharsets.UTF_8
+            );
+            String[] parts = raw.split(":", 3);
+            CustomerSort sort = CustomerSort.valueOf(parts[0]);
+            return new CustomerCursor(
+                    sort,
+                    sort.parseKey(parts[2]),
+                    Integer.valueOf(parts[1])
+            );
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw new RequestValidationException("invalid cursor");
+        }
+    }
+}
@@ -5,10 +5,39 @@ import java.util.Optional;
 
 public interface CustomerDao {
     List<Customer> selectAllCustomers();
+    List<Customer> selectCustomers(CustomerPageRequest pageRequest);
+    void streamCustomers(CustomerRowCallback callback);
     Optional<Customer> selectCustomerById(Integer id);
     void insertCustomer(Customer customer);
+    /**
+     * Inserts the customer unless its email is already taken, in a single
+     * round trip where the store allows it. On success the generated id is
+     * set on the customer.
+     *
+     * @return false when another customer already has the email
+     */
+    boolean insertCustomerIfAbsent(Customer customer);
+    /**
+     * Batched {@link #insertCustomerIfAbsent(Customer)}.
+     *
+     * @return for each customer, whether it was inserted
+     */
+    List<Boolean> insertCustomersIfAbsent(List<Customer> customers);
     boolean existsCustomerWithEmail(String email);
     boolean existsCustomerById(Integer id);
     void deleteCustomerById(Integer id);
-    void updateCustomer(Customer update);
+    /**
+     * @return for each id, whether a customer was deleted
+     */
+    List<Boolean> deleteCustomersById(List<Integer> ids);
+    /**
+     * Applies the non-null fields of {@code update} to the customer with the
+     * same id. Fields equal to the stored value do not count as changes.
+     */
+    CustomerUpdateResult updateCustomer(Customer update);
+    /**
+     * Batched {@link #updateCustomer(Customer)}. Updated results may not
+     * carry the written row.
+     */
+    List<CustomerUpdateResult> updateCustomers(List<Customer> updates);
 }
@@ -0,0 +1,177 @@
+package com.amigoscode.customer;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.AbstractAdvisingBeanPostProcessor;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.StaticMethodMatcherPointcut;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every public method of every {@link CustomerDao} bean as
+ * {@code customer.dao} and records the rows each call returned, or passed
+ * to its {@link CustomerRowCallback}, as {@code customer.dao.rows}. Both
+ * are tagged with the DAO's {@code @Repository} name and the method, so
+ * the numbers of the active DAO can be told apart from the others. Meters
+ * are looked up once per method, and per exception for failed calls, and
+ * then reused.
+ */
+@Component
+public class CustomerDaoMetricsPostProcessor extends AbstractAdvisingBeanPostProcessor {
+
+    public CustomerDaoMetricsPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        this.advisor = new DefaultPointcutAdvisor(
+                new CustomerDaoPointcut(),
+                new MetricsInterceptor(meterRegistry)
+        );
+        // time the DAO call including its transaction
+        setBeforeExistingAdvisors(true);
+        // callers may inject a DAO by its class
+        setProxyTargetClass(true);
+    }
+
+    private static class CustomerDaoPointcut extends StaticMethodMatcherPointcut {
+
+        CustomerDaoPointcut() {
+            setClassFilter(CustomerDao.class::isAssignableFrom);
+        }
+
+        @Override
+        public boolean matches(Method method, Class<?> targetClass) {
+            return Modifier.isPublic(method.getModifiers())
+                    && method.getDeclaringClass() != Object.class;
+        }
+    }
+
+    private record CallSite(Class<?> targetClass, Method method) {
+    }
+
+    private record Meters(String dao, String method, Timer timer, DistributionSummary rows,
+                          Map<Class<?>, Timer> failures) {
+    }
+
+    private static class MetricsInterceptor implements MethodInterceptor {
+
+        // resolved on first use; a post processor must not pull in the registry early
+        private final ObjectProvider<MeterRegistry> meterRegistry;
+        private final Map<CallSite, Meters> meters = new ConcurrentHashMap<>();
+
+        MetricsInterceptor(ObjectProvider<MeterRegistry> meterRegistry) {
+            this.meterRegistry = meterRegistry;
+        }
+
+        @Override
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            MeterRegistry registry = meterRegistry.getIfAvailable();
+            if (registry == null) {
+                return invocation.proceed();
+            }
+            Class<?> targetClass = AopUtils.getTargetClass(invocation.getThis());
+            Meters meters = this.meters.computeIfAbsent(
+                    new CallSite(targetClass, invocation.getMethod()),
+                    callSite -> register(registry, callSite)
+            );
+
+            RowCounter counter = null;
+            Object[] arguments = invocation.getArguments();
+            for (int i = 0; i < arguments.length; i++) {
+                if (arguments[i] instanceof CustomerRowCallback callback) {
+                    counter = new RowCounter(callback);
+                    arguments[i] = counter;
+                }
+            }
+
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = invocation.proceed();
+            } catch (Throwable e) {
+                meters.failures()
+                        .computeIfAbsent(e.getClass(), exceptionClass -> timer(
+                                registry, meters.dao(), meters.method(),
+                                exceptionClass.getSimpleName()))
+                        .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                throw e;
+            }
+            meters.timer().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+            long rows = counter != null ? counter.rows : rows(result);
+            if (rows >= 0) {
+                meters.rows().record(rows);
+            }
+            return result;
+        }
+
+        private static Meters register(MeterRegistry registry, CallSite callSite) {
+            Repository repository = AnnotationUtils.findAnnotation(
+                    callSite.targetClass(), Repository.class);
+            String dao = repository != null && !repository.value().isEmpty()
+                    ? repository.value()
+                    : callSite.targetClass().getSimpleName();
+            String method = callSite.method().getName();
+            return new Meters(
+                    dao,
+                    method,
+                    timer(registry, dao, method, "success"),
+                    DistributionSummary.builder("customer.dao.rows")
+                            .description("Rows returned by a CustomerDao call")
+                            .baseUnit("rows")
+                            .tags("dao", dao, "method", method)
+                            .register(registry),
+                    new ConcurrentHashMap<>()
+            );
+        }
+
+        // a failed call is tagged with the simple name of what it threw
+        private static Timer timer(MeterRegistry registry, String dao, String method, String outcome) {
+            return Timer.builder("customer.dao")
+                    .description("Calls to a CustomerDao method")
+                    .tags("dao", dao, "method", method, "outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(registry);
+        }
+
+        // -1 for results that are not rows
+        private static long rows(Object result) {
+            if (result instanceof Collection<?> collection) {
+                return collection.size();
+            }
+            if (result instanceof Optional<?> optional) {
+                return optional.isPresent() ? 1 : 0;
+            }
+            return -1;
+        }
+    }
+
+    private static class RowCounter implements CustomerRowCallback {
+
+        private final CustomerRowCallback delegate;
+        private long rows;
+
+        RowCounter(CustomerRowCallback delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void processRow(int id, String name, String email, int age) throws IOException {
+            rows++;
+            delegate.processRow(id, name, email, age);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.exception.DeadlineExceededException;
+
+import java.util.function.Supplier;
+
+/**
+ * The deadline of the request the current thread works on, as a
+ * {@link System#nanoTime()} value. {@link CustomerDeadlineInterceptor} sets
+ * it for customer API requests and {@link CustomerDeadlineDataSource}
+ * cancels the statements still running when it passes. Work handed to
+ * another thread takes the deadline along with {@link #propagate}.
+ */
+public final class CustomerDeadline {
+
+    private static final ThreadLocal<Long> DEADLINE = new ThreadLocal<>();
+
+    private CustomerDeadline() {
+    }
+
+    /**
+     * @param deadlineNanos the deadline, or null for none
+     * @return the previous deadline, to restore once done
+     */
+    static Long set(Long deadlineNanos) {
+        Long previous = DEADLINE.get();
+        if (deadlineNanos == null) {
+            DEADLINE.remove();
+        } else {
+            DEADLINE.set(deadlineNanos);
+        }
+        return previous;
+    }
+
+    /**
+     * @return the current thread's deadline, or null for none
+     */
+    static Long get() {
+        return DEADLINE.get();
+    }
+
+    /**
+     * @return the time left, {@link Long#MAX_VALUE} without a deadline
+     */
+    static long remainingNanos() {
+        Long deadline = DEADLINE.get();
+        return deadline == null ? Long.MAX_VALUE : deadline - System.nanoTime();
+    }
+
+    static void check() {
+        if (remainingNanos() <= 0) {
+            throw new DeadlineExceededException("Request deadline exceeded");
+        }
+    }
+
+    static <T> Supplier<T> propagate(Supplier<T> task) {
+        Long deadline = DEADLINE.get();
+        if (deadline == null) {
+            return task;
+        }
+        return () -> {
+            Long previous = set(deadline);
+            try {
+                return task.get();
+            } finally {
+                set(previous);
+            }
+        };
+    }
+
+    static Runnable propagate(Runnable task) {
+        Supplier<Void> supplier = propagate(() -> {
+            task.run();
+            return null;
+        });
+        return supplier::get;
+    }
+}
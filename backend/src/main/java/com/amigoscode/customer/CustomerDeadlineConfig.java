@@ -0,0 +1,61 @@
+package com.amigoscode.customer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Gives customer API requests a deadline, see
+ * {@link CustomerDeadlineInterceptor}, and holds the statements of the
+ * application's datasource to it, see {@link CustomerDeadlineDataSource}.
+ * Turned off with {@code customer.deadline.enabled=false}. The reactive
+ * profile is left alone.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(name = "customer.deadline.enabled", havingValue = "true", matchIfMissing = true)
+public class CustomerDeadlineConfig {
+
+    // the datasource every JdbcTemplate, transaction manager and JPA uses
+    private static final String DATA_SOURCE = "dataSource";
+
+    @Bean
+    static BeanPostProcessor customerDeadlineDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (DATA_SOURCE.equals(beanName) && bean instanceof DataSource dataSource) {
+                    return new CustomerDeadlineDataSource(dataSource);
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    CustomerDeadlineInterceptor customerDeadlineInterceptor(
+            Environment environment,
+            @Value("${customer.deadline.default-timeout:5s}") Duration defaultTimeout) {
+        return new CustomerDeadlineInterceptor(environment, defaultTimeout);
+    }
+
+    @Bean
+    WebMvcConfigurer customerDeadlineInterceptorRegistration(CustomerDeadlineInterceptor interceptor) {
+        return new WebMvcConfigurer() {
+            @Override
+            public void addInterceptors(InterceptorRegistry registry) {
+                registry.addInterceptor(interceptor)
+                        .addPathPatterns("/api/v1/customers", "/api/v1/customers/**", "/api/v1/customers:*");
+            }
+        };
+    }
+}
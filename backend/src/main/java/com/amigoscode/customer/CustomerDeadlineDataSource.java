@@ -0,0 +1,143 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.exception.DeadlineExceededException;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds the statements of a thread with a {@link CustomerDeadline} to it.
+ * Taking a connection or executing a statement after the deadline fails
+ * right away, and a statement still running when the deadline passes is
+ * cancelled, so that its connection goes back to the pool. Statements that
+ * fail once the deadline has passed throw {@link DeadlineExceededException}.
+ * <p>
+ * Statements are cancelled with {@link Statement#cancel()} at the deadline,
+ * as the driver does for {@link Statement#setQueryTimeout}, but to the
+ * millisecond rather than the second. The driver ignores the cancel of a
+ * statement that is not running. Rows fetched later through a cursor are
+ * covered until the statement is closed.
+ */
+public class CustomerDeadlineDataSource extends DelegatingDataSource {
+
+    private static final ScheduledThreadPoolExecutor CANCELS = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "customer-deadline-cancel");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        // statements that finish in time leave no task behind
+        CANCELS.setRemoveOnCancelPolicy(true);
+    }
+
+    public CustomerDeadlineDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return withDeadline(obtainTargetDataSource()::getConnection);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return withDeadline(() -> obtainTargetDataSource().getConnection(username, password));
+    }
+
+    private static Connection withDeadline(ConnectionSupplier supplier) throws SQLException {
+        if (CustomerDeadline.get() == null) {
+            return supplier.get();
+        }
+        CustomerDeadline.check();
+        Connection connection = supplier.get();
+        List<ScheduledFuture<?>> cancels = new ArrayList<>();
+        return (Connection) Proxy.newProxyInstance(
+                CustomerDeadlineDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("equals")) {
+                        return proxy == args[0];
+                    }
+                    if (method.getName().equals("hashCode")) {
+                        return System.identityHashCode(proxy);
+                    }
+                    if (method.getName().equals("close")) {
+                        // closing a connection closes its statements
+                        synchronized (cancels) {
+                            cancels.forEach(cancel -> cancel.cancel(false));
+                        }
+                    }
+                    Object result = invoke(connection, method, args);
+                    if (result instanceof Statement statement && CustomerDeadline.get() != null) {
+                        ScheduledFuture<?> cancel = scheduleCancel(statement);
+                        synchronized (cancels) {
+                            cancels.add(cancel);
+                        }
+                        return withDeadline(statement, method.getReturnType(), cancel);
+                    }
+                    return result;
+                });
+    }
+
+    private static ScheduledFuture<?> scheduleCancel(Statement statement) {
+        return CANCELS.schedule(() -> {
+            try {
+                statement.cancel();
+            } catch (SQLException e) {
+                // closed already
+            }
+        }, Math.max(0, CustomerDeadline.remainingNanos()), TimeUnit.NANOSECONDS);
+    }
+
+    private static Object withDeadline(Statement statement, Class<?> type, ScheduledFuture<?> cancel) {
+        Long deadline = CustomerDeadline.get();
+        return Proxy.newProxyInstance(
+                CustomerDeadlineDataSource.class.getClassLoader(),
+                new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("close")) {
+                        cancel.cancel(false);
+                        return invoke(statement, method, args);
+                    }
+                    if (!method.getName().startsWith("execute")) {
+                        return invoke(statement, method, args);
+                    }
+                    if (deadline - System.nanoTime() <= 0) {
+                        throw new DeadlineExceededException("Request deadline exceeded");
+                    }
+                    try {
+                        return invoke(statement, method, args);
+                    } catch (SQLException e) {
+                        if (deadline - System.nanoTime() <= 0) {
+                            throw new DeadlineExceededException("Request deadline exceeded", e);
+                        }
+                        throw e;
+                    }
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    @FunctionalInterface
+    private interface ConnectionSupplier {
+        Connection get() throws SQLException;
+    }
+}
@@ -0,0 +1,110 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.exception.RequestValidationException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.core.env.Environment;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gives every customer API request a {@link CustomerDeadline}. The timeout
+ * is {@code customer.deadline.timeouts.<handler-method>}, for instance
+ * {@code customer.deadline.timeouts.export-customers}, falling back to
+ * {@code customer.deadline.default-timeout}. A timeout of {@value #NONE}
+ * leaves the requests of that method without a deadline unless they ask
+ * for one. Clients may ask for less with the {@value #HEADER} header, in
+ * milliseconds or as a duration such as {@code 1500ms}, but not for more.
+ */
+public class CustomerDeadlineInterceptor implements AsyncHandlerInterceptor {
+
+    static final String HEADER = "X-Request-Timeout";
+
+    static final String NONE = "none";
+
+    private static final String TIMEOUTS = "customer.deadline.timeouts.";
+
+    private final Environment environment;
+    private final Duration defaultTimeout;
+    private final Map<Method, Optional<Duration>> timeouts = new ConcurrentHashMap<>();
+
+    public CustomerDeadlineInterceptor(Environment environment, Duration defaultTimeout) {
+        this.environment = environment;
+        this.defaultTimeout = defaultTimeout;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request,
+                             HttpServletResponse response,
+                             Object handler) {
+        Duration timeout = handler instanceof HandlerMethod handlerMethod
+                ? timeouts.computeIfAbsent(handlerMethod.getMethod(), this::timeout).orElse(null)
+                : defaultTimeout;
+        String requested = request.getHeader(HEADER);
+        if (requested != null) {
+            Duration requestedTimeout = parse(requested);
+            if (timeout == null || requestedTimeout.compareTo(timeout) < 0) {
+                timeout = requestedTimeout;
+            }
+        }
+        if (timeout != null) {
+            CustomerDeadline.set(System.nanoTime() + timeout.toNanos());
+        }
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request,
+                                               HttpServletResponse response,
+                                               Object handler) {
+        // the async thread takes the deadline along itself
+        CustomerDeadline.set(null);
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request,
+                                HttpServletResponse response,
+                                Object handler,
+                                Exception ex) {
+        CustomerDeadline.set(null);
+    }
+
+    private Optional<Duration> timeout(Method method) {
+        String timeout = environment.getProperty(TIMEOUTS + kebabCase(method.getName()));
+        if (timeout == null) {
+            return Optional.of(defaultTimeout);
+        }
+        if (NONE.equalsIgnoreCase(timeout.trim())) {
+            return Optional.empty();
+        }
+        return Optional.of(DurationStyle.detectAndParse(timeout));
+    }
+
+    private static Duration parse(String requested) {
+        Duration timeout;
+        try {
+            timeout = DurationStyle.detectAndParse(requested.trim());
+        } catch (IllegalArgumentException e) {
+            throw new RequestValidationException(
+                    "%s [%s] is not a duration".formatted(HEADER, requested)
+            );
+        }
+        if (timeout.isNegative() || timeout.isZero()) {
+            throw new RequestValidationException(
+                    "%s must be positive".formatted(HEADER)
+            );
+        }
+        return timeout;
+    }
+
+    private static String kebabCase(String name) {
+        return name.replaceAll("([a-z0-9])([A-Z])", "$1-$2").toLowerCase();
+    }
+}
@@ -0,0 +1,262 @@
+package com.amigoscode.customer;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link CustomerInMemoryDataAccessService} that survives restarts.
+ * <p>
+ * Every change is applied in memory and appended to a
+ * {@link CustomerWriteAheadLog} under one lock, so the log order is the
+ * order in which the changes were applied. The lock is released before the
+ * caller waits for the group commit, so concurrent writers share a force.
+ * A write returns once its record is on disk. Readers can see a change
+ * slightly earlier, while it is waiting to be forced.
+ * <p>
+ * A {@link CustomerSnapshot} is taken every
+ * {@code customer.durable.snapshot-interval} and on shutdown, after which
+ * the log segments it covers are deleted. On startup the latest snapshot
+ * is loaded and the log after it is replayed.
+ */
+@Repository("durable")
+@ConditionalOnProperty(name = "customer.durable.enabled", havingValue = "true")
+public class CustomerDurableDataAccessService implements CustomerDao {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CustomerDurableDataAccessService.class);
+
+    private final CustomerInMemoryDataAccessService memory = new CustomerInMemoryDataAccessService();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final Path directory;
+    private final CustomerWriteAheadLog log;
+    private final ScheduledExecutorService snapshots;
+
+    public CustomerDurableDataAccessService(
+            @Value("${customer.durable.directory:data/customers}") Path directory,
+            @Value("${customer.durable.snapshot-interval:5m}") Duration snapshotInterval)
+            throws IOException {
+        this.directory = directory;
+        long started = System.nanoTime();
+        long snapshotLsn = CustomerSnapshot.read(directory, memory::restore)
+                .map(snapshot -> {
+                    memory.restoreLastId(snapshot.lastId());
+                    return snapshot.lsn();
+                })
+                .orElse(0L);
+        long lastLsn = CustomerWriteAheadLog.replay(directory, snapshotLsn, entry -> {
+            switch (entry.type()) {
+                case PUT -> memory.restore(entry.customer());
+                case DELETE -> memory.deleteCustomerById(entry.customer().getId());
+            }
+        });
+        LOGGER.info("recovered {} customers from {} (snapshot at LSN {}, log up to LSN {}) in {} ms",
+                memory.selectAllCustomers().size(), directory, snapshotLsn, lastLsn,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        this.log = new CustomerWriteAheadLog(directory, lastLsn);
+
+        this.snapshots = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "customer-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = snapshotInterval.toMillis();
+        snapshots.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot();
+            } catch (RuntimeException e) {
+                LOGGER.error("customer snapshot failed", e);
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return memory.selectAllCustomers();
+    }
+
+    @Override
+    public List<Customer> selectCustomers(CustomerPageRequest pageRequest) {
+        return memory.selectCustomers(pageRequest);
+    }
+
+    @Override
+    public void streamCustomers(CustomerRowCallback callback) {
+        memory.streamCustomers(callback);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer id) {
+        return memory.selectCustomerById(id);
+    }
+
+    @Override
+    public void insertCustomer(Customer customer) {
+        if (!insertCustomerIfAbsent(customer)) {
+            throw new DuplicateKeyException(
+                    "email [%s] already taken".formatted(customer.getEmail())
+            );
+        }
+    }
+
+    @Override
+    public boolean insertCustomerIfAbsent(Customer customer) {
+        return insertCustomersIfAbsent(List.of(customer)).get(0);
+    }
+
+    @Override
+    public List<Boolean> insertCustomersIfAbsent(List<Customer> customers) {
+        List<Boolean> inserted = new ArrayList<>(customers.size());
+        CompletableFuture<Void> durable = CompletableFuture.completedFuture(null);
+        writeLock.lock();
+        try {
+            for (Customer customer : customers) {
+                boolean added = memory.insertCustomerIfAbsent(customer);
+                if (added) {
+                    durable = log.append(CustomerWriteAheadLog.Type.PUT, customer);
+                }
+                inserted.add(added);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        await(durable);
+        return inserted;
+    }
+
+    @Override
+    public boolean existsCustomerWithEmail(String email) {
+        return memory.existsCustomerWithEmail(email);
+    }
+
+    @Override
+    public boolean existsCustomerById(Integer id) {
+        return memory.existsCustomerById(id);
+    }
+
+    @Override
+    public void deleteCustomerById(Integer id) {
+        deleteCustomersById(List.of(id));
+    }
+
+    @Override
+    public List<Boolean> deleteCustomersById(List<Integer> ids) {
+        List<Boolean> deleted = new ArrayList<>(ids.size());
+        CompletableFuture<Void> durable = CompletableFuture.completedFuture(null);
+        writeLock.lock();
+        try {
+            for (Integer id : ids) {
+                boolean removed = memory.deleteCustomersById(List.of(id)).get(0);
+                if (removed) {
+                    durable = log.append(
+                            CustomerWriteAheadLog.Type.DELETE,
+                            new Customer(id, null, null, null)
+                    );
+                }
+                deleted.add(removed);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        await(durable);
+        return deleted;
+    }
+
+    @Override
+    public CustomerUpdateResult updateCustomer(Customer update) {
+        return updateCustomers(List.of(update)).get(0);
+    }
+
+    @Override
+    public List<CustomerUpdateResult> updateCustomers(List<Customer> updates) {
+        List<CustomerUpdateResult> results = new ArrayList<>(updates.size());
+        CompletableFuture<Void> durable = CompletableFuture.completedFuture(null);
+        writeLock.lock();
+        try {
+            for (Customer update : updates) {
+                CustomerUpdateResult result = memory.updateCustomer(update);
+                if (result.status() == CustomerUpdateResult.Status.UPDATED) {
+                    durable = log.append(CustomerWriteAheadLog.Type.PUT, result.customer());
+                }
+                results.add(result);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        await(durable);
+        return results;
+    }
+
+    /**
+     * Writes a snapshot of the current state and deletes the log segments
+     * it makes redundant.
+     */
+    void snapshot() {
+        CustomerSnapshot snapshot;
+        List<Customer> customers;
+        CompletableFuture<Void> rolled;
+        writeLock.lock();
+        try {
+            snapshot = new CustomerSnapshot(log.lastLsn(), memory.lastId());
+            customers = memory.selectAllCustomers();
+            rolled = log.roll();
+        } finally {
+            writeLock.unlock();
+        }
+        try {
+            CustomerSnapshot.write(directory, snapshot, customers);
+            await(rolled);
+            log.deleteSegmentsUpTo(snapshot.lsn());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        LOGGER.info("wrote customer snapshot of {} customers at LSN {}",
+                customers.size(), snapshot.lsn());
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        snapshots.shutdownNow();
+        try {
+            snapshot();
+        } finally {
+            log.close();
+        }
+    }
+
+    /**
+     * Stops without a final snapshot, leaving the files as a crash would.
+     */
+    void abandon() throws IOException {
+        snapshots.shutdownNow();
+        log.close();
+    }
+
+    private static void await(CompletableFuture<Void> durable) {
+        try {
+            durable.join();
+        } catch (CompletionException e) {
+            throw new DataAccessResourceFailureException(
+                    "customer change could not be written to the log", e.getCause()
+            );
+        }
+    }
+}
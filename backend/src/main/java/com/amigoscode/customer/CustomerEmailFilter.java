@@ -0,0 +1,219 @@
+package com.amigoscode.customer;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bloom filter of every customer email, so that an email that was never
+ * registered can be answered without a database probe.
+ * <p>
+ * The filter is filled from {@link CustomerDao#streamCustomers} in the
+ * background once the application is ready. Until then every email counts
+ * as possibly present. The service adds new emails as it writes them.
+ * Deleted and replaced emails cannot be removed from a Bloom filter; they
+ * are counted as stale and the filter is rebuilt when they make up too
+ * much of it, when it outgrows its capacity, or after
+ * {@code customer.email-filter.rebuild-interval} to pick up writers that
+ * bypass this service.
+ */
+@Component
+public class CustomerEmailFilter implements MeterBinder {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CustomerEmailFilter.class);
+
+    // smallest filter built, so that an empty table still gets headroom
+    private static final long MIN_CAPACITY = 10_000;
+    // far longer than a change notification takes to arrive
+    private static final Duration REMOVED_IDS_WINDOW = Duration.ofMinutes(1);
+    // a delete forgotten early is at worst counted twice
+    private static final long MAX_REMOVED_IDS = 100_000;
+
+    private final CustomerDao customerDao;
+    private final double falsePositiveRate;
+    private final Duration rebuildInterval;
+    private final Clock clock;
+    private final ExecutorService rebuilds = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "customer-email-filter");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean rebuildQueued = new AtomicBoolean();
+
+    private volatile BloomFilter filter;
+    // filter being built; adds go to it as well so none are lost
+    private volatile BloomFilter building;
+    private volatile Instant builtAt;
+    private final AtomicLong entries = new AtomicLong();
+    private final AtomicLong stale = new AtomicLong();
+    private final Cache<Integer, Boolean> removedIds = Caffeine.newBuilder()
+            .expireAfterWrite(REMOVED_IDS_WINDOW)
+            .maximumSize(MAX_REMOVED_IDS)
+            .build();
+
+    @Autowired
+    public CustomerEmailFilter(@Qualifier("jdbc") CustomerDao customerDao,
+                               @Value("${customer.email-filter.false-positive-rate:0.01}") double falsePositiveRate,
+                               @Value("${customer.email-filter.rebuild-interval:1h}") Duration rebuildInterval) {
+        this(customerDao, falsePositiveRate, rebuildInterval, Clock.systemUTC());
+    }
+
+    CustomerEmailFilter(CustomerDao customerDao,
+                        double falsePositiveRate,
+                        Duration rebuildInterval,
+                        Clock clock) {
+        this.customerDao = customerDao;
+        this.falsePositiveRate = falsePositiveRate;
+        this.rebuildInterval = rebuildInterval;
+        this.clock = clock;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        requestRebuild();
+    }
+
+    /**
+     * @return false if no customer has the email; true if one might
+     */
+    public boolean mightContain(String email) {
+        BloomFilter current = filter;
+        if (current == null) {
+            return true;
+        }
+        if (Duration.between(builtAt, clock.instant()).compareTo(rebuildInterval) > 0) {
+            requestRebuild();
+        }
+        return current.mightContain(email);
+    }
+
+    public void emailAdded(String email) {
+        BloomFilter next = building;
+        if (next != null) {
+            next.add(email);
+        }
+        BloomFilter current = filter;
+        if (current != null) {
+            current.add(email);
+        } else {
+            // the first filter is still being built, count towards it
+            current = next;
+        }
+        if (current != null && entries.incrementAndGet() > current.capacity()) {
+            requestRebuild();
+        }
+    }
+
+    /**
+     * For a deleted customer. Deletes are reported by the node that made them
+     * and again by {@link CustomerChangeListener}, and only count once; ids
+     * are never reused.
+     */
+    public void emailRemoved(Integer customerId) {
+        if (removedIds.asMap().putIfAbsent(customerId, Boolean.TRUE) == null) {
+            emailRemoved();
+        }
+    }
+
+    /**
+     * For a replaced email.
+     */
+    public void emailRemoved() {
+        boolean built = filter != null || building != null;
+        if (built && stale.incrementAndGet() * 2 > Math.max(entries.get(), MIN_CAPACITY)) {
+            requestRebuild();
+        }
+    }
+
+    long staleEntries() {
+        return stale.get();
+    }
+
+    /**
+     * Rebuilds in the background, unless a rebuild is already queued.
+     */
+    public Future<?> requestRebuild() {
+        if (!rebuildQueued.compareAndSet(false, true)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return rebuilds.submit(() -> {
+            rebuildQueued.set(false);
+            try {
+                rebuild();
+            } catch (RuntimeException e) {
+                LOGGER.error("customer email filter rebuild failed", e);
+            }
+        });
+    }
+
+    private void rebuild() {
+        long started = System.nanoTime();
+        // emails added and removed while the table is read reach the new
+        // filter's counts too; only what the old filter held is replaced
+        long entriesBefore = entries.get();
+        long staleBefore = stale.get();
+        long expected = Math.max(MIN_CAPACITY, (entriesBefore - staleBefore) * 2);
+        BloomFilter next = new BloomFilter(expected, falsePositiveRate);
+        building = next;
+        AtomicLong count = new AtomicLong();
+        try {
+            customerDao.streamCustomers((id, name, email, age) -> {
+                next.add(email);
+                count.incrementAndGet();
+            });
+            builtAt = clock.instant();
+            // published before adds stop going to it, so none fall in between
+            filter = next;
+        } finally {
+            building = null;
+        }
+        entries.addAndGet(count.get() - entriesBefore);
+        stale.addAndGet(-staleBefore);
+        if (count.get() > next.capacity()) {
+            // the table outgrew the estimate, size the next filter for it
+            requestRebuild();
+        }
+        LOGGER.info("built customer email filter of {} emails, {} KB, estimated false positive rate {} in {} ms",
+                count.get(), next.sizeInBytes() / 1024, next.falsePositiveRate(),
+                Duration.ofNanos(System.nanoTime() - started).toMillis());
+    }
+
+    @PreDestroy
+    public void close() {
+        rebuilds.shutdownNow();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("customer.email.filter.false.positive.rate", this,
+                        f -> f.filter == null ? 1.0 : f.filter.falsePositiveRate())
+                .description("Estimated false positive rate of the customer email Bloom filter")
+                .register(registry);
+        Gauge.builder("customer.email.filter.size", this,
+                        f -> f.filter == null ? 0 : f.filter.sizeInBytes())
+                .description("Memory held by the customer email Bloom filter")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+}
@@ -0,0 +1,284 @@
+package com.amigoscode.customer;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.ProxyMethodInvocation;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Hedges the reads {@link CustomerHedgedReadsPostProcessor} advises: a read
+ * that has not answered within the p95 of recent reads is sent again to a
+ * second datasource, and whichever answers first is returned. The
+ * statements of the other are cancelled.
+ * <p>
+ * Both attempts run on a pool of at most {@code customer.hedging.max-threads}
+ * threads; reads that find the pool busy, or that run inside a
+ * transaction, are not hedged. The second attempt goes to another replica
+ * within the lag limit if there is one, otherwise to the primary, which
+ * hands it a different connection. Reads pinned to the primary are only
+ * hedged on the primary. Every read earns {@code customer.hedging.budget}
+ * of a hedge, so hedges add at most that share of extra reads.
+ * <p>
+ * Hedges are counted as {@code customer.reads.hedged}, those that answered
+ * first as {@code customer.reads.hedge.wins}, and the current delay is
+ * published as {@code customer.reads.hedge.delay}.
+ */
+public class CustomerHedgedReads implements MethodInterceptor, MeterBinder {
+
+    // hedges that can be saved up while reads are fast
+    private static final long MAX_TOKENS = 10;
+    private static final long TOKEN = 1_000_000;
+
+    private final CustomerReplicas replicas;
+    private final long budgetPerRead;
+    private final long minDelayNanos;
+    private final long initialDelayNanos;
+    private final LatencyWindow latencies = new LatencyWindow(1000);
+    private final AtomicLong tokens = new AtomicLong();
+    private final AtomicLong hedged = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final ThreadPoolExecutor executor;
+
+    public CustomerHedgedReads(CustomerReplicas replicas,
+                               double budget,
+                               Duration minDelay,
+                               Duration initialDelay,
+                               int maxThreads) {
+        this.replicas = replicas;
+        this.budgetPerRead = Math.round(budget * TOKEN);
+        this.minDelayNanos = minDelay.toNanos();
+        this.initialDelayNanos = initialDelay.toNanos();
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                0, maxThreads, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "customer-hedged-read-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+        );
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                || !(invocation instanceof ProxyMethodInvocation proxyInvocation)) {
+            // the transaction's connection belongs to this thread
+            return invocation.proceed();
+        }
+        // both clones must be taken before either proceeds
+        MethodInvocation firstInvocation = proxyInvocation.invocableClone();
+        MethodInvocation hedgeInvocation = proxyInvocation.invocableClone();
+
+        boolean pinned = CustomerRoutingDataSource.isPinnedToPrimary();
+        CustomerReplicas.Replica replica = pinned ? null : replicas.choose();
+        deposit();
+
+        long start = System.nanoTime();
+        Attempt first;
+        try {
+            first = attempt(firstInvocation, replica == null ? CustomerRoutingDataSource.PRIMARY : replica.name());
+        } catch (RejectedExecutionException e) {
+            // every thread is busy with a read already
+            return invocation.proceed();
+        }
+        try {
+            Attempt winner;
+            try {
+                first.result.get(delayNanos(), TimeUnit.NANOSECONDS);
+                winner = first;
+            } catch (TimeoutException e) {
+                winner = hedge(first, hedgeInvocation, pinned ? null : replica);
+            }
+            latencies.record(System.nanoTime() - start);
+            return winner.result.get();
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        } catch (InterruptedException e) {
+            first.cancel();
+            Thread.currentThread().interrupt();
+            throw new DataAccessResourceFailureException("Interrupted while waiting for a read", e);
+        }
+    }
+
+    private Attempt hedge(Attempt first,
+                          MethodInvocation invocation,
+                          CustomerReplicas.Replica firstReplica) {
+        if (!withdraw()) {
+            return first;
+        }
+        CustomerReplicas.Replica replica = firstReplica == null ? null : replicas.choose(firstReplica);
+        Attempt hedge;
+        try {
+            hedge = attempt(invocation, replica == null ? CustomerRoutingDataSource.PRIMARY : replica.name());
+        } catch (RejectedExecutionException e) {
+            return first;
+        }
+        hedged.incrementAndGet();
+
+        CompletableFuture<Attempt> answered = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        for (Attempt attempt : List.of(first, hedge)) {
+            attempt.result.whenComplete((result, e) -> {
+                if (e == null) {
+                    answered.complete(attempt);
+                } else if (failures.incrementAndGet() == 2) {
+                    // both failed, report the read that was sent first
+                    answered.complete(first);
+                }
+            });
+        }
+        // not interruptible, but one of the two statements ends the wait
+        Attempt winner = answered.join();
+        if (winner == hedge) {
+            hedgeWins.incrementAndGet();
+            first.cancel();
+        } else {
+            hedge.cancel();
+        }
+        return winner;
+    }
+
+    private Attempt attempt(MethodInvocation invocation, String target) {
+        Attempt attempt = new Attempt();
+        executor.execute(CustomerDeadline.propagate(() -> {
+            CustomerRoutingDataSource.setTarget(target);
+            CustomerRoutingDataSource.setStatementListener(attempt);
+            try {
+                attempt.result.complete(invocation.proceed());
+            } catch (Throwable e) {
+                attempt.result.completeExceptionally(e);
+            } finally {
+                CustomerRoutingDataSource.setStatementListener(null);
+                CustomerRoutingDataSource.setTarget(null);
+            }
+        }));
+        return attempt;
+    }
+
+    long delayNanos() {
+        return Math.max(minDelayNanos, latencies.p95(initialDelayNanos));
+    }
+
+    void deposit() {
+        tokens.getAndUpdate(current -> Math.min(current + budgetPerRead, MAX_TOKENS * TOKEN));
+    }
+
+    boolean withdraw() {
+        long current;
+        do {
+            current = tokens.get();
+            if (current < TOKEN) {
+                return false;
+            }
+        } while (!tokens.compareAndSet(current, current - TOKEN));
+        return true;
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("customer.reads.hedged", hedged, AtomicLong::get)
+                .description("Reads sent to a second datasource after the first was slow")
+                .register(registry);
+        FunctionCounter.builder("customer.reads.hedge.wins", hedgeWins, AtomicLong::get)
+                .description("Hedged reads the second datasource answered first")
+                .register(registry);
+        TimeGauge.builder("customer.reads.hedge.delay", this, TimeUnit.NANOSECONDS,
+                        CustomerHedgedReads::delayNanos)
+                .description("How long a read runs before it is hedged")
+                .register(registry);
+    }
+
+    /**
+     * One run of the read against one datasource. The statements it
+     * creates are kept so that the run can be cancelled once the other has
+     * answered; a statement no longer running ignores the cancel.
+     */
+    private static final class Attempt implements Consumer<Statement> {
+
+        final CompletableFuture<Object> result = new CompletableFuture<>();
+        private final List<Statement> statements = new ArrayList<>();
+
+        @Override
+        public synchronized void accept(Statement statement) {
+            statements.add(statement);
+        }
+
+        synchronized void cancel() {
+            for (Statement statement : statements) {
+                try {
+                    statement.cancel();
+                } catch (SQLException e) {
+                    // closed already
+                }
+            }
+        }
+    }
+
+    /**
+     * The latest reads' latencies, whose p95 is worked out again after
+     * every tenth of the window.
+     */
+    static final class LatencyWindow {
+
+        private final long[] samples;
+        private final int recomputeEvery;
+        private int next;
+        private int size;
+        private int sinceRecompute;
+        private long p95 = -1;
+
+        LatencyWindow(int capacity) {
+            this.samples = new long[capacity];
+            this.recomputeEvery = Math.max(capacity / 10, 1);
+        }
+
+        synchronized void record(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            size = Math.min(size + 1, samples.length);
+            if (++sinceRecompute >= recomputeEvery) {
+                sinceRecompute = 0;
+                long[] sorted = Arrays.copyOf(samples, size);
+                Arrays.sort(sorted);
+                p95 = sorted[(int) Math.ceil(size * 0.95) - 1];
+            }
+        }
+
+        /**
+         * @param unknown returned until enough reads were recorded
+         */
+        synchronized long p95(long unknown) {
+            return p95 < 0 ? unknown : p95;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.amigoscode.customer;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.AbstractAdvisingBeanPostProcessor;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.StaticMethodMatcherPointcut;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.lang.reflect.Method;
+import java.util.Set;
+
+/**
+ * Hedges {@link CustomerDao#selectCustomerById}, {@link CustomerDao#existsCustomerById}
+ * and {@link CustomerDao#existsCustomerWithEmail} of every {@link CustomerDao}
+ * bean with {@link CustomerHedgedReads}. Each is a single short statement,
+ * so running it twice costs little.
+ */
+public class CustomerHedgedReadsPostProcessor extends AbstractAdvisingBeanPostProcessor {
+
+    private static final Set<String> HEDGED_METHODS = Set.of(
+            "selectCustomerById", "existsCustomerById", "existsCustomerWithEmail");
+
+    public CustomerHedgedReadsPostProcessor(ObjectProvider<CustomerHedgedReads> hedgedReads) {
+        this.advisor = new DefaultPointcutAdvisor(
+                new CustomerDaoHedgedReadsPointcut(),
+                // resolved on first use; a post processor must not pull in the replicas early
+                (MethodInterceptor) invocation -> {
+                    CustomerHedgedReads reads = hedgedReads.getIfAvailable();
+                    return reads == null ? invocation.proceed() : reads.invoke(invocation);
+                }
+        );
+        // callers may inject a DAO by its class
+        setProxyTargetClass(true);
+    }
+
+    private static class CustomerDaoHedgedReadsPointcut extends StaticMethodMatcherPointcut {
+
+        CustomerDaoHedgedReadsPointcut() {
+            setClassFilter(CustomerDao.class::isAssignableFrom);
+        }
+
+        @Override
+        public boolean matches(Method method, Class<?> targetClass) {
+            return HEDGED_METHODS.contains(method.getName());
+        }
+    }
+}
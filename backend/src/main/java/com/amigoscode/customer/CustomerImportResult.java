@@ -0,0 +1,14 @@
+package com.amigoscode.customer;
+
+/**
+ * @param rowsRead data rows in the CSV, without the header
+ * @param inserted rows that became customers
+ * @param rejected rows that were malformed or invalid, repeated an email of an earlier
+ *                 row or used an email that was already taken
+ */
+public record CustomerImportResult(
+        long rowsRead,
+        long inserted,
+        long rejected
+) {
+}
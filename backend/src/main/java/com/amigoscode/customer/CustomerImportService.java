@@ -0,0 +1,205 @@
+package com.amigoscode.customer;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Imports customers from CSV with {@code COPY ... FROM STDIN}. Each record
+ * is checked to be CSV with three fields while the body is read, see
+ * {@link CustomerCsvReader}, and the well-formed ones are copied into a
+ * temporary staging table as text and then merged into {@code customer} with
+ * one {@code INSERT ... ON CONFLICT (email) DO NOTHING}, so malformed records,
+ * invalid rows and taken emails are counted instead of failing the import.
+ * The request body is streamed to the server, so memory use does not depend
+ * on the size of the file.
+ * <p>
+ * COPY is not a statement {@link CustomerDeadlineDataSource} can cancel;
+ * a {@link CustomerDeadline} is checked each time rows are sent instead, and
+ * the import fails once it has passed.
+ */
+@Service
+public class CustomerImportService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CustomerImportService.class);
+
+    // log progress every time this many bytes have been sent to the server
+    private static final long PROGRESS_INTERVAL_BYTES = 64L * 1024 * 1024;
+
+    // characters of validated rows collected before they are sent to COPY
+    private static final int COPY_BUFFER_CHARS = 64 * 1024;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final CustomerResponseCache customerResponseCache;
+    private final CustomerEmailFilter customerEmailFilter;
+
+    public CustomerImportService(JdbcTemplate jdbcTemplate,
+                                 TransactionTemplate transactionTemplate,
+                                 CustomerResponseCache customerResponseCache,
+                                 CustomerEmailFilter customerEmailFilter) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.customerResponseCache = customerResponseCache;
+        this.customerEmailFilter = customerEmailFilter;
+    }
+
+    /**
+     * @param csv    rows of name, email and age
+     * @param header whether the first line holds column names
+     */
+    public CustomerImportResult importCustomers(InputStream csv, boolean header) {
+        CustomerImportResult result = transactionTemplate.execute(status -> jdbcTemplate.execute(
+                (ConnectionCallback<CustomerImportResult>) connection -> {
+                    try (Statement statement = connection.createStatement()) {
+                        statement.execute("""
+                                CREATE TEMP TABLE customer_import (
+                                    position BIGSERIAL,
+                                    name TEXT,
+                                    email TEXT,
+                                    age TEXT
+                                ) ON COMMIT DROP
+                                """);
+                    }
+
+                    // records that are not CSV are counted here instead of
+                    // being sent, as COPY would fail the whole load over them
+                    long rowsRead = 0;
+                    CopyIn copyIn = connection.unwrap(PGConnection.class)
+                            .getCopyAPI()
+                            .copyIn("COPY customer_import (name, email, age) FROM STDIN WITH (FORMAT csv)");
+                    try {
+                        CustomerCsvReader reader = new CustomerCsvReader(new BufferedReader(
+                                new InputStreamReader(new ProgressInputStream(csv), StandardCharsets.UTF_8),
+                                COPY_BUFFER_CHARS
+                        ));
+                        if (header) {
+                            reader.next();
+                        }
+                        StringBuilder rows = new StringBuilder(2 * COPY_BUFFER_CHARS);
+                        while (reader.next()) {
+                            rowsRead++;
+                            List<String> fields = reader.fields();
+                            if (fields == null || fields.size() != 3 || !copyable(fields)) {
+                                continue;
+                            }
+                            for (int i = 0; i < fields.size(); i++) {
+                                rows.append(i == 0 ? "\"" : ",\"")
+                                        .append(fields.get(i).replace("\"", "\"\""))
+                                        .append('"');
+                            }
+                            rows.append('\n');
+                            if (rows.length() >= COPY_BUFFER_CHARS) {
+                                writeToCopy(copyIn, rows);
+                            }
+                        }
+                        writeToCopy(copyIn, rows);
+                        copyIn.endCopy();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    } finally {
+                        if (copyIn.isActive()) {
+                            copyIn.cancelCopy();
+                        }
+                    }
+
+                    // the first row wins when the file repeats an email
+                    long inserted;
+                    try (Statement statement = connection.createStatement()) {
+                        inserted = statement.executeLargeUpdate("""
+                                INSERT INTO customer(name, email, age)
+                                SELECT DISTINCT ON (email) name, email, trim(age)::int
+                                FROM customer_import
+                                WHERE name <> ''
+                                  AND email <> ''
+                                  AND age ~ '^\\s*[0-9]{1,9}\\s*$'
+                                ORDER BY email, position
+                                ON CONFLICT (email) DO NOTHING
+                                """);
+                    }
+                    LOGGER.info("customer import read {} rows and inserted {}",
+                            rowsRead, inserted);
+                    return new CustomerImportResult(
+                            rowsRead, inserted, rowsRead - inserted
+                    );
+                }
+        ));
+        // the new emails are only known to the database, so reload them all
+        if (result.inserted() > 0) {
+            customerResponseCache.evictPages();
+            customerEmailFilter.requestRebuild();
+        }
+        return result;
+    }
+
+    // NUL is not allowed in text and the decoder puts U+FFFD in place of
+    // bytes that are not UTF-8
+    private static boolean copyable(List<String> fields) {
+        for (String field : fields) {
+            if (field.indexOf('\0') >= 0 || field.indexOf('\uFFFD') >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // COPY goes past CustomerDeadlineDataSource, so the deadline is checked here
+    private static void writeToCopy(CopyIn copyIn, StringBuilder rows) throws SQLException {
+        CustomerDeadline.check();
+        byte[] bytes = rows.toString().getBytes(StandardCharsets.UTF_8);
+        copyIn.writeToCopy(bytes, 0, bytes.length);
+        rows.setLength(0);
+    }
+
+    private static class ProgressInputStream extends FilterInputStream {
+
+        private long bytesRead;
+        private long nextReport = PROGRESS_INTERVAL_BYTES;
+
+        ProgressInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        private void count(int n) {
+            bytesRead += n;
+            if (bytesRead >= nextReport) {
+                LOGGER.info("customer import has sent {} MB", bytesRead / (1024 * 1024));
+                nextReport += PROGRESS_INTERVAL_BYTES;
+            }
+        }
+    }
+}
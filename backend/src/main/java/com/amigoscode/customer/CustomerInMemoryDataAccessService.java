@@ -0,0 +1,194 @@
+package com.amigoscode.customer;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread-safe in-memory store with O(1) lookups by id and by email.
+ * <p>
+ * {@code customers} is the source of truth and every write to a customer
+ * runs inside {@link ConcurrentHashMap#compute} for its id, so writes to
+ * one customer are serialized. {@code idsByEmail} enforces unique emails:
+ * an email is claimed with {@code putIfAbsent} before it is written and
+ * released with a conditional {@code remove} afterwards. Stored customers
+ * are never handed out, callers get copies.
+ */
+@Repository("memory")
+public class CustomerInMemoryDataAccessService implements CustomerDao {
+
+    private final Map<Integer, Customer> customers = new ConcurrentHashMap<>();
+    private final Map<String, Integer> idsByEmail = new ConcurrentHashMap<>();
+    private final AtomicInteger lastId = new AtomicInteger();
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return customers.values().stream()
+                .map(CustomerInMemoryDataAccessService::copy)
+                .toList();
+    }
+
+    @Override
+    public List<Customer> selectCustomers(CustomerPageRequest pageRequest) {
+        CustomerCursor after = pageRequest.after();
+        return customers.values().stream()
+                .filter(after::isBefore)
+                .sorted(pageRequest.sort().comparator())
+                .limit(pageRequest.limit())
+                .map(CustomerInMemoryDataAccessService::copy)
+                .toList();
+    }
+
+    @Override
+    public void streamCustomers(CustomerRowCallback callback) {
+        customers.values().stream()
+                .sorted(Comparator.comparing(Customer::getId))
+                .forEach(customer -> {
+                    try {
+                        callback.processRow(
+                                customer.getId(),
+                                customer.getName(),
+                                customer.getEmail(),
+                                customer.getAge()
+                        );
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer id) {
+        return Optional.ofNullable(customers.get(id))
+                .map(CustomerInMemoryDataAccessService::copy);
+    }
+
+    @Override
+    public void insertCustomer(Customer customer) {
+        if (!insertCustomerIfAbsent(customer)) {
+            throw new DuplicateKeyException(
+                    "email [%s] already taken".formatted(customer.getEmail())
+            );
+        }
+    }
+
+    @Override
+    public boolean insertCustomerIfAbsent(Customer customer) {
+        // like a database sequence, ids of failed inserts are not reused
+        int id = lastId.incrementAndGet();
+        if (idsByEmail.putIfAbsent(customer.getEmail(), id) != null) {
+            return false;
+        }
+        customer.setId(id);
+        customers.put(id, copy(customer));
+        return true;
+    }
+
+    @Override
+    public List<Boolean> insertCustomersIfAbsent(List<Customer> customers) {
+        return customers.stream()
+                .map(this::insertCustomerIfAbsent)
+                .toList();
+    }
+
+    @Override
+    public boolean existsCustomerWithEmail(String email) {
+        return idsByEmail.containsKey(email);
+    }
+
+    @Override
+    public boolean existsCustomerById(Integer id) {
+        return customers.containsKey(id);
+    }
+
+    @Override
+    public void deleteCustomerById(Integer id) {
+        Customer removed = customers.remove(id);
+        if (removed != null) {
+            idsByEmail.remove(removed.getEmail(), id);
+        }
+    }
+
+    @Override
+    public List<Boolean> deleteCustomersById(List<Integer> ids) {
+        return ids.stream()
+                .map(id -> {
+                    Customer removed = customers.remove(id);
+                    if (removed == null) {
+                        return false;
+                    }
+                    idsByEmail.remove(removed.getEmail(), id);
+                    return true;
+                })
+                .toList();
+    }
+
+    @Override
+    public CustomerUpdateResult updateCustomer(Customer update) {
+        CustomerUpdateResult[] result = {CustomerUpdateResult.notFound()};
+        customers.computeIfPresent(update.getId(), (id, current) -> {
+            Customer changed = copy(current);
+            if (!changed.applyChanges(update)) {
+                result[0] = CustomerUpdateResult.noChanges();
+                return current;
+            }
+            String oldEmail = current.getEmail();
+            String newEmail = changed.getEmail();
+            if (!newEmail.equals(oldEmail)) {
+                if (idsByEmail.putIfAbsent(newEmail, id) != null) {
+                    result[0] = CustomerUpdateResult.duplicateEmail();
+                    return current;
+                }
+                idsByEmail.remove(oldEmail, id);
+            }
+            result[0] = CustomerUpdateResult.updated(copy(changed));
+            return changed;
+        });
+        return result[0];
+    }
+
+    @Override
+    public List<CustomerUpdateResult> updateCustomers(List<Customer> updates) {
+        return updates.stream()
+                .map(this::updateCustomer)
+                .toList();
+    }
+
+    /**
+     * Puts the customer under its own id, replacing any stored customer,
+     * without checking the email. Used to rebuild the store from a log.
+     */
+    void restore(Customer customer) {
+        Customer previous = customers.put(customer.getId(), copy(customer));
+        if (previous != null) {
+            idsByEmail.remove(previous.getEmail(), previous.getId());
+        }
+        idsByEmail.put(customer.getEmail(), customer.getId());
+        restoreLastId(customer.getId());
+    }
+
+    void restoreLastId(int id) {
+        lastId.accumulateAndGet(id, Math::max);
+    }
+
+    int lastId() {
+        return lastId.get();
+    }
+
+    private static Customer copy(Customer customer) {
+        return new Customer(
+                customer.getId(),
+                customer.getName(),
+                customer.getEmail(),
+                customer.getAge()
+        );
+    }
+}
@@ -1,14 +1,33 @@
 package com.amigoscode.customer;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Repository("jdbc")
 public class CustomerJDBCDataAccessService implements CustomerDao {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(CustomerJDBCDataAccessService.class);
+
+    // rows per round trip when streaming through a server-side cursor
+    private static final int STREAM_FETCH_SIZE = 1_000;
+
     private final JdbcTemplate jdbcTemplate;
     private final CustomerRowMapper customerRowMapper;
 
@@ -28,6 +47,88 @@ public class CustomerJDBCDataAccessService implements CustomerDao {
         return jdbcTemplate.query(sql, customerRowMapper);
     }
 
+    @Override
+    public List<Customer> selectCustomers(CustomerPageRequest pageRequest) {
+        CustomerCursor after = pageRequest.after();
+        // each query is backed by the primary key or an index from V3
+        var sql = switch (pageRequest.sort()) {
+            case ID -> """
+                    SELECT id, name, email, age
+                    FROM customer
+                    WHERE id > ?
+                    ORDER BY id
+                    LIMIT ?
+                    """;
+            case NAME -> """
+                    SELECT id, name, email, age
+                    FROM customer
+                    WHERE (name COLLATE "C", id) > (?, ?)
+                    ORDER BY name COLLATE "C", id
+                    LIMIT ?
+                    """;
+            case EMAIL -> """
+                    SELECT id, name, email, age
+                    FROM customer
+                    WHERE (email COLLATE "C", id) > (?, ?)
+                    ORDER BY email COLLATE "C", id
+                    LIMIT ?
+                    """;
+            case AGE -> """
+                    SELECT id, name, email, age
+                    FROM customer
+                    WHERE (age, id) > (?, ?)
+                    ORDER BY age, id
+                    LIMIT ?
+                    """;
+        };
+        if (pageRequest.sort() == CustomerSort.ID) {
+            return jdbcTemplate.query(
+                    sql, customerRowMapper, after.id(), pageRequest.limit()
+            );
+        }
+        return jdbcTemplate.query(
+                sql, customerRowMapper, after.key(), after.id(), pageRequest.limit()
+        );
+    }
+
+    /**
+     * Runs in a read-only transaction because the postgres driver only
+     * honours the fetch size (and keeps a server-side cursor open) when
+     * auto-commit is off.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void streamCustomers(CustomerRowCallback callback) {
+        var sql = """
+                SELECT id, name, email, age
+                FROM customer
+                ORDER BY id
+                """;
+        jdbcTemplate.query(
+                connection -> {
+                    PreparedStatement statement = connection.prepareStatement(
+                            sql,
+                            ResultSet.TYPE_FORWARD_ONLY,
+                            ResultSet.CONCUR_READ_ONLY
+                    );
+                    statement.setFetchSize(STREAM_FETCH_SIZE);
+                    return statement;
+                },
+                (RowCallbackHandler) rs -> {
+                    try {
+                        callback.processRow(
+                                rs.getInt("id"),
+                                rs.getString("name"),
+                                rs.getString("email"),
+                                rs.getInt("age")
+                        );
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+        );
+    }
+
     @Override
     public Optional<Customer> selectCustomerById(Integer id) {
         var sql = """
@@ -53,7 +154,72 @@ public class CustomerJDBCDataAccessService implements CustomerDao {
                 customer.getAge()
         );
 
-        System.out.println("insertCustomer result " + result);
+        LOGGER.debug("insertCustomer rows={}", result);
+    }
+
+    @Override
+    public boolean insertCustomerIfAbsent(Customer customer) {
+        var sql = """
+                INSERT INTO customer(name, email, age)
+                VALUES (?, ?, ?)
+                ON CONFLICT (email) DO NOTHING
+                RETURNING id
+                """;
+        List<Integer> ids = jdbcTemplate.queryForList(
+                sql,
+                Integer.class,
+                customer.getName(),
+                customer.getEmail(),
+                customer.getAge()
+        );
+        if (ids.isEmpty()) {
+            return false;
+        }
+        customer.setId(ids.get(0));
+        return true;
+    }
+
+    /**
+     * Sends the whole list as three arrays in one statement. A JDBC batch
+     * is not used here because with reWriteBatchedInserts the driver
+     * reports SUCCESS_NO_INFO for every row, which hides the conflicts.
+     */
+    @Override
+    public List<Boolean> insertCustomersIfAbsent(List<Customer> customers) {
+        var sql = """
+                INSERT INTO customer(name, email, age)
+                SELECT name, email, age
+                FROM unnest(?::text[], ?::text[], ?::int[])
+                    WITH ORDINALITY AS batch(name, email, age, position)
+                ORDER BY position
+                ON CONFLICT (email) DO NOTHING
+                RETURNING id, email
+                """;
+        Map<String, Integer> ids = new HashMap<>();
+        jdbcTemplate.query(
+                connection -> {
+                    PreparedStatement statement = connection.prepareStatement(sql);
+                    statement.setArray(1, connection.createArrayOf("text",
+                            customers.stream().map(Customer::getName).toArray()));
+                    statement.setArray(2, connection.createArrayOf("text",
+                            customers.stream().map(Customer::getEmail).toArray()));
+                    statement.setArray(3, connection.createArrayOf("int4",
+                            customers.stream().map(Customer::getAge).toArray()));
+                    return statement;
+                },
+                (RowCallbackHandler) rs -> ids.put(rs.getString("email"), rs.getInt("id"))
+        );
+
+        List<Boolean> inserted = new ArrayList<>(customers.size());
+        for (Customer customer : customers) {
+            // remove so that a repeated email in the same batch counts as a duplicate
+            Integer id = ids.remove(customer.getEmail());
+            if (id != null) {
+                customer.setId(id);
+            }
+            inserted.add(id != null);
+        }
+        return inserted;
     }
 
     @Override
@@ -86,36 +252,204 @@ public class CustomerJDBCDataAccessService implements CustomerDao {
                 WHERE id = ?
                 """;
         int result = jdbcTemplate.update(sql, customerId);
-        System.out.println("deleteCustomerById result = " + result);
+        LOGGER.debug("deleteCustomerById id={} rows={}", customerId, result);
     }
 
+    /**
+     * Runs every delete as one JDBC batch.
+     */
     @Override
-    public void updateCustomer(Customer update) {
+    public List<Boolean> deleteCustomersById(List<Integer> ids) {
+        var sql = """
+                DELETE
+                FROM customer
+                WHERE id = ?
+                """;
+        int[] counts = jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setInt(1, ids.get(i));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return ids.size();
+            }
+        });
+        List<Boolean> deleted = new ArrayList<>(counts.length);
+        for (int count : counts) {
+            deleted.add(count > 0);
+        }
+        return deleted;
+    }
+
+    /**
+     * Builds one UPDATE that only sets the columns present in {@code update}.
+     * It also reports whether the id exists, so not found, no changes and a
+     * duplicate email are all told apart in a single round trip.
+     */
+    @Override
+    public CustomerUpdateResult updateCustomer(Customer update) {
+        List<String> assignments = new ArrayList<>();
+        List<String> changes = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
         if (update.getName() != null) {
-            String sql = "UPDATE customer SET name = ? WHERE id = ?";
-            int result = jdbcTemplate.update(
-                    sql,
-                    update.getName(),
-                    update.getId()
-            );
-            System.out.println("update customer name result = " + result);
+            assignments.add("name = ?");
+            changes.add("name IS DISTINCT FROM ?");
+            values.add(update.getName());
         }
         if (update.getAge() != null) {
-            String sql = "UPDATE customer SET age = ? WHERE id = ?";
-            int result = jdbcTemplate.update(
-                    sql,
-                    update.getAge(),
-                    update.getId()
-            );
-            System.out.println("update customer age result = " + result);
+            assignments.add("age = ?");
+            changes.add("age IS DISTINCT FROM ?");
+            values.add(update.getAge());
         }
         if (update.getEmail() != null) {
-            String sql = "UPDATE customer SET email = ? WHERE id = ?";
-            int result = jdbcTemplate.update(
+            assignments.add("email = ?");
+            changes.add("email IS DISTINCT FROM ?");
+            values.add(update.getEmail());
+        }
+        if (assignments.isEmpty()) {
+            return existsCustomerById(update.getId())
+                    ? CustomerUpdateResult.noChanges()
+                    : CustomerUpdateResult.notFound();
+        }
+
+        var sql = """
+                WITH target AS (
+                    SELECT id FROM customer WHERE id = ?
+                ), updated AS (
+                    UPDATE customer
+                    SET %s
+                    WHERE id = ?
+                      AND (%s)
+                    RETURNING id, name, email, age
+                )
+                SELECT EXISTS (SELECT 1 FROM target) AS found,
+                       updated.id, updated.name, updated.email, updated.age
+                FROM (VALUES (1)) AS one
+                LEFT JOIN updated ON true
+                """.formatted(
+                String.join(", ", assignments),
+                String.join(" OR ", changes)
+        );
+        List<Object> args = new ArrayList<>();
+        args.add(update.getId());
+        args.addAll(values);
+        args.add(update.getId());
+        args.addAll(values);
+
+        try {
+            return jdbcTemplate.queryForObject(
                     sql,
-                    update.getEmail(),
-                    update.getId());
-            System.out.println("update customer email result = " + result);
+                    (rs, rowNum) -> {
+                        if (rs.getObject("id") != null) {
+                            return CustomerUpdateResult.updated(
+                                    customerRowMapper.mapRow(rs, rowNum)
+                            );
+                        }
+                        return rs.getBoolean("found")
+                                ? CustomerUpdateResult.noChanges()
+                                : CustomerUpdateResult.notFound();
+                    },
+                    args.toArray()
+            );
+        } catch (DataIntegrityViolationException e) {
+            if (CustomerConstraints.isEmailTaken(e)) {
+                return CustomerUpdateResult.duplicateEmail();
+            }
+            throw e;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Runs every update as one JDBC batch. Null fields keep their value, and
+     * an update whose email belongs to another customer matches no row
+     * instead of failing the batch. Rows that were not updated are
+     * classified with one extra query.
+     */
+    @Override
+    public List<CustomerUpdateResult> updateCustomers(List<Customer> updates) {
+        var sql = """
+                UPDATE customer
+                SET name = COALESCE(?::text, name),
+                    email = COALESCE(?::text, email),
+                    age = COALESCE(?::int, age)
+                WHERE id = ?
+                  AND (name IS DISTINCT FROM COALESCE(?::text, name)
+                       OR email IS DISTINCT FROM COALESCE(?::text, email)
+                       OR age IS DISTINCT FROM COALESCE(?::int, age))
+                  AND NOT EXISTS (
+                      SELECT 1
+                      FROM customer other
+                      WHERE other.email = ?::text
+                        AND other.id <> ?
+                  )
+                """;
+        int[] counts = jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Customer update = updates.get(i);
+                ps.setObject(1, update.getName());
+                ps.setObject(2, update.getEmail());
+                ps.setObject(3, update.getAge());
+                ps.setInt(4, update.getId());
+                ps.setObject(5, update.getName());
+                ps.setObject(6, update.getEmail());
+                ps.setObject(7, update.getAge());
+                ps.setObject(8, update.getEmail());
+                ps.setInt(9, update.getId());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return updates.size();
+            }
+        });
+
+        Map<Integer, String> currentEmails = selectEmailsOfUnchanged(updates, counts);
+        List<CustomerUpdateResult> results = new ArrayList<>(counts.length);
+        for (int i = 0; i < counts.length; i++) {
+            Customer update = updates.get(i);
+            String currentEmail = currentEmails.get(update.getId());
+            if (counts[i] > 0) {
+                results.add(CustomerUpdateResult.updated(null));
+            } else if (currentEmail == null) {
+                results.add(CustomerUpdateResult.notFound());
+            } else if (update.getEmail() != null && !update.getEmail().equals(currentEmail)) {
+                // the email differs, so the row was only skipped because it is taken
+                results.add(CustomerUpdateResult.duplicateEmail());
+            } else {
+                results.add(CustomerUpdateResult.noChanges());
+            }
+        }
+        return results;
+    }
+
+    private Map<Integer, String> selectEmailsOfUnchanged(List<Customer> updates,
+                                                         int[] counts) {
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                ids.add(updates.get(i).getId());
+            }
+        }
+        Map<Integer, String> emails = new HashMap<>();
+        if (ids.isEmpty()) {
+            return emails;
+        }
+        var sql = """
+                SELECT id, email
+                FROM customer
+                WHERE id = ANY (?)
+                """;
+        jdbcTemplate.query(
+                connection -> {
+                    PreparedStatement statement = connection.prepareStatement(sql);
+                    statement.setArray(1, connection.createArrayOf("int4", ids.toArray()));
+                    return statement;
+                },
+                (RowCallbackHandler) rs -> emails.put(rs.getInt("id"), rs.getString("email"))
+        );
+        return emails;
+    }
+}
@@ -1,22 +1,106 @@
 package com.amigoscode.customer;
 import com.amigoscode.exception.ResourceNotFoundException;
+import jakarta.persistence.EntityManager;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
 @Repository("jpa")
 public class CustomerJPADataAccessService implements CustomerDao {
+    private static final int STREAM_FETCH_SIZE = 1_000;
+
     private final CustomerRepository customerRepository;
+    private final EntityManager entityManager;
+    private final int batchSize;
 
-    public CustomerJPADataAccessService(CustomerRepository customerRepository)
+    public CustomerJPADataAccessService(CustomerRepository customerRepository,
+                                        EntityManager entityManager,
+                                        @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}") int batchSize)
     {
         this.customerRepository = customerRepository;
+        this.entityManager = entityManager;
+        this.batchSize = batchSize;
     }
+    /**
+     * Reads through a stateless session, so the customers are returned
+     * without being tracked by a persistence context.
+     */
     @Override
     public List<Customer> selectAllCustomers() {
-        return customerRepository.findAll();
+        try (StatelessSession session = openStatelessSession()) {
+            return session.createQuery("FROM Customer c", Customer.class)
+                    .getResultList();
+        }
+    }
+    @Override
+    public List<Customer> selectCustomers(CustomerPageRequest pageRequest) {
+        CustomerCursor after = pageRequest.after();
+        int limit = pageRequest.limit();
+        return switch (pageRequest.sort()) {
+            case ID -> customerRepository.selectCustomersAfterId(
+                    after.id(), limit);
+            case NAME -> customerRepository.selectCustomersAfterName(
+                    (String) after.key(), after.id(), limit);
+            case EMAIL -> customerRepository.selectCustomersAfterEmail(
+                    (String) after.key(), after.id(), limit);
+            case AGE -> customerRepository.selectCustomersAfterAge(
+                    (Integer) after.key(), after.id(), limit);
+        };
+    }
+    /**
+     * Scrolls the table in id order through a stateless session. Nothing is
+     * attached to a persistence context and the driver fetches
+     * {@code STREAM_FETCH_SIZE} rows at a time, so one query streams the
+     * table in constant memory. The session has its own connection and
+     * does not see writes of a surrounding transaction.
+     */
+    @Override
+    public void streamCustomers(CustomerRowCallback callback) {
+        try (StatelessSession session = openStatelessSession()) {
+            // the driver only fetches in chunks inside a transaction
+            Transaction transaction = session.beginTransaction();
+            try (ScrollableResults<Customer> customers = session
+                    .createQuery("FROM Customer c ORDER BY c.id", Customer.class)
+                    .setFetchSize(STREAM_FETCH_SIZE)
+                    .scroll(ScrollMode.FORWARD_ONLY)) {
+                while (customers.next()) {
+                    Customer customer = customers.get();
+                    try {
+                        callback.processRow(
+                                customer.getId(),
+                                customer.getName(),
+                                customer.getEmail(),
+                                customer.getAge()
+                        );
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            } finally {
+                // nothing was written
+                transaction.rollback();
+            }
+        }
+    }
+
+    private StatelessSession openStatelessSession() {
+        return entityManager.getEntityManagerFactory()
+                .unwrap(SessionFactory.class)
+                .openStatelessSession();
     }
+
     @Override
     public Optional<Customer> selectCustomerById(Integer id) {
         return customerRepository.findById(id);
@@ -27,6 +111,56 @@ public class CustomerJPADataAccessService implements CustomerDao {
         customerRepository.save(customer);
     }
 
+    /**
+     * Persists new customers and merges existing ones in one transaction,
+     * flushing and clearing the persistence context every
+     * {@code batchSize} customers. Each flush goes out as JDBC batches and
+     * new ids come from the pooled sequence, so round trips grow with the
+     * number of batches rather than with the number of customers. A taken
+     * email fails the whole call.
+     *
+     * @return the saved customers, detached
+     */
+    @Transactional
+    public List<Customer> saveCustomers(List<Customer> customers) {
+        List<Customer> saved = new ArrayList<>(customers.size());
+        for (int i = 0; i < customers.size(); i++) {
+            Customer customer = customers.get(i);
+            if (customer.getId() == null) {
+                entityManager.persist(customer);
+                saved.add(customer);
+            } else {
+                saved.add(entityManager.merge(customer));
+            }
+            // keeps dirty checking and memory bounded by one batch
+            if ((i + 1) % batchSize == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+        return saved;
+    }
+
+    @Override
+    public boolean insertCustomerIfAbsent(Customer customer) {
+        Optional<Integer> id = customerRepository.insertCustomerIfAbsent(
+                customer.getName(),
+                customer.getEmail(),
+                customer.getAge()
+        );
+        id.ifPresent(customer::setId);
+        return id.isPresent();
+    }
+
+    @Override
+    public List<Boolean> insertCustomersIfAbsent(List<Customer> customers) {
+        return customers.stream()
+                .map(this::insertCustomerIfAbsent)
+                .toList();
+    }
+
     @Override
     public boolean existsCustomerWithEmail(String email) {
         return customerRepository.existsCustomerByEmail(email);
@@ -40,8 +174,53 @@ public class CustomerJPADataAccessService implements CustomerDao {
     public void deleteCustomerById(Integer id) {
         customerRepository.deleteById(id);
     }
+
+    @Override
+    public List<Boolean> deleteCustomersById(List<Integer> ids) {
+        return ids.stream()
+                .map(id -> customerRepository.deleteCustomerById(id) > 0)
+                .toList();
+    }
+
+    /**
+     * Updates with one statement that does not load the customer. Only an
+     * update that changed nothing reads the row, to tell why.
+     */
+    @Override
+    public CustomerUpdateResult updateCustomer(Customer update) {
+        int updated;
+        try {
+            updated = customerRepository.updateCustomer(
+                    update.getId(),
+                    update.getName(),
+                    update.getEmail(),
+                    update.getAge()
+            );
+        } catch (DataIntegrityViolationException e) {
+            // another customer took the email after the NOT EXISTS check
+            if (CustomerConstraints.isEmailTaken(e)) {
+                return CustomerUpdateResult.duplicateEmail();
+            }
+            throw e;
+        }
+        if (updated > 0) {
+            return CustomerUpdateResult.updated(null);
+        }
+        Optional<Customer> existing = customerRepository.findById(update.getId());
+        if (existing.isEmpty()) {
+            return CustomerUpdateResult.notFound();
+        }
+        if (update.getEmail() != null
+                && !update.getEmail().equals(existing.get().getEmail())) {
+            return CustomerUpdateResult.duplicateEmail();
+        }
+        return CustomerUpdateResult.noChanges();
+    }
+
     @Override
-    public void updateCustomer(Customer update) {
-        customerRepository.save(update);
+    public List<CustomerUpdateResult> updateCustomers(List<Customer> updates) {
+        return updates.stream()
+                .map(this::updateCustomer)
+                .toList();
     }
 }
@@ -1,6 +1,8 @@
 package com.amigoscode.customer;
 import org.springframework.stereotype.Repository;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.List;
@@ -35,6 +37,34 @@ public class CustomerListDataAccessService implements CustomerDao {
         return customers;
     }
 
+    @Override
+    public List<Customer> selectCustomers(CustomerPageRequest pageRequest) {
+        CustomerCursor after = pageRequest.after();
+        return customers.stream()
+                .filter(after::isBefore)
+                .sorted(pageRequest.sort().comparator())
+                .limit(pageRequest.limit())
+                .toList();
+    }
+
+    @Override
+    public void streamCustomers(CustomerRowCallback callback) {
+        customers.stream()
+                .sorted(CustomerSort.ID.comparator())
+                .forEach(customer -> {
+                    try {
+                        callback.processRow(
+                                customer.getId(),
+                                customer.getName(),
+                                customer.getEmail(),
+                                customer.getAge()
+                        );
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
     @Override
     public Optional<Customer> selectCustomerById(Integer id) {
         return customers.stream()
@@ -43,10 +73,35 @@ public class CustomerListDataAccessService implements CustomerDao {
     }
 
     @Override
-    public void insertCustomer(Customer customer) {
+    public synchronized void insertCustomer(Customer customer) {
+        customer.setId(nextId());
         customers.add(customer);
     }
 
+    @Override
+    public synchronized boolean insertCustomerIfAbsent(Customer customer) {
+        if (existsCustomerWithEmail(customer.getEmail())) {
+            return false;
+        }
+        customer.setId(nextId());
+        customers.add(customer);
+        return true;
+    }
+
+    @Override
+    public synchronized List<Boolean> insertCustomersIfAbsent(List<Customer> customers) {
+        return customers.stream()
+                .map(this::insertCustomerIfAbsent)
+                .toList();
+    }
+
+    private int nextId() {
+        return customers.stream()
+                .mapToInt(Customer::getId)
+                .max()
+                .orElse(0) + 1;
+    }
+
     @Override
     public boolean existsCustomerWithEmail(String email) {
         return customers.stream()
@@ -65,8 +120,36 @@ public class CustomerListDataAccessService implements CustomerDao {
                 .findFirst()
                 .ifPresent(customers::remove);
     }
+
     @Override
-    public void updateCustomer(Customer customer) {
-        customers.add(customer);
+    public synchronized List<Boolean> deleteCustomersById(List<Integer> ids) {
+        return ids.stream()
+                .map(id -> customers.removeIf(c -> c.getId().equals(id)))
+                .toList();
+    }
+
+    @Override
+    public synchronized CustomerUpdateResult updateCustomer(Customer update) {
+        Optional<Customer> existing = selectCustomerById(update.getId());
+        if (existing.isEmpty()) {
+            return CustomerUpdateResult.notFound();
+        }
+        Customer customer = existing.get();
+        if (update.getEmail() != null
+                && !update.getEmail().equals(customer.getEmail())
+                && existsCustomerWithEmail(update.getEmail())) {
+            return CustomerUpdateResult.duplicateEmail();
+        }
+        if (!customer.applyChanges(update)) {
+            return CustomerUpdateResult.noChanges();
+        }
+        return CustomerUpdateResult.updated(customer);
+    }
+
+    @Override
+    public synchronized List<CustomerUpdateResult> updateCustomers(List<Customer> updates) {
+        return updates.stream()
+                .map(this::updateCustomer)
+                .toList();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,27 @@
+package com.amigoscode.customer;
+
+import java.util.List;
+
+/**
+ * @param next cursor of the following page, or null on the last page
+ */
+public record CustomerPage(
+        List<Customer> customers,
+        CustomerCursor next
+) {
+
+    /**
+     * @param customers rows read with a limit of one more than the page, so
+     *                  that the extra row tells whether there is a next page
+     */
+    public static CustomerPage of(List<Customer> customers, CustomerPageRequest pageRequest) {
+        if (customers.size() <= pageRequest.limit()) {
+            return new CustomerPage(customers, null);
+        }
+        List<Customer> page = customers.subList(0, pageRequest.limit());
+        return new CustomerPage(
+                page,
+                CustomerCursor.of(pageRequest.sort(), page.get(page.size() - 1))
+        );
+    }
+}
@@ -0,0 +1,41 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.exception.RequestValidationException;
+
+public record CustomerPageRequest(
+        CustomerSort sort,
+        CustomerCursor after,
+        int limit
+) {
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 1000;
+
+    public static CustomerPageRequest of(String sort, String after, int limit) {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new RequestValidationException(
+                    "limit must be between 1 and %s".formatted(MAX_LIMIT)
+            );
+        }
+        CustomerSort customerSort = CustomerSort.fromParameter(sort);
+        if (after == null) {
+            return new CustomerPageRequest(
+                    customerSort, CustomerCursor.start(customerSort), limit
+            );
+        }
+        CustomerCursor cursor = CustomerCursor.decode(after);
+        if (cursor.sort() != customerSort) {
+            throw new RequestValidationException(
+                    "cursor does not match sort [%s]".formatted(sort)
+            );
+        }
+        return new CustomerPageRequest(customerSort, cursor, limit);
+    }
+
+    public static CustomerPageRequest first(CustomerSort sort, int limit) {
+        return new CustomerPageRequest(sort, CustomerCursor.start(sort), limit);
+    }
+
+    public CustomerPageRequest withLimit(int limit) {
+        return new CustomerPageRequest(sort, after, limit);
+    }
+}
@@ -0,0 +1,237 @@
+package com.amigoscode.customer;
+
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Readable;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link CustomerReactiveDao} on R2DBC. The statements are the ones of
+ * {@link CustomerJDBCDataAccessService}, with named instead of positional
+ * parameters.
+ */
+@Repository("r2dbc")
+@Profile("reactive")
+public class CustomerR2dbcDataAccessService implements CustomerReactiveDao {
+
+    // rows per round trip when streaming through a portal
+    private static final int STREAM_FETCH_SIZE = 1_000;
+
+    private final DatabaseClient databaseClient;
+
+    public CustomerR2dbcDataAccessService(ConnectionFactory connectionFactory) {
+        this.databaseClient = DatabaseClient.create(connectionFactory);
+    }
+
+    private static Customer mapRow(Readable row) {
+        return new Customer(
+                row.get("id", Integer.class),
+                row.get("name", String.class),
+                row.get("email", String.class),
+                row.get("age", Integer.class)
+        );
+    }
+
+    @Override
+    public Flux<Customer> selectCustomers(CustomerPageRequest pageRequest) {
+        CustomerCursor after = pageRequest.after();
+        // each query is backed by the primary key or an index from V3
+        var sql = switch (pageRequest.sort()) {
+            case ID -> """
+                    SELECT id, name, email, age
+                    FROM customer
+                    WHERE id > :id
+                    ORDER BY id
+                    LIMIT :limit
+                    """;
+            case NAME -> """
+                    SELECT id, name, email, age
+                    FROM customer
+                    WHERE (name COLLATE "C", id) > (:key, :id)
+                    ORDER BY name COLLATE "C", id
+                    LIMIT :limit
+                    """;
+            case EMAIL -> """
+                    SELECT id, name, email, age
+                    FROM customer
+                    WHERE (email COLLATE "C", id) > (:key, :id)
+                    ORDER BY email COLLATE "C", id
+                    LIMIT :limit
+                    """;
+            case AGE -> """
+                    SELECT id, name, email, age
+                    FROM customer
+                    WHERE (age, id) > (:key, :id)
+                    ORDER BY age, id
+                    LIMIT :limit
+                    """;
+        };
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql)
+                .bind("id", after.id())
+                .bind("limit", pageRequest.limit());
+        if (pageRequest.sort() != CustomerSort.ID) {
+            spec = spec.bind("key", after.key());
+        }
+        return spec.map(CustomerR2dbcDataAccessService::mapRow).all();
+    }
+
+    /**
+     * The driver fetches {@code STREAM_FETCH_SIZE} rows at a time and only
+     * asks for the next batch once the subscriber has requested them, so a
+     * slow client holds back the read instead of filling memory.
+     */
+    @Override
+    public Flux<Customer> streamCustomers() {
+        var sql = """
+                SELECT id, name, email, age
+                FROM customer
+                ORDER BY id
+                """;
+        return databaseClient.sql(sql)
+                .filter(statement -> statement.fetchSize(STREAM_FETCH_SIZE))
+                .map(CustomerR2dbcDataAccessService::mapRow)
+                .all();
+    }
+
+    @Override
+    public Mono<Customer> selectCustomerById(Integer id) {
+        var sql = """
+                SELECT id, name, email, age
+                FROM customer
+                WHERE id = :id
+                """;
+        return databaseClient.sql(sql)
+                .bind("id", id)
+                .map(CustomerR2dbcDataAccessService::mapRow)
+                .one();
+    }
+
+    @Override
+    public Mono<Boolean> insertCustomerIfAbsent(Customer customer) {
+        var sql = """
+                INSERT INTO customer(name, email, age)
+                VALUES (:name, :email, :age)
+                ON CONFLICT (email) DO NOTHING
+                RETURNING id
+                """;
+        return databaseClient.sql(sql)
+                .bind("name", customer.getName())
+                .bind("email", customer.getEmail())
+                .bind("age", customer.getAge())
+                .map(row -> row.get("id", Integer.class))
+                .one()
+                .doOnNext(customer::setId)
+                .hasElement();
+    }
+
+    @Override
+    public Mono<Boolean> existsCustomerWithEmail(String email) {
+        var sql = """
+                SELECT EXISTS (SELECT 1 FROM customer WHERE email = :email)
+                """;
+        return databaseClient.sql(sql)
+                .bind("email", email)
+                .map(row -> row.get(0, Boolean.class))
+                .one();
+    }
+
+    @Override
+    public Mono<Boolean> existsCustomerById(Integer id) {
+        var sql = """
+                SELECT EXISTS (SELECT 1 FROM customer WHERE id = :id)
+                """;
+        return databaseClient.sql(sql)
+                .bind("id", id)
+                .map(row -> row.get(0, Boolean.class))
+                .one();
+    }
+
+    @Override
+    public Mono<Boolean> deleteCustomerById(Integer id) {
+        var sql = """
+                DELETE
+                FROM customer
+                WHERE id = :id
+                """;
+        return databaseClient.sql(sql)
+                .bind("id", id)
+                .fetch()
+                .rowsUpdated()
+                .map(rows -> rows > 0);
+    }
+
+    /**
+     * @see CustomerJDBCDataAccessService#updateCustomer(Customer)
+     */
+    @Override
+    public Mono<CustomerUpdateResult> updateCustomer(Customer update) {
+        List<String> assignments = new ArrayList<>();
+        List<String> changes = new ArrayList<>();
+        Map<String, Object> values = new LinkedHashMap<>();
+        if (update.getName() != null) {
+            assignments.add("name = :name");
+            changes.add("name IS DISTINCT FROM :name");
+            values.put("name", update.getName());
+        }
+        if (update.getAge() != null) {
+            assignments.add("age = :age");
+            changes.add("age IS DISTINCT FROM :age");
+            values.put("age", update.getAge());
+        }
+        if (update.getEmail() != null) {
+            assignments.add("email = :email");
+            changes.add("email IS DISTINCT FROM :email");
+            values.put("email", update.getEmail());
+        }
+        if (assignments.isEmpty()) {
+            return existsCustomerById(update.getId())
+                    .map(exists -> exists
+                            ? CustomerUpdateResult.noChanges()
+                            : CustomerUpdateResult.notFound());
+        }
+
+        var sql = """
+                WITH target AS (
+                    SELECT id FROM customer WHERE id = :id
+                ), updated AS (
+                    UPDATE customer
+                    SET %s
+                    WHERE id = :id
+                      AND (%s)
+                    RETURNING id, name, email, age
+                )
+                SELECT EXISTS (SELECT 1 FROM target) AS found,
+                       updated.id, updated.name, updated.email, updated.age
+                FROM (VALUES (1)) AS one
+                LEFT JOIN updated ON true
+                """.formatted(
+                String.join(", ", assignments),
+                String.join(" OR ", changes)
+        );
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql)
+                .bind("id", update.getId());
+        for (Map.Entry<String, Object> value : values.entrySet()) {
+            spec = spec.bind(value.getKey(), value.getValue());
+        }
+        return spec
+                .map(row -> {
+                    if (row.get("id") != null) {
+                        return CustomerUpdateResult.updated(mapRow(row));
+                    }
+                    return Boolean.TRUE.equals(row.get("found", Boolean.class))
+                            ? CustomerUpdateResult.noChanges()
+                            : CustomerUpdateResult.notFound();
+                })
+                .one()
+                .onErrorResume(CustomerConstraints::isEmailTaken,
+                        e -> Mono.just(CustomerUpdateResult.duplicateEmail()));
+    }
+}
@@ -0,0 +1,91 @@
+package com.amigoscode.customer;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * {@link CustomerController} on WebFlux, for the reactive profile. Same
+ * paths, parameters and status codes; the bulk endpoints are servlet only.
+ */
+@RestController
+@RequestMapping("/api/v1/customers")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class CustomerReactiveController {
+
+    private final CustomerReactiveService customerService;
+
+    public CustomerReactiveController(CustomerReactiveService customerService) {
+        this.customerService = customerService;
+    }
+
+    @GetMapping
+    public Mono<ResponseEntity<List<Customer>>> getCustomers(
+            @RequestParam(name = "sort", defaultValue = "id") String sort,
+            @RequestParam(name = "after", required = false) String after,
+            @RequestParam(name = "limit", defaultValue = "" + CustomerPageRequest.DEFAULT_LIMIT) int limit,
+            ServerHttpRequest request) {
+        return customerService.getCustomers(CustomerPageRequest.of(sort, after, limit))
+                .map(page -> {
+                    ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+                    if (page.next() != null) {
+                        String next = UriComponentsBuilder.fromHttpRequest(request)
+                                .replaceQueryParam("after", page.next().encode())
+                                .toUriString();
+                        response.header(HttpHeaders.LINK, "<%s>; rel=\"next\"".formatted(next));
+                    }
+                    return response.body(page.customers());
+                });
+    }
+
+    /**
+     * Streams every customer as a JSON array, or as newline delimited JSON
+     * when asked for {@code application/x-ndjson}. Rows are read from the
+     * database as fast as the client takes them.
+     */
+    @GetMapping(path = "export",
+            produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<Customer> exportCustomers() {
+        return customerService.streamCustomers();
+    }
+
+    @GetMapping("email-availability")
+    public Mono<CustomerEmailAvailability> getEmailAvailability(
+            @RequestParam("email") String email) {
+        return customerService.isEmailAvailable(email)
+                .map(available -> new CustomerEmailAvailability(email, available));
+    }
+
+    @GetMapping("{customerId}")
+    public Mono<Customer> getCustomer(
+            @PathVariable("customerId") Integer customerId) {
+        return customerService.getCustomer(customerId);
+    }
+
+    @PostMapping("")
+    @ResponseStatus(HttpStatus.CREATED)
+    public Mono<Void> registerCustomer(@RequestBody CustomerRegistrationRequest request) {
+        return customerService.addCustomer(request);
+    }
+
+    @DeleteMapping("{customerId}")
+    public Mono<Void> deleteCustomer(@PathVariable("customerId") Integer customerId) {
+        return customerService.deleteCustomerById(customerId);
+    }
+
+    @PutMapping("{customerId}")
+    public Mono<Void> updateCustomer(
+            @PathVariable("customerId") Integer customerId,
+            @RequestBody CustomerUpdateRequest updateRequest) {
+        return customerService.updateCustomer(customerId, updateRequest);
+    }
+}
@@ -0,0 +1,35 @@
+package com.amigoscode.customer;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of {@link CustomerDao}, used by the reactive
+ * profile. Nothing runs until the returned publisher is subscribed to.
+ */
+public interface CustomerReactiveDao {
+    Flux<Customer> selectCustomers(CustomerPageRequest pageRequest);
+    /**
+     * Emits every customer in id order, reading more rows from the database
+     * only as the subscriber requests them.
+     */
+    Flux<Customer> streamCustomers();
+    Mono<Customer> selectCustomerById(Integer id);
+    /**
+     * Inserts the customer unless its email is already taken. On success
+     * the generated id is set on the customer.
+     *
+     * @return false when another customer already has the email
+     */
+    Mono<Boolean> insertCustomerIfAbsent(Customer customer);
+    Mono<Boolean> existsCustomerWithEmail(String email);
+    Mono<Boolean> existsCustomerById(Integer id);
+    /**
+     * @return whether a customer was deleted
+     */
+    Mono<Boolean> deleteCustomerById(Integer id);
+    /**
+     * @see CustomerDao#updateCustomer(Customer)
+     */
+    Mono<CustomerUpdateResult> updateCustomer(Customer update);
+}
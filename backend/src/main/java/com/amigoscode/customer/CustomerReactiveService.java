@@ -0,0 +1,122 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.exception.DuplicateResourceException;
+import com.amigoscode.exception.RequestValidationException;
+import com.amigoscode.exception.ResourceNotFoundException;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * {@link CustomerService} for the reactive profile. Reads are not cached,
+ * since {@link CustomerCache} loads through a blocking DAO.
+ */
+@Service
+@Profile("reactive")
+public class CustomerReactiveService {
+    private final CustomerReactiveDao customerDao;
+    private final CustomerEmailFilter customerEmailFilter;
+
+    public CustomerReactiveService(CustomerReactiveDao customerDao,
+                                   CustomerEmailFilter customerEmailFilter) {
+        this.customerDao = customerDao;
+        this.customerEmailFilter = customerEmailFilter;
+    }
+
+    public Mono<CustomerPage> getCustomers(CustomerPageRequest pageRequest) {
+        // fetch one extra row to find out whether there is a next page
+        return customerDao.selectCustomers(pageRequest.withLimit(pageRequest.limit() + 1))
+                .collectList()
+                .map(customers -> CustomerPage.of(customers, pageRequest));
+    }
+
+    public Flux<Customer> streamCustomers() {
+        return customerDao.streamCustomers();
+    }
+
+    public Mono<Customer> getCustomer(Integer id) {
+        return customerDao.selectCustomerById(id)
+                .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException(
+                        "customer with id [%s] not found".formatted(id)
+                )));
+    }
+
+    public Mono<Void> addCustomer(CustomerRegistrationRequest customerRegistrationRequest) {
+        Customer customer = new Customer(
+                customerRegistrationRequest.name(),
+                customerRegistrationRequest.email(),
+                customerRegistrationRequest.age()
+        );
+        // the email check and the insert are a single statement
+        return customerDao.insertCustomerIfAbsent(customer)
+                // such as a missing name or age
+                .onErrorMap(DataIntegrityViolationException.class,
+                        e -> new RequestValidationException("invalid customer data"))
+                .flatMap(inserted -> {
+                    if (!inserted) {
+                        return Mono.error(new DuplicateResourceException("email already taken"));
+                    }
+                    customerEmailFilter.emailAdded(customer.getEmail());
+                    return Mono.empty();
+                });
+    }
+
+    public Mono<Boolean> isEmailAvailable(String email) {
+        // a definite miss in the filter saves the database probe
+        if (!customerEmailFilter.mightContain(email)) {
+            return Mono.just(true);
+        }
+        return customerDao.existsCustomerWithEmail(email).map(exists -> !exists);
+    }
+
+    public Mono<Void> deleteCustomerById(Integer customerId) {
+        return customerDao.deleteCustomerById(customerId)
+                .flatMap(deleted -> {
+                    if (!deleted) {
+                        return Mono.error(new ResourceNotFoundException(
+                                "customer with id [%s] not found".formatted(customerId)
+                        ));
+                    }
+                    customerEmailFilter.emailRemoved(customerId);
+                    return Mono.empty();
+                });
+    }
+
+    public Mono<Void> updateCustomer(Integer customerId,
+                                     CustomerUpdateRequest updateRequest) {
+        // only the fields present in the request are sent to the dao
+        Customer update = new Customer(
+                customerId,
+                updateRequest.name(),
+                updateRequest.email(),
+                updateRequest.age()
+        );
+
+        return customerDao.updateCustomer(update)
+                // a taken email is reported as DUPLICATE_EMAIL, anything else is bad input
+                .onErrorMap(DataIntegrityViolationException.class,
+                        e -> new RequestValidationException("invalid customer data"))
+                .flatMap(result -> switch (result.status()) {
+                    case NOT_FOUND -> Mono.error(new ResourceNotFoundException(
+                            "customer with id [%s] not found".formatted(customerId)
+                    ));
+                    case DUPLICATE_EMAIL -> Mono.error(new DuplicateResourceException(
+                            "email already taken"
+                    ));
+                    case NO_CHANGES -> Mono.error(new RequestValidationException(
+                            "no data changes found"
+                    ));
+                    case UPDATED -> {
+                        if (updateRequest.email() != null) {
+                            // the old email may have been replaced, which the
+                            // filter can only forget on its next rebuild
+                            customerEmailFilter.emailAdded(updateRequest.email());
+                            customerEmailFilter.emailRemoved();
+                        }
+                        yield Mono.empty();
+                    }
+                });
+    }
+}
@@ -0,0 +1,86 @@
+package com.amigoscode.customer;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Keeps a client's reads on the primary for {@code customer.replicas.read-your-writes}
+ * after it writes, so that it does not read from a replica that has not
+ * replayed the write yet. Writes set a cookie holding the end of the
+ * window; requests that carry an unexpired one are pinned to the primary,
+ * whichever node serves them. Writes are pinned as well, so the reads they
+ * make before writing see the latest rows.
+ */
+public class CustomerReadYourWritesFilter extends OncePerRequestFilter {
+
+    static final String COOKIE = "customer-primary-until";
+
+    private static final Set<String> SAFE_METHODS = Set.of("GET", "HEAD", "OPTIONS", "TRACE");
+
+    private final Duration window;
+    private final Clock clock;
+
+    public CustomerReadYourWritesFilter(Duration window) {
+        this(window, Clock.systemUTC());
+    }
+
+    CustomerReadYourWritesFilter(Duration window, Clock clock) {
+        this.window = window;
+        this.clock = clock;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        long now = clock.millis();
+        boolean write = !SAFE_METHODS.contains(request.getMethod());
+        if (write) {
+            // set before the body is written, when the response may already be committed
+            ResponseCookie cookie = ResponseCookie.from(COOKIE, Long.toString(now + window.toMillis()))
+                    .path("/")
+                    .maxAge(window)
+                    .httpOnly(true)
+                    .sameSite("Lax")
+                    .build();
+            response.addHeader(HttpHeaders.SET_COOKIE, cookie.toString());
+        }
+        long pinnedFor = pinnedUntil(request) - now;
+        // a cookie further out than one window was not set by this filter
+        boolean pinned = write || (pinnedFor > 0 && pinnedFor <= window.toMillis());
+        boolean previous = CustomerRoutingDataSource.setPinnedToPrimary(pinned);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            CustomerRoutingDataSource.setPinnedToPrimary(previous);
+        }
+    }
+
+    private static long pinnedUntil(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return 0;
+        }
+        for (Cookie cookie : cookies) {
+            if (COOKIE.equals(cookie.getName())) {
+                try {
+                    return Long.parseLong(cookie.getValue());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,80 @@
+package com.amigoscode.customer;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Customers written in the last {@code customer.replicas.read-your-writes},
+ * so that the caches load them from the primary. A replica may not have
+ * replayed the write yet, and a stale row loaded into a cache would be
+ * served to every client until it expires. Pages are loaded from the
+ * primary for as long after any write.
+ * <p>
+ * Without replicas every load comes from the primary anyway.
+ */
+@Component
+public class CustomerRecentWrites {
+
+    private final Cache<Integer, Boolean> ids;
+    private final long windowNanos;
+    private volatile long lastWrite;
+    private volatile long lastWriteOfAll;
+
+    public CustomerRecentWrites(@Value("${customer.replicas.read-your-writes:5s}") Duration window) {
+        this.windowNanos = window.toNanos();
+        this.ids = Caffeine.newBuilder()
+                .expireAfterWrite(window)
+                .build();
+        // nothing was written before startup
+        this.lastWrite = System.nanoTime() - windowNanos;
+        this.lastWriteOfAll = lastWrite;
+    }
+
+    public void written(Integer id) {
+        ids.put(id, Boolean.TRUE);
+        lastWrite = System.nanoTime();
+    }
+
+    /**
+     * For writes that add customers.
+     */
+    public void written() {
+        lastWrite = System.nanoTime();
+    }
+
+    /**
+     * For writes whose ids are not known.
+     */
+    public void writtenAll() {
+        long now = System.nanoTime();
+        lastWrite = now;
+        lastWriteOfAll = now;
+    }
+
+    public <T> T loadCustomer(Integer id, Supplier<T> loader) {
+        boolean recent = ids.getIfPresent(id) != null || isRecent(lastWriteOfAll);
+        return recent ? loadFromPrimary(loader) : loader.get();
+    }
+
+    public <T> T loadPage(Supplier<T> loader) {
+        return isRecent(lastWrite) ? loadFromPrimary(loader) : loader.get();
+    }
+
+    private boolean isRecent(long writtenAt) {
+        return System.nanoTime() - writtenAt < windowNanos;
+    }
+
+    private static <T> T loadFromPrimary(Supplier<T> loader) {
+        boolean previous = CustomerRoutingDataSource.setPinnedToPrimary(true);
+        try {
+            return loader.get();
+        } finally {
+            CustomerRoutingDataSource.setPinnedToPrimary(previous);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.amigoscode.customer;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.util.unit.DataSize;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sends {@link CustomerDao} reads to the replicas listed in
+ * {@code customer.replicas.urls}, which share the primary's credentials.
+ * Without that property every connection comes from the primary, as
+ * configured by Boot. Single-row reads are hedged across the datasources,
+ * see {@link CustomerHedgedReads}, unless {@code customer.hedging.enabled}
+ * is false. The reactive profile reads through R2DBC and is
+ * left alone.
+ */
+@Configuration(proxyBeanMethods = false)
+@Profile("!reactive")
+@ConditionalOnProperty("customer.replicas.urls")
+@EnableConfigurationProperties(DataSourceProperties.class)
+public class CustomerReplicaConfig {
+
+    // a replica that cannot hand out a connection quickly is better skipped
+    private static final Duration REPLICA_CONNECTION_TIMEOUT = Duration.ofSeconds(1);
+
+    @Bean
+    static CustomerReplicaReadsPostProcessor customerReplicaReadsPostProcessor() {
+        return new CustomerReplicaReadsPostProcessor();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "customer.hedging.enabled", havingValue = "true", matchIfMissing = true)
+    static CustomerHedgedReadsPostProcessor customerHedgedReadsPostProcessor(
+            ObjectProvider<CustomerHedgedReads> hedgedReads) {
+        return new CustomerHedgedReadsPostProcessor(hedgedReads);
+    }
+
+    /**
+     * The primary as Boot would have built it, had there been no routing
+     * datasource.
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    HikariDataSource customerPrimaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+    }
+
+    @Bean
+    CustomerReplicas customerReplicas(DataSourceProperties properties,
+                                      @Qualifier("customerPrimaryDataSource") DataSource primary,
+                                      @Value("${customer.replicas.urls}") List<String> urls,
+                                      @Value("${customer.replicas.max-lag:1MB}") DataSize maxLag,
+                                      @Value("${customer.replicas.check-interval:1s}") Duration checkInterval) {
+        List<CustomerReplicas.Replica> replicas = new ArrayList<>();
+        for (int i = 0; i < urls.size(); i++) {
+            String name = "replica-" + (i + 1);
+            HikariDataSource dataSource = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(urls.get(i))
+                    .username(properties.determineUsername())
+                    .password(properties.determinePassword())
+                    .build();
+            dataSource.setPoolName("customer-" + name);
+            dataSource.setReadOnly(true);
+            dataSource.setConnectionTimeout(REPLICA_CONNECTION_TIMEOUT.toMillis());
+            replicas.add(new CustomerReplicas.Replica(name, dataSource));
+        }
+        return new CustomerReplicas(primary, replicas, maxLag.toBytes(), checkInterval);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "customer.hedging.enabled", havingValue = "true", matchIfMissing = true)
+    CustomerHedgedReads customerHedgedReads(CustomerReplicas replicas,
+                                            @Value("${customer.hedging.budget:0.05}") double budget,
+                                            @Value("${customer.hedging.min-delay:1ms}") Duration minDelay,
+                                            @Value("${customer.hedging.initial-delay:10ms}") Duration initialDelay,
+                                            @Value("${customer.hedging.max-threads:64}") int maxThreads) {
+        return new CustomerHedgedReads(replicas, budget, minDelay, initialDelay, maxThreads);
+    }
+
+    @Bean
+    @Primary
+    DataSource dataSource(@Qualifier("customerPrimaryDataSource") DataSource primary,
+                          CustomerReplicas replicas) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy();
+        dataSource.setTargetDataSource(new CustomerRoutingDataSource(primary, replicas));
+        // the defaults of every pool; otherwise they are read from a connection at startup
+        dataSource.setDefaultAutoCommit(true);
+        dataSource.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        dataSource.afterPropertiesSet();
+        return dataSource;
+    }
+
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    CustomerReadYourWritesFilter customerReadYourWritesFilter(
+            @Value("${customer.replicas.read-your-writes:5s}") Duration window) {
+        return new CustomerReadYourWritesFilter(window);
+    }
+}
@@ -0,0 +1,61 @@
+package com.amigoscode.customer;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.AbstractAdvisingBeanPostProcessor;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.StaticMethodMatcherPointcut;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Set;
+
+/**
+ * Marks the read methods of every {@link CustomerDao} bean, so that
+ * {@link CustomerRoutingDataSource} may send their connections to a replica.
+ * Reads are the methods named {@code select*}, {@code exists*} and
+ * {@code stream*}.
+ */
+public class CustomerReplicaReadsPostProcessor extends AbstractAdvisingBeanPostProcessor {
+
+    private static final Set<String> READ_PREFIXES = Set.of("select", "exists", "stream");
+
+    public CustomerReplicaReadsPostProcessor() {
+        this.advisor = new DefaultPointcutAdvisor(
+                new CustomerDaoReadsPointcut(),
+                (MethodInterceptor) invocation -> {
+                    boolean previous = CustomerRoutingDataSource.setReads(true);
+                    try {
+                        return invocation.proceed();
+                    } finally {
+                        CustomerRoutingDataSource.setReads(previous);
+                    }
+                }
+        );
+        // the mark must be set before a transaction takes its connection
+        setBeforeExistingAdvisors(true);
+        // callers may inject a DAO by its class
+        setProxyTargetClass(true);
+    }
+
+    private static class CustomerDaoReadsPointcut extends StaticMethodMatcherPointcut {
+
+        CustomerDaoReadsPointcut() {
+            setClassFilter(CustomerDao.class::isAssignableFrom);
+        }
+
+        @Override
+        public boolean matches(Method method, Class<?> targetClass) {
+            return Modifier.isPublic(method.getModifiers())
+                    && isRead(method.getName());
+        }
+
+        private static boolean isRead(String name) {
+            for (String prefix : READ_PREFIXES) {
+                if (name.startsWith(prefix)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.amigoscode.customer;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Read replicas of the primary and how far each lags behind it. Every
+ * {@code customer.replicas.check-interval} the primary's current WAL
+ * position is compared with the position each replica has replayed; a
+ * replica takes reads while it is in recovery and at most
+ * {@code customer.replicas.max-lag} bytes of WAL behind. Replicas that
+ * cannot be reached or queried take none until the next check succeeds.
+ * <p>
+ * Lag is published as {@code customer.replica.lag}, tagged with the
+ * replica, and is -1 while the replica is unavailable.
+ */
+public class CustomerReplicas implements MeterBinder {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CustomerReplicas.class);
+
+    // seconds a lag query may take before the replica counts as down
+    private static final int CHECK_TIMEOUT_SECONDS = 1;
+
+    private final JdbcTemplate primary;
+    private final List<Replica> replicas;
+    private final long maxLagBytes;
+    private final Duration checkInterval;
+    private final AtomicInteger next = new AtomicInteger();
+    private final ScheduledExecutorService checks = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "customer-replica-check");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public CustomerReplicas(DataSource primary,
+                            List<Replica> replicas,
+                            long maxLagBytes,
+                            Duration checkInterval) {
+        this.primary = new JdbcTemplate(primary);
+        this.primary.setQueryTimeout(CHECK_TIMEOUT_SECONDS);
+        this.replicas = List.copyOf(replicas);
+        this.maxLagBytes = maxLagBytes;
+        this.checkInterval = checkInterval;
+    }
+
+    public static final class Replica {
+
+        private final String name;
+        private final DataSource dataSource;
+        private final JdbcTemplate jdbcTemplate;
+        private volatile boolean available;
+        private volatile long lagBytes = -1;
+
+        public Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+            this.jdbcTemplate = new JdbcTemplate(dataSource);
+            this.jdbcTemplate.setQueryTimeout(CHECK_TIMEOUT_SECONDS);
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public DataSource dataSource() {
+            return dataSource;
+        }
+
+        boolean available() {
+            return available;
+        }
+
+        long lagBytes() {
+            return lagBytes;
+        }
+
+        void update(boolean available, long lagBytes) {
+            this.available = available;
+            this.lagBytes = available ? lagBytes : -1;
+        }
+    }
+
+    List<Replica> all() {
+        return replicas;
+    }
+
+    /**
+     * Picks replicas within the lag limit in turn.
+     *
+     * @return null if none is
+     */
+    Replica choose() {
+        return choose(null);
+    }
+
+    /**
+     * Like {@link #choose()}, but never picks {@code excluded}, a replica
+     * already picked, unless it is null.
+     */
+    Replica choose(Replica excluded) {
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), Math.max(size, 1));
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica != excluded && replica.available && replica.lagBytes <= maxLagBytes) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        checks.scheduleWithFixedDelay(this::check, 0, checkInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    void check() {
+        String primaryLsn;
+        try {
+            // the insert position also covers asynchronous commits not yet written out
+            primaryLsn = primary.queryForObject("SELECT pg_current_wal_insert_lsn()::text", String.class);
+        } catch (RuntimeException e) {
+            // without the primary's position no lag is known
+            LOGGER.warn("could not read the WAL position of the primary", e);
+            replicas.forEach(replica -> replica.update(false, -1));
+            return;
+        }
+        var sql = """
+                SELECT pg_is_in_recovery() AS in_recovery,
+                       greatest(pg_wal_lsn_diff(?::pg_lsn, pg_last_wal_replay_lsn()), 0)::bigint AS lag
+                """;
+        for (Replica replica : replicas) {
+            try {
+                replica.jdbcTemplate.query(sql, rs -> {
+                    if (!rs.getBoolean("in_recovery")) {
+                        LOGGER.warn("replica {} is not in recovery, sending it no reads", replica.name);
+                        replica.update(false, -1);
+                    } else {
+                        replica.update(true, rs.getLong("lag"));
+                    }
+                }, primaryLsn);
+            } catch (RuntimeException e) {
+                if (replica.available) {
+                    LOGGER.warn("replica {} is unavailable", replica.name, e);
+                }
+                replica.update(false, -1);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        checks.shutdownNow();
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof Closeable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (Replica replica : replicas) {
+            Gauge.builder("customer.replica.lag", replica, Replica::lagBytes)
+                    .description("WAL the replica has yet to replay, -1 while it is unavailable")
+                    .baseUnit("bytes")
+                    .tag("replica", replica.name)
+                    .register(registry);
+        }
+    }
+}
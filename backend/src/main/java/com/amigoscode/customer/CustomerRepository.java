@@ -1,10 +1,107 @@
 package com.amigoscode.customer;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
 
 //@Repository
 public interface CustomerRepository extends JpaRepository<Customer, Integer> {
     boolean existsCustomerByEmail(String email);
     boolean existsCustomerById(Integer id);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM Customer c WHERE c.id = :id")
+    int deleteCustomerById(@Param("id") Integer id);
+
+    /**
+     * Sets the non-null fields in one statement, without loading the row.
+     * Updates nothing when no field would change or when another customer
+     * has the email.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Transactional
+    @Query("""
+            UPDATE Customer c
+            SET c.name = COALESCE(:name, c.name),
+                c.email = COALESCE(:email, c.email),
+                c.age = COALESCE(:age, c.age)
+            WHERE c.id = :id
+              AND (c.name <> COALESCE(:name, c.name)
+                OR c.email <> COALESCE(:email, c.email)
+                OR c.age <> COALESCE(:age, c.age))
+              AND NOT EXISTS (
+                  SELECT 1 FROM Customer o
+                  WHERE o.email = :email AND o.id <> c.id
+              )
+            """)
+    int updateCustomer(@Param("id") Integer id,
+                       @Param("name") String name,
+                       @Param("email") String email,
+                       @Param("age") Integer age);
+
+    // not @Modifying: the statement returns a row, which is read as a query result
+    @Transactional
+    @Query(value = """
+            INSERT INTO customer(name, email, age)
+            VALUES (:name, :email, :age)
+            ON CONFLICT (email) DO NOTHING
+            RETURNING id
+            """, nativeQuery = true)
+    Optional<Integer> insertCustomerIfAbsent(@Param("name") String name,
+                                             @Param("email") String email,
+                                             @Param("age") Integer age);
+
+    @Transactional(readOnly = true)
+    @Query(value = """
+            SELECT id, name, email, age
+            FROM customer
+            WHERE id > :id
+            ORDER BY id
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<Customer> selectCustomersAfterId(@Param("id") Integer id,
+                                          @Param("limit") int limit);
+
+    @Transactional(readOnly = true)
+    @Query(value = """
+            SELECT id, name, email, age
+            FROM customer
+            WHERE (name COLLATE "C", id) > (:name, :id)
+            ORDER BY name COLLATE "C", id
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<Customer> selectCustomersAfterName(@Param("name") String name,
+                                            @Param("id") Integer id,
+                                            @Param("limit") int limit);
+
+    @Transactional(readOnly = true)
+    @Query(value = """
+            SELECT id, name, email, age
+            FROM customer
+            WHERE (email COLLATE "C", id) > (:email, :id)
+            ORDER BY email COLLATE "C", id
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<Customer> selectCustomersAfterEmail(@Param("email") String email,
+                                             @Param("id") Integer id,
+                                             @Param("limit") int limit);
+
+    @Transactional(readOnly = true)
+    @Query(value = """
+            SELECT id, name, email, age
+            FROM customer
+            WHERE (age, id) > (:age, :id)
+            ORDER BY age, id
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<Customer> selectCustomersAfterAge(@Param("age") Integer age,
+                                           @Param("id") Integer id,
+                                           @Param("limit") int limit);
 }
@@ -0,0 +1,213 @@
+package com.amigoscode.customer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serialized JSON of customers and list pages, so that repeated reads skip
+ * both the DAO and Jackson. Each body carries a strong ETag of its bytes;
+ * bodies of at least {@code customer.response-cache.gzip-min-size} are also
+ * kept gzipped, under their own ETag, for clients that accept gzip.
+ * <p>
+ * The service evicts a customer when it writes it, and
+ * {@link CustomerChangeListener} when another node does. Pages are cached per
+ * generation, and every write starts a new one, so a page that was being
+ * loaded during a write is never served afterwards. The cache is bounded by
+ * {@code customer.response-cache.maximum-size} bytes, and entries expire
+ * after {@code customer.response-cache.expire-after-write} to bound
+ * staleness from writers that bypass the service.
+ */
+@Component
+public class CustomerResponseCache implements MeterBinder {
+
+    private static final String GZIP = "gzip";
+
+    private final ObjectMapper objectMapper;
+    private final int gzipMinSize;
+    private final Cache<Object, CachedResponse> cache;
+    private final AtomicLong pageGeneration = new AtomicLong();
+    private final CustomerRecentWrites recentWrites;
+
+    public CustomerResponseCache(ObjectMapper objectMapper,
+                                 @Value("${customer.response-cache.maximum-size:64MB}") DataSize maximumSize,
+                                 @Value("${customer.response-cache.expire-after-write:5m}") Duration expireAfterWrite,
+                                 @Value("${customer.response-cache.gzip-min-size:1KB}") DataSize gzipMinSize,
+                                 CustomerRecentWrites recentWrites) {
+        this.objectMapper = objectMapper;
+        this.recentWrites = recentWrites;
+        this.gzipMinSize = (int) gzipMinSize.toBytes();
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maximumSize.toBytes())
+                .weigher((Object key, CachedResponse response) -> response.weight())
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * @param body         serialized JSON
+     * @param gzippedBody  {@code body} gzipped, or null when it is too small
+     *                     to be worth compressing
+     * @param nextCursor   encoded cursor of the following page, for pages
+     */
+    public record CachedResponse(byte[] body, byte[] gzippedBody, String eTag, String nextCursor) {
+
+        String gzipETag() {
+            return eTag.substring(0, eTag.length() - 1) + "-" + GZIP + "\"";
+        }
+
+        int weight() {
+            return body.length + (gzippedBody == null ? 0 : gzippedBody.length);
+        }
+    }
+
+    private record PageKey(long generation, CustomerPageRequest pageRequest) {
+    }
+
+    /**
+     * Returns the cached customer or serializes the one {@code loader}
+     * returns. Concurrent misses on one id share a single load.
+     */
+    public CachedResponse getCustomer(Integer id, Supplier<Customer> loader) {
+        return cache.get(id, key -> toCachedResponse(recentWrites.loadCustomer(id, loader), null));
+    }
+
+    public CachedResponse getPage(CustomerPageRequest pageRequest, Supplier<CustomerPage> loader) {
+        return cache.get(new PageKey(pageGeneration.get(), pageRequest), key -> {
+            CustomerPage page = recentWrites.loadPage(loader);
+            return toCachedResponse(
+                    page.customers(),
+                    page.next() == null ? null : page.next().encode()
+            );
+        });
+    }
+
+    /**
+     * Drops the customer and every cached page.
+     */
+    public void evict(Integer id) {
+        recentWrites.written(id);
+        cache.invalidate(id);
+        evictPages();
+    }
+
+    /**
+     * Drops every cached page, for writes that add customers.
+     */
+    public void evictPages() {
+        recentWrites.written();
+        // old pages can no longer be looked up and age out of the cache
+        pageGeneration.incrementAndGet();
+    }
+
+    public void evictAll() {
+        recentWrites.writtenAll();
+        cache.invalidateAll();
+    }
+
+    public ResponseEntity<byte[]> toResponseEntity(CachedResponse response,
+                                                   HttpHeaders requestHeaders) {
+        return toResponseEntity(response, requestHeaders, new HttpHeaders());
+    }
+
+    /**
+     * Answers with 304 when {@code If-None-Match} names the representation
+     * the client would get, and with the body otherwise, gzipped when the
+     * client accepts it and a gzipped copy exists.
+     *
+     * @param responseHeaders further headers of the response, such as links
+     */
+    public ResponseEntity<byte[]> toResponseEntity(CachedResponse response,
+                                                   HttpHeaders requestHeaders,
+                                                   HttpHeaders responseHeaders) {
+        boolean gzip = response.gzippedBody() != null && acceptsGzip(requestHeaders);
+        String eTag = gzip ? response.gzipETag() : response.eTag();
+        boolean notModified = matches(requestHeaders.getIfNoneMatch(), eTag);
+        ResponseEntity.BodyBuilder builder = ResponseEntity
+                .status(notModified ? HttpStatus.NOT_MODIFIED : HttpStatus.OK)
+                .headers(responseHeaders)
+                .eTag(eTag)
+                .cacheControl(CacheControl.noCache());
+        if (response.gzippedBody() != null) {
+            builder.varyBy(HttpHeaders.ACCEPT_ENCODING);
+        }
+        if (notModified) {
+            return builder.build();
+        }
+        builder.contentType(MediaType.APPLICATION_JSON);
+        if (gzip) {
+            return builder.header(HttpHeaders.CONTENT_ENCODING, GZIP).body(response.gzippedBody());
+        }
+        return builder.body(response.body());
+    }
+
+    private static boolean matches(Iterable<String> ifNoneMatch, String eTag) {
+        for (String candidate : ifNoneMatch) {
+            // If-None-Match uses the weak comparison
+            String tag = candidate.startsWith("W/") ? candidate.substring(2) : candidate;
+            if (tag.equals("*") || tag.equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean acceptsGzip(HttpHeaders requestHeaders) {
+        for (String value : requestHeaders.getValuesAsList(HttpHeaders.ACCEPT_ENCODING)) {
+            String[] parts = value.split(";");
+            if (parts[0].trim().equalsIgnoreCase(GZIP)) {
+                return parts.length == 1 || !parts[1].replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    private CachedResponse toCachedResponse(Object value, String nextCursor) {
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("could not serialize customer response", e);
+        }
+        String eTag = "\"" + DigestUtils.md5DigestAsHex(body) + "\"";
+        byte[] gzippedBody = body.length >= gzipMinSize ? gzip(body) : null;
+        return new CachedResponse(body, gzippedBody, eTag, nextCursor);
+    }
+
+    private static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "customer-responses");
+    }
+}
@@ -0,0 +1,167 @@
+package com.amigoscode.customer;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Hands out replica connections for reads and primary connections for
+ * everything else. A connection is for a read when it is taken inside a
+ * {@link CustomerDao} read method, see {@link CustomerReplicaReadsPostProcessor},
+ * or inside a read-only transaction. Reads still go to the primary while
+ * the thread is pinned to it, see {@link CustomerReadYourWritesFilter},
+ * inside a read-write transaction, or when no replica is within
+ * {@code customer.replicas.max-lag}.
+ * <p>
+ * Transaction managers take their connection when the transaction begins,
+ * before any DAO method runs, so this must sit behind a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}.
+ */
+public class CustomerRoutingDataSource extends AbstractRoutingDataSource {
+
+    static final String PRIMARY = "primary";
+
+    private static final ThreadLocal<Boolean> READS = new ThreadLocal<>();
+    private static final ThreadLocal<Boolean> PINNED_TO_PRIMARY = new ThreadLocal<>();
+    private static final ThreadLocal<String> TARGET = new ThreadLocal<>();
+    private static final ThreadLocal<Consumer<Statement>> STATEMENT_LISTENER = new ThreadLocal<>();
+
+    private final CustomerReplicas replicas;
+
+    public CustomerRoutingDataSource(DataSource primary, CustomerReplicas replicas) {
+        this.replicas = replicas;
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (CustomerReplicas.Replica replica : replicas.all()) {
+            targets.put(replica.name(), replica.dataSource());
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        // every key is known up front
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    /**
+     * Marks connections taken by the current thread as being for reads.
+     *
+     * @return the previous mark, to restore once the read is done
+     */
+    static boolean setReads(boolean reads) {
+        return set(READS, reads);
+    }
+
+    /**
+     * Sends every connection taken by the current thread to the primary.
+     *
+     * @return the previous pin, to restore once the request is done
+     */
+    static boolean setPinnedToPrimary(boolean pinned) {
+        return set(PINNED_TO_PRIMARY, pinned);
+    }
+
+    static boolean isPinnedToPrimary() {
+        return Boolean.TRUE.equals(PINNED_TO_PRIMARY.get());
+    }
+
+    /**
+     * Sends every connection taken by the current thread to one datasource,
+     * whatever the other rules say.
+     *
+     * @param target {@link #PRIMARY}, a replica name, or null to route again
+     * @return the previous target, to restore once done
+     */
+    static String setTarget(String target) {
+        String previous = TARGET.get();
+        if (target == null) {
+            TARGET.remove();
+        } else {
+            TARGET.set(target);
+        }
+        return previous;
+    }
+
+    /**
+     * Passes every statement created on connections the current thread
+     * takes to {@code listener}, so that another thread can cancel them.
+     */
+    static void setStatementListener(Consumer<Statement> listener) {
+        if (listener == null) {
+            STATEMENT_LISTENER.remove();
+        } else {
+            STATEMENT_LISTENER.set(listener);
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return withStatementListener(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return withStatementListener(super.getConnection(username, password));
+    }
+
+    private static Connection withStatementListener(Connection connection) {
+        Consumer<Statement> listener = STATEMENT_LISTENER.get();
+        if (listener == null) {
+            return connection;
+        }
+        return (Connection) Proxy.newProxyInstance(
+                CustomerRoutingDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    Object result;
+                    try {
+                        result = method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    }
+                    if (result instanceof Statement statement) {
+                        listener.accept(statement);
+                    }
+                    return result;
+                });
+    }
+
+    private static boolean set(ThreadLocal<Boolean> flag, boolean value) {
+        boolean previous = Boolean.TRUE.equals(flag.get());
+        if (value) {
+            flag.set(true);
+        } else {
+            flag.remove();
+        }
+        return previous;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        String target = TARGET.get();
+        if (target != null) {
+            return target;
+        }
+        boolean readOnlyTransaction = TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        if (TransactionSynchronizationManager.isActualTransactionActive() && !readOnlyTransaction) {
+            // the transaction may write later on the same connection
+            return PRIMARY;
+        }
+        if (!readOnlyTransaction && !Boolean.TRUE.equals(READS.get())) {
+            return PRIMARY;
+        }
+        if (isPinnedToPrimary()) {
+            return PRIMARY;
+        }
+        CustomerReplicas.Replica replica = replicas.choose();
+        return replica == null ? PRIMARY : replica.name();
+    }
+}
@@ -0,0 +1,12 @@
+package com.amigoscode.customer;
+
+import java.io.IOException;
+
+/**
+ * Receives customer columns one row at a time, without building a
+ * {@link Customer} for each row.
+ */
+@FunctionalInterface
+public interface CustomerRowCallback {
+    void processRow(int id, String name, String email, int age) throws IOException;
+}
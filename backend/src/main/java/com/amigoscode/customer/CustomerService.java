@@ -3,36 +3,72 @@ import com.amigoscode.exception.DuplicateResourceException;
 import com.amigoscode.exception.RequestValidationException;
 import com.amigoscode.exception.ResourceNotFoundException;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import java.util.List;
 
 @Service
 public class CustomerService {
     private final CustomerDao customerDao;
-    public CustomerService(@Qualifier("jdbc") CustomerDao customerDao) {
+    private final CustomerCache customerCache;
+    private final CustomerResponseCache customerResponseCache;
+    private final CustomerEmailFilter customerEmailFilter;
+    public CustomerService(@Qualifier("jdbc") CustomerDao customerDao,
+                           CustomerCache customerCache,
+                           CustomerResponseCache customerResponseCache,
+                           CustomerEmailFilter customerEmailFilter) {
         this.customerDao = customerDao;
+        this.customerCache = customerCache;
+        this.customerResponseCache = customerResponseCache;
+        this.customerEmailFilter = customerEmailFilter;
     }
 
     public List<Customer> getAllCustomers() {
         return customerDao.selectAllCustomers();
     }
+    public CustomerPage getCustomers(CustomerPageRequest pageRequest) {
+        // fetch one extra row to find out whether there is a next page
+        List<Customer> customers = customerDao.selectCustomers(
+                pageRequest.withLimit(pageRequest.limit() + 1)
+        );
+        return CustomerPage.of(customers, pageRequest);
+    }
+    public void streamCustomers(CustomerRowCallback callback) {
+        customerDao.streamCustomers(callback);
+    }
     public Customer getCustomer(Integer id) {
-        return customerDao.selectCustomerById(id)
+        return customerCache.get(id, customerDao::selectCustomerById)
                 .orElseThrow(() -> new ResourceNotFoundException(
                         "customer with id [%s] not found".formatted(id)
                 ));
     }
     public void addCustomer(CustomerRegistrationRequest customerRegistrationRequest) {
-        // check if email exists
-        if (customerDao.existsCustomerWithEmail(customerRegistrationRequest.email())) {
-            throw new DuplicateResourceException("email already taken");
-        }
         Customer customer = new Customer(
                 customerRegistrationRequest.name(),
                 customerRegistrationRequest.email(),
                 customerRegistrationRequest.age()
         );
-        customerDao.insertCustomer(customer);
+        // the email check and the insert are a single statement
+        boolean inserted;
+        try {
+            inserted = customerDao.insertCustomerIfAbsent(customer);
+        } catch (DataIntegrityViolationException e) {
+            // such as a missing name or age
+            throw new RequestValidationException("invalid customer data");
+        }
+        if (!inserted) {
+            throw new DuplicateResourceException("email already taken");
+        }
+        customerResponseCache.evictPages();
+        customerEmailFilter.emailAdded(customer.getEmail());
+    }
+
+    public boolean isEmailAvailable(String email) {
+        // a definite miss in the filter saves the database probe
+        if (!customerEmailFilter.mightContain(email)) {
+            return true;
+        }
+        return !customerDao.existsCustomerWithEmail(email);
     }
 
     public void deleteCustomerById(Integer customerId) {
@@ -40,39 +76,55 @@ public class CustomerService {
             throw new ResourceNotFoundException("customer with id [%s] not found".formatted(customerId));
         }
         customerDao.deleteCustomerById(customerId);
+        customerCache.evict(customerId);
+        customerResponseCache.evict(customerId);
+        customerEmailFilter.emailRemoved(customerId);
     }
     public void updateCustomer(Integer customerId,
                                CustomerUpdateRequest updateRequest) {
-        // TODO: for JPA use .getReferenceById(customerId) as it does does not bring object into memory and instead a reference
-        Customer customer = getCustomer(customerId);
-
-        boolean changes = false;
-
-        if (updateRequest.name() != null && !updateRequest.name().equals(customer.getName())) {
-            customer.setName(updateRequest.name());
-            changes = true;
-        }
+        // only the fields present in the request are sent to the dao
+        Customer update = new Customer(
+                customerId,
+                updateRequest.name(),
+                updateRequest.email(),
+                updateRequest.age()
+        );
 
-        if (updateRequest.age() != null && !updateRequest.age().equals(customer.getAge())) {
-            customer.setAge(updateRequest.age());
-            changes = true;
+        CustomerUpdateResult result;
+        try {
+            result = customerDao.updateCustomer(update);
+        } catch (DataIntegrityViolationException e) {
+            // a taken email is reported as DUPLICATE_EMAIL, anything else is bad input
+            throw new RequestValidationException("invalid customer data");
         }
 
-        if (updateRequest.email() != null && !updateRequest.email().equals(customer.getEmail())) {
-            if (customerDao.existsCustomerWithEmail(updateRequest.email())) {
-                throw new DuplicateResourceException(
-                        "email already taken"
+        switch (result.status()) {
+            case NOT_FOUND -> {
+                customerCache.evict(customerId);
+                customerResponseCache.evict(customerId);
+                throw new ResourceNotFoundException(
+                        "customer with id [%s] not found".formatted(customerId)
                 );
             }
-            customer.setEmail(updateRequest.email());
-            changes = true;
-        }
-
-        if (!changes) {
-            throw new RequestValidationException("no data changes found");
+            case DUPLICATE_EMAIL -> throw new DuplicateResourceException(
+                    "email already taken"
+            );
+            case NO_CHANGES -> throw new RequestValidationException(
+                    "no data changes found"
+            );
+            // evict rather than put: two racing updates could otherwise
+            // leave the older row cached
+            case UPDATED -> {
+                customerCache.evict(customerId);
+                customerResponseCache.evict(customerId);
+                if (updateRequest.email() != null) {
+                    // the old email may have been replaced, which the filter
+                    // can only forget on its next rebuild
+                    customerEmailFilter.emailAdded(updateRequest.email());
+                    customerEmailFilter.emailRemoved();
+                }
+            }
         }
-
-        customerDao.updateCustomer(customer);
     }
 
 }
@@ -0,0 +1,84 @@
+package com.amigoscode.customer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Consistent-hash ring that maps customer ids to shards. Every shard is
+ * placed on the ring at {@code virtualNodes} points derived from its
+ * name, and an id belongs to the first point at or after its hash. Adding
+ * a shard only moves the ids that now fall on its points, about
+ * 1 / (shards + 1) of them, and all of them move to the new shard.
+ * <p>
+ * Points are derived from the name alone, so every node builds the same
+ * ring from the same names.
+ */
+public final class CustomerShardRing {
+
+    private final List<String> shards;
+    private final int virtualNodes;
+    private final NavigableMap<Long, String> points = new TreeMap<>();
+
+    public CustomerShardRing(Collection<String> shards, int virtualNodes) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("a ring needs at least one shard");
+        }
+        this.shards = List.copyOf(shards);
+        this.virtualNodes = virtualNodes;
+        for (String shard : this.shards) {
+            for (int i = 0; i < virtualNodes; i++) {
+                // on the rare collision the name that sorts first keeps the point
+                points.merge(point(shard + "#" + i), shard,
+                        (existing, added) -> existing.compareTo(added) <= 0 ? existing : added);
+            }
+        }
+    }
+
+    public List<String> shards() {
+        return shards;
+    }
+
+    public boolean contains(String shard) {
+        return shards.contains(shard);
+    }
+
+    public CustomerShardRing with(String shard) {
+        List<String> added = new ArrayList<>(shards);
+        added.add(shard);
+        return new CustomerShardRing(added, virtualNodes);
+    }
+
+    public String owner(int id) {
+        Map.Entry<Long, String> entry = points.ceilingEntry(hash(id));
+        return entry != null ? entry.getValue() : points.firstEntry().getValue();
+    }
+
+    /**
+     * SplitMix64's finalizer; consecutive ids land far apart.
+     */
+    static long hash(long id) {
+        long z = id + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static long point(String name) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5")
+                    .digest(name.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(digest).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            // every JVM ships MD5
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,779 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.exception.RequestValidationException;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PreDestroy;
+import org.flywaydb.core.Flyway;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Spreads customers over the Postgres instances listed in
+ * {@code customer.shards.urls}, which share the main datasource's
+ * credentials and are named shard-1, shard-2 and so on in that order.
+ * <p>
+ * A customer lives on the shard that owns its id on a
+ * {@link CustomerShardRing}. Ids and unique emails come from a directory
+ * in the main database, see V6: an email is claimed there, which hands out
+ * the id, before the row is written to its shard, and released once the
+ * row is gone, as {@link CustomerInMemoryDataAccessService} does with its
+ * email map. Lists are read from every shard in parallel and merged; they
+ * are not a snapshot across shards.
+ * <p>
+ * {@link #addShard(String)} puts a configured shard that is not on the
+ * ring yet onto it while the store keeps serving. The shard joins first:
+ * new customers go to their owner on the ring with it, and reads by id try
+ * that owner before the one on the ring without it. The rows it now owns
+ * are then moved to it in batches, and it becomes a full member. Moves and
+ * every call by id lock the ids involved, so no call sees a row half
+ * moved. The ring is kept in the directory, so a restart resumes a
+ * rebalance that did not finish. Other nodes only pick up a new ring when
+ * they restart, so shards should be added while one node serves writes.
+ */
+@Repository("sharded")
+@ConditionalOnProperty("customer.shards.urls")
+public class CustomerShardedDataAccessService implements CustomerDao {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CustomerShardedDataAccessService.class);
+
+    // rows moved per locked batch while a shard joins
+    private static final int MOVE_BATCH_SIZE = 1_000;
+    private static final int LOCK_STRIPES = 256;
+
+    private final JdbcTemplate directory;
+    private final Map<String, Shard> shards = new LinkedHashMap<>();
+    private final ReadWriteLock[] stripes = new ReadWriteLock[LOCK_STRIPES];
+    private final ExecutorService fanOut;
+    private final AtomicLong moved = new AtomicLong();
+    private volatile Topology topology;
+    private volatile CompletableFuture<Void> rebalance = CompletableFuture.completedFuture(null);
+
+    @Autowired
+    public CustomerShardedDataAccessService(JdbcTemplate jdbcTemplate,
+                                            DataSourceProperties properties,
+                                            @Value("${customer.shards.urls}") List<String> urls,
+                                            @Value("${customer.shards.virtual-nodes:128}") int virtualNodes) {
+        this(jdbcTemplate, dataSources(properties, urls), virtualNodes);
+    }
+
+    CustomerShardedDataAccessService(JdbcTemplate directory,
+                                     Map<String, DataSource> dataSources,
+                                     int virtualNodes) {
+        this.directory = directory;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            stripes[i] = new ReentrantReadWriteLock();
+        }
+        dataSources.forEach((name, dataSource) -> {
+            Flyway.configure().dataSource(dataSource).load().migrate();
+            shards.put(name, new Shard(name, dataSource));
+        });
+        AtomicInteger threads = new AtomicInteger();
+        this.fanOut = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "customer-shard-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Topology loaded = loadTopology(virtualNodes);
+        this.topology = loaded;
+        LOGGER.info("customers are sharded over {}", loaded.ring.shards());
+        if (loaded.joining != null) {
+            LOGGER.info("resuming the move of customers to shard {}", loaded.joiningShard());
+            // no call is in flight yet, so moving can start right away
+            rebalance = CompletableFuture.runAsync(() -> moveRows(loaded), fanOut);
+        }
+    }
+
+    private static Map<String, DataSource> dataSources(DataSourceProperties properties, List<String> urls) {
+        Map<String, DataSource> dataSources = new LinkedHashMap<>();
+        for (int i = 0; i < urls.size(); i++) {
+            String name = "shard-" + (i + 1);
+            HikariDataSource dataSource = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(urls.get(i))
+                    .username(properties.determineUsername())
+                    .password(properties.determinePassword())
+                    .build();
+            dataSource.setPoolName("customer-" + name);
+            dataSources.put(name, dataSource);
+        }
+        return dataSources;
+    }
+
+    /**
+     * The ring as kept in the directory; the configured shards on first start.
+     */
+    private Topology loadTopology(int virtualNodes) {
+        var sql = """
+                INSERT INTO customer_shard_ring(name)
+                SELECT name
+                FROM unnest(?::text[]) AS configured(name)
+                WHERE NOT EXISTS (SELECT 1 FROM customer_shard_ring)
+                """;
+        directory.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setArray(1, connection.createArrayOf("text", shards.keySet().toArray()));
+            return statement;
+        });
+        List<String> members = new ArrayList<>();
+        List<String> joining = new ArrayList<>();
+        directory.query("SELECT name, joining FROM customer_shard_ring ORDER BY name", (RowCallbackHandler) rs -> {
+            String name = rs.getString("name");
+            if (!shards.containsKey(name)) {
+                throw new IllegalStateException("shard [%s] is on the ring but not configured".formatted(name));
+            }
+            (rs.getBoolean("joining") ? joining : members).add(name);
+        });
+        CustomerShardRing ring = new CustomerShardRing(members, virtualNodes);
+        return new Topology(ring, joining.isEmpty() ? null : ring.with(joining.get(0)));
+    }
+
+    /**
+     * The ring, and the ring with the joining shard while one joins.
+     */
+    private record Topology(CustomerShardRing ring, CustomerShardRing joining) {
+
+        String owner(int id) {
+            return (joining != null ? joining : ring).owner(id);
+        }
+
+        /**
+         * @return the owner before the shard joined if that differs, else null
+         */
+        String previousOwner(int id) {
+            if (joining == null) {
+                return null;
+            }
+            String previous = ring.owner(id);
+            return previous.equals(joining.owner(id)) ? null : previous;
+        }
+
+        Collection<String> shards() {
+            return (joining != null ? joining : ring).shards();
+        }
+
+        String joiningShard() {
+            return joining == null ? null : joining.shards().get(joining.shards().size() - 1);
+        }
+    }
+
+    /**
+     * A shard's pool, and a {@link CustomerJDBCDataAccessService} on it for
+     * everything that does not differ from a single database.
+     */
+    private static final class Shard {
+
+        final String name;
+        final DataSource dataSource;
+        final JdbcTemplate jdbcTemplate;
+        final CustomerJDBCDataAccessService dao;
+        final TransactionTemplate readOnlyTransaction;
+
+        Shard(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+            DataSource withDeadlines = new CustomerDeadlineDataSource(dataSource);
+            this.jdbcTemplate = new JdbcTemplate(withDeadlines);
+            this.dao = new CustomerJDBCDataAccessService(jdbcTemplate, new CustomerRowMapper());
+            this.readOnlyTransaction = new TransactionTemplate(new DataSourceTransactionManager(withDeadlines));
+            this.readOnlyTransaction.setReadOnly(true);
+        }
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        Topology topology = this.topology;
+        Map<String, List<Customer>> perShard = fanOut(topology.shards(), shard -> shard.dao.selectAllCustomers());
+        List<Customer> customers = new ArrayList<>(distinct(topology, perShard).values());
+        customers.sort(CustomerSort.ID.comparator());
+        return customers;
+    }
+
+    /**
+     * Every shard returns its first page after the cursor; the first page
+     * overall is among them.
+     */
+    @Override
+    public List<Customer> selectCustomers(CustomerPageRequest pageRequest) {
+        Topology topology = this.topology;
+        Map<String, List<Customer>> perShard = fanOut(topology.shards(), shard -> shard.dao.selectCustomers(pageRequest));
+        return distinct(topology, perShard).values().stream()
+                .sorted(pageRequest.sort().comparator())
+                .limit(pageRequest.limit())
+                .toList();
+    }
+
+    /**
+     * Customers of a shard that is joining may be on two shards for a
+     * moment; the copy on the owner wins.
+     */
+    private static Map<Integer, Customer> distinct(Topology topology, Map<String, List<Customer>> perShard) {
+        Map<Integer, Customer> customers = new HashMap<>();
+        perShard.forEach((shard, list) -> {
+            for (Customer customer : list) {
+                if (topology.joining == null || shard.equals(topology.owner(customer.getId()))) {
+                    customers.put(customer.getId(), customer);
+                } else {
+                    customers.putIfAbsent(customer.getId(), customer);
+                }
+            }
+        });
+        return customers;
+    }
+
+    /**
+     * Streams one shard after the other, so customers come in id order per
+     * shard only. A shard that joins meanwhile is streamed last, and a row
+     * met twice because it moved in between is passed on once.
+     */
+    @Override
+    public void streamCustomers(CustomerRowCallback callback) {
+        Set<String> streamed = new HashSet<>();
+        // ids come from one sequence, so a bit per id stays small
+        BitSet seen = new BitSet();
+        while (true) {
+            Shard shard = topology.shards().stream()
+                    .filter(name -> !streamed.contains(name))
+                    .findFirst()
+                    .map(this::shard)
+                    .orElse(null);
+            if (shard == null) {
+                return;
+            }
+            shard.readOnlyTransaction.executeWithoutResult(status -> shard.dao.streamCustomers(
+                    (id, name, email, age) -> {
+                        if (!seen.get(id)) {
+                            seen.set(id);
+                            callback.processRow(id, name, email, age);
+                        }
+                    }));
+            streamed.add(shard.name);
+        }
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer id) {
+        return withIds(List.of(id), false, topology -> {
+            Optional<Customer> customer = shard(topology.owner(id)).dao.selectCustomerById(id);
+            String previous = topology.previousOwner(id);
+            if (customer.isEmpty() && previous != null) {
+                customer = shard(previous).dao.selectCustomerById(id);
+            }
+            return customer;
+        });
+    }
+
+    @Override
+    public void insertCustomer(Customer customer) {
+        if (!insertCustomerIfAbsent(customer)) {
+            throw new DuplicateKeyException(
+                    "email [%s] already taken".formatted(customer.getEmail())
+            );
+        }
+    }
+
+    @Override
+    public boolean insertCustomerIfAbsent(Customer customer) {
+        var sql = """
+                INSERT INTO customer_shard_directory(email)
+                VALUES (?)
+                ON CONFLICT (email) DO NOTHING
+                RETURNING id
+                """;
+        List<Integer> ids = directory.queryForList(sql, Integer.class, customer.getEmail());
+        if (ids.isEmpty()) {
+            return false;
+        }
+        customer.setId(ids.get(0));
+        try {
+            insertIntoShards(List.of(customer));
+        } catch (RuntimeException e) {
+            releaseEmails(List.of(customer));
+            customer.setId(null);
+            throw e;
+        }
+        return true;
+    }
+
+    @Override
+    public List<Boolean> insertCustomersIfAbsent(List<Customer> customers) {
+        var sql = """
+                INSERT INTO customer_shard_directory(email)
+                SELECT email
+                FROM unnest(?::text[]) WITH ORDINALITY AS batch(email, position)
+                ORDER BY position
+                ON CONFLICT (email) DO NOTHING
+                RETURNING id, email
+                """;
+        Map<String, Integer> ids = new HashMap<>();
+        directory.query(
+                connection -> {
+                    PreparedStatement statement = connection.prepareStatement(sql);
+                    statement.setArray(1, connection.createArrayOf("text",
+                            customers.stream().map(Customer::getEmail).toArray()));
+                    return statement;
+                },
+                (RowCallbackHandler) rs -> ids.put(rs.getString("email"), rs.getInt("id"))
+        );
+
+        List<Boolean> inserted = new ArrayList<>(customers.size());
+        List<Customer> claimed = new ArrayList<>();
+        for (Customer customer : customers) {
+            // remove so that a repeated email in the same batch counts as a duplicate
+            Integer id = ids.remove(customer.getEmail());
+            if (id != null) {
+                customer.setId(id);
+                claimed.add(customer);
+            }
+            inserted.add(id != null);
+        }
+        if (claimed.isEmpty()) {
+            return inserted;
+        }
+        try {
+            insertIntoShards(claimed);
+        } catch (RuntimeException e) {
+            releaseEmails(claimed);
+            claimed.forEach(customer -> customer.setId(null));
+            throw e;
+        }
+        return inserted;
+    }
+
+    private void insertIntoShards(List<Customer> customers) {
+        List<Integer> ids = customers.stream().map(Customer::getId).toList();
+        withIds(ids, false, topology -> {
+            Map<String, List<Customer>> perShard = new HashMap<>();
+            for (Customer customer : customers) {
+                perShard.computeIfAbsent(topology.owner(customer.getId()), shard -> new ArrayList<>())
+                        .add(customer);
+            }
+            return fanOut(perShard.keySet(), shard -> {
+                insertRows(shard.jdbcTemplate, perShard.get(shard.name));
+                return null;
+            });
+        });
+    }
+
+    /**
+     * Writes rows with their ids. A row already there, left by a move that
+     * failed half way, is kept.
+     */
+    private static void insertRows(JdbcTemplate jdbcTemplate, List<Customer> customers) {
+        var sql = """
+                INSERT INTO customer(id, name, email, age)
+                SELECT id, name, email, age
+                FROM unnest(?::int[], ?::text[], ?::text[], ?::int[]) AS batch(id, name, email, age)
+                ON CONFLICT DO NOTHING
+                """;
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setArray(1, connection.createArrayOf("int4",
+                    customers.stream().map(Customer::getId).toArray()));
+            statement.setArray(2, connection.createArrayOf("text",
+                    customers.stream().map(Customer::getName).toArray()));
+            statement.setArray(3, connection.createArrayOf("text",
+                    customers.stream().map(Customer::getEmail).toArray()));
+            statement.setArray(4, connection.createArrayOf("int4",
+                    customers.stream().map(Customer::getAge).toArray()));
+            return statement;
+        });
+    }
+
+    private void releaseEmails(List<Customer> customers) {
+        var sql = """
+                DELETE FROM customer_shard_directory directory
+                USING unnest(?::text[], ?::int[]) AS released(email, id)
+                WHERE directory.email = released.email
+                  AND directory.id = released.id
+                """;
+        directory.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setArray(1, connection.createArrayOf("text",
+                    customers.stream().map(Customer::getEmail).toArray()));
+            statement.setArray(2, connection.createArrayOf("int4",
+                    customers.stream().map(Customer::getId).toArray()));
+            return statement;
+        });
+    }
+
+    @Override
+    public boolean existsCustomerWithEmail(String email) {
+        var sql = """
+                SELECT EXISTS (
+                    SELECT 1
+                    FROM customer_shard_directory
+                    WHERE email = ?
+                )
+                """;
+        return Boolean.TRUE.equals(directory.queryForObject(sql, Boolean.class, email));
+    }
+
+    @Override
+    public boolean existsCustomerById(Integer id) {
+        return withIds(List.of(id), false, topology -> {
+            String previous = topology.previousOwner(id);
+            return shard(topology.owner(id)).dao.existsCustomerById(id)
+                    || previous != null && shard(previous).dao.existsCustomerById(id);
+        });
+    }
+
+    @Override
+    public void deleteCustomerById(Integer id) {
+        deleteCustomersById(List.of(id));
+    }
+
+    @Override
+    public List<Boolean> deleteCustomersById(List<Integer> ids) {
+        List<Customer> deleted = withIds(ids, false, topology -> {
+            Map<String, List<Integer>> perShard = new HashMap<>();
+            for (Integer id : ids) {
+                perShard.computeIfAbsent(topology.owner(id), shard -> new ArrayList<>()).add(id);
+                String previous = topology.previousOwner(id);
+                if (previous != null) {
+                    perShard.computeIfAbsent(previous, shard -> new ArrayList<>()).add(id);
+                }
+            }
+            return fanOut(perShard.keySet(), shard -> deleteRows(shard, perShard.get(shard.name)))
+                    .values().stream()
+                    .flatMap(List::stream)
+                    .toList();
+        });
+        if (!deleted.isEmpty()) {
+            releaseEmails(deleted);
+        }
+        Set<Integer> deletedIds = new HashSet<>();
+        deleted.forEach(customer -> deletedIds.add(customer.getId()));
+        return ids.stream().map(deletedIds::remove).toList();
+    }
+
+    private static List<Customer> deleteRows(Shard shard, List<Integer> ids) {
+        var sql = """
+                DELETE
+                FROM customer
+                WHERE id = ANY (?)
+                RETURNING id, name, email, age
+                """;
+        return shard.jdbcTemplate.query(
+                connection -> {
+                    PreparedStatement statement = connection.prepareStatement(sql);
+                    statement.setArray(1, connection.createArrayOf("int4", ids.toArray()));
+                    return statement;
+                },
+                new CustomerRowMapper()
+        );
+    }
+
+    /**
+     * A new email is claimed in the directory before the row changes, and
+     * whichever of the two emails the row no longer has is released after.
+     */
+    @Override
+    public CustomerUpdateResult updateCustomer(Customer update) {
+        Integer id = update.getId();
+        return withIds(List.of(id), false, topology -> {
+            Shard shard = shard(topology.owner(id));
+            String previous = topology.previousOwner(id);
+            if (previous != null && !shard.dao.existsCustomerById(id)) {
+                shard = shard(previous);
+            }
+            if (update.getEmail() == null) {
+                return shard.dao.updateCustomer(update);
+            }
+
+            Optional<Customer> current = shard.dao.selectCustomerById(id);
+            if (current.isEmpty()) {
+                return CustomerUpdateResult.notFound();
+            }
+            String currentEmail = current.get().getEmail();
+            if (currentEmail.equals(update.getEmail())) {
+                return shard.dao.updateCustomer(update);
+            }
+            int claimed = directory.update("""
+                    INSERT INTO customer_shard_directory(email, id)
+                    VALUES (?, ?)
+                    ON CONFLICT (email) DO NOTHING
+                    """, update.getEmail(), id);
+            if (claimed == 0) {
+                return CustomerUpdateResult.duplicateEmail();
+            }
+            CustomerUpdateResult result;
+            try {
+                result = shard.dao.updateCustomer(update);
+            } catch (RuntimeException e) {
+                releaseEmails(List.of(new Customer(id, null, update.getEmail(), null)));
+                throw e;
+            }
+            // the email differs from the stored one, so any update changed it
+            boolean emailChanged = result.status() == CustomerUpdateResult.Status.UPDATED;
+            releaseEmails(List.of(new Customer(id, null, emailChanged ? currentEmail : update.getEmail(), null)));
+            return result;
+        });
+    }
+
+    /**
+     * Updates that keep the email are sent as one batch per shard; the rest
+     * go through {@link #updateCustomer(Customer)}, as do all of them while
+     * a shard joins.
+     */
+    @Override
+    public List<CustomerUpdateResult> updateCustomers(List<Customer> updates) {
+        CustomerUpdateResult[] results = new CustomerUpdateResult[updates.size()];
+        Map<String, List<Integer>> batched = new HashMap<>();
+        Topology topology = this.topology;
+        for (int i = 0; i < updates.size(); i++) {
+            Customer update = updates.get(i);
+            if (update.getEmail() == null && topology.joining == null) {
+                batched.computeIfAbsent(topology.owner(update.getId()), shard -> new ArrayList<>()).add(i);
+            } else {
+                results[i] = updateCustomer(update);
+            }
+        }
+        if (!batched.isEmpty()) {
+            List<Integer> ids = batched.values().stream()
+                    .flatMap(List::stream)
+                    .map(i -> updates.get(i).getId())
+                    .toList();
+            boolean batchedAll = withIds(ids, false, current -> {
+                if (current.joining != null) {
+                    // a shard started joining; the owners above may be stale
+                    return false;
+                }
+                fanOut(batched.keySet(), shard -> {
+                    List<Integer> positions = batched.get(shard.name);
+                    List<CustomerUpdateResult> shardResults = shard.dao.updateCustomers(
+                            positions.stream().map(updates::get).toList());
+                    for (int j = 0; j < positions.size(); j++) {
+                        results[positions.get(j)] = shardResults.get(j);
+                    }
+                    return null;
+                });
+                return true;
+            });
+            if (!batchedAll) {
+                batched.values().forEach(positions -> positions.forEach(
+                        i -> results[i] = updateCustomer(updates.get(i))));
+            }
+        }
+        return List.of(results);
+    }
+
+    /**
+     * Starts moving rows onto {@code name}, a configured shard that is not
+     * on the ring, or resumes a move that failed.
+     *
+     * @return completes once the shard is a full member of the ring
+     */
+    public synchronized CompletableFuture<Void> addShard(String name) {
+        if (!shards.containsKey(name)) {
+            throw new RequestValidationException("shard [%s] is not configured".formatted(name));
+        }
+        Topology current = topology;
+        if (current.ring.contains(name)) {
+            throw new RequestValidationException("shard [%s] is already on the ring".formatted(name));
+        }
+        if (!rebalance.isDone()) {
+            throw new RequestValidationException(
+                    "shard [%s] is still joining".formatted(current.joiningShard()));
+        }
+        if (current.joining != null && !name.equals(current.joiningShard())) {
+            throw new RequestValidationException(
+                    "shard [%s] has yet to finish joining".formatted(current.joiningShard()));
+        }
+
+        Topology joining = new Topology(current.ring, current.ring.with(name));
+        directory.update("""
+                INSERT INTO customer_shard_ring(name, joining)
+                VALUES (?, true)
+                ON CONFLICT (name) DO NOTHING
+                """, name);
+        topology = joining;
+        awaitCallsOnOldRing();
+        LOGGER.info("shard {} is joining the ring {}", name, current.ring.shards());
+        rebalance = CompletableFuture.runAsync(() -> moveRows(joining), fanOut);
+        return rebalance;
+    }
+
+    private void moveRows(Topology joining) {
+        String target = joining.joiningShard();
+        try {
+            for (String source : joining.ring.shards()) {
+                moveRows(shard(source), shard(target), joining);
+            }
+            directory.update("UPDATE customer_shard_ring SET joining = false WHERE name = ?", target);
+            topology = new Topology(joining.joining, null);
+            LOGGER.info("shard {} joined, {} customers moved", target, moved.get());
+        } catch (RuntimeException e) {
+            LOGGER.error("moving customers to shard {} failed, add it again to resume", target, e);
+            throw e;
+        }
+    }
+
+    private void moveRows(Shard source, Shard target, Topology joining) {
+        var sql = """
+                SELECT id
+                FROM customer
+                WHERE id > ?
+                ORDER BY id
+                LIMIT ?
+                """;
+        int after = Integer.MIN_VALUE;
+        while (true) {
+            List<Integer> ids = source.jdbcTemplate.queryForList(sql, Integer.class, after, MOVE_BATCH_SIZE);
+            if (ids.isEmpty()) {
+                return;
+            }
+            after = ids.get(ids.size() - 1);
+            List<Integer> moving = ids.stream()
+                    .filter(id -> target.name.equals(joining.owner(id)))
+                    .toList();
+            if (moving.isEmpty()) {
+                continue;
+            }
+            withIds(moving, true, topology -> {
+                // read, copied and deleted under the lock, so no write in between is lost
+                List<Customer> rows = selectRows(source, moving);
+                insertRows(target.jdbcTemplate, rows);
+                deleteRows(source, moving);
+                moved.addAndGet(rows.size());
+                return null;
+            });
+        }
+    }
+
+    private static List<Customer> selectRows(Shard shard, List<Integer> ids) {
+        var sql = """
+                SELECT id, name, email, age
+                FROM customer
+                WHERE id = ANY (?)
+                """;
+        return shard.jdbcTemplate.query(
+                connection -> {
+                    PreparedStatement statement = connection.prepareStatement(sql);
+                    statement.setArray(1, connection.createArrayOf("int4", ids.toArray()));
+                    return statement;
+                },
+                new CustomerRowMapper()
+        );
+    }
+
+    public Status status() {
+        Topology topology = this.topology;
+        return new Status(topology.ring.shards(), topology.joiningShard(), moved.get());
+    }
+
+    /**
+     * @param joining the shard rows are being moved to, or null
+     * @param moved   customers moved to a joining shard since startup
+     */
+    public record Status(List<String> ring, String joining, long moved) {
+    }
+
+    private Shard shard(String name) {
+        return shards.get(name);
+    }
+
+    private <T> Map<String, T> fanOut(Collection<String> names, Function<Shard, T> call) {
+        if (names.size() == 1) {
+            String name = names.iterator().next();
+            return Collections.singletonMap(name, call.apply(shard(name)));
+        }
+        Map<String, CompletableFuture<T>> futures = new LinkedHashMap<>();
+        for (String name : names) {
+            Shard shard = shard(name);
+            futures.put(name, CompletableFuture.supplyAsync(
+                    CustomerDeadline.propagate(() -> call.apply(shard)), fanOut));
+        }
+        Map<String, T> results = new LinkedHashMap<>();
+        try {
+            futures.forEach((name, future) -> results.put(name, future.join()));
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        return results;
+    }
+
+    /**
+     * Runs {@code call} holding the stripes of {@code ids}, taken in stripe
+     * order so that two callers never wait on each other. Calls share them;
+     * moves take them exclusively. The topology is read under the locks.
+     */
+    private <T> T withIds(Collection<Integer> ids, boolean exclusive, Function<Topology, T> call) {
+        Set<Integer> indexes = new TreeSet<>();
+        for (Integer id : ids) {
+            indexes.add(Math.floorMod(CustomerShardRing.hash(id), LOCK_STRIPES));
+        }
+        List<Lock> locks = new ArrayList<>(indexes.size());
+        try {
+            for (int index : indexes) {
+                Lock lock = exclusive ? stripes[index].writeLock() : stripes[index].readLock();
+                lock.lock();
+                locks.add(lock);
+            }
+            return call.apply(topology);
+        } finally {
+            locks.forEach(Lock::unlock);
+        }
+    }
+
+    /**
+     * Calls read the topology under their stripes, so once every stripe
+     * was free for a moment no call is left that uses the old ring.
+     */
+    private void awaitCallsOnOldRing() {
+        for (ReadWriteLock stripe : stripes) {
+            stripe.writeLock().lock();
+            stripe.writeLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        fanOut.shutdownNow();
+        for (Shard shard : shards.values()) {
+            if (shard.dataSource instanceof Closeable closeable) {
+                closeable.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.amigoscode.customer;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@code /actuator/customershards} shows the ring of the sharded store; a
+ * POST to {@code /actuator/customershards/{name}} adds a configured shard
+ * to it, see {@link CustomerShardedDataAccessService#addShard(String)}.
+ * Rows move in the background; poll the ring until the shard no longer
+ * shows as joining.
+ * <p>
+ * Not exposed over HTTP by default. Expose it only on a separate
+ * {@code management.server.port} that the API's clients cannot reach, as
+ * anyone who can POST to it can start a rebalance.
+ */
+@Component
+@Endpoint(id = "customershards")
+@ConditionalOnProperty("customer.shards.urls")
+public class CustomerShardsEndpoint {
+
+    private final CustomerShardedDataAccessService customerDao;
+
+    public CustomerShardsEndpoint(CustomerShardedDataAccessService customerDao) {
+        this.customerDao = customerDao;
+    }
+
+    @ReadOperation
+    public CustomerShardedDataAccessService.Status shards() {
+        return customerDao.status();
+    }
+
+    @WriteOperation
+    public CustomerShardedDataAccessService.Status addShard(@Selector String name) {
+        customerDao.addShard(name);
+        return customerDao.status();
+    }
+}
@@ -0,0 +1,150 @@
+package com.amigoscode.customer;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Point-in-time copy of the customers, written through a memory-mapped
+ * file.
+ * <p>
+ * Layout: {@code [int magic][int version][long lsn][int lastId][int count]},
+ * then per customer {@code [int id][int age][name][email]} with strings as
+ * an int length followed by UTF-8 bytes, then a {@code [long crc32c]} of
+ * everything before it. A snapshot is written to a temporary file and
+ * moved into place atomically, so a crash leaves either the old or the new
+ * snapshot.
+ *
+ * @param lsn    LSN of the last log record the snapshot includes
+ * @param lastId highest id handed out so far
+ */
+record CustomerSnapshot(long lsn, int lastId) {
+
+    private static final String FILE_NAME = "customers.snapshot";
+    private static final int MAGIC = 0x43555354;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 4 + 4;
+
+    static void write(Path directory,
+                      CustomerSnapshot snapshot,
+                      List<Customer> customers) throws IOException {
+        long size = HEADER_BYTES + 8;
+        for (Customer customer : customers) {
+            size += 4 + 4 + 4 + utf8(customer.getName()).length
+                    + 4 + utf8(customer.getEmail()).length;
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("customer snapshot of %d bytes is too large".formatted(size));
+        }
+
+        Files.createDirectories(directory);
+        Path temporary = directory.resolve(FILE_NAME + ".tmp");
+        try (FileChannel channel = FileChannel.open(
+                temporary,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putLong(snapshot.lsn());
+            buffer.putInt(snapshot.lastId());
+            buffer.putInt(customers.size());
+            for (Customer customer : customers) {
+                buffer.putInt(customer.getId());
+                buffer.putInt(customer.getAge());
+                putString(buffer, customer.getName());
+                putString(buffer, customer.getEmail());
+            }
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.duplicate().flip());
+            buffer.putLong(crc.getValue());
+            buffer.force();
+        }
+        Files.move(
+                temporary,
+                directory.resolve(FILE_NAME),
+                StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING
+        );
+        forceDirectory(directory);
+    }
+
+    /**
+     * Passes every customer of the latest snapshot to {@code customers}.
+     *
+     * @return empty if no snapshot has been written yet
+     */
+    static Optional<CustomerSnapshot> read(Path directory,
+                                           Consumer<Customer> customers) throws IOException {
+        Path file = directory.resolve(FILE_NAME);
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.limit() < HEADER_BYTES + 8) {
+                throw new IOException("customer snapshot " + file + " is truncated");
+            }
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.duplicate().limit(buffer.limit() - 8));
+            if (buffer.getLong(buffer.limit() - 8) != crc.getValue()) {
+                throw new IOException("customer snapshot " + file + " is corrupt");
+            }
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("customer snapshot " + file + " has an unknown format");
+            }
+            CustomerSnapshot snapshot = new CustomerSnapshot(buffer.getLong(), buffer.getInt());
+            int count = buffer.getInt();
+            try {
+                for (int i = 0; i < count; i++) {
+                    int id = buffer.getInt();
+                    int age = buffer.getInt();
+                    String name = getString(buffer);
+                    String email = getString(buffer);
+                    customers.accept(new Customer(id, name, email, age));
+                }
+            } catch (BufferUnderflowException | NegativeArraySizeException e) {
+                throw new IOException("customer snapshot " + file + " is corrupt", e);
+            }
+            return Optional.of(snapshot);
+        }
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        byte[] bytes = utf8(value);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // makes the rename durable; not every platform can open a directory
+    private static void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // the rename is still atomic, it may just not survive a power loss
+        }
+    }
+}
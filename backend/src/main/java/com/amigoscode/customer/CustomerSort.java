@@ -0,0 +1,68 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.exception.RequestValidationException;
+
+import java.util.Comparator;
+
+/**
+ * Columns the customer list can be ordered by. Every ordering is
+ * tie-broken on id so that (key, id) is unique and can be used as a
+ * keyset cursor. Text columns are compared with the "C" collation, which
+ * matches {@link String#compareTo(String)} and the indexes from V3.
+ */
+public enum CustomerSort {
+    ID(Comparator.comparing(Customer::getId)),
+    NAME(Comparator.comparing(Customer::getName)
+            .thenComparing(Customer::getId)),
+    EMAIL(Comparator.comparing(Customer::getEmail)
+            .thenComparing(Customer::getId)),
+    AGE(Comparator.comparing(Customer::getAge)
+            .thenComparing(Customer::getId));
+
+    private final Comparator<Customer> comparator;
+
+    CustomerSort(Comparator<Customer> comparator) {
+        this.comparator = comparator;
+    }
+
+    public Comparator<Customer> comparator() {
+        return comparator;
+    }
+
+    public Object keyOf(Customer customer) {
+        return switch (this) {
+            case ID -> customer.getId();
+            case NAME -> customer.getName();
+            case EMAIL -> customer.getEmail();
+            case AGE -> customer.getAge();
+        };
+    }
+
+    /**
+     * Smallest possible key, used as the cursor of the first page.
+     */
+    Object minKey() {
+        return switch (this) {
+            case ID, AGE -> Integer.MIN_VALUE;
+            case NAME, EMAIL -> "";
+        };
+    }
+
+    Object parseKey(String key) {
+        return switch (this) {
+            case ID, AGE -> Integer.valueOf(key);
+            case NAME, EMAIL -> key;
+        };
+    }
+
+    public static CustomerSort fromParameter(String sort) {
+        for (CustomerSort value : values()) {
+            if (value.name().equalsIgnoreCase(sort)) {
+                return value;
+            }
+        }
+        throw new RequestValidationException(
+                "sort [%s] is not supported".formatted(sort)
+        );
+    }
+}
@@ -0,0 +1,35 @@
+package com.amigoscode.customer;
+
+/**
+ * Outcome of {@link CustomerDao#updateCustomer(Customer)}.
+ *
+ * @param customer the row as written, only present when {@code UPDATED}
+ *                 and the store can return it
+ */
+public record CustomerUpdateResult(
+        Status status,
+        Customer customer
+) {
+    public enum Status {
+        UPDATED,
+        NO_CHANGES,
+        NOT_FOUND,
+        DUPLICATE_EMAIL
+    }
+
+    public static CustomerUpdateResult updated(Customer customer) {
+        return new CustomerUpdateResult(Status.UPDATED, customer);
+    }
+
+    public static CustomerUpdateResult noChanges() {
+        return new CustomerUpdateResult(Status.NO_CHANGES, null);
+    }
+
+    public static CustomerUpdateResult notFound() {
+        return new CustomerUpdateResult(Status.NOT_FOUND, null);
+    }
+
+    public static CustomerUpdateResult duplicateEmail() {
+        return new CustomerUpdateResult(Status.DUPLICATE_EMAIL, null);
+    }
+}
@@ -0,0 +1,110 @@
+package com.amigoscode.customer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.SmartLifecycle;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Reports virtual threads that stay pinned to their carrier thread for
+ * longer than {@code customer.virtual-threads.pinned-threshold}, typically
+ * because they block inside a {@code synchronized} block, for example in a
+ * JDBC driver. Every pinning is counted as
+ * {@code customer.virtual.threads.pinned}; each distinct stack is logged
+ * once, so that a hot spot does not flood the log.
+ * <p>
+ * Listens to the JFR {@code jdk.VirtualThreadPinned} event in-process,
+ * without writing a recording to disk.
+ */
+class CustomerVirtualThreadPinningMonitor implements SmartLifecycle {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CustomerVirtualThreadPinningMonitor.class);
+
+    static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final int LOGGED_FRAMES = 12;
+
+    private final boolean virtualThreads;
+    private final Duration threshold;
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    private final Set<String> loggedStacks = ConcurrentHashMap.newKeySet();
+
+    private volatile RecordingStream stream;
+    private volatile Counter pinned;
+
+    CustomerVirtualThreadPinningMonitor(boolean virtualThreads,
+                                        Duration threshold,
+                                        ObjectProvider<MeterRegistry> meterRegistry) {
+        this.virtualThreads = virtualThreads;
+        this.threshold = threshold;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void start() {
+        if (!virtualThreads) {
+            return;
+        }
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (registry != null) {
+            pinned = Counter.builder("customer.virtual.threads.pinned")
+                    .description("Virtual threads pinned to their carrier for longer than the threshold")
+                    .register(registry);
+        }
+        RecordingStream recordingStream = new RecordingStream();
+        recordingStream.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        recordingStream.onEvent(PINNED_EVENT, this::onPinned);
+        recordingStream.startAsync();
+        stream = recordingStream;
+    }
+
+    void onPinned(RecordedEvent event) {
+        Counter counter = pinned;
+        if (counter != null) {
+            counter.increment();
+        }
+        String stack = stack(event.getStackTrace());
+        if (loggedStacks.add(stack)) {
+            LOGGER.warn("virtual thread pinned for {} ms{}", event.getDuration().toMillis(), stack);
+        }
+    }
+
+    private static String stack(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return "";
+        }
+        List<RecordedFrame> frames = stackTrace.getFrames();
+        return frames.stream()
+                .limit(LOGGED_FRAMES)
+                .map(frame -> "\n\tat %s.%s(line %d)".formatted(
+                        frame.getMethod().getType().getName(),
+                        frame.getMethod().getName(),
+                        frame.getLineNumber()))
+                .collect(Collectors.joining());
+    }
+
+    @Override
+    public void stop() {
+        RecordingStream recordingStream = stream;
+        if (recordingStream != null) {
+            recordingStream.close();
+            stream = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return stream != null;
+    }
+}
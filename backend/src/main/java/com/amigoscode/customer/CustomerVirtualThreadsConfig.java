@@ -0,0 +1,104 @@
+package com.amigoscode.customer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.lang.reflect.InvocationTargetException;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs request handling and the async work of the MVC layer, such as
+ * customer exports, on virtual threads instead of Tomcat's worker pool.
+ * Enabled with {@code customer.virtual-threads.enabled=true}. On a JDK
+ * without virtual threads the platform pool is kept and a warning logged.
+ * <p>
+ * Concurrency is then no longer capped by {@code server.tomcat.threads.max}
+ * but by the Hikari pool: requests beyond it wait for a connection.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(prefix = "customer.virtual-threads", name = "enabled", havingValue = "true")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class CustomerVirtualThreadsConfig implements DisposableBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CustomerVirtualThreadsConfig.class);
+
+    private final ExecutorService executor;
+
+    public CustomerVirtualThreadsConfig() {
+        this.executor = newVirtualThreadPerTaskExecutor().orElse(null);
+        if (executor == null) {
+            LOGGER.warn("customer.virtual-threads.enabled is set, but Java {} has no virtual threads;"
+                    + " requests stay on the Tomcat thread pool", Runtime.version().feature());
+        }
+    }
+
+    /**
+     * Looked up reflectively so that the application still builds and runs
+     * on Java 17. On Java 19 and 20 this also needs {@code --enable-preview}.
+     */
+    static Optional<ExecutorService> newVirtualThreadPerTaskExecutor() {
+        try {
+            return Optional.of((ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return Optional.empty();
+        } catch (InvocationTargetException e) {
+            // preview API on a JVM started without --enable-preview
+            if (e.getCause() instanceof UnsupportedOperationException) {
+                return Optional.empty();
+            }
+            throw new IllegalStateException("could not create virtual thread executor", e.getCause());
+        }
+    }
+
+    @Bean
+    TomcatProtocolHandlerCustomizer<?> customerVirtualThreadsProtocolHandlerCustomizer() {
+        return protocolHandler -> {
+            if (executor != null) {
+                protocolHandler.setExecutor(executor);
+            }
+        };
+    }
+
+    @Bean
+    WebMvcConfigurer customerVirtualThreadsAsyncSupport() {
+        return new WebMvcConfigurer() {
+            @Override
+            public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+                if (executor != null) {
+                    configurer.setTaskExecutor(new TaskExecutorAdapter(executor));
+                }
+            }
+        };
+    }
+
+    @Bean
+    CustomerVirtualThreadPinningMonitor customerVirtualThreadPinningMonitor(
+            @Value("${customer.virtual-threads.pinned-threshold:20ms}") Duration threshold,
+            ObjectProvider<MeterRegistry> meterRegistry) {
+        return new CustomerVirtualThreadPinningMonitor(executor != null, threshold, meterRegistry);
+    }
+
+    @Override
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,347 @@
+package com.amigoscode.customer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of customer changes, split into segment files named
+ * after the log sequence number (LSN) of their first record.
+ * <p>
+ * Each record is {@code [int length][int crc32c][payload]}, and the payload
+ * is {@code [long lsn][byte type][int id][int age][name][email]}. Strings
+ * are written as an int length followed by UTF-8 bytes. A torn or
+ * corrupt record at the end of the last segment is cut off on recovery.
+ * <p>
+ * Appends are group-committed. Callers queue records, and a single writer
+ * thread writes everything that is queued, forces the file once and then
+ * completes the futures of all those records.
+ */
+class CustomerWriteAheadLog implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CustomerWriteAheadLog.class);
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("wal-(\\d{20})\\.log");
+    // records written between two forces at most
+    private static final int MAX_GROUP_SIZE = 1_024;
+    private static final int HEADER_BYTES = 8;
+
+    enum Type {
+        PUT,
+        DELETE
+    }
+
+    /**
+     * @param length size of the payload in the log
+     */
+    record Entry(long lsn, Type type, Customer customer, int length) {
+    }
+
+    private final Path directory;
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private FileChannel segment;
+    private long lastLsn;
+    private volatile IOException failure;
+
+    /**
+     * Opens the log for appending after the given LSN. Call
+     * {@link #replay} first so that the LSN and the segments are known.
+     */
+    CustomerWriteAheadLog(Path directory, long lastLsn) throws IOException {
+        this.directory = directory;
+        this.lastLsn = lastLsn;
+        this.segment = openSegment(lastLsn + 1);
+        this.writer = new Thread(this::writeLoop, "customer-wal-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Passes every intact record with an LSN above {@code afterLsn} to
+     * {@code entries}, in log order, and cuts off a torn tail.
+     *
+     * @return the LSN of the last record, or {@code afterLsn} if there is none
+     */
+    static long replay(Path directory, long afterLsn, Consumer<Entry> entries) throws IOException {
+        List<Path> segments = segments(directory);
+        long lastLsn = afterLsn;
+        for (int i = 0; i < segments.size(); i++) {
+            Path segment = segments.get(i);
+            boolean last = i == segments.size() - 1;
+            long validBytes = 0;
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(segment))) {
+                DataInputStream data = new DataInputStream(in);
+                Entry entry;
+                while ((entry = readEntry(data)) != null) {
+                    validBytes += HEADER_BYTES + entry.length();
+                    if (entry.lsn() > lastLsn) {
+                        entries.accept(entry);
+                        lastLsn = entry.lsn();
+                    }
+                }
+            } catch (EOFException | CorruptRecordException e) {
+                // only the last segment can have been cut short by a crash
+                if (!last) {
+                    throw new IOException("corrupt customer log segment " + segment, e);
+                }
+            }
+            if (last && validBytes < Files.size(segment)) {
+                LOGGER.warn("cutting torn customer log tail of {} at byte {}", segment, validBytes);
+                try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+                    channel.truncate(validBytes);
+                    channel.force(true);
+                }
+            }
+        }
+        return lastLsn;
+    }
+
+    /**
+     * Queues a record. The returned future completes once the record has
+     * been forced to disk.
+     */
+    synchronized CompletableFuture<Void> append(Type type, Customer customer) {
+        if (failure != null) {
+            return CompletableFuture.failedFuture(failure);
+        }
+        lastLsn++;
+        Pending pending = new Pending(encode(lastLsn, type, customer), -1);
+        queue.add(pending);
+        return pending.done;
+    }
+
+    synchronized long lastLsn() {
+        return lastLsn;
+    }
+
+    /**
+     * Makes the writer start a new segment for the records after
+     * {@code lastLsn()}. Older segments can then be deleted once they are
+     * covered by a snapshot.
+     */
+    synchronized CompletableFuture<Void> roll() {
+        if (failure != null) {
+            return CompletableFuture.failedFuture(failure);
+        }
+        Pending pending = new Pending(null, lastLsn + 1);
+        queue.add(pending);
+        return pending.done;
+    }
+
+    /**
+     * Deletes the segments that only hold records up to {@code lsn}.
+     */
+    void deleteSegmentsUpTo(long lsn) throws IOException {
+        List<Path> segments = segments(directory);
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            if (firstLsn(segments.get(i + 1)) <= lsn + 1) {
+                Files.deleteIfExists(segments.get(i));
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        Pending stop;
+        synchronized (this) {
+            stop = new Pending(null, 0);
+            if (failure == null) {
+                queue.add(stop);
+            } else {
+                stop.done.complete(null);
+            }
+        }
+        try {
+            stop.done.join();
+        } finally {
+            segment.close();
+        }
+    }
+
+    private void writeLoop() {
+        List<Pending> group = new ArrayList<>();
+        while (true) {
+            try {
+                group.add(queue.take());
+                queue.drainTo(group, MAX_GROUP_SIZE - 1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            List<Pending> written = new ArrayList<>(group.size());
+            try {
+                for (Pending pending : group) {
+                    if (pending.record != null) {
+                        while (pending.record.hasRemaining()) {
+                            segment.write(pending.record);
+                        }
+                        written.add(pending);
+                    } else {
+                        segment.force(false);
+                        complete(written);
+                        if (pending.rollTo == 0) {
+                            pending.done.complete(null);
+                            return;
+                        }
+                        segment.close();
+                        segment = openSegment(pending.rollTo);
+                        pending.done.complete(null);
+                    }
+                }
+                segment.force(false);
+                complete(written);
+            } catch (IOException e) {
+                LOGGER.error("customer log write failed, no further writes are accepted", e);
+                synchronized (this) {
+                    failure = e;
+                    group.forEach(pending -> pending.done.completeExceptionally(e));
+                    queue.forEach(pending -> pending.done.completeExceptionally(e));
+                    queue.clear();
+                }
+                return;
+            }
+            group.clear();
+        }
+    }
+
+    private static void complete(List<Pending> written) {
+        written.forEach(pending -> pending.done.complete(null));
+        written.clear();
+    }
+
+    private FileChannel openSegment(long firstLsn) throws IOException {
+        Files.createDirectories(directory);
+        return FileChannel.open(
+                directory.resolve("wal-%020d.log".formatted(firstLsn)),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND
+        );
+    }
+
+    private static List<Path> segments(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(file -> SEGMENT_NAME.matcher(file.getFileName().toString()).matches())
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static long firstLsn(Path segment) {
+        Matcher matcher = SEGMENT_NAME.matcher(segment.getFileName().toString());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException(segment.toString());
+        }
+        return Long.parseLong(matcher.group(1));
+    }
+
+    private static ByteBuffer encode(long lsn, Type type, Customer customer) {
+        byte[] name = bytes(customer.getName());
+        byte[] email = bytes(customer.getEmail());
+        int length = 8 + 1 + 4 + 4 + 4 + name.length + 4 + email.length;
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + length);
+        buffer.putInt(length);
+        buffer.putInt(0);
+        buffer.putLong(lsn);
+        buffer.put((byte) type.ordinal());
+        buffer.putInt(customer.getId());
+        buffer.putInt(customer.getAge() == null ? 0 : customer.getAge());
+        buffer.putInt(name.length).put(name);
+        buffer.putInt(email.length).put(email);
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.array(), HEADER_BYTES, length);
+        buffer.putInt(4, (int) crc.getValue());
+        return buffer.flip();
+    }
+
+    // null at a clean end of the segment
+    private static Entry readEntry(DataInputStream in) throws IOException, CorruptRecordException {
+        int length;
+        try {
+            length = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        int crc = in.readInt();
+        if (length < 25 || length > (1 << 24)) {
+            throw new CorruptRecordException();
+        }
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        CRC32C actual = new CRC32C();
+        actual.update(payload);
+        if ((int) actual.getValue() != crc) {
+            throw new CorruptRecordException();
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        long lsn = buffer.getLong();
+        byte type = buffer.get();
+        if (type < 0 || type >= Type.values().length) {
+            throw new CorruptRecordException();
+        }
+        int id = buffer.getInt();
+        int age = buffer.getInt();
+        String name = string(buffer);
+        String email = string(buffer);
+        return new Entry(lsn, Type.values()[type], new Customer(id, name, email, age), length);
+    }
+
+    private static byte[] bytes(String value) {
+        return value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(ByteBuffer buffer) throws CorruptRecordException {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new CorruptRecordException();
+        }
+        String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    /**
+     * A queued record, or a request to roll ({@code rollTo > 0}) or stop
+     * ({@code rollTo == 0}) when {@code record} is null.
+     */
+    private static class Pending {
+
+        private final ByteBuffer record;
+        private final long rollTo;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Pending(ByteBuffer record, long rollTo) {
+            this.record = record;
+            this.rollTo = rollTo;
+        }
+    }
+
+    private static class CorruptRecordException extends Exception {
+    }
+}
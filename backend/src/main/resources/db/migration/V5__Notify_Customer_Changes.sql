@@ -0,0 +1,59 @@
+-- Every node caches customers, so each write is announced on the
+-- customer_changes channel for the other nodes to evict their copies.
+-- Notifications are sent on commit, once per statement: the payload is
+-- the operation (I, U or D) and the changed ids, e.g. 'U:7,8', or '*'
+-- when too many rows changed to list them within the 8000 byte limit.
+CREATE FUNCTION notify_customer_changes() RETURNS trigger
+    LANGUAGE plpgsql AS
+$$
+DECLARE
+    changed BIGINT;
+    ids     TEXT;
+BEGIN
+    IF TG_OP = 'TRUNCATE' THEN
+        PERFORM pg_notify('customer_changes', '*');
+        RETURN NULL;
+    END IF;
+
+    IF TG_OP = 'DELETE' THEN
+        SELECT count(*) INTO changed FROM old_rows;
+    ELSE
+        SELECT count(*) INTO changed FROM new_rows;
+    END IF;
+
+    IF changed = 0 THEN
+        RETURN NULL;
+    ELSIF changed > 500 THEN
+        PERFORM pg_notify('customer_changes', '*');
+        RETURN NULL;
+    END IF;
+
+    IF TG_OP = 'DELETE' THEN
+        SELECT string_agg(id::TEXT, ',') INTO ids FROM old_rows;
+    ELSE
+        SELECT string_agg(id::TEXT, ',') INTO ids FROM new_rows;
+    END IF;
+    PERFORM pg_notify('customer_changes', left(TG_OP, 1) || ':' || ids);
+    RETURN NULL;
+END;
+$$;
+
+-- transition tables need one trigger per operation
+CREATE TRIGGER customer_inserted
+    AFTER INSERT ON customer
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION notify_customer_changes();
+
+CREATE TRIGGER customer_updated
+    AFTER UPDATE ON customer
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION notify_customer_changes();
+
+CREATE TRIGGER customer_deleted
+    AFTER DELETE ON customer
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION notify_customer_changes();
+
+CREATE TRIGGER customer_truncated
+    AFTER TRUNCATE ON customer
+    FOR EACH STATEMENT EXECUTE FUNCTION notify_customer_changes();
@@ -0,0 +1,17 @@
+-- Directory of the sharded customer store, see CustomerShardedDataAccessService.
+-- It lives in the main database; the shards run the same migrations and
+-- keep these tables empty.
+
+-- one row per customer on any shard: emails are unique across shards and
+-- ids come from one sequence
+CREATE TABLE customer_shard_directory (
+  email TEXT PRIMARY KEY,
+  id BIGSERIAL NOT NULL
+);
+CREATE INDEX customer_shard_directory_id_idx ON customer_shard_directory (id);
+
+-- shards on the ring; a joining shard is still receiving rows from the others
+CREATE TABLE customer_shard_ring (
+  name TEXT PRIMARY KEY,
+  joining BOOLEAN NOT NULL DEFAULT false
+);
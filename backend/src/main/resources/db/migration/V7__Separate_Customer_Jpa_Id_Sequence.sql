@@ -0,0 +1,18 @@
+-- Blocks of 50 ids per nextval are only useful to Hibernate, so it gets a
+-- sequence of its own and inserts that use the column default (JDBC, COPY
+-- import) take one id per nextval again instead of leaving gaps of 49.
+ALTER SEQUENCE customer_id_seq INCREMENT BY 1;
+
+-- The two sequences fill the same INTEGER id column (see Customer), so they
+-- hand out ids from ranges that do not overlap. Either one running out fails
+-- the insert instead of reusing an id of the other.
+ALTER SEQUENCE customer_id_seq MAXVALUE 999999999;
+
+-- pooled-lo: a nextval of n hands out n to n + 49, so the last block ends
+-- at 2147483599, below the INTEGER maximum
+CREATE SEQUENCE customer_jpa_id_seq
+  AS INTEGER
+  INCREMENT BY 50
+  MINVALUE 1000000000
+  MAXVALUE 2147483598
+  START WITH 1000000000;
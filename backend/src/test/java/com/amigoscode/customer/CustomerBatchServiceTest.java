@@ -0,0 +1,170 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.customer.CustomerBatchOperation.Type;
+import com.amigoscode.customer.CustomerBatchResult.Status;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.amigoscode.customer.CustomerConstraintsTest.violation;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerBatchServiceTest {
+
+    @Mock
+    private CustomerDao customerDao;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    @Mock
+    private CustomerCache customerCache;
+    @Mock
+    private CustomerResponseCache customerResponseCache;
+    @Mock
+    private CustomerEmailFilter customerEmailFilter;
+
+    private CustomerBatchService underTest(int batchSize, int commitSize) {
+        return new CustomerBatchService(
+                customerDao,
+                customerCache,
+                customerResponseCache,
+                customerEmailFilter,
+                new TransactionTemplate(transactionManager),
+                batchSize,
+                commitSize
+        );
+    }
+
+    private List<CustomerBatchResult> execute(CustomerBatchService service,
+                                              CustomerBatchOperation... operations) {
+        List<CustomerBatchResult> results = new ArrayList<>();
+        service.execute(List.of(operations).iterator(), results::add);
+        return results;
+    }
+
+    private static CustomerBatchOperation create(String email) {
+        return new CustomerBatchOperation(Type.CREATE, null, "Alex", email, 20);
+    }
+
+    @Test
+    void executeSendsConsecutiveOperationsOfOneTypeTogether() {
+        // Given
+        when(customerDao.insertCustomersIfAbsent(anyList())).thenAnswer(invocation -> {
+            List<Customer> customers = invocation.getArgument(0);
+            for (int i = 0; i < customers.size(); i++) {
+                customers.get(i).setId(i + 10);
+            }
+            return customers.stream().map(c -> !c.getEmail().equals("taken@gmail")).toList();
+        });
+        when(customerDao.deleteCustomersById(List.of(1, 2)))
+                .thenReturn(List.of(true, false));
+        when(customerDao.deleteCustomersById(List.of(3)))
+                .thenReturn(List.of(true));
+
+        // When
+        List<CustomerBatchResult> actual = execute(underTest(10, 100),
+                create("alex@gmail"),
+                create("taken@gmail"),
+                new CustomerBatchOperation(Type.DELETE, 1, null, null, null),
+                new CustomerBatchOperation(Type.DELETE, 2, null, null, null),
+                new CustomerBatchOperation(Type.DELETE, null, null, null, null),
+                new CustomerBatchOperation(Type.DELETE, 3, null, null, null)
+        );
+
+        // Then
+        assertThat(actual).containsExactly(
+                CustomerBatchResult.of(0, Status.CREATED, 10),
+                CustomerBatchResult.of(1, Status.DUPLICATE_EMAIL, null),
+                CustomerBatchResult.of(2, Status.DELETED, 1),
+                CustomerBatchResult.of(3, Status.NOT_FOUND, 2),
+                new CustomerBatchResult(4, Status.INVALID, null, "id is required"),
+                CustomerBatchResult.of(5, Status.DELETED, 3)
+        );
+        verify(customerDao).insertCustomersIfAbsent(anyList());
+        verify(customerCache).evict(1);
+        verify(customerCache).evict(2);
+        verify(customerCache).evict(3);
+        verifyNoMoreInteractions(customerCache);
+        verify(customerResponseCache).evictPages();
+        verify(customerResponseCache).evict(1);
+        verify(customerResponseCache).evict(2);
+        verify(customerResponseCache).evict(3);
+        verifyNoMoreInteractions(customerResponseCache);
+        verify(customerEmailFilter).emailAdded("alex@gmail");
+        verify(customerEmailFilter).emailRemoved(1);
+        verify(customerEmailFilter).emailRemoved(3);
+        verifyNoMoreInteractions(customerEmailFilter);
+    }
+
+    @Test
+    void executeSplitsBatchesAndCommitGroups() {
+        // Given
+        when(customerDao.insertCustomersIfAbsent(anyList())).thenAnswer(invocation -> {
+            List<Customer> customers = invocation.getArgument(0);
+            return customers.stream().map(c -> true).toList();
+        });
+
+        // When
+        List<CustomerBatchResult> actual = execute(underTest(2, 3),
+                create("a@gmail"), create("b@gmail"), create("c@gmail"),
+                create("d@gmail"), create("e@gmail")
+        );
+
+        // Then
+        assertThat(actual).extracting(CustomerBatchResult::index)
+                .containsExactly(0, 1, 2, 3, 4);
+        // [a, b] [c] in the first group, [d, e] in the second
+        verify(customerDao, times(3)).insertCustomersIfAbsent(anyList());
+        verify(transactionManager, times(2)).commit(any());
+    }
+
+    @Test
+    void executeRetriesOneByOneWhenTheGroupFails() {
+        // Given
+        List<CustomerUpdateResult> updated = List.of(CustomerUpdateResult.updated(null));
+        when(customerDao.updateCustomers(anyList()))
+                .thenThrow(violation("23505", CustomerConstraints.EMAIL_UNIQUE))
+                .thenReturn(updated)
+                .thenThrow(violation("23505", CustomerConstraints.EMAIL_UNIQUE));
+
+        // When
+        List<CustomerBatchResult> actual = execute(underTest(10, 10),
+                new CustomerBatchOperation(Type.UPDATE, 1, "foo", null, null),
+                new CustomerBatchOperation(Type.UPDATE, 2, null, "taken@gmail", null)
+        );
+
+        // Then
+        assertThat(actual).containsExactly(
+                CustomerBatchResult.of(0, Status.UPDATED, 1),
+                CustomerBatchResult.of(1, Status.DUPLICATE_EMAIL, 2)
+        );
+    }
+
+    @Test
+    void executeReportsOtherViolationsAsInvalid() {
+        // Given
+        when(customerDao.insertCustomersIfAbsent(anyList()))
+                .thenThrow(violation("23502", null));
+
+        // When
+        List<CustomerBatchResult> actual = execute(underTest(10, 10), create("alex@gmail"));
+
+        // Then
+        assertThat(actual).containsExactly(
+                new CustomerBatchResult(0, Status.INVALID, null, "invalid customer data")
+        );
+        verifyNoMoreInteractions(customerEmailFilter);
+    }
+}
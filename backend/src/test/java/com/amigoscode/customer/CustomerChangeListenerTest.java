@@ -0,0 +1,185 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.AbstractTestcontainers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CustomerChangeListenerTest extends AbstractTestcontainers {
+
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    private final CustomerCache customerCache = mock(CustomerCache.class);
+    private final CustomerResponseCache customerResponseCache = mock(CustomerResponseCache.class);
+    private final CustomerEmailFilter customerEmailFilter = mock(CustomerEmailFilter.class);
+    // one pool for the class, as every listener holds a connection of it
+    private static JdbcTemplate jdbcTemplate;
+    private CustomerChangeListener underTest;
+
+    @BeforeAll
+    static void setUpPool() {
+        jdbcTemplate = getJdbcTemplate();
+    }
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        underTest = new CustomerChangeListener(
+                jdbcTemplate.getDataSource(),
+                customerCache,
+                customerResponseCache,
+                customerEmailFilter,
+                Duration.ofMillis(50),
+                Duration.ofMillis(100)
+        );
+        underTest.start();
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!underTest.isListening() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(underTest.isListening()).isTrue();
+    }
+
+    @AfterEach
+    void tearDown() {
+        underTest.stop();
+    }
+
+    private Integer insertCustomer(String email) {
+        return jdbcTemplate.queryForObject(
+                "INSERT INTO customer(name, email, age) VALUES (?, ?, ?) RETURNING id",
+                Integer.class,
+                FAKER.name().fullName(), email, 20
+        );
+    }
+
+    @Test
+    void addsEmailOfCustomerInsertedElsewhere() {
+        // Given
+        String email = "inserted-" + UUID.randomUUID();
+
+        // When
+        insertCustomer(email);
+
+        // Then
+        verify(customerEmailFilter, timeout(TIMEOUT_MILLIS)).emailAdded(email);
+        verify(customerResponseCache, timeout(TIMEOUT_MILLIS)).evictPages();
+    }
+
+    @Test
+    void doesNotCountEmailAlreadyInFilterAgain() {
+        // Given
+        String email = "own-" + UUID.randomUUID();
+        // as after this node inserted the customer itself
+        when(customerEmailFilter.mightContain(email)).thenReturn(true);
+
+        String later = "later-" + UUID.randomUUID();
+
+        // When
+        insertCustomer(email);
+        insertCustomer(later);
+
+        // Then
+        // notifications are applied in order, so the first insert is done
+        verify(customerEmailFilter, timeout(TIMEOUT_MILLIS)).emailAdded(later);
+        verify(customerEmailFilter, never()).emailAdded(email);
+    }
+
+    @Test
+    void countsEmailReplacedElsewhereAsStale() {
+        // Given
+        String email = "replaced-" + UUID.randomUUID();
+        String newEmail = "replacement-" + UUID.randomUUID();
+        Integer id = insertCustomer(email);
+        verify(customerEmailFilter, timeout(TIMEOUT_MILLIS)).emailAdded(email);
+        when(customerEmailFilter.mightContain(email)).thenReturn(true);
+
+        // When
+        jdbcTemplate.update("UPDATE customer SET email = ? WHERE id = ?", newEmail, id);
+
+        // Then
+        verify(customerEmailFilter, timeout(TIMEOUT_MILLIS)).emailAdded(newEmail);
+        verify(customerEmailFilter).emailRemoved();
+    }
+
+    @Test
+    void evictsCustomerUpdatedElsewhere() {
+        // Given
+        Integer id = insertCustomer("updated-" + UUID.randomUUID());
+
+        // When
+        jdbcTemplate.update("UPDATE customer SET age = age + 1 WHERE id = ?", id);
+
+        // Then
+        verify(customerCache, timeout(TIMEOUT_MILLIS)).evict(id);
+        verify(customerResponseCache, timeout(TIMEOUT_MILLIS)).evict(id);
+    }
+
+    @Test
+    void evictsCustomerDeletedElsewhere() {
+        // Given
+        Integer id = insertCustomer("deleted-" + UUID.randomUUID());
+
+        // When
+        jdbcTemplate.update("DELETE FROM customer WHERE id = ?", id);
+
+        // Then
+        verify(customerCache, timeout(TIMEOUT_MILLIS)).evict(id);
+        verify(customerEmailFilter, timeout(TIMEOUT_MILLIS)).emailRemoved(id);
+    }
+
+    @Test
+    void evictsEverythingAfterBulkChange() {
+        // Given
+        String prefix = "bulk-" + UUID.randomUUID();
+
+        // When
+        // too many rows for the ids to fit in one notification
+        jdbcTemplate.update("""
+                INSERT INTO customer(name, email, age)
+                SELECT 'Bulk', ? || '-' || n, 30
+                FROM generate_series(1, 501) AS n
+                """, prefix);
+
+        // Then
+        try {
+            verify(customerCache, timeout(TIMEOUT_MILLIS)).evictAll();
+            verify(customerResponseCache, timeout(TIMEOUT_MILLIS)).evictAll();
+            verify(customerEmailFilter, timeout(TIMEOUT_MILLIS)).requestRebuild();
+        } finally {
+            // other tests page through the shared table
+            jdbcTemplate.update("DELETE FROM customer WHERE email LIKE ?", prefix + "-%");
+        }
+    }
+
+    @Test
+    void changeBatchCollectsIdsPerOperation() {
+        // Given
+        CustomerChangeListener.ChangeBatch batch = new CustomerChangeListener.ChangeBatch();
+
+        // When
+        batch.add("I:1,2");
+        batch.add("U:2");
+        batch.add("D:3");
+
+        // Then
+        assertThat(batch.inserted).containsExactlyInAnyOrder(1, 2);
+        assertThat(batch.updated).containsExactly(2);
+        assertThat(batch.deleted).containsExactly(3);
+        assertThat(batch.everything).isFalse();
+
+        batch.add("*");
+        assertThat(batch.everything).isTrue();
+    }
+}
@@ -0,0 +1,198 @@
+package com.amigoscode.customer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerColumnarDataAccessServiceTest {
+
+    private CustomerColumnarDataAccessService underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerColumnarDataAccessService();
+    }
+
+    private List<Customer> insert(int count) {
+        List<Customer> customers = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Customer customer = new Customer(
+                    "Customer " + i,
+                    "customer-%d@%s.com".formatted(i, i % 2 == 0 ? "amigoscode" : "gmail"),
+                    i % 100
+            );
+            underTest.insertCustomer(customer);
+            customers.add(customer);
+        }
+        return customers;
+    }
+
+    @Test
+    void insertAndSelectCustomer() {
+        // Given
+        Customer customer = new Customer("Jürgen", "jürgen@amigoscode.com", 20);
+
+        // When
+        underTest.insertCustomer(customer);
+
+        // Then
+        assertThat(customer.getId()).isEqualTo(1);
+        assertThat(underTest.selectCustomerById(1)).hasValue(customer);
+        assertThat(underTest.existsCustomerWithEmail("jürgen@amigoscode.com")).isTrue();
+        assertThat(underTest.existsCustomerWithEmail("jürgen@gmail.com")).isFalse();
+        assertThat(underTest.selectCustomerById(2)).isEmpty();
+    }
+
+    @Test
+    void insertCustomerThrowsWhenEmailIsTaken() {
+        // Given
+        underTest.insertCustomer(new Customer("Alex", "alex@gmail.com", 20));
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.insertCustomer(
+                new Customer("Other", "alex@gmail.com", 30)))
+                .isInstanceOf(DuplicateKeyException.class);
+        assertThat(underTest.insertCustomersIfAbsent(List.of(
+                new Customer("Other", "alex@gmail.com", 30),
+                new Customer("Other", "no-domain", 30))))
+                .containsExactly(false, true);
+    }
+
+    @Test
+    void storesManyCustomersAcrossGrowth() {
+        // Given
+        List<Customer> customers = insert(10_000);
+
+        // When
+        List<Customer> actual = underTest.selectAllCustomers();
+
+        // Then
+        assertThat(actual).isEqualTo(customers);
+        for (Customer customer : customers) {
+            assertThat(underTest.existsCustomerWithEmail(customer.getEmail())).isTrue();
+        }
+    }
+
+    @Test
+    void deleteCustomerTombstonesTheRow() {
+        // Given
+        List<Customer> customers = insert(3);
+
+        // When
+        List<Boolean> deleted = underTest.deleteCustomersById(List.of(2, 2, 7));
+
+        // Then
+        assertThat(deleted).containsExactly(true, false, false);
+        assertThat(underTest.existsCustomerById(2)).isFalse();
+        assertThat(underTest.existsCustomerWithEmail(customers.get(1).getEmail())).isFalse();
+        assertThat(underTest.selectAllCustomers())
+                .containsExactly(customers.get(0), customers.get(2));
+        // ids are not reused
+        Customer again = new Customer("Again", customers.get(1).getEmail(), 30);
+        underTest.insertCustomer(again);
+        assertThat(again.getId()).isEqualTo(4);
+    }
+
+    @Test
+    void updateCustomerRewritesChangedColumns() {
+        // Given
+        insert(2);
+
+        // When
+        CustomerUpdateResult updated = underTest.updateCustomer(
+                new Customer(1, "Alex", "alex@amigoscode.com", null));
+        CustomerUpdateResult duplicate = underTest.updateCustomer(
+                new Customer(2, null, "alex@amigoscode.com", null));
+        CustomerUpdateResult unchanged = underTest.updateCustomer(
+                new Customer(1, "Alex", null, 0));
+        CustomerUpdateResult missing = underTest.updateCustomer(
+                new Customer(3, "Alex", null, null));
+
+        // Then
+        assertThat(updated).isEqualTo(CustomerUpdateResult.updated(
+                new Customer(1, "Alex", "alex@amigoscode.com", 0)));
+        assertThat(duplicate.status()).isEqualTo(CustomerUpdateResult.Status.DUPLICATE_EMAIL);
+        assertThat(unchanged.status()).isEqualTo(CustomerUpdateResult.Status.NO_CHANGES);
+        assertThat(missing.status()).isEqualTo(CustomerUpdateResult.Status.NOT_FOUND);
+        assertThat(underTest.selectCustomerById(1))
+                .hasValue(new Customer(1, "Alex", "alex@amigoscode.com", 0));
+        assertThat(underTest.existsCustomerWithEmail("customer-0@amigoscode.com")).isFalse();
+    }
+
+    @Test
+    void selectCustomersPagesInSortOrder() {
+        // Given
+        List<Customer> customers = insert(50);
+        underTest.deleteCustomerById(3);
+        List<Customer> expected = customers.stream()
+                .filter(c -> c.getId() != 3)
+                .sorted(CustomerSort.NAME.comparator())
+                .toList();
+
+        // When
+        List<Customer> actual = new ArrayList<>();
+        CustomerPageRequest pageRequest = CustomerPageRequest.first(CustomerSort.NAME, 7);
+        List<Customer> page;
+        do {
+            page = underTest.selectCustomers(pageRequest);
+            actual.addAll(page);
+            if (!page.isEmpty()) {
+                pageRequest = new CustomerPageRequest(
+                        CustomerSort.NAME,
+                        CustomerCursor.of(CustomerSort.NAME, page.get(page.size() - 1)),
+                        7
+                );
+            }
+        } while (!page.isEmpty());
+
+        // Then
+        assertThat(actual).isEqualTo(expected);
+        assertThat(underTest.selectCustomers(new CustomerPageRequest(
+                CustomerSort.ID, CustomerCursor.of(CustomerSort.ID, customers.get(1)), 2)))
+                .containsExactly(customers.get(3), customers.get(4));
+    }
+
+    @Test
+    void scansRunOverManySegments() {
+        // Given
+        int count = CustomerColumnarDataAccessService.SEGMENT_SIZE * 3 + 17;
+        List<Customer> customers = insert(count);
+        underTest.deleteCustomerById(1);
+
+        // When
+        List<Customer> byAge = underTest.selectCustomersByAgeRange(10, 12);
+        List<Customer> byEmail = underTest.selectCustomersByEmailPrefix("customer-1");
+        List<Customer> byDomain = underTest.selectCustomersByEmailPrefix("customer-4@ami");
+
+        // Then
+        assertThat(byAge).isEqualTo(customers.stream()
+                .filter(c -> c.getAge() >= 10 && c.getAge() <= 12)
+                .toList());
+        assertThat(byEmail).isEqualTo(customers.stream()
+                .filter(c -> c.getEmail().startsWith("customer-1"))
+                .toList());
+        assertThat(byDomain).containsExactly(customers.get(4));
+        assertThat(underTest.selectCustomersByEmailPrefix("customer-0")).isEmpty();
+    }
+
+    @Test
+    void streamCustomersInIdOrder() throws Exception {
+        // Given
+        List<Customer> customers = insert(2_500);
+        List<Customer> streamed = new ArrayList<>();
+
+        // When
+        underTest.streamCustomers((id, name, email, age) ->
+                streamed.add(new Customer(id, name, email, age)));
+
+        // Then
+        assertThat(streamed).isEqualTo(customers);
+    }
+}
@@ -0,0 +1,131 @@
+package com.amigoscode.customer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerConcurrencyLimitTest {
+
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    void rejectsRequestsBeyondLimit() {
+        // Given
+        CustomerConcurrencyLimit underTest = new CustomerConcurrencyLimit(2, 10);
+        Optional<CustomerConcurrencyLimit.Permit> first = underTest.tryAcquire();
+        Optional<CustomerConcurrencyLimit.Permit> second = underTest.tryAcquire();
+
+        // When
+        Optional<CustomerConcurrencyLimit.Permit> third = underTest.tryAcquire();
+        first.orElseThrow().ignore();
+        // a permit is only released once
+        first.orElseThrow().ignore();
+        Optional<CustomerConcurrencyLimit.Permit> afterRelease = underTest.tryAcquire();
+
+        // Then
+        assertThat(second).isPresent();
+        assertThat(third).isEmpty();
+        assertThat(afterRelease).isPresent();
+        assertThat(underTest.inflight()).isEqualTo(2);
+        assertThat(underTest.rejected()).isEqualTo(1);
+    }
+
+    @Test
+    void growsWhileResponseTimesStayFlat() {
+        // Given
+        CustomerConcurrencyLimit underTest = new CustomerConcurrencyLimit(10, 100);
+
+        // When
+        for (int i = 0; i < 30; i++) {
+            underTest.onSample(MILLIS, underTest.limit(), false);
+        }
+
+        // Then
+        assertThat(underTest.limit()).isEqualTo(100);
+    }
+
+    @Test
+    void shrinksWhenResponseTimesRise() {
+        // Given
+        CustomerConcurrencyLimit underTest = new CustomerConcurrencyLimit(50, 100);
+        underTest.onSample(MILLIS, 50, false);
+
+        // When
+        for (int i = 0; i < 10; i++) {
+            // nine in ten requests are queued
+            underTest.onSample(10 * MILLIS, 50, false);
+        }
+
+        // Then
+        assertThat(underTest.limit()).isLessThan(50);
+    }
+
+    @Test
+    void shrinksWhenRequestsAreDropped() {
+        // Given
+        CustomerConcurrencyLimit underTest = new CustomerConcurrencyLimit(20, 100);
+        underTest.onSample(MILLIS, 20, false);
+
+        // When
+        for (int i = 0; i < 5; i++) {
+            underTest.onSample(MILLIS, 20, true);
+        }
+
+        // Then
+        assertThat(underTest.limit()).isLessThan(20);
+    }
+
+    @Test
+    void filterShedsReadsAndWritesSeparately() throws Exception {
+        // Given
+        CustomerConcurrencyLimit reads = new CustomerConcurrencyLimit(1, 1);
+        CustomerConcurrencyLimit writes = new CustomerConcurrencyLimit(1, 1);
+        CustomerConcurrencyLimitFilter underTest =
+                new CustomerConcurrencyLimitFilter(reads, writes, Duration.ofSeconds(2));
+        MeterRegistry registry = new SimpleMeterRegistry();
+        underTest.bindTo(registry);
+        // a read that is still running
+        reads.tryAcquire().orElseThrow();
+
+        // When
+        MockHttpServletResponse readResponse = new MockHttpServletResponse();
+        MockFilterChain readChain = new MockFilterChain();
+        underTest.doFilter(new MockHttpServletRequest("GET", "/api/v1/customers/1"), readResponse, readChain);
+
+        MockHttpServletResponse writeResponse = new MockHttpServletResponse();
+        MockFilterChain writeChain = new MockFilterChain();
+        underTest.doFilter(new MockHttpServletRequest("POST", "/api/v1/customers"), writeResponse, writeChain);
+
+        MockHttpServletResponse otherResponse = new MockHttpServletResponse();
+        MockFilterChain otherChain = new MockFilterChain();
+        underTest.doFilter(new MockHttpServletRequest("GET", "/actuator/health"), otherResponse, otherChain);
+
+        // Then
+        assertThat(readResponse.getStatus()).isEqualTo(503);
+        assertThat(readResponse.getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("2");
+        assertThat(readChain.getRequest()).isNull();
+
+        assertThat(writeResponse.getStatus()).isEqualTo(200);
+        assertThat(writeChain.getRequest()).isNotNull();
+        assertThat(writes.inflight()).isZero();
+
+        assertThat(otherChain.getRequest()).isNotNull();
+
+        assertThat(registry.get("customer.requests.rejected").tag("kind", "read")
+                .functionCounter().count()).isEqualTo(1);
+        assertThat(registry.get("customer.requests.rejected").tag("kind", "write")
+                .functionCounter().count()).isZero();
+        assertThat(registry.get("customer.requests.limit").tag("kind", "read")
+                .gauge().value()).isEqualTo(1);
+    }
+}
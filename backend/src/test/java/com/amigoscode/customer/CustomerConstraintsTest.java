@@ -0,0 +1,126 @@
+package com.amigoscode.customer;
+
+import io.r2dbc.postgresql.api.ErrorDetails;
+import io.r2dbc.postgresql.api.PostgresqlException;
+import io.r2dbc.postgresql.message.backend.Field;
+import io.r2dbc.spi.R2dbcDataIntegrityViolationException;
+import org.junit.jupiter.api.Test;
+import org.postgresql.util.PSQLException;
+import org.postgresql.util.ServerErrorMessage;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerConstraintsTest {
+
+    @Test
+    void emailUniqueViolationIsTakenEmail() {
+        // Given
+        Exception e = violation("23505", CustomerConstraints.EMAIL_UNIQUE);
+
+        // When
+        boolean actual = CustomerConstraints.isEmailTaken(e);
+
+        // Then
+        assertThat(actual).isTrue();
+    }
+
+    @Test
+    void otherViolationsAreNotTakenEmail() {
+        // Given
+        Exception notNull = violation("23502", null);
+        Exception otherUnique = violation("23505", "customer_pkey");
+
+        // When
+        // Then
+        assertThat(CustomerConstraints.isEmailTaken(notNull)).isFalse();
+        assertThat(CustomerConstraints.isEmailTaken(otherUnique)).isFalse();
+        assertThat(CustomerConstraints.isEmailTaken(new DataIntegrityViolationException("no cause"))).isFalse();
+    }
+
+    @Test
+    void uniqueViolationOfUnknownConstraintIsNotTakenEmail() {
+        // Given
+        Exception jdbc = new DataIntegrityViolationException("violation",
+                new SQLException("duplicate key", "23505"));
+        Exception r2dbc = new DataIntegrityViolationException("violation",
+                new R2dbcDataIntegrityViolationException("duplicate key", "23505"));
+
+        // When
+        // Then
+        assertThat(CustomerConstraints.isEmailTaken(jdbc)).isFalse();
+        assertThat(CustomerConstraints.isEmailTaken(r2dbc)).isFalse();
+    }
+
+    @Test
+    void readsConstraintOfFailedBatch() {
+        // Given
+        BatchUpdateException emailTaken = new BatchUpdateException("batch failed", "23505", new int[0]);
+        emailTaken.setNextException((SQLException) violation("23505", CustomerConstraints.EMAIL_UNIQUE).getCause());
+        BatchUpdateException pkeyTaken = new BatchUpdateException("batch failed", "23505", new int[0]);
+        pkeyTaken.setNextException((SQLException) violation("23505", "customer_pkey").getCause());
+
+        // When
+        // Then
+        assertThat(CustomerConstraints.isEmailTaken(
+                new DataIntegrityViolationException("violation", emailTaken))).isTrue();
+        assertThat(CustomerConstraints.isEmailTaken(
+                new DataIntegrityViolationException("violation", pkeyTaken))).isFalse();
+    }
+
+    @Test
+    void readsConstraintOfR2dbcViolations() {
+        // Given
+        Exception emailTaken = r2dbcViolation("23505", CustomerConstraints.EMAIL_UNIQUE);
+        Exception otherUnique = r2dbcViolation("23505", "customer_pkey");
+        Exception notNull = r2dbcViolation("23502", null);
+
+        // When
+        // Then
+        assertThat(CustomerConstraints.isEmailTaken(emailTaken)).isTrue();
+        assertThat(CustomerConstraints.isEmailTaken(otherUnique)).isFalse();
+        assertThat(CustomerConstraints.isEmailTaken(notNull)).isFalse();
+    }
+
+    static DataIntegrityViolationException violation(String sqlState, String constraint) {
+        // the fields of a Postgres ErrorResponse, as the driver parses them
+        String fields = "SERROR\0C" + sqlState + "\0Mviolation\0"
+                + (constraint == null ? "" : "n" + constraint + "\0");
+        return new DataIntegrityViolationException("violation",
+                new PSQLException(new ServerErrorMessage(fields)));
+    }
+
+    private static Exception r2dbcViolation(String sqlState, String constraint) {
+        List<Field> fields = new ArrayList<>(List.of(
+                new Field(Field.FieldType.CODE, sqlState),
+                new Field(Field.FieldType.MESSAGE, "violation")
+        ));
+        if (constraint != null) {
+            fields.add(new Field(Field.FieldType.CONSTRAINT_NAME, constraint));
+        }
+        return new DataIntegrityViolationException("violation",
+                new PostgresViolation(new ErrorDetails(fields)));
+    }
+
+    // the driver's own exception types are not public
+    private static class PostgresViolation extends R2dbcDataIntegrityViolationException
+            implements PostgresqlException {
+
+        private final ErrorDetails errorDetails;
+
+        PostgresViolation(ErrorDetails errorDetails) {
+            super(errorDetails.getMessage(), errorDetails.getCode());
+            this.errorDetails = errorDetails;
+        }
+
+        @Override
+        public ErrorDetails getErrorDetails() {
+            return errorDetails;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.exception.RequestValidationException;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerCursorTest {
+
+    @Test
+    void canDecodeEncodedCursor() {
+        // Given
+        Customer customer = new Customer(7, "Jamila: the second", "jamila@gmail.com", 19);
+        CustomerCursor cursor = CustomerCursor.of(CustomerSort.NAME, customer);
+
+        // When
+        CustomerCursor actual = CustomerCursor.decode(cursor.encode());
+
+        // Then
+        assertThat(actual).isEqualTo(cursor);
+    }
+
+    @Test
+    void willThrowWhenCursorIsNotValid() {
+        assertThatThrownBy(() -> CustomerCursor.decode("not-a-cursor"))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("invalid cursor");
+    }
+
+    @Test
+    void isBeforeComparesKeyThenId() {
+        // Given
+        CustomerCursor cursor = CustomerCursor.of(
+                CustomerSort.AGE, new Customer(5, "Alex", "alex@gmail.com", 21)
+        );
+
+        // Then
+        assertThat(cursor.isBefore(new Customer(6, "Ali", "ali@gmail.com", 21))).isTrue();
+        assertThat(cursor.isBefore(new Customer(4, "Ali", "ali@gmail.com", 21))).isFalse();
+        assertThat(cursor.isBefore(new Customer(1, "Ali", "ali@gmail.com", 22))).isTrue();
+        assertThat(CustomerCursor.start(CustomerSort.EMAIL)
+                .isBefore(new Customer(1, "Ali", "", 22))).isTrue();
+    }
+
+    @Test
+    void pageRequestRejectsCursorOfAnotherSort() {
+        // Given
+        String after = CustomerCursor.start(CustomerSort.AGE).encode();
+
+        // Then
+        assertThatThrownBy(() -> CustomerPageRequest.of("name", after, 10))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("cursor does not match sort [name]");
+    }
+}
@@ -0,0 +1,105 @@
+package com.amigoscode.customer;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerDaoMetricsPostProcessorTest {
+
+    private MeterRegistry meterRegistry;
+    private CustomerInMemoryDataAccessService underTest;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("meterRegistry", meterRegistry);
+        CustomerDaoMetricsPostProcessor postProcessor = new CustomerDaoMetricsPostProcessor(
+                beanFactory.getBeanProvider(MeterRegistry.class)
+        );
+        underTest = (CustomerInMemoryDataAccessService) postProcessor.postProcessAfterInitialization(
+                new CustomerInMemoryDataAccessService(), "memory"
+        );
+        underTest.insertCustomer(new Customer("Alex", "alex@gmail.com", 20));
+        underTest.insertCustomer(new Customer("Jamila", "jamila@gmail.com", 21));
+    }
+
+    @Test
+    void timesCallsAndRecordsReturnedRows() {
+        // When
+        underTest.selectAllCustomers();
+        underTest.selectCustomerById(1);
+        underTest.selectCustomerById(99);
+
+        // Then
+        assertThat(meterRegistry.get("customer.dao")
+                .tags("dao", "memory", "method", "insertCustomer", "outcome", "success")
+                .timer().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("customer.dao.rows")
+                .tags("dao", "memory", "method", "selectAllCustomers")
+                .summary().totalAmount()).isEqualTo(2);
+        assertThat(meterRegistry.get("customer.dao.rows")
+                .tags("dao", "memory", "method", "selectCustomerById")
+                .summary().totalAmount()).isEqualTo(1);
+    }
+
+    @Test
+    void countsRowsPassedToCallback() {
+        // Given
+        AtomicInteger seen = new AtomicInteger();
+
+        // When
+        underTest.streamCustomers((id, name, email, age) -> seen.incrementAndGet());
+
+        // Then
+        assertThat(seen).hasValue(2);
+        assertThat(meterRegistry.get("customer.dao.rows")
+                .tags("dao", "memory", "method", "streamCustomers")
+                .summary().totalAmount()).isEqualTo(2);
+    }
+
+    @Test
+    void tagsFailedCallsWithException() {
+        // Given
+        // SimpleMeterRegistry keeps no histogram, so look at how the timer is built
+        List<String> histograms = new ArrayList<>();
+        meterRegistry.config().meterFilter(new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                if (Boolean.TRUE.equals(config.isPercentileHistogram())) {
+                    histograms.add(id.getTag("outcome"));
+                }
+                return config;
+            }
+        });
+
+        // When
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> underTest.insertCustomer(
+                    new Customer("Alex", "alex@gmail.com", 20)))
+                    .isInstanceOf(DuplicateKeyException.class);
+        }
+
+        // Then
+        Timer failures = meterRegistry.get("customer.dao")
+                .tags("dao", "memory", "method", "insertCustomer",
+                        "outcome", "DuplicateKeyException")
+                .timer();
+        assertThat(failures.count()).isEqualTo(2);
+        assertThat(histograms).containsExactly("DuplicateKeyException");
+    }
+}
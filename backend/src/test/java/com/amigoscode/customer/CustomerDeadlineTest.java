@@ -0,0 +1,289 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.AbstractTestcontainers;
+import com.amigoscode.exception.DeadlineExceededException;
+import com.amigoscode.exception.RequestValidationException;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.method.HandlerMethod;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+class CustomerDeadlineTest extends AbstractTestcontainers {
+
+    private HikariDataSource pool;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        pool = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(postgreSQLContainer.getJdbcUrl())
+                .username(postgreSQLContainer.getUsername())
+                .password(postgreSQLContainer.getPassword())
+                .build();
+        pool.setMaximumPoolSize(2);
+        jdbcTemplate = new JdbcTemplate(new CustomerDeadlineDataSource(pool));
+    }
+
+    @AfterEach
+    void tearDown() {
+        CustomerDeadline.set(null);
+        pool.close();
+    }
+
+    @Test
+    void cancelsStatementAtDeadline() {
+        // Given
+        CustomerDeadline.set(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(200));
+        long start = System.nanoTime();
+
+        // When
+        // Then
+        assertThatThrownBy(() -> jdbcTemplate.execute("SELECT pg_sleep(10)"))
+                .isInstanceOf(DeadlineExceededException.class);
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+        CustomerDeadline.set(null);
+        assertThat(jdbcTemplate.queryForObject("""
+                SELECT count(*) FROM pg_stat_activity
+                WHERE state = 'active' AND query LIKE 'SELECT pg_sleep%'
+                """, Integer.class)).isZero();
+    }
+
+    @Test
+    void failsWithoutQueryOnceDeadlinePassed() {
+        // Given
+        CustomerDeadline.set(System.nanoTime() - 1);
+
+        // When
+        // Then
+        assertThatThrownBy(() -> jdbcTemplate.queryForObject("SELECT 1", Integer.class))
+                .isInstanceOf(DeadlineExceededException.class);
+        // the pool starts with the first connection taken
+        assertThat(pool.isRunning()).isFalse();
+    }
+
+    @Test
+    void leavesStatementsWithoutDeadlineAlone() {
+        // When
+        Integer actual = jdbcTemplate.queryForObject("SELECT 1 FROM pg_sleep(0.3)", Integer.class);
+
+        // Then
+        assertThat(actual).isEqualTo(1);
+    }
+
+    @Test
+    void interceptorUsesEndpointTimeoutUnlessHeaderAsksForLess() throws Exception {
+        // Given
+        CustomerDeadlineInterceptor underTest = new CustomerDeadlineInterceptor(
+                new MockEnvironment().withProperty("customer.deadline.timeouts.get-customer", "2s"),
+                Duration.ofSeconds(30));
+        HandlerMethod getCustomer = new HandlerMethod(mock(CustomerController.class),
+                CustomerController.class.getMethod("getCustomer", Integer.class, HttpHeaders.class));
+        MockHttpServletRequest withHeader = new MockHttpServletRequest("GET", "/api/v1/customers/1");
+        withHeader.addHeader(CustomerDeadlineInterceptor.HEADER, "100ms");
+        MockHttpServletRequest withLongerHeader = new MockHttpServletRequest("GET", "/api/v1/customers/1");
+        withLongerHeader.addHeader(CustomerDeadlineInterceptor.HEADER, "60000");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // When
+        underTest.preHandle(withHeader, response, getCustomer);
+        long withHeaderRemaining = CustomerDeadline.remainingNanos();
+        underTest.afterCompletion(withHeader, response, getCustomer, null);
+        underTest.preHandle(withLongerHeader, response, getCustomer);
+        long withLongerHeaderRemaining = CustomerDeadline.remainingNanos();
+        underTest.afterCompletion(withLongerHeader, response, getCustomer, null);
+
+        // Then
+        assertThat(withHeaderRemaining).isBetween(0L, TimeUnit.MILLISECONDS.toNanos(100));
+        assertThat(withLongerHeaderRemaining)
+                .isBetween(TimeUnit.SECONDS.toNanos(1), TimeUnit.SECONDS.toNanos(2));
+        assertThat(CustomerDeadline.get()).isNull();
+    }
+
+    @Test
+    void interceptorLeavesEndpointWithoutTimeoutAloneUnlessHeaderAsks() throws Exception {
+        // Given
+        CustomerDeadlineInterceptor underTest = new CustomerDeadlineInterceptor(
+                new MockEnvironment().withProperty("customer.deadline.timeouts.get-customer", "none"),
+                Duration.ofSeconds(5));
+        HandlerMethod getCustomer = new HandlerMethod(mock(CustomerController.class),
+                CustomerController.class.getMethod("getCustomer", Integer.class, HttpHeaders.class));
+        MockHttpServletRequest withoutHeader = new MockHttpServletRequest("GET", "/api/v1/customers/1");
+        MockHttpServletRequest withHeader = new MockHttpServletRequest("GET", "/api/v1/customers/1");
+        withHeader.addHeader(CustomerDeadlineInterceptor.HEADER, "1m");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // When
+        underTest.preHandle(withoutHeader, response, getCustomer);
+        Long withoutHeaderDeadline = CustomerDeadline.get();
+        underTest.afterCompletion(withoutHeader, response, getCustomer, null);
+        underTest.preHandle(withHeader, response, getCustomer);
+        long withHeaderRemaining = CustomerDeadline.remainingNanos();
+        underTest.afterCompletion(withHeader, response, getCustomer, null);
+
+        // Then
+        assertThat(withoutHeaderDeadline).isNull();
+        assertThat(withHeaderRemaining)
+                .isBetween(TimeUnit.SECONDS.toNanos(50), TimeUnit.MINUTES.toNanos(1));
+    }
+
+    @Test
+    void importOutlivesDefaultTimeoutWithShippedSettings() throws Exception {
+        // Given
+        StandardEnvironment environment = new StandardEnvironment();
+        new YamlPropertySourceLoader()
+                .load("application", new ClassPathResource("application.yml"))
+                .forEach(environment.getPropertySources()::addLast);
+        // far below the shipped default, which the import must not get
+        CustomerDeadlineInterceptor interceptor = new CustomerDeadlineInterceptor(
+                environment, Duration.ofMillis(200));
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/v1/customers:import");
+        String suffix = UUID.randomUUID().toString();
+        InputStream csv = new PausingInputStream(
+                "Alex,alex-%s,20\n".formatted(suffix),
+                Duration.ofMillis(500),
+                "Jamila,jamila-%s,21\n".formatted(suffix));
+
+        AtomicReference<Long> deadline = new AtomicReference<>();
+
+        // When
+        CustomerImportResult actual = handle(interceptor, request, () -> {
+            deadline.set(CustomerDeadline.get());
+            return importService().importCustomers(csv, false);
+        });
+
+        // Then
+        assertThat(deadline.get()).isNull();
+        assertThat(actual).isEqualTo(new CustomerImportResult(2, 2, 0));
+    }
+
+    @Test
+    void importStopsAtRequestedDeadline() throws Exception {
+        // Given
+        CustomerDeadlineInterceptor interceptor = new CustomerDeadlineInterceptor(
+                new MockEnvironment().withProperty("customer.deadline.timeouts.import-customers", "none"),
+                Duration.ofSeconds(5));
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/v1/customers:import");
+        request.addHeader(CustomerDeadlineInterceptor.HEADER, "200ms");
+        String email = "late-" + UUID.randomUUID();
+        InputStream csv = new PausingInputStream(
+                "Alex,%s,20\n".formatted(email),
+                Duration.ofMillis(500),
+                "");
+
+        // When
+        // Then
+        assertThatThrownBy(() -> handle(interceptor, request,
+                () -> importService().importCustomers(csv, false)))
+                .isInstanceOf(DeadlineExceededException.class);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM customer WHERE email = ?", Integer.class, email
+        )).isZero();
+    }
+
+    private CustomerImportService importService() {
+        return new CustomerImportService(
+                jdbcTemplate,
+                new TransactionTemplate(new DataSourceTransactionManager(jdbcTemplate.getDataSource())),
+                mock(CustomerResponseCache.class),
+                mock(CustomerEmailFilter.class)
+        );
+    }
+
+    private static <T> T handle(CustomerDeadlineInterceptor interceptor,
+                                MockHttpServletRequest request,
+                                Supplier<T> body) throws Exception {
+        HandlerMethod importCustomers = new HandlerMethod(mock(CustomerBulkController.class),
+                CustomerBulkController.class.getMethod("importCustomers", InputStream.class, boolean.class));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        interceptor.preHandle(request, response, importCustomers);
+        try {
+            return body.get();
+        } finally {
+            interceptor.afterCompletion(request, response, importCustomers, null);
+        }
+    }
+
+    @Test
+    void interceptorRejectsMalformedHeader() {
+        // Given
+        CustomerDeadlineInterceptor underTest = new CustomerDeadlineInterceptor(
+                new MockEnvironment(), Duration.ofSeconds(5));
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/customers");
+        request.addHeader(CustomerDeadlineInterceptor.HEADER, "soon");
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.preHandle(request, new MockHttpServletResponse(), new Object()))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessageContaining(CustomerDeadlineInterceptor.HEADER);
+    }
+
+    /**
+     * A request body that stalls part way, as a slow client's does.
+     */
+    private static class PausingInputStream extends InputStream {
+
+        private final InputStream first;
+        private final Duration pause;
+        private final InputStream rest;
+        private boolean paused;
+
+        PausingInputStream(String first, Duration pause, String rest) {
+            this.first = new ByteArrayInputStream(first.getBytes(StandardCharsets.UTF_8));
+            this.pause = pause;
+            this.rest = new ByteArrayInputStream(rest.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = first.read(b, off, len);
+            if (n >= 0) {
+                return n;
+            }
+            if (!paused) {
+                paused = true;
+                try {
+                    Thread.sleep(pause.toMillis());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+            return rest.read(b, off, len);
+        }
+    }
+}
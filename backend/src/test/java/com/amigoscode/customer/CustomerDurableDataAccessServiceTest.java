@@ -0,0 +1,152 @@
+package com.amigoscode.customer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerDurableDataAccessServiceTest {
+
+    @TempDir
+    private Path directory;
+    private final List<CustomerDurableDataAccessService> opened = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (CustomerDurableDataAccessService store : opened) {
+            store.abandon();
+        }
+    }
+
+    private CustomerDurableDataAccessService open() throws IOException {
+        CustomerDurableDataAccessService store =
+                new CustomerDurableDataAccessService(directory, Duration.ofHours(1));
+        opened.add(store);
+        return store;
+    }
+
+    private List<Path> logSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(file -> file.getFileName().toString().startsWith("wal-"))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    @Test
+    void replaysTheLogAfterACrash() throws IOException {
+        // Given
+        CustomerDurableDataAccessService store = open();
+        Customer alex = new Customer("Alex", "alex@gmail.com", 20);
+        Customer jamila = new Customer("Jamila", "jamila@gmail.com", 21);
+        Customer ali = new Customer("Ali", "ali@gmail.com", 22);
+        store.insertCustomer(alex);
+        store.insertCustomer(jamila);
+        store.insertCustomer(ali);
+        store.updateCustomer(new Customer(alex.getId(), null, "alex@amigoscode.com", 30));
+        store.deleteCustomerById(jamila.getId());
+        List<Customer> expected = store.selectAllCustomers();
+
+        // When
+        CustomerDurableDataAccessService recovered = open();
+
+        // Then
+        assertThat(recovered.selectAllCustomers()).containsExactlyInAnyOrderElementsOf(expected);
+        assertThat(recovered.existsCustomerWithEmail("alex@gmail.com")).isFalse();
+        assertThat(recovered.existsCustomerWithEmail("alex@amigoscode.com")).isTrue();
+        Customer next = new Customer("Next", "next@gmail.com", 40);
+        recovered.insertCustomer(next);
+        assertThat(next.getId()).isGreaterThan(ali.getId());
+    }
+
+    @Test
+    void loadsTheSnapshotAndReplaysTheTail() throws IOException {
+        // Given
+        CustomerDurableDataAccessService store = open();
+        for (int i = 0; i < 100; i++) {
+            store.insertCustomer(new Customer("Customer " + i, "customer-%d@gmail.com".formatted(i), i));
+        }
+        store.snapshot();
+        store.deleteCustomerById(1);
+        store.updateCustomer(new Customer(2, "Renamed", null, null));
+        List<Customer> expected = store.selectAllCustomers();
+
+        // When
+        CustomerDurableDataAccessService recovered = open();
+
+        // Then
+        assertThat(recovered.selectAllCustomers()).containsExactlyInAnyOrderElementsOf(expected);
+        assertThat(recovered.selectCustomerById(2))
+                .hasValueSatisfying(c -> assertThat(c.getName()).isEqualTo("Renamed"));
+        // the segment covered by the snapshot is gone
+        assertThat(logSegments()).hasSize(2);
+        assertThat(logSegments().get(0).getFileName().toString())
+                .isEqualTo("wal-%020d.log".formatted(101));
+    }
+
+    @Test
+    void cutsOffATornRecord() throws IOException {
+        // Given
+        CustomerDurableDataAccessService store = open();
+        store.insertCustomer(new Customer("Alex", "alex@gmail.com", 20));
+        store.insertCustomer(new Customer("Jamila", "jamila@gmail.com", 21));
+        store.abandon();
+        opened.remove(store);
+        Path segment = logSegments().get(logSegments().size() - 1);
+        long intact = Files.size(segment);
+        // the start of a record whose payload never made it to disk
+        Files.write(segment, new byte[]{0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        // When
+        CustomerDurableDataAccessService recovered = open();
+
+        // Then
+        assertThat(recovered.selectAllCustomers()).hasSize(2);
+        assertThat(Files.size(segment)).isEqualTo(intact);
+        recovered.insertCustomer(new Customer("Ali", "ali@gmail.com", 22));
+        assertThat(open().selectAllCustomers()).hasSize(3);
+    }
+
+    @Test
+    void concurrentWritesAreAllDurable() throws Exception {
+        // Given
+        CustomerDurableDataAccessService store = open();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> writers = new ArrayList<>();
+
+        // When
+        for (int t = 0; t < 8; t++) {
+            int thread = t;
+            writers.add(executor.submit(() -> {
+                for (int i = 0; i < 200; i++) {
+                    store.insertCustomer(new Customer(
+                            "Customer", "customer-%d-%d@gmail.com".formatted(thread, i), i));
+                }
+            }));
+        }
+        for (Future<?> writer : writers) {
+            writer.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // Then
+        assertThat(open().selectAllCustomers())
+                .containsExactlyInAnyOrderElementsOf(store.selectAllCustomers())
+                .hasSize(1_600);
+    }
+}
@@ -0,0 +1,176 @@
+package com.amigoscode.customer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerEmailFilterTest {
+
+    private CustomerInMemoryDataAccessService customerDao;
+    private CustomerEmailFilter underTest;
+
+    @BeforeEach
+    void setUp() {
+        customerDao = new CustomerInMemoryDataAccessService();
+        underTest = new CustomerEmailFilter(
+                customerDao,
+                0.01,
+                Duration.ofHours(1),
+                Clock.fixed(Instant.parse("2026-01-01T00:00:00Z"), ZoneOffset.UTC)
+        );
+    }
+
+    @AfterEach
+    void tearDown() {
+        underTest.close();
+    }
+
+    private void rebuild() throws Exception {
+        underTest.requestRebuild().get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void everyEmailMightBePresentBeforeTheFirstLoad() {
+        // When
+        boolean actual = underTest.mightContain("alex@gmail.com");
+
+        // Then
+        assertThat(actual).isTrue();
+    }
+
+    @Test
+    void neverRulesOutAStoredOrAddedEmail() throws Exception {
+        // Given
+        for (int i = 0; i < 5_000; i++) {
+            customerDao.insertCustomer(new Customer(
+                    "Customer", "customer-%d@gmail.com".formatted(i), 20));
+        }
+        rebuild();
+
+        // When
+        underTest.emailAdded("alex@gmail.com");
+
+        // Then
+        for (int i = 0; i < 5_000; i++) {
+            assertThat(underTest.mightContain("customer-%d@gmail.com".formatted(i))).isTrue();
+        }
+        assertThat(underTest.mightContain("alex@gmail.com")).isTrue();
+    }
+
+    @Test
+    void rulesOutMostUnknownEmails() throws Exception {
+        // Given
+        for (int i = 0; i < 5_000; i++) {
+            customerDao.insertCustomer(new Customer(
+                    "Customer", "customer-%d@gmail.com".formatted(i), 20));
+        }
+        rebuild();
+
+        // When
+        long falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (underTest.mightContain("unknown-%d@gmail.com".formatted(i))) {
+                falsePositives++;
+            }
+        }
+
+        // Then
+        // sized for 10 000 emails at 1%, so half full it should do far better
+        assertThat(falsePositives).isLessThan(100);
+    }
+
+    @Test
+    void rebuildForgetsDeletedEmails() throws Exception {
+        // Given
+        Customer alex = new Customer("Alex", "alex@gmail.com", 20);
+        customerDao.insertCustomer(alex);
+        rebuild();
+        customerDao.deleteCustomerById(alex.getId());
+        underTest.emailRemoved(alex.getId());
+
+        // When
+        rebuild();
+
+        // Then
+        assertThat(underTest.mightContain("alex@gmail.com")).isFalse();
+    }
+
+    @Test
+    void countsADeleteReportedTwiceOnce() throws Exception {
+        // Given
+        rebuild();
+
+        // When
+        underTest.emailRemoved(1);
+        underTest.emailRemoved(1);
+        underTest.emailRemoved(2);
+
+        // Then
+        assertThat(underTest.staleEntries()).isEqualTo(2);
+    }
+
+    @Test
+    void keepsEmailsAndCountsAddedDuringRebuild() throws Exception {
+        // Given
+        CountDownLatch streaming = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger streams = new AtomicInteger();
+        CountDownLatch thirdStream = new CountDownLatch(3);
+        CustomerInMemoryDataAccessService blockingDao = new CustomerInMemoryDataAccessService() {
+            @Override
+            public void streamCustomers(CustomerRowCallback callback) {
+                super.streamCustomers(callback);
+                thirdStream.countDown();
+                if (streams.incrementAndGet() == 2) {
+                    streaming.countDown();
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        };
+        underTest.close();
+        underTest = new CustomerEmailFilter(
+                blockingDao,
+                0.01,
+                Duration.ofHours(1),
+                Clock.fixed(Instant.parse("2026-01-01T00:00:00Z"), ZoneOffset.UTC)
+        );
+        rebuild();
+        for (int i = 0; i < 5_000; i++) {
+            blockingDao.insertCustomer(new Customer(
+                    "Customer", "customer-%d@gmail.com".formatted(i), 20));
+        }
+        Future<?> rebuilding = underTest.requestRebuild();
+        assertThat(streaming.await(10, TimeUnit.SECONDS)).isTrue();
+
+        // When
+        for (int i = 0; i < 6_000; i++) {
+            underTest.emailAdded("late-%d@gmail.com".formatted(i));
+        }
+        release.countDown();
+        rebuilding.get(10, TimeUnit.SECONDS);
+
+        // Then
+        for (int i = 0; i < 6_000; i++) {
+            assertThat(underTest.mightContain("late-%d@gmail.com".formatted(i))).isTrue();
+        }
+        // 11 000 entries are only over the 10 000 the filter was sized for
+        // if the adds during the rebuild were kept
+        underTest.emailAdded("one-more@gmail.com");
+        assertThat(thirdStream.await(10, TimeUnit.SECONDS)).isTrue();
+    }
+}
@@ -0,0 +1,169 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.AbstractTestcontainers;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerHedgedReadsTest extends AbstractTestcontainers {
+
+    // stands in for a replica; a database of its own can be locked on its own
+    private static final String SECOND_DATABASE = "amigoscode_hedged_reads";
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    private JdbcTemplate jdbcTemplate;
+    private HikariDataSource primaryDataSource;
+    private HikariDataSource secondDataSource;
+    private CustomerHedgedReads underTest;
+
+    @BeforeEach
+    void setUp() {
+        primaryDataSource = dataSource(postgreSQLContainer.getJdbcUrl());
+        jdbcTemplate = new JdbcTemplate(primaryDataSource);
+        if (!jdbcTemplate.queryForObject(
+                "SELECT exists(SELECT 1 FROM pg_database WHERE datname = ?)",
+                Boolean.class, SECOND_DATABASE)) {
+            jdbcTemplate.execute("CREATE DATABASE " + SECOND_DATABASE);
+        }
+        String database = jdbcTemplate.queryForObject("SELECT current_database()", String.class);
+        String secondUrl = postgreSQLContainer.getJdbcUrl()
+                .replace("/" + database, "/" + SECOND_DATABASE);
+        Flyway.configure()
+                .dataSource(secondUrl, postgreSQLContainer.getUsername(), postgreSQLContainer.getPassword())
+                .load()
+                .migrate();
+        secondDataSource = dataSource(secondUrl);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (underTest != null) {
+            underTest.close();
+        }
+        primaryDataSource.close();
+        secondDataSource.close();
+    }
+
+    private static HikariDataSource dataSource(String url) {
+        HikariDataSource dataSource = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(url)
+                .username(postgreSQLContainer.getUsername())
+                .password(postgreSQLContainer.getPassword())
+                .build();
+        dataSource.setMaximumPoolSize(4);
+        return dataSource;
+    }
+
+    @Test
+    void slowReadIsAnsweredBySecondDatasourceAndCancelled() throws Exception {
+        // Given
+        CustomerReplicas.Replica replica = new CustomerReplicas.Replica("replica-1", secondDataSource);
+        replica.update(true, 0);
+        CustomerReplicas replicas = new CustomerReplicas(
+                primaryDataSource, List.of(replica), Long.MAX_VALUE, Duration.ofSeconds(1));
+        underTest = new CustomerHedgedReads(
+                replicas, 1.0, Duration.ofMillis(1), Duration.ofMillis(50), 4);
+        MeterRegistry registry = new SimpleMeterRegistry();
+        underTest.bindTo(registry);
+
+        CustomerDao customerDao = (CustomerDao) new CustomerHedgedReadsPostProcessor(
+                new StaticListableBeanFactory(Map.of("customerHedgedReads", underTest))
+                        .getBeanProvider(CustomerHedgedReads.class)
+        ).postProcessAfterInitialization(
+                new CustomerJDBCDataAccessService(
+                        new JdbcTemplate(new LazyConnectionDataSourceProxy(
+                                new CustomerRoutingDataSource(primaryDataSource, replicas))),
+                        new CustomerRowMapper()
+                ),
+                "jdbc"
+        );
+
+        Customer customer = new Customer("Hedged", "hedged-" + UUID.randomUUID(), 30);
+        customerDao.insertCustomerIfAbsent(customer);
+
+        Optional<Customer> actual;
+        try (Connection lock = secondDataSource.getConnection()) {
+            // every read of the "replica" waits for this transaction
+            lock.setAutoCommit(false);
+            lock.createStatement().execute("LOCK TABLE customer IN ACCESS EXCLUSIVE MODE");
+
+            // When
+            actual = customerDao.selectCustomerById(customer.getId());
+
+            // Then
+            long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+            while (waitingForLock() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(waitingForLock()).isZero();
+            lock.rollback();
+        }
+        assertThat(actual).map(Customer::getEmail).contains(customer.getEmail());
+        assertThat(registry.get("customer.reads.hedged").functionCounter().count()).isEqualTo(1);
+        assertThat(registry.get("customer.reads.hedge.wins").functionCounter().count()).isEqualTo(1);
+    }
+
+    private int waitingForLock() {
+        return jdbcTemplate.queryForObject("""
+                SELECT count(*) FROM pg_stat_activity
+                WHERE datname = ? AND wait_event_type = 'Lock'
+                """, Integer.class, SECOND_DATABASE);
+    }
+
+    @Test
+    void hedgesAreLimitedByBudget() {
+        // Given
+        underTest = new CustomerHedgedReads(
+                new CustomerReplicas(primaryDataSource, List.of(), 0, Duration.ofSeconds(1)),
+                0.5, Duration.ofMillis(1), Duration.ofMillis(10), 1);
+
+        // When
+        boolean beforeReads = underTest.withdraw();
+        underTest.deposit();
+        underTest.deposit();
+        boolean afterTwoReads = underTest.withdraw();
+        boolean again = underTest.withdraw();
+
+        // Then
+        assertThat(beforeReads).isFalse();
+        assertThat(afterTwoReads).isTrue();
+        assertThat(again).isFalse();
+    }
+
+    @Test
+    void latencyWindowTracksP95() {
+        // Given
+        CustomerHedgedReads.LatencyWindow window = new CustomerHedgedReads.LatencyWindow(100);
+
+        // When
+        for (int i = 1; i <= 9; i++) {
+            window.record(i);
+        }
+        long beforeRecompute = window.p95(-7);
+        for (int i = 10; i <= 100; i++) {
+            window.record(i);
+        }
+
+        // Then
+        assertThat(beforeRecompute).isEqualTo(-7);
+        assertThat(window.p95(-7)).isEqualTo(95);
+    }
+}
@@ -0,0 +1,106 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.AbstractTestcontainers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class CustomerImportServiceTest extends AbstractTestcontainers {
+
+    private JdbcTemplate jdbcTemplate;
+    private CustomerImportService underTest;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = getJdbcTemplate();
+        underTest = new CustomerImportService(
+                jdbcTemplate,
+                new TransactionTemplate(
+                        new DataSourceTransactionManager(jdbcTemplate.getDataSource())
+                ),
+                mock(CustomerResponseCache.class),
+                mock(CustomerEmailFilter.class)
+        );
+    }
+
+    private static InputStream csv(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void importCustomersMergesAndCountsRejectedRows() {
+        // Given
+        String suffix = UUID.randomUUID().toString();
+        String takenEmail = "taken-" + suffix;
+        new CustomerJDBCDataAccessService(jdbcTemplate, new CustomerRowMapper())
+                .insertCustomer(new Customer("Taken", takenEmail, 30));
+        String content = """
+                name,email,age
+                Alex,alex-%1$s,20
+                "Smith, Jamila",jamila-%1$s, 21
+                Repeated,alex-%1$s,22
+                Taken,%2$s,23
+                NoAge,noage-%1$s,
+                BadAge,badage-%1$s,old
+                """.formatted(suffix, takenEmail);
+
+        // When
+        CustomerImportResult actual = underTest.importCustomers(csv(content), true);
+
+        // Then
+        assertThat(actual).isEqualTo(new CustomerImportResult(6, 2, 4));
+        assertThat(jdbcTemplate.queryForList(
+                "SELECT name FROM customer WHERE email LIKE ? ORDER BY name",
+                String.class,
+                "%-" + suffix
+        )).containsExactly("Alex", "Smith, Jamila", "Taken");
+    }
+
+    @Test
+    void importCustomersCountsMalformedRecordsAsRejected() {
+        // Given
+        String suffix = UUID.randomUUID().toString();
+        String content = ("Alex,alex-%1$s,20\n"
+                + "only one column\n"
+                + "Bad \"quote,bad-%1$s,21\n"
+                + "Extra,extra-%1$s,22,column\r\n"
+                + "\"Closed\" early,closed-%1$s,23\n"
+                + "\"Two\nLines\",lines-%1$s,24\r\n"
+                + "Last,last-%1$s,25").formatted(suffix);
+
+        // When
+        CustomerImportResult actual = underTest.importCustomers(csv(content), false);
+
+        // Then
+        assertThat(actual).isEqualTo(new CustomerImportResult(7, 3, 4));
+        assertThat(jdbcTemplate.queryForList(
+                "SELECT name FROM customer WHERE email LIKE ? ORDER BY name",
+                String.class,
+                "%-" + suffix
+        )).containsExactly("Alex", "Last", "Two\nLines");
+    }
+
+    @Test
+    void importCustomersCountsUnterminatedQuoteAsOneRejectedRow() {
+        // Given
+        String suffix = UUID.randomUUID().toString();
+        String content = "Alex,alex-%1$s,20\n\"Open,open-%1$s,21\nNever,closed-%1$s,22\n"
+                .formatted(suffix);
+
+        // When
+        CustomerImportResult actual = underTest.importCustomers(csv(content), false);
+
+        // Then
+        assertThat(actual).isEqualTo(new CustomerImportResult(2, 1, 1));
+    }
+}
@@ -0,0 +1,216 @@
+package com.amigoscode.customer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerInMemoryDataAccessServiceTest {
+
+    private static final int THREADS = 8;
+
+    private CustomerInMemoryDataAccessService underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerInMemoryDataAccessService();
+    }
+
+    private <T> List<T> runConcurrently(List<Callable<T>> tasks) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<T>> futures = new ArrayList<>();
+            for (Callable<T> task : tasks) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get(30, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void insertAndSelectCustomer() {
+        // Given
+        Customer customer = new Customer("Alex", "alex@gmail.com", 20);
+
+        // When
+        underTest.insertCustomer(customer);
+
+        // Then
+        assertThat(customer.getId()).isNotNull();
+        assertThat(underTest.selectCustomerById(customer.getId())).hasValue(customer);
+        assertThat(underTest.existsCustomerWithEmail("alex@gmail.com")).isTrue();
+        assertThat(underTest.existsCustomerById(customer.getId())).isTrue();
+    }
+
+    @Test
+    void insertCustomerThrowsWhenEmailIsTaken() {
+        // Given
+        underTest.insertCustomer(new Customer("Alex", "alex@gmail.com", 20));
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.insertCustomer(
+                new Customer("Other", "alex@gmail.com", 30)))
+                .isInstanceOf(DuplicateKeyException.class);
+        assertThat(underTest.selectAllCustomers()).hasSize(1);
+    }
+
+    @Test
+    void selectedCustomersAreCopies() {
+        // Given
+        Customer customer = new Customer("Alex", "alex@gmail.com", 20);
+        underTest.insertCustomer(customer);
+
+        // When
+        underTest.selectCustomerById(customer.getId()).orElseThrow().setEmail("other@gmail.com");
+        customer.setName("Changed");
+
+        // Then
+        assertThat(underTest.selectCustomerById(customer.getId()))
+                .hasValue(new Customer(customer.getId(), "Alex", "alex@gmail.com", 20));
+    }
+
+    @Test
+    void updateCustomerMovesTheEmailIndex() {
+        // Given
+        Customer alex = new Customer("Alex", "alex@gmail.com", 20);
+        Customer jamila = new Customer("Jamila", "jamila@gmail.com", 21);
+        underTest.insertCustomer(alex);
+        underTest.insertCustomer(jamila);
+
+        // When
+        CustomerUpdateResult updated = underTest.updateCustomer(
+                new Customer(alex.getId(), null, "alex@amigoscode.com", null));
+        CustomerUpdateResult duplicate = underTest.updateCustomer(
+                new Customer(jamila.getId(), null, "alex@amigoscode.com", null));
+        CustomerUpdateResult unchanged = underTest.updateCustomer(
+                new Customer(jamila.getId(), "Jamila", null, 21));
+        CustomerUpdateResult missing = underTest.updateCustomer(
+                new Customer(-1, "Foo", null, null));
+
+        // Then
+        assertThat(updated).isEqualTo(CustomerUpdateResult.updated(
+                new Customer(alex.getId(), "Alex", "alex@amigoscode.com", 20)));
+        assertThat(duplicate.status()).isEqualTo(CustomerUpdateResult.Status.DUPLICATE_EMAIL);
+        assertThat(unchanged.status()).isEqualTo(CustomerUpdateResult.Status.NO_CHANGES);
+        assertThat(missing.status()).isEqualTo(CustomerUpdateResult.Status.NOT_FOUND);
+        assertThat(underTest.existsCustomerWithEmail("alex@gmail.com")).isFalse();
+        assertThat(underTest.insertCustomerIfAbsent(
+                new Customer("New", "alex@gmail.com", 30))).isTrue();
+    }
+
+    @Test
+    void deleteCustomerReleasesTheEmail() {
+        // Given
+        Customer customer = new Customer("Alex", "alex@gmail.com", 20);
+        underTest.insertCustomer(customer);
+
+        // When
+        List<Boolean> deleted = underTest.deleteCustomersById(
+                List.of(customer.getId(), customer.getId()));
+
+        // Then
+        assertThat(deleted).containsExactly(true, false);
+        assertThat(underTest.existsCustomerWithEmail("alex@gmail.com")).isFalse();
+        assertThat(underTest.selectCustomerById(customer.getId())).isEmpty();
+    }
+
+    @Test
+    void concurrentInsertsOfOneEmailLetExactlyOneWin() throws Exception {
+        // Given
+        List<Callable<Boolean>> inserts = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            int age = i;
+            inserts.add(() -> underTest.insertCustomerIfAbsent(
+                    new Customer("Alex", "alex@gmail.com", age)));
+        }
+
+        // When
+        List<Boolean> actual = runConcurrently(inserts);
+
+        // Then
+        assertThat(actual).containsOnlyOnce(true);
+        assertThat(underTest.selectAllCustomers()).hasSize(1);
+    }
+
+    @Test
+    void concurrentInsertsGetDistinctIds() throws Exception {
+        // Given
+        List<Callable<Integer>> inserts = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            String email = "customer-%d@gmail.com".formatted(i);
+            inserts.add(() -> {
+                Customer customer = new Customer("Alex", email, 20);
+                underTest.insertCustomer(customer);
+                return customer.getId();
+            });
+        }
+
+        // When
+        List<Integer> ids = runConcurrently(inserts);
+
+        // Then
+        assertThat(new HashSet<>(ids)).hasSize(1_000);
+        assertThat(underTest.selectAllCustomers()).hasSize(1_000);
+    }
+
+    @Test
+    void concurrentEmailSwapsKeepEmailsUnique() throws Exception {
+        // Given
+        int customers = 16;
+        int emails = 20;
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < customers; i++) {
+            Customer customer = new Customer("Alex", "email-%d@gmail.com".formatted(i), 20);
+            underTest.insertCustomer(customer);
+            ids.add(customer.getId());
+        }
+        List<Callable<CustomerUpdateResult>> updates = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            int id = ids.get(i % customers);
+            String email = "email-%d@gmail.com".formatted((i * 7) % emails);
+            updates.add(() -> underTest.updateCustomer(new Customer(id, null, email, null)));
+        }
+
+        // When
+        runConcurrently(updates);
+
+        // Then
+        List<Customer> all = underTest.selectAllCustomers();
+        Set<String> stored = new HashSet<>();
+        for (Customer customer : all) {
+            assertThat(stored.add(customer.getEmail())).isTrue();
+            assertThat(underTest.existsCustomerWithEmail(customer.getEmail())).isTrue();
+        }
+        assertThat(all).hasSize(customers);
+        for (int i = 0; i < emails; i++) {
+            String email = "email-%d@gmail.com".formatted(i);
+            assertThat(underTest.existsCustomerWithEmail(email))
+                    .isEqualTo(stored.contains(email));
+        }
+    }
+}
@@ -5,6 +5,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.jdbc.core.JdbcTemplate;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -41,6 +42,60 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
         assertThat(actual).isNotEmpty();
     }
 
+    @Test
+    void selectCustomersPagesInSortOrder() {
+        //Given
+        String prefix = UUID.randomUUID().toString();
+        for (int age = 30; age > 27; age--) {
+            underTest.insertCustomer(new Customer(
+                    prefix + "-" + age,
+                    FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                    age
+            ));
+        }
+        CustomerPageRequest firstPage = CustomerPageRequest.first(CustomerSort.NAME, 2);
+
+        //When
+        List<Customer> all = underTest.selectCustomers(
+                        CustomerPageRequest.first(CustomerSort.NAME, 1000))
+                .stream()
+                .filter(c -> c.getName().startsWith(prefix))
+                .toList();
+        List<Customer> first = underTest.selectCustomers(firstPage);
+        List<Customer> second = underTest.selectCustomers(new CustomerPageRequest(
+                CustomerSort.NAME,
+                CustomerCursor.of(CustomerSort.NAME, first.get(first.size() - 1)),
+                2
+        ));
+
+        //Then
+        assertThat(all).extracting(Customer::getAge).containsExactly(28, 29, 30);
+        assertThat(first).hasSize(2);
+        assertThat(second).isNotEmpty();
+        assertThat(second).doesNotContainAnyElementsOf(first);
+        assertThat(second.get(0).getName().compareTo(first.get(1).getName()))
+                .isGreaterThanOrEqualTo(0);
+    }
+
+    @Test
+    void streamCustomers() {
+        //Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer customer = new Customer(
+                FAKER.name().fullName(),
+                email,
+                20
+        );
+        underTest.insertCustomer(customer);
+        List<String> emails = new ArrayList<>();
+
+        //When
+        underTest.streamCustomers((id, name, e, age) -> emails.add(e));
+
+        //Then
+        assertThat(emails).contains(email);
+    }
+
     @Test
     void selectCustomerById() {
         //Given
@@ -82,6 +137,68 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
     void insertCustomer() {
     }
 
+    @Test
+    void insertCustomerTakesOneIdPerRow() {
+        // Given
+        String first = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        String second = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+
+        // When
+        underTest.insertCustomer(new Customer(FAKER.name().fullName(), first, 20));
+        underTest.insertCustomer(new Customer(FAKER.name().fullName(), second, 20));
+
+        // Then
+        int firstId = idOf(first);
+        int secondId = idOf(second);
+        assertThat(secondId).isEqualTo(firstId + 1);
+        // below the ids of customer_jpa_id_seq
+        assertThat(secondId).isLessThan(1_000_000_000);
+    }
+
+    private int idOf(String email) {
+        return underTest.selectAllCustomers()
+                .stream()
+                .filter(c -> c.getEmail().equals(email))
+                .map(Customer::getId)
+                .findFirst()
+                .orElseThrow();
+    }
+
+    @Test
+    void insertCustomerIfAbsent() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer customer = new Customer(
+                FAKER.name().fullName(),
+                email,
+                20
+        );
+
+        // When
+        boolean actual = underTest.insertCustomerIfAbsent(customer);
+
+        // Then
+        assertThat(actual).isTrue();
+        assertThat(underTest.selectCustomerById(customer.getId()))
+                .isPresent()
+                .hasValueSatisfying(c -> assertThat(c.getEmail()).isEqualTo(email));
+    }
+
+    @Test
+    void insertCustomerIfAbsentReturnsFalseWhenEmailTaken() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        underTest.insertCustomer(new Customer(FAKER.name().fullName(), email, 20));
+        Customer duplicate = new Customer(FAKER.name().fullName(), email, 30);
+
+        // When
+        boolean actual = underTest.insertCustomerIfAbsent(duplicate);
+
+        // Then
+        assertThat(actual).isFalse();
+        assertThat(duplicate.getId()).isNull();
+    }
+
     @Test
     void existsPersonWithEmail() {
         // Given
@@ -364,4 +481,103 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
             assertThat(c.getEmail()).isEqualTo(customer.getEmail());
         });
     }
-}
\ No newline at end of file
+
+    @Test
+    void updateCustomerReportsOutcome() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer customer = new Customer(FAKER.name().fullName(), email, 20);
+        underTest.insertCustomerIfAbsent(customer);
+        String takenEmail = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        underTest.insertCustomer(new Customer(FAKER.name().fullName(), takenEmail, 20));
+
+        // When
+        CustomerUpdateResult updated = underTest.updateCustomer(
+                new Customer(customer.getId(), "foo", null, 21));
+        CustomerUpdateResult unchanged = underTest.updateCustomer(
+                new Customer(customer.getId(), "foo", email, 21));
+        CustomerUpdateResult duplicate = underTest.updateCustomer(
+                new Customer(customer.getId(), null, takenEmail, null));
+        CustomerUpdateResult missing = underTest.updateCustomer(
+                new Customer(-1, "foo", null, null));
+
+        // Then
+        assertThat(updated.status()).isEqualTo(CustomerUpdateResult.Status.UPDATED);
+        assertThat(updated.customer())
+                .isEqualTo(new Customer(customer.getId(), "foo", email, 21));
+        assertThat(unchanged.status()).isEqualTo(CustomerUpdateResult.Status.NO_CHANGES);
+        assertThat(duplicate.status()).isEqualTo(CustomerUpdateResult.Status.DUPLICATE_EMAIL);
+        assertThat(missing.status()).isEqualTo(CustomerUpdateResult.Status.NOT_FOUND);
+    }
+
+    @Test
+    void insertCustomersIfAbsentReportsEachCustomer() {
+        // Given
+        String takenEmail = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        underTest.insertCustomer(new Customer(FAKER.name().fullName(), takenEmail, 20));
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        List<Customer> customers = List.of(
+                new Customer("first", email, 20),
+                new Customer("taken", takenEmail, 21),
+                new Customer("repeated", email, 22)
+        );
+
+        // When
+        List<Boolean> actual = underTest.insertCustomersIfAbsent(customers);
+
+        // Then
+        assertThat(actual).containsExactly(true, false, false);
+        assertThat(customers.get(0).getId()).isNotNull();
+        assertThat(customers.get(1).getId()).isNull();
+        assertThat(underTest.selectCustomerById(customers.get(0).getId()))
+                .hasValueSatisfying(c -> assertThat(c.getName()).isEqualTo("first"));
+    }
+
+    @Test
+    void updateCustomersReportsEachOutcome() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer customer = new Customer(FAKER.name().fullName(), email, 20);
+        underTest.insertCustomerIfAbsent(customer);
+        String takenEmail = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        underTest.insertCustomer(new Customer(FAKER.name().fullName(), takenEmail, 20));
+
+        // When
+        List<CustomerUpdateResult> actual = underTest.updateCustomers(List.of(
+                new Customer(customer.getId(), "foo", null, 21),
+                new Customer(customer.getId(), "foo", email, null),
+                new Customer(customer.getId(), null, takenEmail, null),
+                new Customer(-1, "foo", null, null)
+        ));
+
+        // Then
+        assertThat(actual).extracting(CustomerUpdateResult::status).containsExactly(
+                CustomerUpdateResult.Status.UPDATED,
+                CustomerUpdateResult.Status.NO_CHANGES,
+                CustomerUpdateResult.Status.DUPLICATE_EMAIL,
+                CustomerUpdateResult.Status.NOT_FOUND
+        );
+        assertThat(underTest.selectCustomerById(customer.getId()))
+                .hasValue(new Customer(customer.getId(), "foo", email, 21));
+    }
+
+    @Test
+    void deleteCustomersById() {
+        // Given
+        Customer customer = new Customer(
+                FAKER.name().fullName(),
+                FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                20
+        );
+        underTest.insertCustomerIfAbsent(customer);
+
+        // When
+        List<Boolean> actual = underTest.deleteCustomersById(
+                List.of(customer.getId(), -1, customer.getId())
+        );
+
+        // Then
+        assertThat(actual).containsExactly(true, false, false);
+        assertThat(underTest.existsCustomerById(customer.getId())).isFalse();
+    }
+}
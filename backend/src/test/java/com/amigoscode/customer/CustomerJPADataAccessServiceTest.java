@@ -1,25 +1,37 @@
 package com.amigoscode.customer;
 
+import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
 
+import java.util.List;
+import java.util.Optional;
+
+import static com.amigoscode.customer.CustomerConstraintsTest.violation;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 class CustomerJPADataAccessServiceTest {
 
     private CustomerJPADataAccessService underTest;
     private AutoCloseable autoCloseable;
     @Mock private CustomerRepository customerRepository;
+    @Mock private EntityManager entityManager;
 
     @BeforeEach
     void setUp() {
         autoCloseable = MockitoAnnotations.openMocks(this);
-        underTest = new CustomerJPADataAccessService(customerRepository);
+        underTest = new CustomerJPADataAccessService(customerRepository, entityManager, 2);
     }
 
     @AfterEach
@@ -28,12 +40,17 @@ class CustomerJPADataAccessServiceTest {
     }
 
     @Test
-    void selectAllCustomers() {
+    void selectCustomers() {
+        // Given
+        CustomerPageRequest pageRequest = CustomerPageRequest.first(CustomerSort.AGE, 10);
+
         // When
-        underTest.selectAllCustomers();
+        underTest.selectCustomers(pageRequest);
 
         // Then
-        verify(customerRepository).findAll();
+        verify(customerRepository).selectCustomersAfterAge(
+                Integer.MIN_VALUE, Integer.MIN_VALUE, 10
+        );
     }
 
     @Test
@@ -62,6 +79,65 @@ class CustomerJPADataAccessServiceTest {
         verify(customerRepository).save(customer);
     }
 
+    @Test
+    void saveCustomersFlushesAndClearsEveryBatch() {
+        // Given
+        Customer alex = new Customer("Alex", "alex@gmail.com", 20);
+        Customer jamila = new Customer("Jamila", "jamila@gmail.com", 21);
+        Customer existing = new Customer(7, "Ali", "ali@gmail.com", 22);
+        Customer merged = new Customer(7, "Ali", "ali@gmail.com", 22);
+        when(entityManager.merge(existing)).thenReturn(merged);
+
+        // When
+        List<Customer> actual = underTest.saveCustomers(List.of(alex, jamila, existing));
+
+        // Then
+        assertThat(actual).containsExactly(alex, jamila, merged);
+        InOrder inOrder = Mockito.inOrder(entityManager);
+        inOrder.verify(entityManager).persist(alex);
+        inOrder.verify(entityManager).persist(jamila);
+        inOrder.verify(entityManager).flush();
+        inOrder.verify(entityManager).clear();
+        inOrder.verify(entityManager).merge(existing);
+        inOrder.verify(entityManager).flush();
+        inOrder.verify(entityManager).clear();
+        inOrder.verifyNoMoreInteractions();
+    }
+
+    @Test
+    void insertCustomerIfAbsent() {
+        // Given
+        Customer customer = new Customer(
+                "Ali", "ali@gmail.com", 2
+        );
+        when(customerRepository.insertCustomerIfAbsent("Ali", "ali@gmail.com", 2))
+                .thenReturn(Optional.of(5));
+
+        // When
+        boolean actual = underTest.insertCustomerIfAbsent(customer);
+
+        // Then
+        assertThat(actual).isTrue();
+        assertThat(customer.getId()).isEqualTo(5);
+    }
+
+    @Test
+    void insertCustomerIfAbsentReturnsFalseWhenEmailTaken() {
+        // Given
+        Customer customer = new Customer(
+                "Ali", "ali@gmail.com", 2
+        );
+        when(customerRepository.insertCustomerIfAbsent("Ali", "ali@gmail.com", 2))
+                .thenReturn(Optional.empty());
+
+        // When
+        boolean actual = underTest.insertCustomerIfAbsent(customer);
+
+        // Then
+        assertThat(actual).isFalse();
+        assertThat(customer.getId()).isNull();
+    }
+
     @Test
     void existsCustomerWithEmail() {
         // Given
@@ -99,16 +175,108 @@ class CustomerJPADataAccessServiceTest {
     }
 
     @Test
-    void updateCustomer() {
+    void updateCustomerIssuesOneStatement() {
+        // Given
+        when(customerRepository.updateCustomer(1, "Alex", null, null)).thenReturn(1);
+
+        // When
+        CustomerUpdateResult actual = underTest.updateCustomer(
+                new Customer(1, "Alex", null, null)
+        );
+
+        // Then
+        assertThat(actual.status()).isEqualTo(CustomerUpdateResult.Status.UPDATED);
+        verify(customerRepository, never()).findById(1);
+    }
+
+    @Test
+    void updateCustomerWithoutChanges() {
         // Given
         Customer customer = new Customer(
                 1, "Ali", "ali@gmail.com", 2
         );
+        when(customerRepository.updateCustomer(1, "Ali", null, 2)).thenReturn(0);
+        when(customerRepository.findById(1)).thenReturn(Optional.of(customer));
 
         // When
-        underTest.updateCustomer(customer);
+        CustomerUpdateResult actual = underTest.updateCustomer(
+                new Customer(1, "Ali", null, 2)
+        );
 
         // Then
-        verify(customerRepository).save(customer);
+        assertThat(actual.status()).isEqualTo(CustomerUpdateResult.Status.NO_CHANGES);
+    }
+
+    @Test
+    void updateCustomerWithTakenEmail() {
+        // Given
+        Customer customer = new Customer(
+                1, "Ali", "ali@gmail.com", 2
+        );
+        when(customerRepository.updateCustomer(1, null, "alex@gmail.com", null)).thenReturn(0);
+        when(customerRepository.findById(1)).thenReturn(Optional.of(customer));
+
+        // When
+        CustomerUpdateResult actual = underTest.updateCustomer(
+                new Customer(1, null, "alex@gmail.com", null)
+        );
+
+        // Then
+        assertThat(actual.status()).isEqualTo(CustomerUpdateResult.Status.DUPLICATE_EMAIL);
+    }
+
+    @Test
+    void updateCustomerLosingEmailRace() {
+        // Given
+        when(customerRepository.updateCustomer(1, null, "alex@gmail.com", null))
+                .thenThrow(violation("23505", CustomerConstraints.EMAIL_UNIQUE));
+
+        // When
+        CustomerUpdateResult actual = underTest.updateCustomer(
+                new Customer(1, null, "alex@gmail.com", null)
+        );
+
+        // Then
+        assertThat(actual.status()).isEqualTo(CustomerUpdateResult.Status.DUPLICATE_EMAIL);
+    }
+
+    @Test
+    void updateCustomerRethrowsOtherViolations() {
+        // Given
+        DataIntegrityViolationException notNull = violation("23502", null);
+        when(customerRepository.updateCustomer(1, "Alex", null, null)).thenThrow(notNull);
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.updateCustomer(new Customer(1, "Alex", null, null)))
+                .isSameAs(notNull);
+    }
+
+    @Test
+    void updateCustomerNotFound() {
+        // Given
+        when(customerRepository.updateCustomer(1, "Alex", null, null)).thenReturn(0);
+        when(customerRepository.findById(1)).thenReturn(Optional.empty());
+
+        // When
+        CustomerUpdateResult actual = underTest.updateCustomer(
+                new Customer(1, "Alex", null, null)
+        );
+
+        // Then
+        assertThat(actual.status()).isEqualTo(CustomerUpdateResult.Status.NOT_FOUND);
+    }
+
+    @Test
+    void deleteCustomersById() {
+        // Given
+        when(customerRepository.deleteCustomerById(1)).thenReturn(1);
+        when(customerRepository.deleteCustomerById(2)).thenReturn(0);
+
+        // When
+        List<Boolean> actual = underTest.deleteCustomersById(List.of(1, 2));
+
+        // Then
+        assertThat(actual).containsExactly(true, false);
     }
-}
\ No newline at end of file
+}
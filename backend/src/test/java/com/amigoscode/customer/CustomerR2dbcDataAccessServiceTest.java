@@ -0,0 +1,141 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.AbstractTestcontainers;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerR2dbcDataAccessServiceTest extends AbstractTestcontainers {
+
+    private CustomerR2dbcDataAccessService underTest;
+
+    @BeforeEach
+    void setUp() {
+        String url = postgreSQLContainer.getJdbcUrl()
+                .replaceFirst("^jdbc:", "r2dbc:")
+                .replaceFirst("\\?.*$", "");
+        underTest = new CustomerR2dbcDataAccessService(ConnectionFactories.get(
+                ConnectionFactoryOptions.parse(url).mutate()
+                        .option(ConnectionFactoryOptions.USER, postgreSQLContainer.getUsername())
+                        .option(ConnectionFactoryOptions.PASSWORD, postgreSQLContainer.getPassword())
+                        .build()
+        ));
+    }
+
+    private Customer insertCustomer(String name, int age) {
+        Customer customer = new Customer(
+                name,
+                FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                age
+        );
+        assertThat(underTest.insertCustomerIfAbsent(customer).block()).isTrue();
+        return customer;
+    }
+
+    @Test
+    void insertCustomerIfAbsent() {
+        // Given
+        Customer customer = insertCustomer(FAKER.name().fullName(), 20);
+        Customer sameEmail = new Customer("Other", customer.getEmail(), 30);
+
+        // When
+        Boolean inserted = underTest.insertCustomerIfAbsent(sameEmail).block();
+
+        // Then
+        assertThat(inserted).isFalse();
+        assertThat(underTest.selectCustomerById(customer.getId()).block())
+                .isEqualTo(customer);
+        assertThat(underTest.existsCustomerWithEmail(customer.getEmail()).block()).isTrue();
+    }
+
+    @Test
+    void selectCustomersPagesInSortOrder() {
+        // Given
+        String prefix = UUID.randomUUID().toString();
+        for (int age = 30; age > 27; age--) {
+            insertCustomer(prefix + "-" + age, age);
+        }
+
+        // When
+        List<Customer> first = underTest.selectCustomers(
+                new CustomerPageRequest(CustomerSort.NAME,
+                        new CustomerCursor(CustomerSort.NAME, prefix, Integer.MIN_VALUE), 2))
+                .collectList()
+                .block();
+        List<Customer> second = underTest.selectCustomers(new CustomerPageRequest(
+                        CustomerSort.NAME,
+                        CustomerCursor.of(CustomerSort.NAME, first.get(first.size() - 1)),
+                        2))
+                .collectList()
+                .block();
+
+        // Then
+        assertThat(first).extracting(Customer::getAge).containsExactly(28, 29);
+        assertThat(second.get(0).getAge()).isEqualTo(30);
+    }
+
+    @Test
+    void streamCustomersHonoursDemand() {
+        // Given
+        for (int i = 0; i < 3; i++) {
+            insertCustomer(FAKER.name().fullName(), 20 + i);
+        }
+
+        // When
+        List<Customer> firstTwo = underTest.streamCustomers()
+                .limitRate(1)
+                .take(2)
+                .collectList()
+                .block();
+
+        // Then
+        assertThat(firstTwo).hasSize(2);
+        assertThat(firstTwo.get(0).getId()).isLessThan(firstTwo.get(1).getId());
+    }
+
+    @Test
+    void updateCustomerReportsOutcome() {
+        // Given
+        Customer customer = insertCustomer(FAKER.name().fullName(), 20);
+        Customer other = insertCustomer(FAKER.name().fullName(), 20);
+
+        // When
+        CustomerUpdateResult updated = underTest.updateCustomer(
+                new Customer(customer.getId(), "New name", null, 21)).block();
+        CustomerUpdateResult unchanged = underTest.updateCustomer(
+                new Customer(customer.getId(), "New name", null, null)).block();
+        CustomerUpdateResult taken = underTest.updateCustomer(
+                new Customer(customer.getId(), null, other.getEmail(), null)).block();
+        CustomerUpdateResult missing = underTest.updateCustomer(
+                new Customer(-1, "New name", null, null)).block();
+
+        // Then
+        assertThat(updated.status()).isEqualTo(CustomerUpdateResult.Status.UPDATED);
+        assertThat(updated.customer().getName()).isEqualTo("New name");
+        assertThat(updated.customer().getAge()).isEqualTo(21);
+        assertThat(unchanged.status()).isEqualTo(CustomerUpdateResult.Status.NO_CHANGES);
+        assertThat(taken.status()).isEqualTo(CustomerUpdateResult.Status.DUPLICATE_EMAIL);
+        assertThat(missing.status()).isEqualTo(CustomerUpdateResult.Status.NOT_FOUND);
+    }
+
+    @Test
+    void deleteCustomerById() {
+        // Given
+        Customer customer = insertCustomer(FAKER.name().fullName(), 20);
+
+        // When
+        Boolean deleted = underTest.deleteCustomerById(customer.getId()).block();
+        Boolean deletedAgain = underTest.deleteCustomerById(customer.getId()).block();
+
+        // Then
+        assertThat(deleted).isTrue();
+        assertThat(deletedAgain).isFalse();
+        assertThat(underTest.selectCustomerById(customer.getId()).block()).isNull();
+    }
+}
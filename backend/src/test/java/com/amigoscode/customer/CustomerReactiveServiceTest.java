@@ -0,0 +1,146 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.exception.DuplicateResourceException;
+import com.amigoscode.exception.RequestValidationException;
+import com.amigoscode.exception.ResourceNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerReactiveServiceTest {
+
+    @Mock
+    private CustomerReactiveDao customerDao;
+    @Mock
+    private CustomerEmailFilter customerEmailFilter;
+    private CustomerReactiveService underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerReactiveService(customerDao, customerEmailFilter);
+    }
+
+    @Test
+    void getCustomersReturnsNextCursorWhenMoreRowsExist() {
+        // Given
+        CustomerPageRequest pageRequest = CustomerPageRequest.first(CustomerSort.ID, 2);
+        Customer alex = new Customer(1, "Alex", "alex@gmail", 19);
+        Customer jamila = new Customer(2, "Jamila", "jamila@gmail", 21);
+        Customer ali = new Customer(3, "Ali", "ali@gmail", 25);
+        when(customerDao.selectCustomers(pageRequest.withLimit(3)))
+                .thenReturn(Flux.just(alex, jamila, ali));
+
+        // When
+        CustomerPage actual = underTest.getCustomers(pageRequest).block();
+
+        // Then
+        assertThat(actual.customers()).isEqualTo(List.of(alex, jamila));
+        assertThat(actual.next()).isEqualTo(CustomerCursor.of(CustomerSort.ID, jamila));
+    }
+
+    @Test
+    void getCustomerFailsWhenNotFound() {
+        // Given
+        when(customerDao.selectCustomerById(10)).thenReturn(Mono.empty());
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.getCustomer(10).block())
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("customer with id [10] not found");
+    }
+
+    @Test
+    void addCustomerFailsWhenEmailTaken() {
+        // Given
+        when(customerDao.insertCustomerIfAbsent(any())).thenReturn(Mono.just(false));
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.addCustomer(
+                new CustomerRegistrationRequest("Alex", "alex@gmail.com", 19)).block())
+                .isInstanceOf(DuplicateResourceException.class)
+                .hasMessage("email already taken");
+        verify(customerEmailFilter, never()).emailAdded(any());
+    }
+
+    @Test
+    void addCustomerAddsEmailToFilter() {
+        // Given
+        when(customerDao.insertCustomerIfAbsent(any())).thenReturn(Mono.just(true));
+
+        // When
+        underTest.addCustomer(
+                new CustomerRegistrationRequest("Alex", "alex@gmail.com", 19)).block();
+
+        // Then
+        verify(customerEmailFilter).emailAdded("alex@gmail.com");
+    }
+
+    @Test
+    void emailRuledOutByFilterIsAvailableWithoutQuery() {
+        // Given
+        when(customerEmailFilter.mightContain("alex@gmail.com")).thenReturn(false);
+
+        // When
+        Boolean available = underTest.isEmailAvailable("alex@gmail.com").block();
+
+        // Then
+        assertThat(available).isTrue();
+        verify(customerDao, never()).existsCustomerWithEmail(any());
+    }
+
+    @Test
+    void deleteCustomerFailsWhenNothingDeleted() {
+        // Given
+        when(customerDao.deleteCustomerById(10)).thenReturn(Mono.just(false));
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.deleteCustomerById(10).block())
+                .isInstanceOf(ResourceNotFoundException.class);
+        verify(customerEmailFilter, never()).emailRemoved(any());
+    }
+
+    @Test
+    void updateCustomerMapsOutcomeToException() {
+        // Given
+        CustomerUpdateRequest request = new CustomerUpdateRequest("Alex", null, null);
+        when(customerDao.updateCustomer(any()))
+                .thenReturn(Mono.just(CustomerUpdateResult.noChanges()));
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.updateCustomer(10, request).block())
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("no data changes found");
+    }
+
+    @Test
+    void updateCustomerReportsOtherViolationsAsInvalid() {
+        // Given
+        CustomerUpdateRequest request = new CustomerUpdateRequest("Alex", null, null);
+        when(customerDao.updateCustomer(any()))
+                .thenReturn(Mono.error(CustomerConstraintsTest.violation("23502", null)));
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.updateCustomer(10, request).block())
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("invalid customer data");
+    }
+}
@@ -0,0 +1,196 @@
+package com.amigoscode.customer;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.Network;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+import org.testcontainers.images.builder.Transferable;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Routes through a primary and a replica that streams from it.
+ */
+@Testcontainers
+class CustomerReplicaRoutingTest {
+
+    private static final Network NETWORK = Network.newNetwork();
+
+    @Container
+    private static final PostgreSQLContainer<?> primary =
+            new PostgreSQLContainer<>("postgres:latest")
+                    .withNetwork(NETWORK)
+                    .withNetworkAliases("primary")
+                    .withDatabaseName("amigoscode-replica-test")
+                    .withUsername("amigoscode")
+                    .withPassword("password")
+                    // the image only lets local connections replicate
+                    .withCopyToContainer(Transferable.of("""
+                            #!/bin/bash
+                            echo "host replication all all scram-sha-256" >> "$PGDATA/pg_hba.conf"
+                            """, 0755), "/docker-entrypoint-initdb.d/replication.sh");
+
+    @Container
+    private static final GenericContainer<?> replica =
+            new GenericContainer<>("postgres:latest")
+                    .withNetwork(NETWORK)
+                    .dependsOn(primary)
+                    .withExposedPorts(PostgreSQLContainer.POSTGRESQL_PORT)
+                    .withEnv("PGPASSWORD", "password")
+                    // clone the primary and follow it
+                    .withCreateContainerCmdModifier(cmd -> cmd
+                            .withUser("postgres")
+                            .withEntrypoint("bash", "-c",
+                                    "pg_basebackup -h primary -U amigoscode -D \"$PGDATA\" -R -X stream"
+                                            + " && chmod 700 \"$PGDATA\" && exec postgres"))
+                    .waitingFor(Wait.forLogMessage(".*ready to accept read-only connections.*\\s", 1));
+
+    private static HikariDataSource primaryDataSource;
+    private static HikariDataSource replicaDataSource;
+
+    private CustomerReplicas replicas;
+
+    @BeforeAll
+    static void beforeAll() {
+        Flyway.configure()
+                .dataSource(primary.getJdbcUrl(), primary.getUsername(), primary.getPassword())
+                .load()
+                .migrate();
+        primaryDataSource = dataSource(primary.getJdbcUrl());
+        replicaDataSource = dataSource("jdbc:postgresql://%s:%d/%s".formatted(
+                replica.getHost(),
+                replica.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT),
+                primary.getDatabaseName()
+        ));
+    }
+
+    @AfterAll
+    static void afterAll() {
+        primaryDataSource.close();
+        replicaDataSource.close();
+    }
+
+    private static HikariDataSource dataSource(String url) {
+        return DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(url)
+                .username(primary.getUsername())
+                .password(primary.getPassword())
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        new JdbcTemplate(replicaDataSource).execute("SELECT pg_wal_replay_resume()");
+        CustomerRoutingDataSource.setPinnedToPrimary(false);
+    }
+
+    private DataSource routingDataSource(long maxLagBytes) {
+        replicas = new CustomerReplicas(
+                primaryDataSource,
+                List.of(new CustomerReplicas.Replica("replica-1", replicaDataSource)),
+                maxLagBytes,
+                Duration.ofSeconds(1)
+        );
+        return new LazyConnectionDataSourceProxy(
+                new CustomerRoutingDataSource(primaryDataSource, replicas)
+        );
+    }
+
+    private static CustomerDao customerDao(DataSource dataSource) {
+        return (CustomerDao) new CustomerReplicaReadsPostProcessor().postProcessAfterInitialization(
+                new CustomerJDBCDataAccessService(new JdbcTemplate(dataSource), new CustomerRowMapper()),
+                "jdbc"
+        );
+    }
+
+    private static void pauseReplay() throws InterruptedException {
+        JdbcTemplate replicaJdbcTemplate = new JdbcTemplate(replicaDataSource);
+        replicaJdbcTemplate.execute("SELECT pg_wal_replay_pause()");
+        while (!"paused".equals(replicaJdbcTemplate.queryForObject(
+                "SELECT pg_get_wal_replay_pause_state()", String.class))) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static Customer customer() {
+        return new Customer("Replicated", "replicated-" + UUID.randomUUID(), 30);
+    }
+
+    @Test
+    void readsGoToReplicaUnlessPinnedToPrimary() throws InterruptedException {
+        // Given
+        CustomerDao underTest = customerDao(routingDataSource(Long.MAX_VALUE));
+        pauseReplay();
+        Customer customer = customer();
+        underTest.insertCustomerIfAbsent(customer);
+        replicas.check();
+
+        // When
+        boolean onReplica = underTest.existsCustomerById(customer.getId());
+        CustomerRoutingDataSource.setPinnedToPrimary(true);
+        boolean onPrimary = underTest.existsCustomerById(customer.getId());
+
+        // Then
+        // the write went to the primary and the replica has not replayed it
+        assertThat(onReplica).isFalse();
+        assertThat(onPrimary).isTrue();
+    }
+
+    @Test
+    void readsFallBackToPrimaryWhileReplicaLags() throws InterruptedException {
+        // Given
+        CustomerDao underTest = customerDao(routingDataSource(0));
+        pauseReplay();
+        Customer customer = customer();
+        underTest.insertCustomerIfAbsent(customer);
+
+        // When
+        replicas.check();
+
+        // Then
+        assertThat(replicas.all().get(0).lagBytes()).isPositive();
+        assertThat(underTest.existsCustomerById(customer.getId())).isTrue();
+    }
+
+    @Test
+    void readOnlyTransactionsGoToReplica() {
+        // Given
+        DataSource dataSource = routingDataSource(Long.MAX_VALUE);
+        replicas.check();
+        TransactionTemplate transactionTemplate = new TransactionTemplate(
+                new DataSourceTransactionManager(dataSource)
+        );
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+
+        // When
+        transactionTemplate.setReadOnly(true);
+        Boolean readOnly = transactionTemplate.execute(status -> jdbcTemplate.queryForObject(
+                "SELECT pg_is_in_recovery()", Boolean.class));
+        transactionTemplate.setReadOnly(false);
+        Boolean readWrite = transactionTemplate.execute(status -> jdbcTemplate.queryForObject(
+                "SELECT pg_is_in_recovery()", Boolean.class));
+
+        // Then
+        assertThat(readOnly).isTrue();
+        assertThat(readWrite).isFalse();
+    }
+}
@@ -7,14 +7,21 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
 @DataJpaTest
 // disable the default behavior of replacing the DataSource with an embedded database
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(CustomerJPADataAccessService.class)
 class CustomerRepositoryTest extends AbstractTestcontainers {
 
     @Autowired
@@ -23,6 +30,9 @@ class CustomerRepositoryTest extends AbstractTestcontainers {
     @Autowired
     private ApplicationContext applicationContext;
 
+    @Autowired
+    private CustomerJPADataAccessService customerDao;
+
     @BeforeEach
     void setUp() {
         // remove the first customer created by Main class
@@ -98,4 +108,130 @@ class CustomerRepositoryTest extends AbstractTestcontainers {
         // Then
         assertThat(actual).isFalse();
     }
-}
\ No newline at end of file
+
+    @Test
+    void insertCustomerIfAbsent() {
+        // Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+
+        // When
+        var inserted = underTest.insertCustomerIfAbsent(FAKER.name().fullName(), email, 20);
+        var duplicate = underTest.insertCustomerIfAbsent(FAKER.name().fullName(), email, 30);
+
+        // Then
+        assertThat(inserted).isPresent();
+        assertThat(duplicate).isEmpty();
+        assertThat(underTest.findById(inserted.get()))
+                .isPresent()
+                .hasValueSatisfying(c -> assertThat(c.getAge()).isEqualTo(20));
+    }
+
+    @Test
+    void selectCustomersAfterName() {
+        // Given
+        String prefix = UUID.randomUUID().toString();
+        for (String suffix : new String[]{"b", "a", "c"}) {
+            underTest.save(new Customer(
+                    prefix + suffix,
+                    FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                    20
+            ));
+        }
+
+        // When
+        var actual = underTest.selectCustomersAfterName(prefix + "a", Integer.MAX_VALUE, 2);
+
+        // Then
+        assertThat(actual)
+                .extracting(Customer::getName)
+                .containsExactly(prefix + "b", prefix + "c");
+    }
+
+    private Customer saveCustomer(String name, int age) {
+        return underTest.save(new Customer(
+                name,
+                FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                age
+        ));
+    }
+
+    @Test
+    void saveCustomersTakesIdsFromPooledSequence() {
+        // Given
+        List<Customer> customers = IntStream.range(0, 120)
+                .mapToObj(i -> new Customer(
+                        FAKER.name().fullName(),
+                        FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                        20
+                ))
+                .toList();
+
+        // When
+        List<Customer> saved = customerDao.saveCustomers(customers);
+
+        // Then
+        assertThat(saved).extracting(Customer::getId).doesNotContainNull().doesNotHaveDuplicates();
+        assertThat(underTest.count()).isEqualTo(120);
+        // one nextval hands out 50 consecutive ids, above those of customer_id_seq
+        Integer first = saved.get(0).getId();
+        assertThat(first).isGreaterThanOrEqualTo(1_000_000_000);
+        assertThat(saved.get(49).getId()).isEqualTo(first + 49);
+    }
+
+    @Test
+    void updateCustomerSetsOnlyGivenFields() {
+        // Given
+        Customer customer = saveCustomer("Alex", 20);
+
+        // When
+        int actual = underTest.updateCustomer(customer.getId(), "Alexander", null, null);
+
+        // Then
+        assertThat(actual).isEqualTo(1);
+        assertThat(underTest.findById(customer.getId())).hasValueSatisfying(c -> {
+            assertThat(c.getName()).isEqualTo("Alexander");
+            assertThat(c.getEmail()).isEqualTo(customer.getEmail());
+            assertThat(c.getAge()).isEqualTo(20);
+        });
+    }
+
+    @Test
+    void updateCustomerSkipsUnchangedRowAndTakenEmail() {
+        // Given
+        Customer alex = saveCustomer("Alex", 20);
+        Customer jamila = saveCustomer("Jamila", 21);
+
+        // When
+        int unchanged = underTest.updateCustomer(alex.getId(), "Alex", alex.getEmail(), 20);
+        int taken = underTest.updateCustomer(alex.getId(), "Alexander", jamila.getEmail(), null);
+
+        // Then
+        assertThat(unchanged).isZero();
+        assertThat(taken).isZero();
+        assertThat(underTest.findById(alex.getId()))
+                .hasValueSatisfying(c -> assertThat(c.getName()).isEqualTo("Alex"));
+    }
+
+    @Test
+    // the stateless session has its own connection, so the rows must be committed
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void streamCustomersScrollsInIdOrder() throws Exception {
+        // Given
+        for (int i = 0; i < 2_500; i += 50) {
+            customerDao.saveCustomers(IntStream.range(i, i + 50)
+                    .mapToObj(n -> new Customer(
+                            "Customer " + n, "stream-" + n + "-" + UUID.randomUUID(), n))
+                    .toList());
+        }
+        List<Integer> ids = new ArrayList<>();
+
+        // When
+        customerDao.streamCustomers((id, name, email, age) -> ids.add(id));
+
+        // Then
+        assertThat(ids).hasSize(2_500).isSorted();
+        assertThat(customerDao.selectAllCustomers())
+                .extracting(Customer::getId)
+                .containsExactlyInAnyOrderElementsOf(ids);
+    }
+}
@@ -0,0 +1,155 @@
+package com.amigoscode.customer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerResponseCacheTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private CustomerResponseCache underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerResponseCache(
+                objectMapper,
+                DataSize.ofMegabytes(1),
+                Duration.ofMinutes(5),
+                DataSize.ofBytes(512),
+                new CustomerRecentWrites(Duration.ofSeconds(5))
+        );
+    }
+
+    private static CustomerPage page(int size) {
+        List<Customer> customers = new ArrayList<>();
+        for (int i = 1; i <= size; i++) {
+            customers.add(new Customer(i, "Customer " + i, "customer-%d@gmail".formatted(i), 20));
+        }
+        return new CustomerPage(customers, null);
+    }
+
+    @Test
+    void servesSerializedCustomerUntilEvicted() throws IOException {
+        // Given
+        AtomicInteger loads = new AtomicInteger();
+        Customer alex = new Customer(1, "Alex", "alex@gmail", 19);
+
+        // When
+        CustomerResponseCache.CachedResponse first = underTest.getCustomer(1, () -> {
+            loads.incrementAndGet();
+            return alex;
+        });
+        CustomerResponseCache.CachedResponse second = underTest.getCustomer(1, () -> {
+            loads.incrementAndGet();
+            return alex;
+        });
+        underTest.evict(1);
+        underTest.getCustomer(1, () -> {
+            loads.incrementAndGet();
+            return alex;
+        });
+
+        // Then
+        assertThat(loads).hasValue(2);
+        assertThat(second).isSameAs(first);
+        assertThat(objectMapper.readValue(first.body(), Customer.class)).isEqualTo(alex);
+        assertThat(first.eTag()).matches("\"[0-9a-f]{32}\"");
+        // too small to be worth compressing
+        assertThat(first.gzippedBody()).isNull();
+    }
+
+    @Test
+    void answersNotModifiedWhenETagMatches() {
+        // Given
+        CustomerResponseCache.CachedResponse response = underTest.getCustomer(
+                1, () -> new Customer(1, "Alex", "alex@gmail", 19));
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch(List.of("\"other\"", response.eTag()));
+
+        // When
+        ResponseEntity<byte[]> actual = underTest.toResponseEntity(response, headers);
+
+        // Then
+        assertThat(actual.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(actual.getHeaders().getETag()).isEqualTo(response.eTag());
+        assertThat(actual.getBody()).isNull();
+    }
+
+    @Test
+    void servesGzippedPageWithItsOwnETag() throws IOException {
+        // Given
+        CustomerResponseCache.CachedResponse response = underTest.getPage(
+                CustomerPageRequest.first(CustomerSort.ID, 100), () -> page(20));
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.ACCEPT_ENCODING, "deflate, gzip;q=0.8");
+
+        // When
+        ResponseEntity<byte[]> actual = underTest.toResponseEntity(response, headers);
+
+        // Then
+        assertThat(actual.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(actual.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+        assertThat(actual.getHeaders().getVary()).containsExactly(HttpHeaders.ACCEPT_ENCODING);
+        assertThat(actual.getHeaders().getETag())
+                .isEqualTo(response.gzipETag())
+                .isNotEqualTo(response.eTag());
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(actual.getBody()))) {
+            assertThat(in.readAllBytes()).isEqualTo(response.body());
+        }
+    }
+
+    @Test
+    void servesIdentityWhenGzipIsRefused() {
+        // Given
+        CustomerResponseCache.CachedResponse response = underTest.getPage(
+                CustomerPageRequest.first(CustomerSort.ID, 100), () -> page(20));
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.ACCEPT_ENCODING, "gzip;q=0");
+
+        // When
+        ResponseEntity<byte[]> actual = underTest.toResponseEntity(response, headers);
+
+        // Then
+        assertThat(actual.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING)).isFalse();
+        assertThat(actual.getBody()).isEqualTo(response.body());
+    }
+
+    @Test
+    void writesRetireCachedPages() {
+        // Given
+        CustomerPageRequest pageRequest = CustomerPageRequest.first(CustomerSort.ID, 100);
+        AtomicInteger loads = new AtomicInteger();
+        underTest.getPage(pageRequest, () -> {
+            loads.incrementAndGet();
+            return page(1);
+        });
+
+        // When
+        underTest.getPage(pageRequest, () -> {
+            loads.incrementAndGet();
+            return page(1);
+        });
+        underTest.evictPages();
+        underTest.getPage(pageRequest, () -> {
+            loads.incrementAndGet();
+            return page(2);
+        });
+
+        // Then
+        assertThat(loads).hasValue(2);
+    }
+}
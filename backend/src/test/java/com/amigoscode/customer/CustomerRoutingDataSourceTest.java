@@ -0,0 +1,181 @@
+package com.amigoscode.customer;
+
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class CustomerRoutingDataSourceTest {
+
+    private static final Instant NOW = Instant.parse("2026-01-01T00:00:00Z");
+
+    private CustomerReplicas.Replica first;
+    private CustomerReplicas.Replica second;
+    private CustomerRoutingDataSource underTest;
+
+    @BeforeEach
+    void setUp() {
+        first = new CustomerReplicas.Replica("replica-1", mock(DataSource.class));
+        second = new CustomerReplicas.Replica("replica-2", mock(DataSource.class));
+        first.update(true, 0);
+        second.update(true, 0);
+        CustomerReplicas replicas = new CustomerReplicas(
+                mock(DataSource.class),
+                List.of(first, second),
+                1024,
+                Duration.ofSeconds(1)
+        );
+        underTest = new CustomerRoutingDataSource(mock(DataSource.class), replicas);
+    }
+
+    @AfterEach
+    void tearDown() {
+        CustomerRoutingDataSource.setReads(false);
+        CustomerRoutingDataSource.setPinnedToPrimary(false);
+        TransactionSynchronizationManager.clear();
+    }
+
+    @Test
+    void sendsReadsToReplicasInTurn() {
+        // Given
+        CustomerRoutingDataSource.setReads(true);
+
+        // When
+        Object a = underTest.determineCurrentLookupKey();
+        Object b = underTest.determineCurrentLookupKey();
+
+        // Then
+        assertThat(List.of(a, b)).containsExactlyInAnyOrder("replica-1", "replica-2");
+    }
+
+    @Test
+    void sendsEverythingElseToPrimary() {
+        // When
+        Object actual = underTest.determineCurrentLookupKey();
+
+        // Then
+        assertThat(actual).isEqualTo(CustomerRoutingDataSource.PRIMARY);
+    }
+
+    @Test
+    void skipsReplicasThatLagOrAreDown() {
+        // Given
+        CustomerRoutingDataSource.setReads(true);
+        first.update(true, 4096);
+
+        // When
+        Object whileOneLags = underTest.determineCurrentLookupKey();
+        second.update(false, -1);
+        Object whileNoneIsUsable = underTest.determineCurrentLookupKey();
+
+        // Then
+        assertThat(whileOneLags).isEqualTo("replica-2");
+        assertThat(whileNoneIsUsable).isEqualTo(CustomerRoutingDataSource.PRIMARY);
+    }
+
+    @Test
+    void keepsReadsOnPrimaryWhenPinnedOrInReadWriteTransaction() {
+        // Given
+        CustomerRoutingDataSource.setReads(true);
+
+        // When
+        CustomerRoutingDataSource.setPinnedToPrimary(true);
+        Object pinned = underTest.determineCurrentLookupKey();
+        CustomerRoutingDataSource.setPinnedToPrimary(false);
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        Object inTransaction = underTest.determineCurrentLookupKey();
+
+        // Then
+        assertThat(pinned).isEqualTo(CustomerRoutingDataSource.PRIMARY);
+        assertThat(inTransaction).isEqualTo(CustomerRoutingDataSource.PRIMARY);
+    }
+
+    @Test
+    void sendsReadOnlyTransactionsToReplicas() {
+        // Given
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        // When
+        Object actual = underTest.determineCurrentLookupKey();
+
+        // Then
+        assertThat(actual).isIn("replica-1", "replica-2");
+    }
+
+    @Test
+    void loadsRecentlyWrittenCustomersFromPrimary() {
+        // Given
+        CustomerRecentWrites recentWrites = new CustomerRecentWrites(Duration.ofMinutes(1));
+        recentWrites.written(1);
+
+        // When
+        boolean written = recentWrites.loadCustomer(1, CustomerRoutingDataSource::isPinnedToPrimary);
+        boolean other = recentWrites.loadCustomer(2, CustomerRoutingDataSource::isPinnedToPrimary);
+        boolean page = recentWrites.loadPage(CustomerRoutingDataSource::isPinnedToPrimary);
+
+        // Then
+        assertThat(written).isTrue();
+        assertThat(other).isFalse();
+        assertThat(page).isTrue();
+        assertThat(CustomerRoutingDataSource.isPinnedToPrimary()).isFalse();
+    }
+
+    private static boolean pinnedWhileHandling(CustomerReadYourWritesFilter filter,
+                                               MockHttpServletRequest request,
+                                               MockHttpServletResponse response) throws Exception {
+        AtomicBoolean pinned = new AtomicBoolean();
+        filter.doFilter(request, response, new MockFilterChain() {
+            @Override
+            public void doFilter(ServletRequest request, ServletResponse response) {
+                pinned.set(CustomerRoutingDataSource.isPinnedToPrimary());
+            }
+        });
+        return pinned.get();
+    }
+
+    @Test
+    void pinsClientToPrimaryAfterItWrites() throws Exception {
+        // Given
+        Duration window = Duration.ofSeconds(5);
+        CustomerReadYourWritesFilter filter = new CustomerReadYourWritesFilter(
+                window, Clock.fixed(NOW, ZoneOffset.UTC));
+        CustomerReadYourWritesFilter later = new CustomerReadYourWritesFilter(
+                window, Clock.fixed(NOW.plus(window).plusSeconds(1), ZoneOffset.UTC));
+        MockHttpServletResponse writeResponse = new MockHttpServletResponse();
+
+        // When
+        boolean write = pinnedWhileHandling(filter,
+                new MockHttpServletRequest("POST", "/api/v1/customers"), writeResponse);
+        Cookie cookie = writeResponse.getCookie(CustomerReadYourWritesFilter.COOKIE);
+        MockHttpServletRequest read = new MockHttpServletRequest("GET", "/api/v1/customers/1");
+        read.setCookies(cookie);
+        boolean readAfterWrite = pinnedWhileHandling(filter, read, new MockHttpServletResponse());
+        boolean readAfterWindow = pinnedWhileHandling(later, read, new MockHttpServletResponse());
+
+        // Then
+        assertThat(cookie).isNotNull();
+        assertThat(cookie.getMaxAge()).isEqualTo(5);
+        assertThat(write).isTrue();
+        assertThat(readAfterWrite).isTrue();
+        assertThat(readAfterWindow).isFalse();
+        assertThat(CustomerRoutingDataSource.isPinnedToPrimary()).isFalse();
+    }
+}
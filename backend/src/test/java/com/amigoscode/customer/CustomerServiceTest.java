@@ -13,7 +13,10 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
 
+import java.time.Duration;
+import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
@@ -28,12 +31,21 @@ class CustomerServiceTest {
 
     @Mock
     private CustomerDao customerDao;
+    @Mock
+    private CustomerResponseCache customerResponseCache;
+    @Mock
+    private CustomerEmailFilter customerEmailFilter;
     private CustomerService underTest;
 
     @BeforeEach
     void setUp() {
         //AutoCloseable autoCloseable = MockitoAnnotations.openMocks(this);
-        underTest = new CustomerService(customerDao);
+        underTest = new CustomerService(
+                customerDao,
+                new CustomerCache(100, Duration.ofMinutes(5), new CustomerRecentWrites(Duration.ofSeconds(5))),
+                customerResponseCache,
+                customerEmailFilter
+        );
 
     }
 
@@ -46,6 +58,46 @@ class CustomerServiceTest {
         verify(customerDao).selectAllCustomers();
     }
 
+    @Test
+    void getCustomersReturnsNextCursorWhenMoreRowsExist() {
+        // given
+        CustomerPageRequest pageRequest = CustomerPageRequest.first(CustomerSort.ID, 2);
+        Customer alex = new Customer(1, "Alex", "alex@gmail", 19);
+        Customer jamila = new Customer(2, "Jamila", "jamila@gmail", 21);
+        Customer ali = new Customer(3, "Ali", "ali@gmail", 25);
+        when(customerDao.selectCustomers(pageRequest.withLimit(3)))
+                .thenReturn(List.of(alex, jamila, ali));
+        // when
+        CustomerPage actual = underTest.getCustomers(pageRequest);
+        // then
+        assertThat(actual.customers()).isEqualTo(List.of(alex, jamila));
+        assertThat(actual.next()).isEqualTo(CustomerCursor.of(CustomerSort.ID, jamila));
+    }
+
+    @Test
+    void getCustomersReturnsNoCursorOnLastPage() {
+        // given
+        CustomerPageRequest pageRequest = CustomerPageRequest.first(CustomerSort.NAME, 2);
+        Customer alex = new Customer(1, "Alex", "alex@gmail", 19);
+        when(customerDao.selectCustomers(pageRequest.withLimit(3)))
+                .thenReturn(List.of(alex));
+        // when
+        CustomerPage actual = underTest.getCustomers(pageRequest);
+        // then
+        assertThat(actual.customers()).isEqualTo(List.of(alex));
+        assertThat(actual.next()).isNull();
+    }
+
+    @Test
+    void streamCustomers() {
+        // given
+        CustomerRowCallback callback = (id, name, email, age) -> { };
+        // when
+        underTest.streamCustomers(callback);
+        // then
+        verify(customerDao).streamCustomers(callback);
+    }
+
     @Test
     void canGetCustomer() {
         // given
@@ -62,6 +114,76 @@ class CustomerServiceTest {
         assertThat(actual).isEqualTo(customer);
     }
 
+    @Test
+    void getCustomerIsCachedUntilItChanges() {
+        // given
+        int id = 10;
+        Customer customer = new Customer(id, "Alex", "alex@gmail", 19);
+        Customer renamed = new Customer(id, "Alexander", "alex@gmail", 19);
+        when(customerDao.selectCustomerById(id))
+                .thenReturn(Optional.of(customer), Optional.of(renamed));
+        when(customerDao.updateCustomer(Mockito.any()))
+                .thenReturn(CustomerUpdateResult.updated(renamed));
+
+        // when
+        Customer first = underTest.getCustomer(id);
+        Customer cached = underTest.getCustomer(id);
+        underTest.updateCustomer(id, new CustomerUpdateRequest("Alexander", null, null));
+        Customer reloaded = underTest.getCustomer(id);
+
+        // then
+        assertThat(first).isEqualTo(customer);
+        assertThat(cached).isEqualTo(customer);
+        assertThat(reloaded).isEqualTo(renamed);
+        verify(customerDao, Mockito.times(2)).selectCustomerById(id);
+    }
+
+    @Test
+    void deleteCustomerByIdEvictsCachedCustomer() {
+        // given
+        int id = 10;
+        when(customerDao.selectCustomerById(id))
+                .thenReturn(Optional.of(new Customer(id, "Alex", "alex@gmail", 19)));
+        when(customerDao.existsCustomerById(id)).thenReturn(true);
+        underTest.getCustomer(id);
+
+        // when
+        underTest.deleteCustomerById(id);
+        when(customerDao.selectCustomerById(id)).thenReturn(Optional.empty());
+
+        // then
+        assertThatThrownBy(() -> underTest.getCustomer(id))
+                .isInstanceOf(ResourceNotFoundException.class);
+    }
+
+    @Test
+    void isEmailAvailableSkipsDatabaseWhenFilterRulesEmailOut() {
+        // given
+        String email = "alex@gmail";
+        when(customerEmailFilter.mightContain(email)).thenReturn(false);
+
+        // when
+        boolean actual = underTest.isEmailAvailable(email);
+
+        // then
+        assertThat(actual).isTrue();
+        Mockito.verifyNoInteractions(customerDao);
+    }
+
+    @Test
+    void isEmailAvailableAsksDatabaseWhenFilterMightContainEmail() {
+        // given
+        String email = "alex@gmail";
+        when(customerEmailFilter.mightContain(email)).thenReturn(true);
+        when(customerDao.existsCustomerWithEmail(email)).thenReturn(true);
+
+        // when
+        boolean actual = underTest.isEmailAvailable(email);
+
+        // then
+        assertThat(actual).isFalse();
+    }
+
     @Test
     void willThrowWhenGetCustomerReturnEmptyOptional() {
         // given
@@ -81,7 +203,7 @@ class CustomerServiceTest {
     void addCustomer() {
         // given
         String email = "alex@gmail";
-        when(customerDao.existsCustomerWithEmail(email)).thenReturn(false);
+        when(customerDao.insertCustomerIfAbsent(Mockito.any())).thenReturn(true);
 
         CustomerRegistrationRequest request = new CustomerRegistrationRequest(
                 "Alex", email, 19
@@ -89,21 +211,23 @@ class CustomerServiceTest {
         // when
         underTest.addCustomer(request);
         // then
-        // need to capture the argument passed to the insertCustomer method - customer
+        // need to capture the argument passed to the insertCustomerIfAbsent method - customer
         ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(Customer.class);
-        verify(customerDao).insertCustomer(customerArgumentCaptor.capture());
+        verify(customerDao).insertCustomerIfAbsent(customerArgumentCaptor.capture());
         Customer capturedCustomer = customerArgumentCaptor.getValue();
         assertThat(capturedCustomer.getId()).isNull();
         assertThat(capturedCustomer.getName()).isEqualTo(request.name());
         assertThat(capturedCustomer.getEmail()).isEqualTo(request.email());
         assertThat(capturedCustomer.getAge()).isEqualTo(request.age());
+        verify(customerDao, Mockito.never()).existsCustomerWithEmail(Mockito.any());
+        verify(customerResponseCache).evictPages();
     }
 
     @Test
     void willThrowWhenEmailExistsWhileAddingACustomer() {
         // given
         String email = "alex@gmail";
-        when(customerDao.existsCustomerWithEmail(email)).thenReturn(true);
+        when(customerDao.insertCustomerIfAbsent(Mockito.any())).thenReturn(false);
 
         CustomerRegistrationRequest request = new CustomerRegistrationRequest(
                 "Alex", email, 19
@@ -125,6 +249,7 @@ class CustomerServiceTest {
         underTest.deleteCustomerById(id);
         // then
         verify(customerDao).deleteCustomerById(id);
+        verify(customerResponseCache).evict(id);
     }
 
     @Test
@@ -144,16 +269,12 @@ class CustomerServiceTest {
     void canUpdateCustomerAllProperties() {
         // given
         int id = 10;
-        Customer customer = new Customer(
-                id, "Alex", "alex@gmail", 19
-        );
-        // need to instruct the mock to return a value
-        when(customerDao.selectCustomerById(id))
-                .thenReturn(Optional.of(customer));
         String newEmail = "alexandro@amigoscode.com";
         CustomerUpdateRequest req = new CustomerUpdateRequest(
                 "Alexandro", newEmail, 23);
-        when(customerDao.existsCustomerWithEmail(newEmail)).thenReturn(false);
+        when(customerDao.updateCustomer(Mockito.any())).thenReturn(
+                CustomerUpdateResult.updated(new Customer(id, "Alexandro", newEmail, 23))
+        );
         // when
         underTest.updateCustomer(id,req);
         // then
@@ -164,22 +285,20 @@ class CustomerServiceTest {
         assertThat(captured.getName()).isEqualTo(req.name());
         assertThat(captured.getEmail()).isEqualTo(req.email());
         assertThat(captured.getAge()).isEqualTo(req.age());
+        // a single dao call, no read before the write
+        verify(customerDao, Mockito.never()).selectCustomerById(id);
+        verify(customerDao, Mockito.never()).existsCustomerWithEmail(newEmail);
     }
 
     @Test
     void canOnlyUpdateCustomerName() {
         // given
         int id = 10;
-        Customer customer = new Customer(
-                id, "Alex", "alex@gmail", 19
-        );
-        // need to instruct the mock to return a value
-        when(customerDao.selectCustomerById(id))
-                .thenReturn(Optional.of(customer));
-
-
         CustomerUpdateRequest req = new CustomerUpdateRequest(
                 "Alexandro", null, null);
+        when(customerDao.updateCustomer(Mockito.any())).thenReturn(
+                CustomerUpdateResult.updated(new Customer(id, "Alexandro", "alex@gmail", 19))
+        );
 
         // when
         underTest.updateCustomer(id,req);
@@ -189,25 +308,21 @@ class CustomerServiceTest {
         Customer captured = captor.getValue();
         assertThat(captured.getId()).isEqualTo(id);
         assertThat(captured.getName()).isEqualTo(req.name());
-        assertThat(captured.getEmail()).isEqualTo(customer.getEmail());
-        assertThat(captured.getAge()).isEqualTo(customer.getAge());
+        // fields that are not in the request are left out of the update
+        assertThat(captured.getEmail()).isNull();
+        assertThat(captured.getAge()).isNull();
     }
 
     @Test
     void canOnlyUpdateCustomerEmail() {
         // given
         int id = 10;
-        Customer customer = new Customer(
-                id, "Alex", "alex@gmail", 19
-        );
-        // need to instruct the mock to return a value
-        when(customerDao.selectCustomerById(id))
-                .thenReturn(Optional.of(customer));
-
         String newEmail = "alexandro@amigoscode.com";
         CustomerUpdateRequest req = new CustomerUpdateRequest(
                 null, newEmail, null);
-        when(customerDao.existsCustomerWithEmail(newEmail)).thenReturn(false);
+        when(customerDao.updateCustomer(Mockito.any())).thenReturn(
+                CustomerUpdateResult.updated(new Customer(id, "Alex", newEmail, 19))
+        );
         // when
         underTest.updateCustomer(id,req);
         // then
@@ -215,25 +330,20 @@ class CustomerServiceTest {
         verify(customerDao).updateCustomer(captor.capture());
         Customer captured = captor.getValue();
         assertThat(captured.getId()).isEqualTo(id);
-        assertThat(captured.getName()).isEqualTo(customer.getName());
+        assertThat(captured.getName()).isNull();
         assertThat(captured.getEmail()).isEqualTo(newEmail);
-        assertThat(captured.getAge()).isEqualTo(customer.getAge());
+        assertThat(captured.getAge()).isNull();
     }
     @Test
     void canOnlyUpdateCustomerAge() {
         // given
         int id = 10;
-        Customer customer = new Customer(
-                id, "Alex", "alex@gmail", 19
-        );
-        // need to instruct the mock to return a value
-        when(customerDao.selectCustomerById(id))
-                .thenReturn(Optional.of(customer));
-
         Integer newAge = 32;
         CustomerUpdateRequest req = new CustomerUpdateRequest(
                 null, null, newAge);
-        //when(customerDao.existsCustomerWithEmail(newEmail)).thenReturn(false);
+        when(customerDao.updateCustomer(Mockito.any())).thenReturn(
+                CustomerUpdateResult.updated(new Customer(id, "Alex", "alex@gmail", newAge))
+        );
         // when
         underTest.updateCustomer(id,req);
         // then
@@ -241,54 +351,69 @@ class CustomerServiceTest {
         verify(customerDao).updateCustomer(captor.capture());
         Customer captured = captor.getValue();
         assertThat(captured.getId()).isEqualTo(id);
-        assertThat(captured.getName()).isEqualTo(customer.getName());
-        assertThat(captured.getEmail()).isEqualTo(customer.getEmail());
+        assertThat(captured.getName()).isNull();
+        assertThat(captured.getEmail()).isNull();
         assertThat(captured.getAge()).isEqualTo(req.age());
     }
 
     @Test
-    void willThrowWhenUpdateCustomerEmailAlreadyTaken() {
+    void willThrowValidationErrorWhenUpdateViolatesOtherConstraint() {
         // given
         int id = 10;
-        Customer customer = new Customer(
-                id, "Alex", "alex@gmail", 19
-        );
-        // need to instruct the mock to return a value
-        when(customerDao.selectCustomerById(id))
-                .thenReturn(Optional.of(customer));
+        CustomerUpdateRequest req = new CustomerUpdateRequest(
+                null, null, -1);
+        when(customerDao.updateCustomer(Mockito.any()))
+                .thenThrow(new DataIntegrityViolationException("check constraint"));
+        // when
+        assertThatThrownBy(() -> underTest.updateCustomer(id, req))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("invalid customer data");
+        // then
+        verify(customerEmailFilter, Mockito.never()).emailAdded(Mockito.any());
+    }
 
+    @Test
+    void willThrowWhenUpdateCustomerEmailAlreadyTaken() {
+        // given
+        int id = 10;
         String newEmail = "alexandro@amigoscode.com";
         CustomerUpdateRequest req = new CustomerUpdateRequest(
                 null, newEmail, null);
-        when(customerDao.existsCustomerWithEmail(newEmail)).thenReturn(true);
+        when(customerDao.updateCustomer(Mockito.any()))
+                .thenReturn(CustomerUpdateResult.duplicateEmail());
         // when
         assertThatThrownBy(() -> underTest.updateCustomer(id, req))
                 .isInstanceOf(DuplicateResourceException.class)
                 .hasMessage("email already taken");
-        verify(customerDao, Mockito.never()).updateCustomer(Mockito.any());
     }
 
     @Test
     void willThrowWhenCustomerUpdateHasNoChanges() {
         // given
         int id = 10;
-        Customer customer = new Customer(
-                id, "Alex", "alex@gmail.com", 19
-        );
-        // need to instruct the mock to return a value
-        when(customerDao.selectCustomerById(id))
-                .thenReturn(Optional.of(customer));
-        String newEmail = "alexandro@amigoscode.com";
         CustomerUpdateRequest req = new CustomerUpdateRequest(
-                customer.getName(), customer.getEmail(), customer.getAge());
-
-        //when(customerDao.existsCustomerWithEmail(newEmail)).thenReturn(false);
+                "Alex", "alex@gmail.com", 19);
+        when(customerDao.updateCustomer(Mockito.any()))
+                .thenReturn(CustomerUpdateResult.noChanges());
         // when
 
         // then
         assertThatThrownBy(() -> underTest.updateCustomer(id, req))
                 .isInstanceOf(RequestValidationException.class)
                 .hasMessage("no data changes found");
-        verify(customerDao, Mockito.never()).updateCustomer(Mockito.any());
     }
-}
\ No newline at end of file
+
+    @Test
+    void willThrowWhenUpdateCustomerNotFound() {
+        // given
+        int id = 10;
+        CustomerUpdateRequest req = new CustomerUpdateRequest(
+                "Alex", null, null);
+        when(customerDao.updateCustomer(Mockito.any()))
+                .thenReturn(CustomerUpdateResult.notFound());
+        // then
+        assertThatThrownBy(() -> underTest.updateCustomer(id, req))
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("customer with id [%s] not found".formatted(id));
+    }
+}
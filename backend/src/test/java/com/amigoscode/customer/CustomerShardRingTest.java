@@ -0,0 +1,70 @@
+package com.amigoscode.customer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerShardRingTest {
+
+    private static final int IDS = 30_000;
+
+    @Test
+    void spreadsIdsEvenly() {
+        // Given
+        CustomerShardRing underTest = new CustomerShardRing(List.of("shard-1", "shard-2", "shard-3"), 128);
+
+        // When
+        Map<String, Integer> counts = new HashMap<>();
+        for (int id = 1; id <= IDS; id++) {
+            counts.merge(underTest.owner(id), 1, Integer::sum);
+        }
+
+        // Then
+        assertThat(counts).hasSize(3);
+        assertThat(counts.values()).allSatisfy(count ->
+                assertThat(count).isBetween(IDS / 3 * 7 / 10, IDS / 3 * 13 / 10));
+    }
+
+    @Test
+    void addingShardOnlyMovesIdsToIt() {
+        // Given
+        CustomerShardRing before = new CustomerShardRing(List.of("shard-1", "shard-2", "shard-3"), 128);
+
+        // When
+        CustomerShardRing after = before.with("shard-4");
+
+        // Then
+        int moved = 0;
+        for (int id = 1; id <= IDS; id++) {
+            if (!before.owner(id).equals(after.owner(id))) {
+                assertThat(after.owner(id)).isEqualTo("shard-4");
+                moved++;
+            }
+        }
+        // about a quarter of the ids belong to the fourth shard
+        assertThat(moved).isBetween(IDS * 15 / 100, IDS * 35 / 100);
+    }
+
+    @Test
+    void sameShardsGiveSameOwners() {
+        // Given
+        CustomerShardRing one = new CustomerShardRing(List.of("shard-1", "shard-2"), 64);
+        CustomerShardRing other = new CustomerShardRing(List.of("shard-2", "shard-1"), 64);
+
+        // When
+        List<String> oneOwners = new ArrayList<>();
+        List<String> otherOwners = new ArrayList<>();
+        for (int id = 1; id <= 1_000; id++) {
+            oneOwners.add(one.owner(id));
+            otherOwners.add(other.owner(id));
+        }
+
+        // Then
+        assertThat(oneOwners).isEqualTo(otherOwners);
+    }
+}
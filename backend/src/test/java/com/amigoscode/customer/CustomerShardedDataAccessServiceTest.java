@@ -0,0 +1,331 @@
+package com.amigoscode.customer;
+
+import com.amigoscode.AbstractTestcontainers;
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Shards customers over three Postgres instances, with the directory in
+ * the one from {@link AbstractTestcontainers}.
+ */
+class CustomerShardedDataAccessServiceTest extends AbstractTestcontainers {
+
+    private static final int VIRTUAL_NODES = 64;
+    private static final List<String> SHARDS = List.of("shard-1", "shard-2", "shard-3");
+
+    @Container
+    private static final PostgreSQLContainer<?> shard1 = shardContainer();
+    @Container
+    private static final PostgreSQLContainer<?> shard2 = shardContainer();
+    @Container
+    private static final PostgreSQLContainer<?> shard3 = shardContainer();
+
+    private static JdbcTemplate directory;
+
+    private final Map<String, JdbcTemplate> shardJdbcTemplates = new LinkedHashMap<>();
+    private CustomerShardedDataAccessService underTest;
+
+    private static PostgreSQLContainer<?> shardContainer() {
+        return new PostgreSQLContainer<>("postgres:latest")
+                .withDatabaseName("amigoscode-shard")
+                .withUsername("amigoscode")
+                .withPassword("password");
+    }
+
+    private static List<String> shardUrls() {
+        return List.of(shard1.getJdbcUrl(), shard2.getJdbcUrl(), shard3.getJdbcUrl());
+    }
+
+    @BeforeAll
+    static void migrateShards() {
+        directory = getJdbcTemplate();
+        for (String url : shardUrls()) {
+            Flyway.configure()
+                    .dataSource(url, "amigoscode", "password")
+                    .load()
+                    .migrate();
+        }
+    }
+
+    @AfterAll
+    static void closeDirectory() {
+        if (directory.getDataSource() instanceof HikariDataSource dataSource) {
+            dataSource.close();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        directory.execute("TRUNCATE customer_shard_directory, customer_shard_ring");
+        List<String> urls = shardUrls();
+        for (int i = 0; i < SHARDS.size(); i++) {
+            HikariDataSource dataSource = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(urls.get(i))
+                    .username("amigoscode")
+                    .password("password")
+                    .build();
+            dataSource.setMaximumPoolSize(4);
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+            jdbcTemplate.execute("TRUNCATE customer");
+            shardJdbcTemplates.put(SHARDS.get(i), jdbcTemplate);
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (underTest != null) {
+            underTest.close();
+        }
+        for (JdbcTemplate jdbcTemplate : shardJdbcTemplates.values()) {
+            ((HikariDataSource) jdbcTemplate.getDataSource()).close();
+        }
+    }
+
+    /**
+     * @param ring the shards on the ring; the others are configured but
+     *             yet to be added
+     */
+    private CustomerShardedDataAccessService sharded(List<String> ring) {
+        for (String shard : ring) {
+            directory.update("INSERT INTO customer_shard_ring(name) VALUES (?)", shard);
+        }
+        Map<String, DataSource> dataSources = new LinkedHashMap<>();
+        shardJdbcTemplates.forEach((name, jdbcTemplate) -> dataSources.put(name, jdbcTemplate.getDataSource()));
+        underTest = new CustomerShardedDataAccessService(directory, dataSources, VIRTUAL_NODES);
+        return underTest;
+    }
+
+    private static Customer customer() {
+        return new Customer(
+                FAKER.name().fullName(),
+                "sharded-" + UUID.randomUUID() + "@amigoscode.com",
+                FAKER.number().numberBetween(16, 99)
+        );
+    }
+
+    private List<Customer> insert(CustomerDao customerDao, int count) {
+        List<Customer> customers = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Customer customer = customer();
+            customerDao.insertCustomer(customer);
+            customers.add(customer);
+        }
+        return customers;
+    }
+
+    private String shardOf(Integer id) {
+        List<String> found = new ArrayList<>();
+        shardJdbcTemplates.forEach((name, jdbcTemplate) -> {
+            Integer count = jdbcTemplate.queryForObject(
+                    "SELECT count(*) FROM customer WHERE id = ?", Integer.class, id);
+            if (count != null && count > 0) {
+                found.add(name);
+            }
+        });
+        assertThat(found).hasSizeLessThanOrEqualTo(1);
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    @Test
+    void spreadsCustomersOverShardsOfRing() {
+        // Given
+        CustomerDao customerDao = sharded(List.of("shard-1", "shard-2"));
+        CustomerShardRing ring = new CustomerShardRing(List.of("shard-1", "shard-2"), VIRTUAL_NODES);
+
+        // When
+        List<Customer> customers = insert(customerDao, 60);
+
+        // Then
+        List<String> shards = new ArrayList<>();
+        for (Customer customer : customers) {
+            String shard = shardOf(customer.getId());
+            assertThat(shard).isEqualTo(ring.owner(customer.getId()));
+            shards.add(shard);
+            assertThat(customerDao.selectCustomerById(customer.getId()))
+                    .map(Customer::getEmail)
+                    .contains(customer.getEmail());
+        }
+        assertThat(shards).contains("shard-1", "shard-2");
+        assertThat(customerDao.selectAllCustomers())
+                .extracting(Customer::getId)
+                .isSorted()
+                .containsExactlyInAnyOrderElementsOf(customers.stream().map(Customer::getId).toList());
+    }
+
+    @Test
+    void emailsAreUniqueAcrossShards() {
+        // Given
+        CustomerDao customerDao = sharded(List.of("shard-1", "shard-2"));
+        Customer customer = customer();
+        customerDao.insertCustomer(customer);
+        Customer other = customer();
+
+        // When
+        Customer duplicate = new Customer("Duplicate", customer.getEmail(), 30);
+        boolean inserted = customerDao.insertCustomerIfAbsent(duplicate);
+        List<Boolean> batch = customerDao.insertCustomersIfAbsent(List.of(
+                other,
+                new Customer("Duplicate", customer.getEmail(), 30),
+                new Customer("Repeated", other.getEmail(), 30)
+        ));
+
+        // Then
+        assertThat(inserted).isFalse();
+        assertThat(batch).containsExactly(true, false, false);
+        assertThat(customerDao.existsCustomerWithEmail(other.getEmail())).isTrue();
+        assertThat(customerDao.selectAllCustomers()).hasSize(2);
+        assertThatThrownBy(() -> customerDao.insertCustomer(new Customer("Again", customer.getEmail(), 30)))
+                .isInstanceOf(DuplicateKeyException.class);
+    }
+
+    @Test
+    void pagesAreMergedAcrossShards() {
+        // Given
+        CustomerDao customerDao = sharded(List.of("shard-1", "shard-2"));
+        List<Customer> customers = insert(customerDao, 30);
+
+        // When
+        List<Customer> paged = new ArrayList<>();
+        CustomerPageRequest pageRequest = CustomerPageRequest.first(CustomerSort.NAME, 7);
+        while (true) {
+            List<Customer> page = customerDao.selectCustomers(pageRequest);
+            paged.addAll(page);
+            if (page.size() < pageRequest.limit()) {
+                break;
+            }
+            pageRequest = new CustomerPageRequest(
+                    CustomerSort.NAME,
+                    CustomerCursor.of(CustomerSort.NAME, page.get(page.size() - 1)),
+                    7
+            );
+        }
+
+        // Then
+        assertThat(paged)
+                .extracting(Customer::getId)
+                .containsExactlyElementsOf(customers.stream()
+                        .sorted(CustomerSort.NAME.comparator())
+                        .map(Customer::getId)
+                        .toList());
+    }
+
+    @Test
+    void emailChangeMovesClaimInDirectory() {
+        // Given
+        CustomerDao customerDao = sharded(List.of("shard-1", "shard-2"));
+        List<Customer> customers = insert(customerDao, 2);
+        Customer customer = customers.get(0);
+        String oldEmail = customer.getEmail();
+        String newEmail = "changed-" + UUID.randomUUID() + "@amigoscode.com";
+
+        // When
+        CustomerUpdateResult taken = customerDao.updateCustomer(
+                new Customer(customer.getId(), null, customers.get(1).getEmail(), null));
+        CustomerUpdateResult changed = customerDao.updateCustomer(
+                new Customer(customer.getId(), null, newEmail, null));
+
+        // Then
+        assertThat(taken.status()).isEqualTo(CustomerUpdateResult.Status.DUPLICATE_EMAIL);
+        assertThat(changed.status()).isEqualTo(CustomerUpdateResult.Status.UPDATED);
+        assertThat(customerDao.existsCustomerWithEmail(oldEmail)).isFalse();
+        assertThat(customerDao.existsCustomerWithEmail(newEmail)).isTrue();
+        assertThat(customerDao.selectCustomerById(customer.getId()))
+                .map(Customer::getEmail)
+                .contains(newEmail);
+    }
+
+    @Test
+    void deleteReleasesEmail() {
+        // Given
+        CustomerDao customerDao = sharded(List.of("shard-1", "shard-2"));
+        List<Customer> customers = insert(customerDao, 3);
+
+        // When
+        List<Boolean> deleted = customerDao.deleteCustomersById(List.of(
+                customers.get(0).getId(), customers.get(1).getId(), -1));
+
+        // Then
+        assertThat(deleted).containsExactly(true, true, false);
+        assertThat(customerDao.existsCustomerById(customers.get(0).getId())).isFalse();
+        assertThat(customerDao.existsCustomerWithEmail(customers.get(0).getEmail())).isFalse();
+        assertThat(customerDao.insertCustomerIfAbsent(
+                new Customer("Again", customers.get(0).getEmail(), 30))).isTrue();
+    }
+
+    @Test
+    void addShardMovesCustomersWhileServing() throws Exception {
+        // Given
+        CustomerShardedDataAccessService customerDao = sharded(List.of("shard-1", "shard-2"));
+        List<Customer> customers = insert(customerDao, 300);
+
+        // When
+        AtomicBoolean adding = new AtomicBoolean(true);
+        CompletableFuture<List<Customer>> writer = CompletableFuture.supplyAsync(() -> {
+            List<Customer> written = new ArrayList<>();
+            while (adding.get()) {
+                written.addAll(insert(customerDao, 1));
+                // every customer stays readable while rows move
+                Customer existing = customers.get(written.size() % customers.size());
+                assertThat(customerDao.selectCustomerById(existing.getId())).isPresent();
+            }
+            return written;
+        });
+        customerDao.addShard("shard-3").get(30, TimeUnit.SECONDS);
+        adding.set(false);
+        customers.addAll(writer.get(30, TimeUnit.SECONDS));
+
+        // Then
+        CustomerShardRing ring = new CustomerShardRing(SHARDS, VIRTUAL_NODES);
+        List<String> shards = new ArrayList<>();
+        for (Customer customer : customers) {
+            String shard = shardOf(customer.getId());
+            assertThat(shard).isEqualTo(ring.owner(customer.getId()));
+            shards.add(shard);
+        }
+        assertThat(shards).contains("shard-3");
+        assertThat(customerDao.status().ring()).containsExactlyInAnyOrderElementsOf(SHARDS);
+        assertThat(customerDao.status().joining()).isNull();
+        assertThat(customerDao.selectAllCustomers()).hasSize(customers.size());
+        assertThat(directory.queryForObject(
+                "SELECT count(*) FROM customer_shard_ring WHERE joining", Integer.class)).isZero();
+    }
+
+    @Test
+    void streamPassesEveryCustomerOnce() {
+        // Given
+        CustomerDao customerDao = sharded(List.of("shard-1", "shard-2"));
+        List<Customer> customers = insert(customerDao, 50);
+
+        // When
+        List<Integer> streamed = new ArrayList<>();
+        customerDao.streamCustomers((id, name, email, age) -> streamed.add(id));
+
+        // Then
+        assertThat(streamed).containsExactlyInAnyOrderElementsOf(
+                customers.stream().map(Customer::getId).toList());
+    }
+}
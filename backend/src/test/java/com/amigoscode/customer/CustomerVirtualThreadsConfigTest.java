@@ -0,0 +1,72 @@
+package com.amigoscode.customer;
+
+import org.apache.coyote.http11.Http11NioProtocol;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.boot.test.context.runner.WebApplicationContextRunner;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class CustomerVirtualThreadsConfigTest {
+
+    private final WebApplicationContextRunner contextRunner = new WebApplicationContextRunner()
+            // binds Duration values as SpringApplication would
+            .withInitializer(context -> context.getBeanFactory()
+                    .setConversionService(ApplicationConversionService.getSharedInstance()))
+            .withUserConfiguration(CustomerVirtualThreadsConfig.class);
+
+    @Test
+    void isOffByDefault() {
+        contextRunner.run(context ->
+                assertThat(context).doesNotHaveBean(CustomerVirtualThreadsConfig.class));
+    }
+
+    @Test
+    void keepsTomcatPoolWithoutVirtualThreads() {
+        // Given
+        assumeTrue(CustomerVirtualThreadsConfig.newVirtualThreadPerTaskExecutor().isEmpty());
+
+        contextRunner.withPropertyValues("customer.virtual-threads.enabled=true").run(context -> {
+            Http11NioProtocol protocol = new Http11NioProtocol();
+
+            // When
+            customize(context.getBean(TomcatProtocolHandlerCustomizer.class), protocol);
+
+            // Then
+            assertThat(protocol.getExecutor()).isNull();
+            assertThat(context.getBean(CustomerVirtualThreadPinningMonitor.class).isRunning())
+                    .isFalse();
+        });
+    }
+
+    @Test
+    void runsTomcatRequestsOnVirtualThreads() {
+        // Given
+        assumeTrue(CustomerVirtualThreadsConfig.newVirtualThreadPerTaskExecutor().isPresent());
+
+        contextRunner.withPropertyValues("customer.virtual-threads.enabled=true").run(context -> {
+            Http11NioProtocol protocol = new Http11NioProtocol();
+
+            // When
+            customize(context.getBean(TomcatProtocolHandlerCustomizer.class), protocol);
+            Future<String> thread = ((ExecutorService) protocol.getExecutor())
+                    .submit(() -> Thread.currentThread().toString());
+
+            // Then
+            assertThat(thread.get()).startsWith("VirtualThread");
+            assertThat(context.getBean(CustomerVirtualThreadPinningMonitor.class).isRunning())
+                    .isTrue();
+        });
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static void customize(TomcatProtocolHandlerCustomizer customizer,
+                                  Http11NioProtocol protocol) {
+        customizer.customize(protocol);
+    }
+}
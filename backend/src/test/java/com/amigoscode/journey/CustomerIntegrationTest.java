@@ -1,6 +1,9 @@
 package com.amigoscode.journey;
 
 import com.amigoscode.customer.Customer;
+import com.amigoscode.customer.CustomerBatchResult;
+import com.amigoscode.customer.CustomerEmailAvailability;
+import com.amigoscode.customer.CustomerImportResult;
 import com.amigoscode.customer.CustomerRegistrationRequest;
 import com.amigoscode.customer.CustomerUpdateRequest;
 import com.github.javafaker.Faker;
@@ -9,13 +12,18 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.EntityExchangeResult;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Mono;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -28,6 +36,29 @@ public class CustomerIntegrationTest {
 
     private static final Random RANDOM = new Random();
     private static final String CUSTOMER_URI = "/api/v1/customers";
+    private static final Pattern NEXT_LINK = Pattern.compile("<([^>]+)>; rel=\"next\"");
+
+    // follows the next links until the last page
+    private List<Customer> getAllCustomers() {
+        List<Customer> customers = new ArrayList<>();
+        String uri = CUSTOMER_URI + "?limit=1000";
+        while (uri != null) {
+            EntityExchangeResult<List<Customer>> result = webTestClient.get()
+                    .uri(uri)
+                    .accept(MediaType.APPLICATION_JSON)
+                    .exchange()
+                    .expectStatus()
+                    .isOk()
+                    .expectBodyList(new ParameterizedTypeReference<Customer>() {})
+                    .returnResult();
+            customers.addAll(result.getResponseBody());
+            String link = result.getResponseHeaders().getFirst(HttpHeaders.LINK);
+            Matcher next = link == null ? null : NEXT_LINK.matcher(link);
+            uri = next != null && next.find() ? next.group(1) : null;
+        }
+        return customers;
+    }
+
     @Test
     void canRegisterCustomer() {
        // create registration request
@@ -50,15 +81,7 @@ public class CustomerIntegrationTest {
                 .isCreated();
 
         // get all customers
-        List<Customer> allCustomers = webTestClient.get()
-                .uri(CUSTOMER_URI)
-                .accept(MediaType.APPLICATION_JSON)
-                .exchange()
-                .expectStatus()
-                .isOk()
-                .expectBodyList(new ParameterizedTypeReference<Customer>() {})
-                .returnResult()
-                .getResponseBody();
+        List<Customer> allCustomers = getAllCustomers();
         // make sure that customer is present
         Customer expectedCustomer = new Customer(
                 name, email, age
@@ -109,15 +132,7 @@ public class CustomerIntegrationTest {
                 .isCreated();
 
         // get all customers
-        List<Customer> allCustomers = webTestClient.get()
-                .uri(CUSTOMER_URI)
-                .accept(MediaType.APPLICATION_JSON)
-                .exchange()
-                .expectStatus()
-                .isOk()
-                .expectBodyList(new ParameterizedTypeReference<Customer>() {})
-                .returnResult()
-                .getResponseBody();
+        List<Customer> allCustomers = getAllCustomers();
         // make sure that customer is present
 
         var id = allCustomers.stream()
@@ -165,15 +180,7 @@ public class CustomerIntegrationTest {
                 .isCreated();
 
         // get all customers
-        List<Customer> allCustomers = webTestClient.get()
-                .uri(CUSTOMER_URI)
-                .accept(MediaType.APPLICATION_JSON)
-                .exchange()
-                .expectStatus()
-                .isOk()
-                .expectBodyList(new ParameterizedTypeReference<Customer>() {})
-                .returnResult()
-                .getResponseBody();
+        List<Customer> allCustomers = getAllCustomers();
         // make sure that customer is present
 
         var id = allCustomers.stream()
@@ -212,4 +219,170 @@ public class CustomerIntegrationTest {
         );
         assertThat(updatedCustomer).isEqualTo(expected);
     }
+
+    @Test
+    void canRunBatchOfOperations() {
+        // a create, a repeated create and a delete of the created customer
+        String email = "batch-" + UUID.randomUUID() + "@amigoscode.com";
+        String body = """
+                [
+                  {"op": "CREATE", "name": "Alex", "email": "%1$s", "age": 20},
+                  {"op": "CREATE", "name": "Alex", "email": "%1$s", "age": 20},
+                  {"op": "UPDATE", "name": "Alex"}
+                ]
+                """.formatted(email);
+
+        List<CustomerBatchResult> results = webTestClient.post()
+                .uri(CUSTOMER_URI + ":batch")
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(body)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(CustomerBatchResult.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertThat(results).extracting(CustomerBatchResult::status).containsExactly(
+                CustomerBatchResult.Status.CREATED,
+                CustomerBatchResult.Status.DUPLICATE_EMAIL,
+                CustomerBatchResult.Status.INVALID
+        );
+        Integer id = results.get(0).id();
+        assertThat(getAllCustomers())
+                .filteredOn(c -> c.getEmail().equals(email))
+                .extracting(Customer::getId)
+                .containsExactly(id);
+
+        // delete it in a second batch
+        webTestClient.post()
+                .uri(CUSTOMER_URI + ":batch")
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("[{\"op\": \"DELETE\", \"id\": %d}]".formatted(id))
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(CustomerBatchResult.class)
+                .contains(new CustomerBatchResult(0, CustomerBatchResult.Status.DELETED, id, null));
+    }
+
+    @Test
+    void canImportCustomersFromCsv() {
+        String email = "import-" + UUID.randomUUID() + "@amigoscode.com";
+        String csv = "name,email,age\nAlex,%1$s,20\nAlex,%1$s,21\n".formatted(email);
+
+        webTestClient.post()
+                .uri(CUSTOMER_URI + ":import")
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.parseMediaType("text/csv"))
+                .bodyValue(csv)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(CustomerImportResult.class)
+                .isEqualTo(new CustomerImportResult(2, 1, 1));
+
+        assertThat(getAllCustomers())
+                .filteredOn(c -> c.getEmail().equals(email))
+                .extracting(Customer::getAge)
+                .containsExactly(20);
+    }
+
+    @Test
+    void canCheckEmailAvailability() {
+        String email = "available-" + UUID.randomUUID() + "@amigoscode.com";
+        String availabilityUri = CUSTOMER_URI + "/email-availability?email={email}";
+
+        webTestClient.get()
+                .uri(availabilityUri, email)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(CustomerEmailAvailability.class)
+                .isEqualTo(new CustomerEmailAvailability(email, true));
+
+        webTestClient.post()
+                .uri(CUSTOMER_URI)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new CustomerRegistrationRequest("Alex", email, 20)),
+                        CustomerRegistrationRequest.class)
+                .exchange()
+                .expectStatus()
+                .isCreated();
+
+        webTestClient.get()
+                .uri(availabilityUri, email)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(CustomerEmailAvailability.class)
+                .isEqualTo(new CustomerEmailAvailability(email, false));
+    }
+
+    @Test
+    void canRevalidateCustomerWithETag() {
+        String email = "etag-" + UUID.randomUUID() + "@amigoscode.com";
+        webTestClient.post()
+                .uri(CUSTOMER_URI)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new CustomerRegistrationRequest("Alex", email, 20)),
+                        CustomerRegistrationRequest.class)
+                .exchange()
+                .expectStatus()
+                .isCreated();
+        var id = getAllCustomers().stream()
+                .filter(customer -> customer.getEmail().equals(email))
+                .map(Customer::getId)
+                .findFirst()
+                .orElseThrow();
+
+        String eTag = webTestClient.get()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(Customer.class)
+                .returnResult()
+                .getResponseHeaders()
+                .getETag();
+        assertThat(eTag).isNotNull();
+
+        // unchanged, so the cached representation is still current
+        webTestClient.get()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .accept(MediaType.APPLICATION_JSON)
+                .ifNoneMatch(eTag)
+                .exchange()
+                .expectStatus()
+                .isNotModified();
+
+        webTestClient.put()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new CustomerUpdateRequest("Alexander", null, null)),
+                        CustomerUpdateRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        webTestClient.get()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .accept(MediaType.APPLICATION_JSON)
+                .ifNoneMatch(eTag)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .value(HttpHeaders.ETAG, newETag -> assertThat(newETag).isNotEqualTo(eTag))
+                .expectBody(Customer.class)
+                .value(customer -> assertThat(customer.getName()).isEqualTo("Alexander"));
+    }
 }
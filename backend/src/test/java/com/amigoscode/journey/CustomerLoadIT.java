@@ -0,0 +1,296 @@
+package com.amigoscode.journey;
+
+import com.amigoscode.customer.CustomerBatchOperation;
+import com.amigoscode.customer.CustomerBatchResult;
+import com.amigoscode.customer.CustomerRegistrationRequest;
+import com.amigoscode.customer.CustomerUpdateRequest;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.assertj.core.api.SoftAssertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+/**
+ * Replays a mix of customer requests at a fixed arrival rate. Requests are
+ * sent when they are due whether or not earlier ones have finished (an
+ * open model), and latency is measured from that due time, so a server
+ * that falls behind shows up as latency instead of as a lower send rate.
+ * <p>
+ * Settings are system properties, for example
+ * {@code mvn verify -Dit.test=CustomerLoadIT -Dload.rate=500 -Dload.duration=PT1M}:
+ * <ul>
+ *     <li>{@code load.rate}: requests per second, default 200</li>
+ *     <li>{@code load.warmup} and {@code load.duration}: ISO-8601 durations,
+ *     default PT10S and PT15S; only requests due after the warmup count,
+ *     so that the JIT and the connection pools are warm</li>
+ *     <li>{@code load.clients}: connections to the server, default 64</li>
+ *     <li>{@code load.mix}: endpoint weights, default
+ *     {@code register:10,get:50,list:20,update:15,delete:5}</li>
+ *     <li>{@code load.p99-millis}: p99 budget of every endpoint, default 500,
+ *     overridden per endpoint with {@code load.p99-millis.<endpoint>}</li>
+ *     <li>{@code load.min-throughput-ratio}: share of {@code load.rate} that
+ *     must complete per second, default 0.95</li>
+ * </ul>
+ * Percentile distributions are written to {@code target/load-test} in
+ * HdrHistogram's {@code .hgrm} format.
+ * <p>
+ * Application properties can be passed the same way. To compare Tomcat's
+ * platform threads with virtual threads at high concurrency, run the same
+ * load twice on Java 21, with and without
+ * {@code -Dcustomer.virtual-threads.enabled=true}, for example with
+ * {@code -Dload.rate=2000 -Dload.clients=1000 -Dserver.tomcat.threads.max=50}.
+ */
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+class CustomerLoadIT {
+
+    private static final String CUSTOMER_URI = "/api/v1/customers";
+    private static final Path REPORT_DIRECTORY = Path.of("target", "load-test");
+    // ids that get, list and update use and delete never touches
+    private static final int STABLE_CUSTOMERS = 1_000;
+
+    private enum Endpoint {
+        REGISTER, GET, LIST, UPDATE, DELETE;
+
+        String key() {
+            return name().toLowerCase();
+        }
+    }
+
+    @LocalServerPort
+    private int port;
+
+    private final int rate = Integer.getInteger("load.rate", 200);
+    private final Duration warmup = Duration.parse(System.getProperty("load.warmup", "PT10S"));
+    private final Duration duration = Duration.parse(System.getProperty("load.duration", "PT15S"));
+    private final int clients = Integer.getInteger("load.clients", 64);
+    private final Map<Endpoint, Integer> mix = parseMix(
+            System.getProperty("load.mix", "register:10,get:50,list:20,update:15,delete:5")
+    );
+    private final double minThroughputRatio = Double.parseDouble(
+            System.getProperty("load.min-throughput-ratio", "0.95")
+    );
+
+    private final Map<Endpoint, Histogram> latencies = new EnumMap<>(Endpoint.class);
+    private final Map<Endpoint, AtomicLong> errors = new EnumMap<>(Endpoint.class);
+    private final AtomicLong lastCompletion = new AtomicLong();
+    private final List<Integer> stableIds = new ArrayList<>();
+    private final Queue<Integer> deletableIds = new ConcurrentLinkedQueue<>();
+
+    private ConnectionProvider connectionProvider;
+    private WebClient webClient;
+
+    private static Map<Endpoint, Integer> parseMix(String mix) {
+        Map<Endpoint, Integer> weights = new EnumMap<>(Endpoint.class);
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split(":");
+            weights.put(Endpoint.valueOf(parts[0].toUpperCase()), Integer.parseInt(parts[1]));
+        }
+        return weights;
+    }
+
+    @BeforeEach
+    void setUp() {
+        connectionProvider = ConnectionProvider.builder("customer-load")
+                .maxConnections(clients)
+                // queue instead of failing when every connection is busy
+                .pendingAcquireMaxCount(-1)
+                .build();
+        webClient = WebClient.builder()
+                .baseUrl("http://localhost:" + port)
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connectionProvider)))
+                .build();
+        for (Endpoint endpoint : Endpoint.values()) {
+            latencies.put(endpoint, new ConcurrentHistogram(3));
+            errors.put(endpoint, new AtomicLong());
+        }
+        seed();
+    }
+
+    @AfterEach
+    void tearDown() {
+        connectionProvider.dispose();
+    }
+
+    // creates the customers that get, list, update and delete work on
+    private void seed() {
+        int totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+        double deleteShare = mix.getOrDefault(Endpoint.DELETE, 0) / (double) totalWeight;
+        long arrivals = rate * (warmup.toMillis() + duration.toMillis()) / 1_000;
+        int deletable = (int) Math.ceil(arrivals * deleteShare * 1.1) + 10;
+
+        List<CustomerBatchOperation> operations = new ArrayList<>();
+        for (int i = 0; i < STABLE_CUSTOMERS + deletable; i++) {
+            operations.add(new CustomerBatchOperation(
+                    CustomerBatchOperation.Type.CREATE, null, "Load", uniqueEmail(), 30));
+        }
+        List<Integer> ids = webClient.post()
+                .uri(CUSTOMER_URI + ":batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(operations)
+                .retrieve()
+                .bodyToFlux(CustomerBatchResult.class)
+                .map(CustomerBatchResult::id)
+                .collectList()
+                .block(Duration.ofMinutes(1));
+        stableIds.addAll(ids.subList(0, STABLE_CUSTOMERS));
+        deletableIds.addAll(ids.subList(STABLE_CUSTOMERS, ids.size()));
+    }
+
+    private static String uniqueEmail() {
+        return "load-" + UUID.randomUUID() + "@amigoscode.com";
+    }
+
+    private Endpoint nextEndpoint() {
+        int totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+        int pick = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (Map.Entry<Endpoint, Integer> entry : mix.entrySet()) {
+            pick -= entry.getValue();
+            if (pick < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    private Integer stableId() {
+        return stableIds.get(ThreadLocalRandom.current().nextInt(stableIds.size()));
+    }
+
+    private Mono<HttpStatusCode> send(Endpoint endpoint) {
+        WebClient.RequestHeadersSpec<?> request = switch (endpoint) {
+            case REGISTER -> webClient.post()
+                    .uri(CUSTOMER_URI)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue(new CustomerRegistrationRequest("Load", uniqueEmail(), 30));
+            case GET -> webClient.get()
+                    .uri(CUSTOMER_URI + "/{id}", stableId());
+            case LIST -> webClient.get()
+                    .uri(CUSTOMER_URI + "?limit=100");
+            case UPDATE -> webClient.put()
+                    .uri(CUSTOMER_URI + "/{id}", stableId())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue(new CustomerUpdateRequest("Load " + UUID.randomUUID(), null, null));
+            case DELETE -> webClient.delete()
+                    .uri(CUSTOMER_URI + "/{id}", deletableIds.remove());
+        };
+        return request.exchangeToMono(response -> response.releaseBody()
+                .thenReturn(response.statusCode()));
+    }
+
+    @Test
+    void meetsLatencyAndThroughputBudgets() throws Exception {
+        long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+        AtomicLong measuredCompletions = new AtomicLong();
+        Phaser inFlight = new Phaser(1);
+
+        for (long due = start; due < end; due += interval) {
+            long wait;
+            while ((wait = due - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Endpoint endpoint = nextEndpoint();
+            long scheduled = due;
+            boolean measured = scheduled >= measureFrom;
+            inFlight.register();
+            send(endpoint)
+                    .doFinally(signal -> inFlight.arriveAndDeregister())
+                    .subscribe(
+                            status -> {
+                                long completed = System.nanoTime();
+                                if (!measured) {
+                                    return;
+                                }
+                                if (!status.is2xxSuccessful()) {
+                                    errors.get(endpoint).incrementAndGet();
+                                }
+                                latencies.get(endpoint).recordValue(completed - scheduled);
+                                measuredCompletions.incrementAndGet();
+                                lastCompletion.accumulateAndGet(completed, Math::max);
+                            },
+                            error -> {
+                                if (measured) {
+                                    errors.get(endpoint).incrementAndGet();
+                                }
+                            }
+                    );
+        }
+        inFlight.awaitAdvanceInterruptibly(inFlight.arrive(), 1, TimeUnit.MINUTES);
+
+        double seconds = (lastCompletion.get() - measureFrom) / 1e9;
+        double throughput = measuredCompletions.get() / seconds;
+        report(throughput);
+
+        SoftAssertions softly = new SoftAssertions();
+        softly.assertThat(throughput)
+                .as("completed requests per second")
+                .isGreaterThanOrEqualTo(rate * minThroughputRatio);
+        for (Endpoint endpoint : mix.keySet()) {
+            long budget = Long.getLong("load.p99-millis." + endpoint.key(),
+                    Long.getLong("load.p99-millis", 500));
+            softly.assertThat(latencies.get(endpoint).getValueAtPercentile(99.0) / 1e6)
+                    .as("p99 of %s in ms", endpoint.key())
+                    .isLessThanOrEqualTo(budget);
+            softly.assertThat(errors.get(endpoint).get())
+                    .as("failed %s requests", endpoint.key())
+                    .isZero();
+        }
+        softly.assertAll();
+    }
+
+    private void report(double throughput) throws IOException {
+        Files.createDirectories(REPORT_DIRECTORY);
+        System.out.printf("load test: %d requests/s offered, %.1f completed%n", rate, throughput);
+        for (Endpoint endpoint : mix.keySet()) {
+            Histogram histogram = latencies.get(endpoint);
+            System.out.printf(
+                    "  %-8s n=%-7d p50=%.1fms p90=%.1fms p99=%.1fms p99.9=%.1fms max=%.1fms errors=%d%n",
+                    endpoint.key(),
+                    histogram.getTotalCount(),
+                    histogram.getValueAtPercentile(50.0) / 1e6,
+                    histogram.getValueAtPercentile(90.0) / 1e6,
+                    histogram.getValueAtPercentile(99.0) / 1e6,
+                    histogram.getValueAtPercentile(99.9) / 1e6,
+                    histogram.getMaxValue() / 1e6,
+                    errors.get(endpoint).get()
+            );
+            try (PrintStream out = new PrintStream(
+                    Files.newOutputStream(REPORT_DIRECTORY.resolve(endpoint.key() + ".hgrm")))) {
+                // values in milliseconds
+                histogram.outputPercentileDistribution(out, 1e6);
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.amigoscode.journey;
+
+import com.amigoscode.customer.Customer;
+import com.amigoscode.customer.CustomerRegistrationRequest;
+import com.amigoscode.customer.CustomerUpdateRequest;
+import com.github.javafaker.Faker;
+import com.github.javafaker.Name;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.reactive.context.ReactiveWebApplicationContext;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+@ActiveProfiles("reactive")
+class CustomerReactiveIntegrationTest {
+
+    private static final String CUSTOMER_URI = "/api/v1/customers";
+
+    @Autowired
+    private WebTestClient webTestClient;
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    private Customer registerCustomer() {
+        Name fakerName = new Faker().name();
+        String email = fakerName.lastName() + "-" + UUID.randomUUID() + "@amigoscode.com";
+        webTestClient.post()
+                .uri(CUSTOMER_URI)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new CustomerRegistrationRequest(fakerName.fullName(), email, 30)),
+                        CustomerRegistrationRequest.class)
+                .exchange()
+                .expectStatus()
+                .isCreated();
+
+        // the export streams every customer, one JSON document per line
+        return webTestClient.get()
+                .uri(CUSTOMER_URI + "/export")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(Customer.class)
+                .getResponseBody()
+                .filter(customer -> customer.getEmail().equals(email))
+                .blockFirst();
+    }
+
+    @Test
+    void servesCustomerApiFromWebFlux() {
+        assertThat(applicationContext).isInstanceOf(ReactiveWebApplicationContext.class);
+    }
+
+    @Test
+    void canRegisterUpdateAndDeleteCustomer() {
+        // Given
+        Customer customer = registerCustomer();
+        assertThat(customer).isNotNull();
+
+        // When
+        webTestClient.put()
+                .uri(CUSTOMER_URI + "/{id}", customer.getId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new CustomerUpdateRequest("newName", null, null)),
+                        CustomerUpdateRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        // Then
+        customer.setName("newName");
+        webTestClient.get()
+                .uri(CUSTOMER_URI + "/{id}", customer.getId())
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(Customer.class)
+                .isEqualTo(customer);
+
+        webTestClient.put()
+                .uri(CUSTOMER_URI + "/{id}", customer.getId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new CustomerUpdateRequest("newName", null, null)),
+                        CustomerUpdateRequest.class)
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+
+        webTestClient.delete()
+                .uri(CUSTOMER_URI + "/{id}", customer.getId())
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        webTestClient.get()
+                .uri(CUSTOMER_URI + "/{id}", customer.getId())
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isNotFound();
+    }
+
+    @Test
+    void rejectsDuplicateEmail() {
+        // Given
+        Customer customer = registerCustomer();
+
+        // When
+        // Then
+        webTestClient.post()
+                .uri(CUSTOMER_URI)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new CustomerRegistrationRequest("Other", customer.getEmail(), 40)),
+                        CustomerRegistrationRequest.class)
+                .exchange()
+                .expectStatus()
+                .isEqualTo(409);
+    }
+
+    @Test
+    void pagesLinkToTheNextPage() {
+        // Given
+        registerCustomer();
+        registerCustomer();
+
+        // When
+        // Then
+        webTestClient.get()
+                .uri(CUSTOMER_URI + "?limit=1")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .value(HttpHeaders.LINK, link -> assertThat(link).contains("after=", "rel=\"next\""))
+                .expectBody(new ParameterizedTypeReference<List<Customer>>() {})
+                .value(customers -> assertThat(customers).hasSize(1));
+    }
+}